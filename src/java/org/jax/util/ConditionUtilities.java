@@ -0,0 +1,574 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jax.util.math.ComparisonOperator;
+
+/**
+ * Functions for combining conditions. Combined conditions are evaluated
+ * in a single pass with short circuiting, rather than evaluating each
+ * condition over the data and combining the results. Nested combinations
+ * of the same kind are flattened, so that <code>and(a, and(b, c))</code>
+ * tests a, b and c in one loop. Double negations cancel out. The
+ * primitive versions have their own names (like
+ * {@link #andDouble(DoubleCondition, DoubleCondition)}) so that calls stay
+ * unambiguous for conditions, like {@link org.jax.util.math.FiniteCondition},
+ * that are both boxed and primitive.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public final class ConditionUtilities
+{
+    /**
+     * Private constructor to avoid an instance being created
+     */
+    private ConditionUtilities()
+    {
+    }
+
+    /**
+     * Combine the conditions so that an input must pass both
+     * @param <I>
+     *          the input type
+     * @param condition1
+     *          the 1st condition (tested first)
+     * @param condition2
+     *          the 2nd condition
+     * @return
+     *          the combined condition
+     */
+    public static <I> Condition<I> and(
+            Condition<? super I> condition1,
+            Condition<? super I> condition2)
+    {
+        List<Condition<? super I>> conditions = new ArrayList<Condition<? super I>>();
+        addConditions(conditions, condition1, true);
+        addConditions(conditions, condition2, true);
+        return new CompositeCondition<I>(conditions, true);
+    }
+
+    /**
+     * Combine the conditions so that an input must pass either one
+     * @param <I>
+     *          the input type
+     * @param condition1
+     *          the 1st condition (tested first)
+     * @param condition2
+     *          the 2nd condition
+     * @return
+     *          the combined condition
+     */
+    public static <I> Condition<I> or(
+            Condition<? super I> condition1,
+            Condition<? super I> condition2)
+    {
+        List<Condition<? super I>> conditions = new ArrayList<Condition<? super I>>();
+        addConditions(conditions, condition1, false);
+        addConditions(conditions, condition2, false);
+        return new CompositeCondition<I>(conditions, false);
+    }
+
+    /**
+     * Invert the condition. Inverting an {@link InverseCondition} gives back
+     * the condition that it inverts
+     * @param <I>
+     *          the input type
+     * @param condition
+     *          the condition to invert
+     * @return
+     *          the inverted condition
+     */
+    public static <I> Condition<I> not(Condition<I> condition)
+    {
+        if(condition instanceof InverseCondition)
+        {
+            return ((InverseCondition<I>)condition).getConditionToInvert();
+        }
+        else
+        {
+            return new InverseCondition<I>(condition);
+        }
+    }
+
+    /**
+     * Combine the conditions so that an input must pass both
+     * @param condition1
+     *          the 1st condition (tested first)
+     * @param condition2
+     *          the 2nd condition
+     * @return
+     *          the combined condition
+     */
+    public static DoubleCondition andDouble(
+            DoubleCondition condition1,
+            DoubleCondition condition2)
+    {
+        List<DoubleCondition> conditions = new ArrayList<DoubleCondition>();
+        addConditions(conditions, condition1, true);
+        addConditions(conditions, condition2, true);
+        return new CompositeDoubleCondition(
+                conditions.toArray(new DoubleCondition[conditions.size()]),
+                true);
+    }
+
+    /**
+     * Combine the conditions so that an input must pass either one
+     * @param condition1
+     *          the 1st condition (tested first)
+     * @param condition2
+     *          the 2nd condition
+     * @return
+     *          the combined condition
+     */
+    public static DoubleCondition orDouble(
+            DoubleCondition condition1,
+            DoubleCondition condition2)
+    {
+        List<DoubleCondition> conditions = new ArrayList<DoubleCondition>();
+        addConditions(conditions, condition1, false);
+        addConditions(conditions, condition2, false);
+        return new CompositeDoubleCondition(
+                conditions.toArray(new DoubleCondition[conditions.size()]),
+                false);
+    }
+
+    /**
+     * Invert the condition. Inverting an inverted condition gives back the
+     * original condition
+     * @param condition
+     *          the condition to invert
+     * @return
+     *          the inverted condition
+     */
+    public static DoubleCondition notDouble(DoubleCondition condition)
+    {
+        if(condition instanceof InverseDoubleCondition)
+        {
+            return ((InverseDoubleCondition)condition).conditionToInvert;
+        }
+        else
+        {
+            return new InverseDoubleCondition(condition);
+        }
+    }
+
+    /**
+     * Combine the conditions so that an input must pass both
+     * @param condition1
+     *          the 1st condition (tested first)
+     * @param condition2
+     *          the 2nd condition
+     * @return
+     *          the combined condition
+     */
+    public static IntCondition andInt(
+            IntCondition condition1,
+            IntCondition condition2)
+    {
+        List<IntCondition> conditions = new ArrayList<IntCondition>();
+        addConditions(conditions, condition1, true);
+        addConditions(conditions, condition2, true);
+        return new CompositeIntCondition(
+                conditions.toArray(new IntCondition[conditions.size()]),
+                true);
+    }
+
+    /**
+     * Combine the conditions so that an input must pass either one
+     * @param condition1
+     *          the 1st condition (tested first)
+     * @param condition2
+     *          the 2nd condition
+     * @return
+     *          the combined condition
+     */
+    public static IntCondition orInt(
+            IntCondition condition1,
+            IntCondition condition2)
+    {
+        List<IntCondition> conditions = new ArrayList<IntCondition>();
+        addConditions(conditions, condition1, false);
+        addConditions(conditions, condition2, false);
+        return new CompositeIntCondition(
+                conditions.toArray(new IntCondition[conditions.size()]),
+                false);
+    }
+
+    /**
+     * Invert the condition. Inverting an inverted condition gives back the
+     * original condition
+     * @param condition
+     *          the condition to invert
+     * @return
+     *          the inverted condition
+     */
+    public static IntCondition notInt(IntCondition condition)
+    {
+        if(condition instanceof InverseIntCondition)
+        {
+            return ((InverseIntCondition)condition).conditionToInvert;
+        }
+        else
+        {
+            return new InverseIntCondition(condition);
+        }
+    }
+
+    /**
+     * Create a condition which compares its input to a threshold
+     * @param operator
+     *          the comparison (input operator threshold)
+     * @param threshold
+     *          the threshold
+     * @return
+     *          the condition
+     */
+    public static DoubleCondition compare(
+            final ComparisonOperator operator,
+            final double threshold)
+    {
+        switch(operator)
+        {
+            case GREATER_THAN: return new DoubleCondition()
+            {
+                public boolean test(double input)
+                {
+                    return input > threshold;
+                }
+            };
+
+            case GREATER_THAN_OR_EQUAL: return new DoubleCondition()
+            {
+                public boolean test(double input)
+                {
+                    return input >= threshold;
+                }
+            };
+
+            case EQUAL: return new DoubleCondition()
+            {
+                public boolean test(double input)
+                {
+                    return input == threshold;
+                }
+            };
+
+            case NOT_EQUAL: return new DoubleCondition()
+            {
+                public boolean test(double input)
+                {
+                    return input != threshold;
+                }
+            };
+
+            case LESS_THAN: return new DoubleCondition()
+            {
+                public boolean test(double input)
+                {
+                    return input < threshold;
+                }
+            };
+
+            case LESS_THAN_OR_EQUAL: return new DoubleCondition()
+            {
+                public boolean test(double input)
+                {
+                    return input <= threshold;
+                }
+            };
+
+            default: throw new IllegalArgumentException(
+                    "unexpected operator: " + operator);
+        }
+    }
+
+    /**
+     * Adapt a double condition so that it can be used on boxed numbers
+     * @param condition
+     *          the double condition
+     * @return
+     *          the condition
+     */
+    public static Condition<Number> toCondition(final DoubleCondition condition)
+    {
+        return new Condition<Number>()
+        {
+            public boolean test(Number input)
+            {
+                return condition.test(input.doubleValue());
+            }
+        };
+    }
+
+    /**
+     * Add the condition to the list, flattening it if it's a composite of
+     * the same kind
+     * @param <I>
+     *          the input type
+     * @param conditions
+     *          the list to add to
+     * @param condition
+     *          the condition
+     * @param isAnd
+     *          true if we're building an and condition
+     */
+    @SuppressWarnings("unchecked")
+    private static <I> void addConditions(
+            List<Condition<? super I>> conditions,
+            Condition<? super I> condition,
+            boolean isAnd)
+    {
+        if(condition instanceof CompositeCondition &&
+           ((CompositeCondition<?>)condition).isAnd == isAnd)
+        {
+            conditions.addAll(((CompositeCondition<I>)condition).conditions);
+        }
+        else
+        {
+            conditions.add(condition);
+        }
+    }
+
+    /**
+     * Add the condition to the list, flattening it if it's a composite of
+     * the same kind
+     * @param conditions
+     *          the list to add to
+     * @param condition
+     *          the condition
+     * @param isAnd
+     *          true if we're building an and condition
+     */
+    private static void addConditions(
+            List<DoubleCondition> conditions,
+            DoubleCondition condition,
+            boolean isAnd)
+    {
+        if(condition instanceof CompositeDoubleCondition &&
+           ((CompositeDoubleCondition)condition).isAnd == isAnd)
+        {
+            for(DoubleCondition currCondition: ((CompositeDoubleCondition)condition).conditions)
+            {
+                conditions.add(currCondition);
+            }
+        }
+        else
+        {
+            conditions.add(condition);
+        }
+    }
+
+    /**
+     * Add the condition to the list, flattening it if it's a composite of
+     * the same kind
+     * @param conditions
+     *          the list to add to
+     * @param condition
+     *          the condition
+     * @param isAnd
+     *          true if we're building an and condition
+     */
+    private static void addConditions(
+            List<IntCondition> conditions,
+            IntCondition condition,
+            boolean isAnd)
+    {
+        if(condition instanceof CompositeIntCondition &&
+           ((CompositeIntCondition)condition).isAnd == isAnd)
+        {
+            for(IntCondition currCondition: ((CompositeIntCondition)condition).conditions)
+            {
+                conditions.add(currCondition);
+            }
+        }
+        else
+        {
+            conditions.add(condition);
+        }
+    }
+
+    /**
+     * An and or an or of several conditions
+     * @param <I>
+     *          the input type
+     */
+    private static final class CompositeCondition<I> implements Condition<I>
+    {
+        private final List<Condition<? super I>> conditions;
+
+        private final boolean isAnd;
+
+        /**
+         * Constructor
+         * @param conditions
+         *          the conditions in the order that they're tested
+         * @param isAnd
+         *          true for and, false for or
+         */
+        public CompositeCondition(List<Condition<? super I>> conditions, boolean isAnd)
+        {
+            this.conditions = conditions;
+            this.isAnd = isAnd;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public boolean test(I input)
+        {
+            for(Condition<? super I> condition: this.conditions)
+            {
+                if(condition.test(input) != this.isAnd)
+                {
+                    return !this.isAnd;
+                }
+            }
+            return this.isAnd;
+        }
+    }
+
+    /**
+     * An and or an or of several double conditions
+     */
+    private static final class CompositeDoubleCondition implements DoubleCondition
+    {
+        private final DoubleCondition[] conditions;
+
+        private final boolean isAnd;
+
+        /**
+         * Constructor
+         * @param conditions
+         *          the conditions in the order that they're tested
+         * @param isAnd
+         *          true for and, false for or
+         */
+        public CompositeDoubleCondition(DoubleCondition[] conditions, boolean isAnd)
+        {
+            this.conditions = conditions;
+            this.isAnd = isAnd;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public boolean test(double input)
+        {
+            for(DoubleCondition condition: this.conditions)
+            {
+                if(condition.test(input) != this.isAnd)
+                {
+                    return !this.isAnd;
+                }
+            }
+            return this.isAnd;
+        }
+    }
+
+    /**
+     * An and or an or of several int conditions
+     */
+    private static final class CompositeIntCondition implements IntCondition
+    {
+        private final IntCondition[] conditions;
+
+        private final boolean isAnd;
+
+        /**
+         * Constructor
+         * @param conditions
+         *          the conditions in the order that they're tested
+         * @param isAnd
+         *          true for and, false for or
+         */
+        public CompositeIntCondition(IntCondition[] conditions, boolean isAnd)
+        {
+            this.conditions = conditions;
+            this.isAnd = isAnd;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public boolean test(int input)
+        {
+            for(IntCondition condition: this.conditions)
+            {
+                if(condition.test(input) != this.isAnd)
+                {
+                    return !this.isAnd;
+                }
+            }
+            return this.isAnd;
+        }
+    }
+
+    /**
+     * Inverts a double condition
+     */
+    private static final class InverseDoubleCondition implements DoubleCondition
+    {
+        private final DoubleCondition conditionToInvert;
+
+        /**
+         * Constructor
+         * @param conditionToInvert
+         *          the condition that we're inverting
+         */
+        public InverseDoubleCondition(DoubleCondition conditionToInvert)
+        {
+            this.conditionToInvert = conditionToInvert;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public boolean test(double input)
+        {
+            return !this.conditionToInvert.test(input);
+        }
+    }
+
+    /**
+     * Inverts an int condition
+     */
+    private static final class InverseIntCondition implements IntCondition
+    {
+        private final IntCondition conditionToInvert;
+
+        /**
+         * Constructor
+         * @param conditionToInvert
+         *          the condition that we're inverting
+         */
+        public InverseIntCondition(IntCondition conditionToInvert)
+        {
+            this.conditionToInvert = conditionToInvert;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public boolean test(int input)
+        {
+            return !this.conditionToInvert.test(input);
+        }
+    }
+}
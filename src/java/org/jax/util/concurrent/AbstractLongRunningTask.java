@@ -19,6 +19,11 @@ package org.jax.util.concurrent;
 
 import java.util.Iterator;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -26,7 +31,12 @@ import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
 /**
- * Abstract task class that takes care of most of the eventing.
+ * Abstract task class that takes care of most of the eventing. Progress
+ * updates from hot loops should use {@link #fireChangeEventCoalesced()},
+ * which costs next to nothing when an event is already on its way. Those
+ * updates are merged into at most one event per
+ * {@link #setMinimumEventInterval(long, TimeUnit) event interval}, which
+ * is delivered on a shared timer thread.
  * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
  */
 public abstract class AbstractLongRunningTask implements LongRunningTask
@@ -34,8 +44,49 @@ public abstract class AbstractLongRunningTask implements LongRunningTask
     private static final Logger LOG = Logger.getLogger(
             AbstractLongRunningTask.class.getName());
     
+    /**
+     * the default for {@link #setMinimumEventInterval(long, TimeUnit)}
+     */
+    public static final long DEFAULT_MINIMUM_EVENT_INTERVAL_MILLIS = 50L;
+    
     private final ConcurrentLinkedQueue<ChangeListener> concurrentLinkedQueue =
         new ConcurrentLinkedQueue<ChangeListener>();
+    
+    private final AtomicBoolean coalescedEventPending = new AtomicBoolean(false);
+    
+    private volatile long minimumEventIntervalNanos =
+        TimeUnit.MILLISECONDS.toNanos(DEFAULT_MINIMUM_EVENT_INTERVAL_MILLIS);
+    
+    private volatile long lastEventTimeNanos = System.nanoTime() - this.minimumEventIntervalNanos;
+    
+    private final Runnable coalescedEventFirer = new Runnable()
+    {
+        public void run()
+        {
+            // clear the flag first so that updates made while the
+            // listeners run get an event of their own
+            AbstractLongRunningTask.this.coalescedEventPending.set(false);
+            AbstractLongRunningTask.this.fireChangeEvent();
+        }
+    };
+    
+    /**
+     * Holds the timer that delivers coalesced events. It's only created
+     * the first time that it's needed
+     */
+    private static final class EventTimerHolder
+    {
+        private static final ScheduledExecutorService EVENT_TIMER =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+            {
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "long-running-task-events");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+    }
 
     /**
      * {@inheritDoc}
@@ -58,6 +109,12 @@ public abstract class AbstractLongRunningTask implements LongRunningTask
      */
     protected void fireChangeEvent()
     {
+        this.lastEventTimeNanos = System.nanoTime();
+        if(this.concurrentLinkedQueue.isEmpty())
+        {
+            return;
+        }
+        
         ChangeEvent changeEvent = new ChangeEvent(this);
         Iterator<ChangeListener> listenerIter =
             this.concurrentLinkedQueue.iterator();
@@ -76,6 +133,58 @@ public abstract class AbstractLongRunningTask implements LongRunningTask
         }
     }
 
+    /**
+     * Fire a change event soon. If an event is already pending this does
+     * nothing, otherwise an event is scheduled for the end of the current
+     * event interval (or right away if the interval has passed). Use
+     * {@link #fireChangeEvent()} for changes that listeners must see
+     * immediately, such as the task completing
+     */
+    protected void fireChangeEventCoalesced()
+    {
+        if(!this.coalescedEventPending.get() &&
+           !this.concurrentLinkedQueue.isEmpty() &&
+           this.coalescedEventPending.compareAndSet(false, true))
+        {
+            long delayNanos =
+                this.lastEventTimeNanos + this.minimumEventIntervalNanos - System.nanoTime();
+            EventTimerHolder.EVENT_TIMER.schedule(
+                    this.coalescedEventFirer,
+                    Math.max(0L, delayNanos),
+                    TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    /**
+     * Set the minimum time between the events fired by
+     * {@link #fireChangeEventCoalesced()}, which limits the event rate
+     * @param interval
+     *          the interval
+     * @param unit
+     *          the interval unit
+     */
+    public void setMinimumEventInterval(long interval, TimeUnit unit)
+    {
+        if(interval < 0L)
+        {
+            throw new IllegalArgumentException(
+                    "the event interval can't be negative: " + interval);
+        }
+        this.minimumEventIntervalNanos = unit.toNanos(interval);
+    }
+    
+    /**
+     * Get the minimum time between coalesced events
+     * @param unit
+     *          the unit to return the interval in
+     * @return
+     *          the interval
+     */
+    public long getMinimumEventInterval(TimeUnit unit)
+    {
+        return unit.convert(this.minimumEventIntervalNanos, TimeUnit.NANOSECONDS);
+    }
+
     /**
      * {@inheritDoc}
      */
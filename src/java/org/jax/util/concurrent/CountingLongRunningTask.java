@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A long running task for hot loops that report progress often, possibly
+ * from several threads. Work units are counted with a
+ * {@link StripedCounter} and listeners hear about progress through
+ * coalesced, rate limited events (see
+ * {@link AbstractLongRunningTask#fireChangeEventCoalesced()}), so a work
+ * unit only costs a counter update. The last work unit is reported by a
+ * coalesced event like any other, which means listeners see the task
+ * complete within one event interval. Calling
+ * {@link #allWorkUnitsCompleted()} reports completion right away.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class CountingLongRunningTask extends AbstractLongRunningTask
+{
+    private volatile String taskName;
+    
+    private volatile int totalWorkUnits;
+    
+    private final StripedCounter workUnitsCompleted = new StripedCounter();
+    
+    /**
+     * set once by {@link #allWorkUnitsCompleted()}, after which the task
+     * counts as complete whatever the counter says
+     */
+    private final AtomicBoolean allCompleted = new AtomicBoolean(false);
+    
+    /**
+     * Constructor
+     * @param taskName
+     *          the task name
+     * @param totalWorkUnits
+     *          the total number of work units
+     */
+    public CountingLongRunningTask(String taskName, int totalWorkUnits)
+    {
+        this.taskName = taskName;
+        this.totalWorkUnits = totalWorkUnits;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public String getTaskName()
+    {
+        return this.taskName;
+    }
+    
+    /**
+     * Setter for the task name
+     * @param taskName the updated task name
+     */
+    public void setTaskName(String taskName)
+    {
+        this.taskName = taskName;
+        this.fireChangeEvent();
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int getTotalWorkUnits()
+    {
+        return this.totalWorkUnits;
+    }
+    
+    /**
+     * Setter for the total work units
+     * @param totalWorkUnits the updated total work units
+     */
+    public void setTotalWorkUnits(int totalWorkUnits)
+    {
+        this.totalWorkUnits = totalWorkUnits;
+        this.fireChangeEvent();
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int getWorkUnitsCompleted()
+    {
+        if(this.allCompleted.get())
+        {
+            return this.totalWorkUnits;
+        }
+        return (int)Math.min(Integer.MAX_VALUE, this.workUnitsCompleted.sum());
+    }
+    
+    /**
+     * Record that one more work unit was completed
+     */
+    public void workUnitCompleted()
+    {
+        this.workUnitsCompleted(1);
+    }
+    
+    /**
+     * Record that more work units were completed. This is safe to call
+     * from several threads at once. Listeners are only told about
+     * progress with coalesced events, including for the last work unit
+     * @param count
+     *          the number of work units completed
+     */
+    public void workUnitsCompleted(int count)
+    {
+        this.workUnitsCompleted.add(count);
+        this.fireChangeEventCoalesced();
+    }
+    
+    /**
+     * Record that every work unit was completed and tell the listeners
+     * right away. The counter isn't touched, so this is safe to call while
+     * other threads are still counting work units, and only the first call
+     * fires an event
+     */
+    public void allWorkUnitsCompleted()
+    {
+        if(this.allCompleted.compareAndSet(false, true))
+        {
+            this.fireChangeEvent();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Utility functions for running work on an {@link ExecutorService}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public final class ExecutorUtilities
+{
+    /**
+     * No instances allowed
+     */
+    private ExecutorUtilities()
+    {
+    }
+
+    /**
+     * Run all of the tasks and wait for them to finish. Unlike
+     * {@link ExecutorService#invokeAll(Collection)} this returns the results
+     * rather than futures and rethrows the exception of the 1st failed task
+     * (in task order) as described in {@link #rethrowCause(ExecutionException)}
+     * @param <T>
+     *          the result type
+     * @param executor
+     *          the executor to run the tasks on
+     * @param tasks
+     *          the tasks
+     * @return
+     *          the results in the same order as the tasks
+     * @throws InterruptedException
+     *          if we're interrupted while waiting. Any tasks that haven't
+     *          finished are cancelled
+     */
+    public static <T> List<T> invokeAll(
+            ExecutorService executor,
+            Collection<? extends Callable<T>> tasks)
+    throws InterruptedException
+    {
+        List<Future<T>> futures = executor.invokeAll(tasks);
+        List<T> results = new ArrayList<T>(futures.size());
+        try
+        {
+            for(Future<T> future: futures)
+            {
+                results.add(future.get());
+            }
+        }
+        catch(ExecutionException ex)
+        {
+            throw rethrowCause(ex);
+        }
+
+        return results;
+    }
+
+    /**
+     * Rethrow the cause of the given exception. Runtime exceptions and
+     * errors are thrown as is and checked exceptions are wrapped in a
+     * {@link RuntimeException}. This is declared to return an exception so
+     * that callers can write <code>throw rethrowCause(ex)</code> to keep the
+     * compiler's flow analysis happy, but it never actually returns
+     * @param ex
+     *          the exception
+     * @return
+     *          never returns
+     */
+    public static RuntimeException rethrowCause(ExecutionException ex)
+    {
+        Throwable cause = ex.getCause();
+        if(cause instanceof RuntimeException)
+        {
+            throw (RuntimeException)cause;
+        }
+        else if(cause instanceof Error)
+        {
+            throw (Error)cause;
+        }
+        else
+        {
+            throw new RuntimeException(cause);
+        }
+    }
+}
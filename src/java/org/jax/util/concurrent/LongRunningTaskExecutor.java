@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.concurrent;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs {@link ParallelLongRunningTask}s on one shared, bounded pool of
+ * threads so that many concurrent tasks don't oversubscribe the cores.
+ * <br><br>
+ * Each task gets several runners (up to the thread count). A runner
+ * claims and runs one work unit, then goes back on the queue, so the pool
+ * picks the next work unit by priority every time a unit finishes. Higher
+ * priority tasks get the threads first, and tasks with the same priority
+ * take turns in the order that their runners were queued.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class LongRunningTaskExecutor
+{
+    /**
+     * the priority used when none is given
+     */
+    public static final int DEFAULT_PRIORITY = 0;
+    
+    private final ThreadPoolExecutor threadPool;
+    
+    private final int threadCount;
+    
+    private final AtomicLong nextSequenceNumber = new AtomicLong(0L);
+    
+    private volatile boolean stopping = false;
+    
+    /**
+     * Constructor for an executor with a thread for each processor
+     */
+    public LongRunningTaskExecutor()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Constructor
+     * @param threadCount
+     *          the number of threads in the pool
+     */
+    public LongRunningTaskExecutor(int threadCount)
+    {
+        if(threadCount <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "the thread count must be greater than 0");
+        }
+        
+        this.threadCount = threadCount;
+        final AtomicInteger threadNumber = new AtomicInteger(1);
+        this.threadPool = new ThreadPoolExecutor(
+                threadCount,
+                threadCount,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(),
+                new ThreadFactory()
+                {
+                    public Thread newThread(Runnable runnable)
+                    {
+                        Thread thread = new Thread(
+                                runnable,
+                                "long-running-task-" + threadNumber.getAndIncrement());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        
+        // with every thread already started the pool never hands a runner
+        // straight to a new thread, so all runners go through the priority
+        // queue (even the ones submitted first)
+        this.threadPool.prestartAllCoreThreads();
+    }
+    
+    /**
+     * Submit the task with the default priority and let it use every thread
+     * @param task
+     *          the task which can only be submitted once
+     * @return
+     *          the task's completion future
+     * @throws RejectedExecutionException
+     *          if this executor has been shut down
+     * @see #submit(ParallelLongRunningTask, int, int)
+     */
+    public SettableFuture<Void> submit(ParallelLongRunningTask task)
+    throws RejectedExecutionException
+    {
+        return this.submit(task, DEFAULT_PRIORITY, this.threadCount);
+    }
+    
+    /**
+     * Submit the task
+     * @param task
+     *          the task which can only be submitted once
+     * @param priority
+     *          the priority. Work units of tasks with a higher priority
+     *          are run first
+     * @param maximumParallelism
+     *          the most work units of this task that can run at once
+     * @return
+     *          the task's completion future. Cancelling it cancels the task
+     * @throws RejectedExecutionException
+     *          if this executor has been shut down
+     */
+    public SettableFuture<Void> submit(
+            ParallelLongRunningTask task,
+            int priority,
+            int maximumParallelism)
+    throws RejectedExecutionException
+    {
+        if(maximumParallelism <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "the maximum parallelism must be greater than 0");
+        }
+        if(this.threadPool.isShutdown())
+        {
+            throw new RejectedExecutionException(
+                    "can't submit tasks after the executor is shut down");
+        }
+        
+        int runnerCount = Math.min(
+                Math.min(maximumParallelism, this.threadCount),
+                Math.max(1, task.getTotalWorkUnits()));
+        task.start(runnerCount);
+        for(int i = 0; i < runnerCount; i++)
+        {
+            try
+            {
+                new WorkUnitRunner(task, priority).enqueue();
+            }
+            catch(RejectedExecutionException ex)
+            {
+                // we raced with a shutdown. Account for the runners that
+                // will never run so that the task still completes
+                task.cancel();
+                for(int j = i; j < runnerCount; j++)
+                {
+                    task.runnerFinished();
+                }
+                throw ex;
+            }
+        }
+        
+        return task.getCompletionFuture();
+    }
+    
+    /**
+     * Stop accepting new tasks. Tasks that were already submitted still run
+     * to completion
+     */
+    public void shutdown()
+    {
+        this.threadPool.shutdown();
+    }
+    
+    /**
+     * Stop accepting new tasks, cancel the tasks that are waiting for a
+     * thread and interrupt the running work units
+     */
+    public void shutdownNow()
+    {
+        this.stopping = true;
+        for(Runnable runnable: this.threadPool.shutdownNow())
+        {
+            WorkUnitRunner runner = (WorkUnitRunner)runnable;
+            runner.task.cancel();
+            runner.task.runnerFinished();
+        }
+    }
+    
+    /**
+     * Wait for all work to finish after a shutdown
+     * @param timeout
+     *          how long to wait
+     * @param unit
+     *          the timeout unit
+     * @return
+     *          true if everything finished and false if we timed out
+     * @throws InterruptedException
+     *          if we're interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+    throws InterruptedException
+    {
+        return this.threadPool.awaitTermination(timeout, unit);
+    }
+    
+    /**
+     * Runs one work unit of a task at a time, going back on the queue
+     * between units
+     */
+    private final class WorkUnitRunner implements Runnable, Comparable<WorkUnitRunner>
+    {
+        private final ParallelLongRunningTask task;
+        
+        private final int priority;
+        
+        /**
+         * the order we were queued in, which only changes while we're
+         * off the queue
+         */
+        private long sequenceNumber;
+        
+        /**
+         * Constructor
+         * @param task
+         *          the task to run
+         * @param priority
+         *          the task priority
+         */
+        public WorkUnitRunner(ParallelLongRunningTask task, int priority)
+        {
+            this.task = task;
+            this.priority = priority;
+        }
+        
+        /**
+         * Put this runner on the end of the queue for its priority
+         * @throws RejectedExecutionException
+         *          if the pool has been shut down
+         */
+        public void enqueue() throws RejectedExecutionException
+        {
+            this.sequenceNumber =
+                LongRunningTaskExecutor.this.nextSequenceNumber.getAndIncrement();
+            LongRunningTaskExecutor.this.threadPool.execute(this);
+        }
+        
+        /**
+         * {@inheritDoc}
+         */
+        public void run()
+        {
+            while(true)
+            {
+                if(LongRunningTaskExecutor.this.stopping)
+                {
+                    this.task.cancel();
+                }
+                
+                int workUnitIndex = this.task.claimWorkUnit();
+                if(workUnitIndex == -1)
+                {
+                    this.task.runnerFinished();
+                    return;
+                }
+                this.task.runClaimedWorkUnit(workUnitIndex);
+                
+                // after a shutdown the pool won't take us back, so we keep
+                // going in this thread to finish the task
+                if(!LongRunningTaskExecutor.this.threadPool.isShutdown())
+                {
+                    try
+                    {
+                        this.enqueue();
+                        return;
+                    }
+                    catch(RejectedExecutionException ex)
+                    {
+                        // we raced with a shutdown
+                    }
+                }
+            }
+        }
+        
+        /**
+         * {@inheritDoc}
+         */
+        public int compareTo(WorkUnitRunner other)
+        {
+            if(this.priority != other.priority)
+            {
+                return this.priority > other.priority ? -1 : 1;
+            }
+            else if(this.sequenceNumber != other.sequenceNumber)
+            {
+                return this.sequenceNumber < other.sequenceNumber ? -1 : 1;
+            }
+            else
+            {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A long running task made up of independent work units that can run in
+ * parallel on a {@link LongRunningTaskExecutor}. Subclasses only have to
+ * implement {@link #runWorkUnit(int)}. The work unit count goes up
+ * atomically as units finish (in any order) and listeners get coalesced
+ * change events as it goes, so the task can be tracked by a
+ * {@link MultiTaskProgressPanel} like any other task.
+ * <br><br>
+ * If a work unit throws, no more units are started and the task fails
+ * with that exception once the running units finish. A cancelled task
+ * also stops starting units. Either way the task counts as complete so
+ * that progress displays stop tracking it.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public abstract class ParallelLongRunningTask extends AbstractLongRunningTask
+{
+    private final String taskName;
+    
+    private final int totalWorkUnits;
+    
+    private final AtomicInteger nextWorkUnit = new AtomicInteger(0);
+    
+    private final AtomicInteger workUnitsCompleted = new AtomicInteger(0);
+    
+    private final AtomicInteger activeRunners = new AtomicInteger(0);
+    
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    
+    private final SettableFuture<Void> completionFuture = new SettableFuture<Void>();
+    
+    private volatile boolean stopped = false;
+    
+    /**
+     * Constructor
+     * @param taskName
+     *          the task name
+     * @param totalWorkUnits
+     *          the number of work units
+     */
+    public ParallelLongRunningTask(String taskName, int totalWorkUnits)
+    {
+        if(totalWorkUnits < 0)
+        {
+            throw new IllegalArgumentException(
+                    "the work unit count can't be negative: " + totalWorkUnits);
+        }
+        this.taskName = taskName;
+        this.totalWorkUnits = totalWorkUnits;
+        
+        // cancelling the future cancels the task
+        this.completionFuture.addListener(new Runnable()
+        {
+            public void run()
+            {
+                if(ParallelLongRunningTask.this.completionFuture.isCancelled())
+                {
+                    ParallelLongRunningTask.this.stopped = true;
+                    ParallelLongRunningTask.this.fireChangeEvent();
+                }
+            }
+        }, null);
+    }
+    
+    /**
+     * Run a single work unit. This is called from several threads at once
+     * for different work units
+     * @param workUnitIndex
+     *          the index of the unit to run from 0 up to
+     *          {@link #getTotalWorkUnits()}
+     * @throws Exception
+     *          if the unit fails, which fails the whole task
+     */
+    protected abstract void runWorkUnit(int workUnitIndex) throws Exception;
+    
+    /**
+     * {@inheritDoc}
+     */
+    public String getTaskName()
+    {
+        return this.taskName;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int getTotalWorkUnits()
+    {
+        return this.totalWorkUnits;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int getWorkUnitsCompleted()
+    {
+        return this.workUnitsCompleted.get();
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isComplete()
+    {
+        return super.isComplete() || this.completionFuture.isDone();
+    }
+    
+    /**
+     * Cancel this task. Work units that are already running will finish but
+     * no new ones will be started
+     * @return
+     *          true if the task was cancelled by this call
+     */
+    public boolean cancel()
+    {
+        return this.completionFuture.cancel(false);
+    }
+    
+    /**
+     * Determine if this task was cancelled
+     * @return
+     *          true if it was cancelled
+     */
+    public boolean isCancelled()
+    {
+        return this.completionFuture.isCancelled();
+    }
+    
+    /**
+     * Get the future that completes when all of the work units are done,
+     * fails if one of them fails and is cancelled when this task is
+     * @return
+     *          the future
+     */
+    public SettableFuture<Void> getCompletionFuture()
+    {
+        return this.completionFuture;
+    }
+    
+    /**
+     * Record how many runners the executor is starting for this task
+     * @param runnerCount
+     *          the number of runners
+     * @throws IllegalStateException
+     *          if this task was already started
+     */
+    void start(int runnerCount) throws IllegalStateException
+    {
+        if(!this.activeRunners.compareAndSet(0, runnerCount) ||
+           this.nextWorkUnit.get() != 0)
+        {
+            throw new IllegalStateException(
+                    "the task \"" + this.taskName + "\" was already started");
+        }
+    }
+    
+    /**
+     * Claim the next work unit to run
+     * @return
+     *          the work unit index or -1 if there's nothing left to run
+     */
+    int claimWorkUnit()
+    {
+        if(this.stopped)
+        {
+            return -1;
+        }
+        else
+        {
+            int workUnitIndex = this.nextWorkUnit.getAndIncrement();
+            return workUnitIndex < this.totalWorkUnits ? workUnitIndex : -1;
+        }
+    }
+    
+    /**
+     * Run a claimed work unit and record the result
+     * @param workUnitIndex
+     *          the work unit index
+     */
+    void runClaimedWorkUnit(int workUnitIndex)
+    {
+        try
+        {
+            this.runWorkUnit(workUnitIndex);
+            if(this.workUnitsCompleted.incrementAndGet() == this.totalWorkUnits)
+            {
+                this.fireChangeEvent();
+            }
+            else
+            {
+                this.fireChangeEventCoalesced();
+            }
+        }
+        catch(Throwable ex)
+        {
+            this.failure.compareAndSet(null, ex);
+            this.stopped = true;
+        }
+    }
+    
+    /**
+     * Called by each runner when it's out of work. The last one to finish
+     * completes the task
+     */
+    void runnerFinished()
+    {
+        if(this.activeRunners.decrementAndGet() == 0)
+        {
+            Throwable firstFailure = this.failure.get();
+            boolean completed;
+            if(firstFailure != null)
+            {
+                completed = this.completionFuture.setException(firstFailure);
+            }
+            else if(this.stopped)
+            {
+                completed = this.completionFuture.cancel(false);
+            }
+            else
+            {
+                completed = this.completionFuture.trySet(null);
+            }
+            
+            if(completed)
+            {
+                this.fireChangeEvent();
+            }
+        }
+    }
+}
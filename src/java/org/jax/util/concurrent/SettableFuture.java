@@ -17,39 +17,54 @@
 
 package org.jax.util.concurrent;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jax.util.math.Function;
 
 /**
  * A simple implementation of the {@link java.util.concurrent.Future}
  * interface that allows you to {@link SettableFuture#set(Object)} a
- * future result. Note that this implementation does not support
- * the use of the {@link SettableFuture#cancel(boolean)} method.
+ * future result. The future can also complete with an exception or be
+ * cancelled, and listeners can be registered to run once it's done so
+ * that nobody has to block in {@link #get()} just to hand the result on.
+ * <br><br>
+ * The implementation is lock free. The future's whole state lives in one
+ * field which is either the stack of waiting threads and listeners or
+ * the final outcome. Completing the future swaps the outcome in with a
+ * single compare and set, then wakes the waiting threads and runs the
+ * listeners that were on the stack.
  * 
  * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
  * @param <V> the type of future object to set or get
  */
-// TODO we really need a unit test here
 public class SettableFuture<V> implements Future<V>
 {
-    /**
-     * determines if put has already been called
-     */
-    private volatile boolean alreadySetFlag = false;
+    private static final Logger LOG = Logger.getLogger(
+            SettableFuture.class.getName());
     
     /**
-     * holds an atomic reference to our future value
+     * updates {@link #state} atomically
      */
-    private volatile V futurePayload = null;
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<SettableFuture, Object> STATE_UPDATER =
+        AtomicReferenceFieldUpdater.newUpdater(SettableFuture.class, Object.class, "state");
     
     /**
-     * the semaphore that we use to block calls to {@link #get()} until
-     * a {@link #set(Object)} is called
+     * either null or a {@link Waiter} stack while we're pending, or the
+     * {@link Outcome} once we're done
      */
-    private final Semaphore getBlocker = new Semaphore(0);
+    private volatile Object state = null;
     
     /**
      * Constructor
@@ -59,15 +74,16 @@ public class SettableFuture<V> implements Future<V>
     }
     
     /**
-     * We don't allow cancellation.
+     * Cancel this future if it isn't done yet. Threads waiting in
+     * {@link #get()} will get a {@link CancellationException}
      * @param mayInterruptIfRunning
-     *          dont care
+     *          ignored since there's no task that we could interrupt
      * @return
-     *          false always
+     *          true if we were cancelled by this call
      */
     public boolean cancel(boolean mayInterruptIfRunning)
     {
-        return false;
+        return this.complete(Outcome.CANCELLED);
     }
 
     /**
@@ -75,19 +91,12 @@ public class SettableFuture<V> implements Future<V>
      */
     public V get() throws InterruptedException, ExecutionException
     {
-        if(this.alreadySetFlag)
+        Object currState = this.state;
+        if(!(currState instanceof Outcome))
         {
-            // we're lucky... it's already set so we don't need
-            // to bother with the semaphore
-            return this.futurePayload;
-        }
-        else
-        {
-            // we have to wait until the lock is released
-            this.getBlocker.acquire();
-            this.getBlocker.release();
-            return this.futurePayload;
+            currState = this.await(false, 0L);
         }
+        return this.getValue((Outcome)currState);
     }
 
     /**
@@ -96,23 +105,11 @@ public class SettableFuture<V> implements Future<V>
     public V get(long timeout, TimeUnit unit) throws InterruptedException,
             ExecutionException, TimeoutException
     {
-        if(this.alreadySetFlag)
-        {
-            // we're lucky... it's already set so we don't need
-            // to bother with the lock
-            return this.futurePayload;
-        }
-        else
+        Object currState = this.state;
+        if(!(currState instanceof Outcome))
         {
-            // we have to try to acquire the lock before we can return the
-            // payload.
-            if(this.getBlocker.tryAcquire(timeout, unit))
-            {
-                // we were successful
-                this.getBlocker.release();
-                return this.futurePayload;
-            }
-            else
+            currState = this.await(true, unit.toNanos(timeout));
+            if(currState == null)
             {
                 // we didn't get it in time
                 throw new TimeoutException(
@@ -120,17 +117,15 @@ public class SettableFuture<V> implements Future<V>
                         " units = " + unit.toString());
             }
         }
+        return this.getValue((Outcome)currState);
     }
 
     /**
-     * We don't support cancellation
-     * @return
-     *          always false
-     * @see #cancel(boolean)
+     * {@inheritDoc}
      */
     public boolean isCancelled()
     {
-        return false;
+        return this.state == Outcome.CANCELLED;
     }
 
     /**
@@ -138,7 +133,7 @@ public class SettableFuture<V> implements Future<V>
      */
     public boolean isDone()
     {
-        return this.alreadySetFlag;
+        return this.state instanceof Outcome;
     }
     
     /**
@@ -148,26 +143,416 @@ public class SettableFuture<V> implements Future<V>
      * @param futurePayload
      *          the value that this future will now take on
      * @throws IllegalStateException
-     *          if this function is called more than once. this is a fail fast
-     *          mechanism that should usually work, but is not guaranteed to
+     *          if this future is already done (unless it was cancelled, in
+     *          which case the value is silently dropped)
      * @throws InterruptedException
-     *          if our thread is interrupted during the set
+     *          never actually thrown since setting doesn't block. It's only
+     *          declared so that existing callers still compile
+     * @see #trySet(Object)
      */
     public void set(V futurePayload) throws IllegalStateException, InterruptedException
     {
-        if(this.alreadySetFlag)
+        if(!this.trySet(futurePayload) && !this.isCancelled())
         {
             // called more than once!
             throw new IllegalStateException(
                     "set called more than once on " + SettableFuture.class.getName() +
                     " which is not allowed");
         }
+    }
+    
+    /**
+     * Set the value of this future if it isn't done yet
+     * @param futurePayload
+     *          the value (which can be null)
+     * @return
+     *          true if the value was set by this call
+     */
+    public boolean trySet(V futurePayload)
+    {
+        return this.complete(new Outcome(futurePayload, null));
+    }
+    
+    /**
+     * Complete this future with an exception if it isn't done yet. Calls
+     * to {@link #get()} will throw an {@link ExecutionException} caused by
+     * the given exception
+     * @param exception
+     *          the exception
+     * @return
+     *          true if the exception was set by this call
+     */
+    public boolean setException(Throwable exception)
+    {
+        if(exception == null)
+        {
+            throw new NullPointerException("the exception can't be null");
+        }
+        return this.complete(new Outcome(null, exception));
+    }
+    
+    /**
+     * Add a listener to run once this future is done, whether it's set,
+     * fails or is cancelled. If the future is already done the listener
+     * is run right away. Exceptions thrown by the listener are logged
+     * @param listener
+     *          the listener
+     * @param executor
+     *          the executor to run the listener on or null to run it in
+     *          the thread that completes this future (or the calling
+     *          thread if we're already done). Listeners run without an
+     *          executor should be quick
+     */
+    public void addListener(Runnable listener, Executor executor)
+    {
+        Waiter newWaiter = new Waiter(null, listener, executor);
+        while(true)
+        {
+            Object currState = this.state;
+            if(currState instanceof Outcome)
+            {
+                runListener(listener, executor);
+                return;
+            }
+            
+            newWaiter.next = (Waiter)currState;
+            if(STATE_UPDATER.compareAndSet(this, currState, newWaiter))
+            {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Create a future that holds the result of applying the function to
+     * this future's value. If this future fails or is cancelled the new
+     * future fails or is cancelled the same way, and if the function throws
+     * the new future fails with the exception. Calls can be chained to build
+     * up a pipeline without any thread blocking in {@link #get()}
+     * @param <O>
+     *          the output type
+     * @param function
+     *          the function to apply
+     * @param executor
+     *          the executor that the function runs on or null to run it
+     *          in the thread that completes this future
+     * @return
+     *          the new future
+     */
+    public <O> SettableFuture<O> transform(
+            final Function<? super V, ? extends O> function,
+            Executor executor)
+    {
+        final SettableFuture<O> transformedFuture = new SettableFuture<O>();
+        this.addListener(new Runnable()
+        {
+            public void run()
+            {
+                Outcome outcome = (Outcome)SettableFuture.this.state;
+                if(outcome == Outcome.CANCELLED)
+                {
+                    transformedFuture.cancel(false);
+                }
+                else if(outcome.exception != null)
+                {
+                    transformedFuture.setException(outcome.exception);
+                }
+                else
+                {
+                    try
+                    {
+                        @SuppressWarnings("unchecked")
+                        V value = (V)outcome.value;
+                        transformedFuture.trySet(function.evaluate(value));
+                    }
+                    catch(Throwable ex)
+                    {
+                        transformedFuture.setException(ex);
+                    }
+                }
+            }
+        }, executor);
+        return transformedFuture;
+    }
+    
+    /**
+     * Swap in the outcome, then wake any waiting threads and run the
+     * listeners
+     * @param outcome
+     *          the outcome
+     * @return
+     *          true if we did the completing, false if we were already done
+     */
+    private boolean complete(Outcome outcome)
+    {
+        Object currState;
+        do
+        {
+            currState = this.state;
+            if(currState instanceof Outcome)
+            {
+                return false;
+            }
+        } while(!STATE_UPDATER.compareAndSet(this, currState, outcome));
+        
+        // the stack is in reverse order so walk it backwards to run
+        // listeners in the order they were added. We can't flip the links
+        // in place because an abandoned waiter may still be unlinking
+        // itself
+        List<Waiter> waiters = new ArrayList<Waiter>();
+        for(Waiter waiter = (Waiter)currState; waiter != null; waiter = waiter.next)
+        {
+            waiters.add(waiter);
+        }
+        
+        for(int i = waiters.size() - 1; i >= 0; i--)
+        {
+            Waiter waiter = waiters.get(i);
+            if(waiter.listener == null)
+            {
+                Thread thread = waiter.thread;
+                if(thread != null)
+                {
+                    waiter.thread = null;
+                    LockSupport.unpark(thread);
+                }
+            }
+            else
+            {
+                runListener(waiter.listener, waiter.executor);
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Park the current thread until we're done
+     * @param timed
+     *          true if we should time out
+     * @param nanos
+     *          the timeout
+     * @return
+     *          the outcome or null if we timed out
+     * @throws InterruptedException
+     *          if we're interrupted while waiting
+     */
+    private Outcome await(boolean timed, long nanos) throws InterruptedException
+    {
+        long deadline = timed ? System.nanoTime() + nanos : 0L;
+        Waiter newWaiter = null;
+        while(true)
+        {
+            Object currState = this.state;
+            if(currState instanceof Outcome)
+            {
+                return (Outcome)currState;
+            }
+            
+            if(Thread.interrupted())
+            {
+                this.abandon(newWaiter);
+                throw new InterruptedException();
+            }
+            
+            if(newWaiter == null)
+            {
+                newWaiter = new Waiter(Thread.currentThread(), null, null);
+                newWaiter.next = (Waiter)currState;
+                if(!STATE_UPDATER.compareAndSet(this, currState, newWaiter))
+                {
+                    newWaiter = null;
+                }
+            }
+            else if(timed)
+            {
+                long remaining = deadline - System.nanoTime();
+                if(remaining <= 0L)
+                {
+                    this.abandon(newWaiter);
+                    return null;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+            else
+            {
+                LockSupport.park(this);
+            }
+        }
+    }
+    
+    /**
+     * Mark the waiter as no longer waiting and unlink it from the stack
+     * along with any other abandoned waiters, so that threads that time out
+     * or are interrupted don't pile up on a future that never completes.
+     * Abandoned waiters can't be unlinked atomically so we start over from
+     * the top of the stack whenever we race with another thread
+     * @param waiter
+     *          the waiter (can be null)
+     */
+    private void abandon(Waiter waiter)
+    {
+        if(waiter != null)
+        {
+            waiter.thread = null;
+            
+            boolean raced = true;
+            while(raced)
+            {
+                raced = false;
+                Object currState = this.state;
+                if(!(currState instanceof Waiter))
+                {
+                    // we're done or the stack is empty
+                    return;
+                }
+                
+                Waiter previous = null;
+                Waiter curr = (Waiter)currState;
+                while(curr != null && !raced)
+                {
+                    Waiter next = curr.next;
+                    if(!curr.isAbandoned())
+                    {
+                        previous = curr;
+                    }
+                    else if(previous != null)
+                    {
+                        // if previous was abandoned while we unlinked around
+                        // it then it may already be off the stack
+                        previous.next = next;
+                        raced = previous.isAbandoned();
+                    }
+                    else
+                    {
+                        raced = !STATE_UPDATER.compareAndSet(this, curr, next);
+                    }
+                    curr = next;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Get the value or throw the exception for the given outcome
+     * @param outcome
+     *          the outcome
+     * @return
+     *          the value
+     * @throws ExecutionException
+     *          if we completed with an exception
+     */
+    @SuppressWarnings("unchecked")
+    private V getValue(Outcome outcome) throws ExecutionException
+    {
+        if(outcome == Outcome.CANCELLED)
+        {
+            throw new CancellationException();
+        }
+        else if(outcome.exception != null)
+        {
+            throw new ExecutionException(outcome.exception);
+        }
         else
         {
-            // ok, we can do the set now
-            this.futurePayload = futurePayload;
-            this.alreadySetFlag = true;
-            this.getBlocker.release();
+            return (V)outcome.value;
+        }
+    }
+    
+    /**
+     * Run the listener
+     * @param listener
+     *          the listener
+     * @param executor
+     *          the executor or null to run it directly
+     */
+    private static void runListener(Runnable listener, Executor executor)
+    {
+        try
+        {
+            if(executor == null)
+            {
+                listener.run();
+            }
+            else
+            {
+                executor.execute(listener);
+            }
+        }
+        catch(RuntimeException ex)
+        {
+            LOG.log(Level.SEVERE,
+                    "One of the future listeners threw an exception",
+                    ex);
+        }
+    }
+    
+    /**
+     * How the future was completed
+     */
+    private static final class Outcome
+    {
+        /**
+         * the outcome of a cancelled future
+         */
+        private static final Outcome CANCELLED = new Outcome(null, null);
+        
+        private final Object value;
+        
+        private final Throwable exception;
+        
+        /**
+         * Constructor
+         * @param value
+         *          the value
+         * @param exception
+         *          the exception or null if we have a value
+         */
+        public Outcome(Object value, Throwable exception)
+        {
+            this.value = value;
+            this.exception = exception;
+        }
+    }
+    
+    /**
+     * A waiting thread or a listener on the stack of things to do once the
+     * future is done
+     */
+    private static final class Waiter
+    {
+        private volatile Thread thread;
+        
+        private final Runnable listener;
+        
+        private final Executor executor;
+        
+        private volatile Waiter next;
+        
+        /**
+         * Constructor
+         * @param thread
+         *          the waiting thread or null for a listener
+         * @param listener
+         *          the listener or null for a thread
+         * @param executor
+         *          the listener's executor
+         */
+        public Waiter(Thread thread, Runnable listener, Executor executor)
+        {
+            this.thread = thread;
+            this.listener = listener;
+            this.executor = executor;
+        }
+        
+        /**
+         * Determine if this is a thread that gave up waiting
+         * @return
+         *          true if this waiter can be dropped from the stack
+         */
+        public boolean isAbandoned()
+        {
+            return this.listener == null && this.thread == null;
         }
     }
 }
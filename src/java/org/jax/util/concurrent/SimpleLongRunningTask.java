@@ -18,7 +18,14 @@
 package org.jax.util.concurrent;
 
 /**
- * A simple implementation for a long running task
+ * A simple implementation for a long running task.
+ * <br><br>
+ * Progress changes from {@link #setWorkUnitsCompleted(int)} are coalesced,
+ * so listeners get them on the shared "long-running-task-events" timer
+ * thread rather than the thread that made the change. Listeners that
+ * update Swing components need to hop over to the event dispatch thread
+ * themselves. Completing the last work unit, and the other setters, still
+ * fire in the calling thread.
  * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
  */
 public class SimpleLongRunningTask extends AbstractLongRunningTask
@@ -74,13 +81,22 @@ public class SimpleLongRunningTask extends AbstractLongRunningTask
     }
 
     /**
-     * Setter for the work units that have been completed
+     * Setter for the work units that have been completed. Listeners are
+     * told about progress with coalesced events, but completing the last
+     * work unit is reported right away
      * @param workUnitsCompleted
      *          the number of work units that have been completed
      */
     public void setWorkUnitsCompleted(int workUnitsCompleted)
     {
         this.workUnitsCompleted = workUnitsCompleted;
-        this.fireChangeEvent();
+        if(workUnitsCompleted >= this.totalWorkUnits)
+        {
+            this.fireChangeEvent();
+        }
+        else
+        {
+            this.fireChangeEventCoalesced();
+        }
     }
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that many threads can add to at once without fighting over a
+ * single memory location. The count is spread over cells that each sit on
+ * their own cache line. Each thread adds to its own cell and moves to
+ * another cell if it finds itself competing with a different thread.
+ * Adding is cheap but {@link #sum()} has to visit every cell, so this
+ * suits counters that are updated far more often than they are read.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class StripedCounter
+{
+    /**
+     * the spacing between cells in longs. 16 longs is two 64 byte cache
+     * lines, which also keeps adjacent line prefetching from pairing cells
+     */
+    private static final int CELL_SPACING = 16;
+    
+    /**
+     * each thread's current cell probe
+     */
+    private static final ThreadLocal<int[]> THREAD_PROBE = new ThreadLocal<int[]>()
+    {
+        @Override
+        protected int[] initialValue()
+        {
+            // mix the thread ID so that consecutive threads spread out
+            long id = Thread.currentThread().getId();
+            int probe = (int)(id ^ (id >>> 32)) * 0x9E3779B9;
+            return new int[] {probe == 0 ? 1 : probe};
+        }
+    };
+    
+    private final AtomicLongArray cells;
+    
+    private final int cellMask;
+    
+    /**
+     * Constructor with enough cells for the number of processors
+     */
+    public StripedCounter()
+    {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+    
+    /**
+     * Constructor
+     * @param minimumCellCount
+     *          the minimum number of cells (rounded up to a power of two)
+     */
+    public StripedCounter(int minimumCellCount)
+    {
+        int cellCount = 1;
+        while(cellCount < minimumCellCount)
+        {
+            cellCount <<= 1;
+        }
+        this.cellMask = cellCount - 1;
+        this.cells = new AtomicLongArray(cellCount * CELL_SPACING);
+    }
+    
+    /**
+     * Add to the count
+     * @param delta
+     *          the amount to add
+     */
+    public void add(long delta)
+    {
+        int[] probeHolder = THREAD_PROBE.get();
+        int probe = probeHolder[0];
+        int index = (probe & this.cellMask) * CELL_SPACING;
+        long value = this.cells.get(index);
+        if(!this.cells.compareAndSet(index, value, value + delta))
+        {
+            // another thread is using this cell. Move to a different one
+            // for next time (xorshift) and just add this time
+            probe ^= probe << 13;
+            probe ^= probe >>> 17;
+            probe ^= probe << 5;
+            probeHolder[0] = probe;
+            this.cells.getAndAdd(index, delta);
+        }
+    }
+    
+    /**
+     * Add one to the count
+     */
+    public void increment()
+    {
+        this.add(1L);
+    }
+    
+    /**
+     * Get the count. Adds that happen while we're summing may or may not
+     * be included
+     * @return
+     *          the count
+     */
+    public long sum()
+    {
+        long sum = 0L;
+        for(int i = 0; i < this.cells.length(); i += CELL_SPACING)
+        {
+            sum += this.cells.get(i);
+        }
+        return sum;
+    }
+    
+    /**
+     * Set the count back to zero. This is only exact if nothing is being
+     * added at the same time
+     */
+    public void reset()
+    {
+        for(int i = 0; i < this.cells.length(); i += CELL_SPACING)
+        {
+            this.cells.set(i, 0L);
+        }
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return Long.toString(this.sum());
+    }
+}
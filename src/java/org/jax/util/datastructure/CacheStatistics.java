@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.datastructure;
+
+/**
+ * A snapshot of the statistics of a {@link ConcurrentCache}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class CacheStatistics
+{
+    private final long hitCount;
+
+    private final long missCount;
+
+    private final long loadSuccessCount;
+
+    private final long loadFailureCount;
+
+    private final long totalLoadTimeNanos;
+
+    private final long evictionCount;
+
+    /**
+     * Constructor
+     * @param hitCount
+     *          the number of lookups that found a value
+     * @param missCount
+     *          the number of lookups that didn't find a value
+     * @param loadSuccessCount
+     *          the number of loads that succeeded
+     * @param loadFailureCount
+     *          the number of loads that threw an exception
+     * @param totalLoadTimeNanos
+     *          the total time spent loading
+     * @param evictionCount
+     *          the number of entries evicted for size or expiry
+     */
+    public CacheStatistics(
+            long hitCount,
+            long missCount,
+            long loadSuccessCount,
+            long loadFailureCount,
+            long totalLoadTimeNanos,
+            long evictionCount)
+    {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTimeNanos = totalLoadTimeNanos;
+        this.evictionCount = evictionCount;
+    }
+
+    /**
+     * Getter for the number of lookups that found a value
+     * @return
+     *          the hit count
+     */
+    public long getHitCount()
+    {
+        return this.hitCount;
+    }
+
+    /**
+     * Getter for the number of lookups that didn't find a value. This
+     * includes lookups that waited for another thread's load
+     * @return
+     *          the miss count
+     */
+    public long getMissCount()
+    {
+        return this.missCount;
+    }
+
+    /**
+     * Get the fraction of lookups that found a value
+     * @return
+     *          the hit rate or 1 if there haven't been any lookups
+     */
+    public double getHitRate()
+    {
+        long requestCount = this.hitCount + this.missCount;
+        return requestCount == 0L ? 1.0 : (double)this.hitCount / requestCount;
+    }
+
+    /**
+     * Getter for the number of loads that succeeded
+     * @return
+     *          the load success count
+     */
+    public long getLoadSuccessCount()
+    {
+        return this.loadSuccessCount;
+    }
+
+    /**
+     * Getter for the number of loads that threw an exception
+     * @return
+     *          the load failure count
+     */
+    public long getLoadFailureCount()
+    {
+        return this.loadFailureCount;
+    }
+
+    /**
+     * Getter for the total time spent loading
+     * @return
+     *          the load time in nanoseconds
+     */
+    public long getTotalLoadTimeNanos()
+    {
+        return this.totalLoadTimeNanos;
+    }
+
+    /**
+     * Get the average time taken by a load
+     * @return
+     *          the average load time in nanoseconds or 0 if there haven't
+     *          been any loads
+     */
+    public double getAverageLoadTimeNanos()
+    {
+        long loadCount = this.loadSuccessCount + this.loadFailureCount;
+        return loadCount == 0L ? 0.0 : (double)this.totalLoadTimeNanos / loadCount;
+    }
+
+    /**
+     * Getter for the number of entries evicted to make room or because they
+     * expired
+     * @return
+     *          the eviction count
+     */
+    public long getEvictionCount()
+    {
+        return this.evictionCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return "hits=" + this.hitCount +
+               ", misses=" + this.missCount +
+               ", loadSuccesses=" + this.loadSuccessCount +
+               ", loadFailures=" + this.loadFailureCount +
+               ", totalLoadTimeNanos=" + this.totalLoadTimeNanos +
+               ", evictions=" + this.evictionCount;
+    }
+}
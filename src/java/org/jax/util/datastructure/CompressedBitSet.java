@@ -0,0 +1,1669 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.datastructure;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * A compressed alternative to {@link BitSet} for sparse sets of
+ * non-negative ints. The bit indices are split on their high 16 bits into
+ * containers (the roaring bitmap layout). A container with 4096 or fewer
+ * bits holds them as a sorted array of its low 16 bits. A container with
+ * more bits than that holds a plain 8KB bitmap. So a few bits spread over
+ * millions of indices take a few bytes each, rather than one bit for every
+ * index up to the largest. The set operations work a container at a time.
+ * They skip whole ranges of 65536 indices that only one of the sets uses,
+ * and they use word operations wherever both containers are bitmaps. This
+ * class is not thread safe.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class CompressedBitSet
+{
+    /**
+     * the most values that we hold in an array container
+     */
+    private static final int ARRAY_CONTAINER_LIMIT = 4096;
+
+    /**
+     * the number of longs in a bitmap container
+     */
+    private static final int BITMAP_WORD_COUNT = 1 << 10;
+
+    /**
+     * the largest container key. Indices are non-negative so their high
+     * 16 bits can't go above this
+     */
+    private static final int MAX_KEY = Integer.MAX_VALUE >>> 16;
+
+    private static final int[] EMPTY_KEYS = new int[0];
+
+    private static final Container[] EMPTY_CONTAINERS = new Container[0];
+
+    /**
+     * the high 16 bits of the indices in each container in ascending order
+     */
+    private int[] keys;
+
+    /**
+     * the containers. None of these are empty
+     */
+    private Container[] containers;
+
+    private int containerCount;
+
+    /**
+     * Constructor for an empty set
+     */
+    public CompressedBitSet()
+    {
+        this.keys = EMPTY_KEYS;
+        this.containers = EMPTY_CONTAINERS;
+        this.containerCount = 0;
+    }
+
+    /**
+     * Copy constructor
+     * @param other
+     *          the set to copy
+     */
+    public CompressedBitSet(CompressedBitSet other)
+    {
+        this.containerCount = other.containerCount;
+        this.keys = new int[other.containerCount];
+        this.containers = new Container[other.containerCount];
+        System.arraycopy(other.keys, 0, this.keys, 0, other.containerCount);
+        for(int i = 0; i < other.containerCount; i++)
+        {
+            this.containers[i] = other.containers[i].copy();
+        }
+    }
+
+    /**
+     * Constructor
+     * @param keys
+     *          the keys
+     * @param containers
+     *          the containers
+     * @param containerCount
+     *          the number of containers in use
+     */
+    private CompressedBitSet(int[] keys, Container[] containers, int containerCount)
+    {
+        this.keys = keys;
+        this.containers = containers;
+        this.containerCount = containerCount;
+    }
+
+    /**
+     * Create a set holding the set bits of the given {@link BitSet}
+     * @param bitSet
+     *          the bit set
+     * @return
+     *          the compressed set
+     */
+    public static CompressedBitSet fromBitSet(BitSet bitSet)
+    {
+        CompressedBitSet compressedBitSet = new CompressedBitSet();
+        for(int i = bitSet.nextSetBit(0); i >= 0; i = bitSet.nextSetBit(i + 1))
+        {
+            compressedBitSet.set(i);
+        }
+        return compressedBitSet;
+    }
+
+    /**
+     * Create a set holding the given indices
+     * @param indices
+     *          the indices in any order (duplicates are fine)
+     * @return
+     *          the compressed set
+     */
+    public static CompressedBitSet fromIndices(int[] indices)
+    {
+        CompressedBitSet compressedBitSet = new CompressedBitSet();
+        for(int index: indices)
+        {
+            compressedBitSet.set(index);
+        }
+        return compressedBitSet;
+    }
+
+    /**
+     * Convert this set to a {@link BitSet}
+     * @return
+     *          the bit set
+     */
+    public BitSet toBitSet()
+    {
+        BitSet bitSet = new BitSet(this.length());
+        for(int i = 0; i < this.containerCount; i++)
+        {
+            int high = this.keys[i] << 16;
+            Container container = this.containers[i];
+            if(container.words == null)
+            {
+                for(int j = 0; j < container.cardinality; j++)
+                {
+                    bitSet.set(high | container.values[j]);
+                }
+            }
+            else
+            {
+                for(int wordIndex = 0; wordIndex < BITMAP_WORD_COUNT; wordIndex++)
+                {
+                    long word = container.words[wordIndex];
+                    while(word != 0L)
+                    {
+                        bitSet.set(high | (wordIndex << 6) | Long.numberOfTrailingZeros(word));
+                        word &= word - 1L;
+                    }
+                }
+            }
+        }
+        return bitSet;
+    }
+
+    /**
+     * Get the value of a bit
+     * @param index
+     *          the bit index
+     * @return
+     *          true if the bit is set
+     * @throws IndexOutOfBoundsException
+     *          if the index is negative
+     */
+    public boolean get(int index) throws IndexOutOfBoundsException
+    {
+        checkIndex(index);
+        int containerIndex = this.findKey(index >>> 16);
+        return containerIndex >= 0 && this.containers[containerIndex].contains(index & 0xFFFF);
+    }
+
+    /**
+     * Set a bit
+     * @param index
+     *          the bit index
+     * @return
+     *          true if the bit wasn't already set
+     * @throws IndexOutOfBoundsException
+     *          if the index is negative
+     */
+    public boolean set(int index) throws IndexOutOfBoundsException
+    {
+        checkIndex(index);
+        int key = index >>> 16;
+        int containerIndex = this.findKey(key);
+        if(containerIndex < 0)
+        {
+            containerIndex = -(containerIndex + 1);
+            this.insertContainer(containerIndex, key, new Container(new char[4], 0));
+        }
+        return this.containers[containerIndex].add(index & 0xFFFF);
+    }
+
+    /**
+     * Clear a bit
+     * @param index
+     *          the bit index
+     * @return
+     *          true if the bit was set
+     * @throws IndexOutOfBoundsException
+     *          if the index is negative
+     */
+    public boolean clear(int index) throws IndexOutOfBoundsException
+    {
+        checkIndex(index);
+        int containerIndex = this.findKey(index >>> 16);
+        if(containerIndex < 0)
+        {
+            return false;
+        }
+
+        Container container = this.containers[containerIndex];
+        boolean removed = container.remove(index & 0xFFFF);
+        if(container.cardinality == 0)
+        {
+            this.containerCount--;
+            System.arraycopy(
+                    this.keys, containerIndex + 1,
+                    this.keys, containerIndex,
+                    this.containerCount - containerIndex);
+            System.arraycopy(
+                    this.containers, containerIndex + 1,
+                    this.containers, containerIndex,
+                    this.containerCount - containerIndex);
+            this.containers[this.containerCount] = null;
+        }
+        return removed;
+    }
+
+    /**
+     * Clear all of the bits
+     */
+    public void clear()
+    {
+        this.keys = EMPTY_KEYS;
+        this.containers = EMPTY_CONTAINERS;
+        this.containerCount = 0;
+    }
+
+    /**
+     * Get the number of set bits
+     * @return
+     *          the cardinality
+     */
+    public int cardinality()
+    {
+        int cardinality = 0;
+        for(int i = 0; i < this.containerCount; i++)
+        {
+            cardinality += this.containers[i].cardinality;
+        }
+        return cardinality;
+    }
+
+    /**
+     * Determine if no bits are set
+     * @return
+     *          true if the set is empty
+     */
+    public boolean isEmpty()
+    {
+        return this.containerCount == 0;
+    }
+
+    /**
+     * Get the index of the highest set bit plus one (the same as
+     * {@link BitSet#length()})
+     * @return
+     *          the length
+     */
+    public int length()
+    {
+        if(this.containerCount == 0)
+        {
+            return 0;
+        }
+        else
+        {
+            int lastIndex = this.containerCount - 1;
+            return ((this.keys[lastIndex] << 16) | this.containers[lastIndex].last()) + 1;
+        }
+    }
+
+    /**
+     * Find the 1st set bit at or after the given index. Use this like
+     * {@link BitSet#nextSetBit(int)} to walk the set bits:
+     * <pre>
+     * for(int i = set.nextSetBit(0); i &gt;= 0; i = set.nextSetBit(i + 1))
+     * </pre>
+     * @param fromIndex
+     *          the index to start from
+     * @return
+     *          the index of the set bit or -1 if there isn't one
+     */
+    public int nextSetBit(int fromIndex)
+    {
+        checkIndex(fromIndex);
+        int key = fromIndex >>> 16;
+        int containerIndex = this.findKey(key);
+        if(containerIndex >= 0)
+        {
+            int low = this.containers[containerIndex].nextValue(fromIndex & 0xFFFF);
+            if(low >= 0)
+            {
+                return (key << 16) | low;
+            }
+            containerIndex++;
+        }
+        else
+        {
+            containerIndex = -(containerIndex + 1);
+        }
+
+        if(containerIndex < this.containerCount)
+        {
+            return (this.keys[containerIndex] << 16) | this.containers[containerIndex].nextValue(0);
+        }
+        else
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Get the indices of all of the set bits
+     * @return
+     *          the indices in ascending order
+     */
+    public int[] toArray()
+    {
+        int[] indices = new int[this.cardinality()];
+        int cursor = 0;
+        for(int i = 0; i < this.containerCount; i++)
+        {
+            cursor = this.containers[i].fillIndices(this.keys[i] << 16, indices, cursor);
+        }
+        return indices;
+    }
+
+    /**
+     * Keep only the bits that are also set in the other set
+     * @param other
+     *          the other set
+     */
+    public void and(CompressedBitSet other)
+    {
+        int capacity = Math.min(this.containerCount, other.containerCount);
+        int[] newKeys = new int[capacity];
+        Container[] newContainers = new Container[capacity];
+        int newCount = 0;
+        int i = 0;
+        int j = 0;
+        while(i < this.containerCount && j < other.containerCount)
+        {
+            int key1 = this.keys[i];
+            int key2 = other.keys[j];
+            if(key1 == key2)
+            {
+                Container container = this.containers[i].and(other.containers[j]);
+                if(container != null)
+                {
+                    newKeys[newCount] = key1;
+                    newContainers[newCount] = container;
+                    newCount++;
+                }
+                i++;
+                j++;
+            }
+            else if(key1 < key2)
+            {
+                i++;
+            }
+            else
+            {
+                j++;
+            }
+        }
+        this.keys = newKeys;
+        this.containers = newContainers;
+        this.containerCount = newCount;
+    }
+
+    /**
+     * Set the bits that are set in the other set
+     * @param other
+     *          the other set
+     */
+    public void or(CompressedBitSet other)
+    {
+        int capacity = this.containerCount + other.containerCount;
+        int[] newKeys = new int[capacity];
+        Container[] newContainers = new Container[capacity];
+        int newCount = 0;
+        int i = 0;
+        int j = 0;
+        while(i < this.containerCount || j < other.containerCount)
+        {
+            int key1 = i < this.containerCount ? this.keys[i] : Integer.MAX_VALUE;
+            int key2 = j < other.containerCount ? other.keys[j] : Integer.MAX_VALUE;
+            if(key1 == key2)
+            {
+                newKeys[newCount] = key1;
+                newContainers[newCount] = this.containers[i].or(other.containers[j]);
+                i++;
+                j++;
+            }
+            else if(key1 < key2)
+            {
+                newKeys[newCount] = key1;
+                newContainers[newCount] = this.containers[i];
+                i++;
+            }
+            else
+            {
+                newKeys[newCount] = key2;
+                newContainers[newCount] = other.containers[j].copy();
+                j++;
+            }
+            newCount++;
+        }
+        this.keys = newKeys;
+        this.containers = newContainers;
+        this.containerCount = newCount;
+    }
+
+    /**
+     * Clear the bits that are set in the other set
+     * @param other
+     *          the other set
+     */
+    public void andNot(CompressedBitSet other)
+    {
+        int newCount = 0;
+        int j = 0;
+        for(int i = 0; i < this.containerCount; i++)
+        {
+            int key = this.keys[i];
+            while(j < other.containerCount && other.keys[j] < key)
+            {
+                j++;
+            }
+
+            Container container = this.containers[i];
+            if(j < other.containerCount && other.keys[j] == key)
+            {
+                container = container.andNot(other.containers[j]);
+            }
+
+            // we can compact in place since we never write ahead of i
+            if(container != null)
+            {
+                this.keys[newCount] = key;
+                this.containers[newCount] = container;
+                newCount++;
+            }
+        }
+        for(int i = newCount; i < this.containerCount; i++)
+        {
+            this.containers[i] = null;
+        }
+        this.containerCount = newCount;
+    }
+
+    /**
+     * Determine if this set has any bits in common with the other set
+     * @param other
+     *          the other set
+     * @return
+     *          true if the intersection isn't empty
+     */
+    public boolean intersects(CompressedBitSet other)
+    {
+        int i = 0;
+        int j = 0;
+        while(i < this.containerCount && j < other.containerCount)
+        {
+            int key1 = this.keys[i];
+            int key2 = other.keys[j];
+            if(key1 == key2)
+            {
+                if(this.containers[i].andCardinality(other.containers[j]) > 0)
+                {
+                    return true;
+                }
+                i++;
+                j++;
+            }
+            else if(key1 < key2)
+            {
+                i++;
+            }
+            else
+            {
+                j++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Count the bits in the intersection of this set and the other set
+     * without building the intersection
+     * @param other
+     *          the other set
+     * @return
+     *          the cardinality of the intersection
+     */
+    public int andCardinality(CompressedBitSet other)
+    {
+        int cardinality = 0;
+        int i = 0;
+        int j = 0;
+        while(i < this.containerCount && j < other.containerCount)
+        {
+            int key1 = this.keys[i];
+            int key2 = other.keys[j];
+            if(key1 == key2)
+            {
+                cardinality += this.containers[i].andCardinality(other.containers[j]);
+                i++;
+                j++;
+            }
+            else if(key1 < key2)
+            {
+                i++;
+            }
+            else
+            {
+                j++;
+            }
+        }
+        return cardinality;
+    }
+
+    /**
+     * Determine if every bit set in this set is also set in the other set
+     * @param other
+     *          the potential superset
+     * @return
+     *          true iff this is a (not necessarily strict) subset of other
+     */
+    public boolean isSubsetOf(CompressedBitSet other)
+    {
+        if(this.containerCount > other.containerCount)
+        {
+            return false;
+        }
+
+        int j = 0;
+        for(int i = 0; i < this.containerCount; i++)
+        {
+            int key = this.keys[i];
+            while(j < other.containerCount && other.keys[j] < key)
+            {
+                j++;
+            }
+            if(j == other.containerCount ||
+               other.keys[j] != key ||
+               !this.containers[i].isSubsetOf(other.containers[j]))
+            {
+                return false;
+            }
+            j++;
+        }
+        return true;
+    }
+
+    /**
+     * Compare this set to the other set as if the bits were binary numbers
+     * (the ordering used by {@link SetUtilities#BIT_SET_COMPARATOR})
+     * @param other
+     *          the other set
+     * @return
+     *          a negative number, zero or a positive number if this is
+     *          less than, equal to or greater than the other set
+     */
+    int compareBinaryValue(CompressedBitSet other)
+    {
+        int i = this.containerCount - 1;
+        int j = other.containerCount - 1;
+        while(i >= 0 && j >= 0)
+        {
+            int key1 = this.keys[i];
+            int key2 = other.keys[j];
+            if(key1 != key2)
+            {
+                return key1 > key2 ? 1 : -1;
+            }
+
+            int comparison = this.containers[i].compareBinaryValue(other.containers[j]);
+            if(comparison != 0)
+            {
+                return comparison;
+            }
+            i--;
+            j--;
+        }
+
+        if(i >= 0)
+        {
+            return 1;
+        }
+        else if(j >= 0)
+        {
+            return -1;
+        }
+        else
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * Write this set to the given output. The format is the container
+     * count followed by each container's key, cardinality and then either
+     * its values as chars or its bitmap as longs
+     * @param out
+     *          the output
+     * @throws IOException
+     *          if the write fails
+     */
+    public void writeTo(DataOutput out) throws IOException
+    {
+        out.writeInt(this.containerCount);
+        for(int i = 0; i < this.containerCount; i++)
+        {
+            Container container = this.containers[i];
+            out.writeChar(this.keys[i]);
+            out.writeInt(container.cardinality);
+            if(container.words == null)
+            {
+                for(int j = 0; j < container.cardinality; j++)
+                {
+                    out.writeChar(container.values[j]);
+                }
+            }
+            else
+            {
+                for(int j = 0; j < BITMAP_WORD_COUNT; j++)
+                {
+                    out.writeLong(container.words[j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read a set written by {@link #writeTo(DataOutput)}
+     * @param in
+     *          the input
+     * @return
+     *          the set
+     * @throws IOException
+     *          if the read fails or the data is malformed
+     */
+    public static CompressedBitSet readFrom(DataInput in) throws IOException
+    {
+        int containerCount = in.readInt();
+        if(containerCount < 0 || containerCount > MAX_KEY + 1)
+        {
+            throw new IOException("bad container count: " + containerCount);
+        }
+
+        int[] keys = new int[containerCount];
+        Container[] containers = new Container[containerCount];
+        for(int i = 0; i < containerCount; i++)
+        {
+            keys[i] = in.readChar();
+            if(keys[i] > MAX_KEY)
+            {
+                throw new IOException(
+                        "container key " + keys[i] + " is too big for a " +
+                        "non-negative index");
+            }
+            else if(i > 0 && keys[i] <= keys[i - 1])
+            {
+                throw new IOException(
+                        "container keys are out of order or repeated: " +
+                        keys[i - 1] + " then " + keys[i]);
+            }
+
+            int cardinality = in.readInt();
+            if(cardinality <= 0 || cardinality > (1 << 16))
+            {
+                throw new IOException("bad container cardinality: " + cardinality);
+            }
+            else if(cardinality <= ARRAY_CONTAINER_LIMIT)
+            {
+                char[] values = new char[cardinality];
+                for(int j = 0; j < cardinality; j++)
+                {
+                    values[j] = in.readChar();
+                    if(j > 0 && values[j] <= values[j - 1])
+                    {
+                        throw new IOException(
+                                "the values of container " + keys[i] +
+                                " are out of order or repeated");
+                    }
+                }
+                containers[i] = new Container(values, cardinality);
+            }
+            else
+            {
+                long[] words = new long[BITMAP_WORD_COUNT];
+                int bitCount = 0;
+                for(int j = 0; j < BITMAP_WORD_COUNT; j++)
+                {
+                    words[j] = in.readLong();
+                    bitCount += Long.bitCount(words[j]);
+                }
+                if(bitCount != cardinality)
+                {
+                    throw new IOException(
+                            "container " + keys[i] + " claims a cardinality of " +
+                            cardinality + " but its bitmap has " + bitCount +
+                            " bits set");
+                }
+                containers[i] = new Container(words, cardinality);
+            }
+        }
+        return new CompressedBitSet(keys, containers, containerCount);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+        if(this == obj)
+        {
+            return true;
+        }
+        else if(obj instanceof CompressedBitSet)
+        {
+            CompressedBitSet other = (CompressedBitSet)obj;
+            if(this.containerCount != other.containerCount)
+            {
+                return false;
+            }
+            for(int i = 0; i < this.containerCount; i++)
+            {
+                if(this.keys[i] != other.keys[i] ||
+                   !this.containers[i].sameBits(other.containers[i]))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode()
+    {
+        int hashCode = 1;
+        for(int i = this.nextSetBit(0); i >= 0; i = this.nextSetBit(i + 1))
+        {
+            hashCode = 31 * hashCode + i;
+        }
+        return hashCode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder("{");
+        for(int i = this.nextSetBit(0); i >= 0; i = this.nextSetBit(i + 1))
+        {
+            if(sb.length() > 1)
+            {
+                sb.append(", ");
+            }
+            sb.append(i);
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+
+    /**
+     * Find the container with the given key
+     * @param key
+     *          the key
+     * @return
+     *          the container index or (-(insertion point) - 1) if there is
+     *          no container with the key
+     */
+    private int findKey(int key)
+    {
+        int low = 0;
+        int high = this.containerCount - 1;
+        while(low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int midKey = this.keys[mid];
+            if(midKey < key)
+            {
+                low = mid + 1;
+            }
+            else if(midKey > key)
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Insert a container
+     * @param containerIndex
+     *          where to insert it
+     * @param key
+     *          its key
+     * @param container
+     *          the container
+     */
+    private void insertContainer(int containerIndex, int key, Container container)
+    {
+        if(this.containerCount == this.keys.length)
+        {
+            int newCapacity = Math.max(4, this.containerCount * 2);
+            int[] newKeys = new int[newCapacity];
+            Container[] newContainers = new Container[newCapacity];
+            System.arraycopy(this.keys, 0, newKeys, 0, this.containerCount);
+            System.arraycopy(this.containers, 0, newContainers, 0, this.containerCount);
+            this.keys = newKeys;
+            this.containers = newContainers;
+        }
+        System.arraycopy(
+                this.keys, containerIndex,
+                this.keys, containerIndex + 1,
+                this.containerCount - containerIndex);
+        System.arraycopy(
+                this.containers, containerIndex,
+                this.containers, containerIndex + 1,
+                this.containerCount - containerIndex);
+        this.keys[containerIndex] = key;
+        this.containers[containerIndex] = container;
+        this.containerCount++;
+    }
+
+    /**
+     * Make sure that the index isn't negative
+     * @param index
+     *          the index
+     */
+    private static void checkIndex(int index)
+    {
+        if(index < 0)
+        {
+            throw new IndexOutOfBoundsException("index < 0: " + index);
+        }
+    }
+
+    /**
+     * Holds the low 16 bits of the indices which share the same high 16
+     * bits. A container with up to {@link #ARRAY_CONTAINER_LIMIT} values
+     * always uses a sorted array and a larger container always uses a
+     * bitmap, so two containers holding the same bits always have the same
+     * form.
+     */
+    private static final class Container
+    {
+        /**
+         * the sorted values (null for bitmap containers)
+         */
+        private char[] values;
+
+        /**
+         * the bitmap (null for array containers)
+         */
+        private long[] words;
+
+        private int cardinality;
+
+        /**
+         * Constructor for an array container
+         * @param values
+         *          the sorted values
+         * @param cardinality
+         *          the number of values in use
+         */
+        public Container(char[] values, int cardinality)
+        {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        /**
+         * Constructor for a bitmap container
+         * @param words
+         *          the bitmap
+         * @param cardinality
+         *          the number of set bits
+         */
+        public Container(long[] words, int cardinality)
+        {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        /**
+         * Create a container from a bitmap using whichever form fits the
+         * cardinality
+         * @param words
+         *          the bitmap (which we take ownership of)
+         * @return
+         *          the container or null if no bits are set
+         */
+        public static Container fromWords(long[] words)
+        {
+            int cardinality = 0;
+            for(long word: words)
+            {
+                cardinality += Long.bitCount(word);
+            }
+
+            if(cardinality == 0)
+            {
+                return null;
+            }
+            else if(cardinality <= ARRAY_CONTAINER_LIMIT)
+            {
+                char[] values = new char[cardinality];
+                wordsToValues(words, values);
+                return new Container(values, cardinality);
+            }
+            else
+            {
+                return new Container(words, cardinality);
+            }
+        }
+
+        /**
+         * Make a deep copy of this container
+         * @return
+         *          the copy
+         */
+        public Container copy()
+        {
+            if(this.words == null)
+            {
+                char[] valuesCopy = new char[this.cardinality];
+                System.arraycopy(this.values, 0, valuesCopy, 0, this.cardinality);
+                return new Container(valuesCopy, this.cardinality);
+            }
+            else
+            {
+                return new Container(this.words.clone(), this.cardinality);
+            }
+        }
+
+        /**
+         * Determine if the value is in this container
+         * @param low
+         *          the low 16 bits of the index
+         * @return
+         *          true if it's in the container
+         */
+        public boolean contains(int low)
+        {
+            if(this.words == null)
+            {
+                return this.search(low) >= 0;
+            }
+            else
+            {
+                return (this.words[low >>> 6] & (1L << low)) != 0L;
+            }
+        }
+
+        /**
+         * Add a value
+         * @param low
+         *          the low 16 bits of the index
+         * @return
+         *          true if the value was added
+         */
+        public boolean add(int low)
+        {
+            if(this.words == null)
+            {
+                int position = this.search(low);
+                if(position >= 0)
+                {
+                    return false;
+                }
+                else if(this.cardinality == ARRAY_CONTAINER_LIMIT)
+                {
+                    this.words = this.toWords();
+                    this.values = null;
+                    this.words[low >>> 6] |= 1L << low;
+                }
+                else
+                {
+                    position = -(position + 1);
+                    if(this.cardinality == this.values.length)
+                    {
+                        char[] newValues = new char[Math.min(
+                                ARRAY_CONTAINER_LIMIT,
+                                this.values.length * 2)];
+                        System.arraycopy(this.values, 0, newValues, 0, this.cardinality);
+                        this.values = newValues;
+                    }
+                    System.arraycopy(
+                            this.values, position,
+                            this.values, position + 1,
+                            this.cardinality - position);
+                    this.values[position] = (char)low;
+                }
+                this.cardinality++;
+                return true;
+            }
+            else
+            {
+                long bit = 1L << low;
+                long word = this.words[low >>> 6];
+                if((word & bit) != 0L)
+                {
+                    return false;
+                }
+                this.words[low >>> 6] = word | bit;
+                this.cardinality++;
+                return true;
+            }
+        }
+
+        /**
+         * Remove a value
+         * @param low
+         *          the low 16 bits of the index
+         * @return
+         *          true if the value was removed
+         */
+        public boolean remove(int low)
+        {
+            if(this.words == null)
+            {
+                int position = this.search(low);
+                if(position < 0)
+                {
+                    return false;
+                }
+                this.cardinality--;
+                System.arraycopy(
+                        this.values, position + 1,
+                        this.values, position,
+                        this.cardinality - position);
+                return true;
+            }
+            else
+            {
+                long bit = 1L << low;
+                long word = this.words[low >>> 6];
+                if((word & bit) == 0L)
+                {
+                    return false;
+                }
+                this.words[low >>> 6] = word & ~bit;
+                this.cardinality--;
+                if(this.cardinality == ARRAY_CONTAINER_LIMIT)
+                {
+                    this.values = new char[ARRAY_CONTAINER_LIMIT];
+                    wordsToValues(this.words, this.values);
+                    this.words = null;
+                }
+                return true;
+            }
+        }
+
+        /**
+         * Get the largest value in this container
+         * @return
+         *          the largest value
+         */
+        public int last()
+        {
+            if(this.words == null)
+            {
+                return this.values[this.cardinality - 1];
+            }
+            else
+            {
+                for(int i = BITMAP_WORD_COUNT - 1; ; i--)
+                {
+                    if(this.words[i] != 0L)
+                    {
+                        return (i << 6) | (63 - Long.numberOfLeadingZeros(this.words[i]));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Find the smallest value that is &gt;= the given value
+         * @param fromLow
+         *          the value to start from
+         * @return
+         *          the value or -1 if there isn't one
+         */
+        public int nextValue(int fromLow)
+        {
+            if(this.words == null)
+            {
+                int position = this.search(fromLow);
+                if(position < 0)
+                {
+                    position = -(position + 1);
+                }
+                return position < this.cardinality ? this.values[position] : -1;
+            }
+            else
+            {
+                int wordIndex = fromLow >>> 6;
+                long word = this.words[wordIndex] & (-1L << fromLow);
+                while(true)
+                {
+                    if(word != 0L)
+                    {
+                        return (wordIndex << 6) | Long.numberOfTrailingZeros(word);
+                    }
+                    wordIndex++;
+                    if(wordIndex == BITMAP_WORD_COUNT)
+                    {
+                        return -1;
+                    }
+                    word = this.words[wordIndex];
+                }
+            }
+        }
+
+        /**
+         * Find the largest value that is &lt;= the given value
+         * @param fromLow
+         *          the value to start from
+         * @return
+         *          the value or -1 if there isn't one
+         */
+        public int previousValue(int fromLow)
+        {
+            if(this.words == null)
+            {
+                int position = this.search(fromLow);
+                if(position < 0)
+                {
+                    position = -(position + 1) - 1;
+                }
+                return position >= 0 ? this.values[position] : -1;
+            }
+            else
+            {
+                int wordIndex = fromLow >>> 6;
+                long word = this.words[wordIndex] & (-1L >>> (63 - (fromLow & 63)));
+                while(true)
+                {
+                    if(word != 0L)
+                    {
+                        return (wordIndex << 6) | (63 - Long.numberOfLeadingZeros(word));
+                    }
+                    wordIndex--;
+                    if(wordIndex < 0)
+                    {
+                        return -1;
+                    }
+                    word = this.words[wordIndex];
+                }
+            }
+        }
+
+        /**
+         * Write the full indices of this container's values into the given
+         * array
+         * @param high
+         *          the high bits to combine with each value
+         * @param indices
+         *          the array to write to
+         * @param offset
+         *          where to start writing
+         * @return
+         *          the offset after the last index written
+         */
+        public int fillIndices(int high, int[] indices, int offset)
+        {
+            if(this.words == null)
+            {
+                for(int i = 0; i < this.cardinality; i++)
+                {
+                    indices[offset] = high | this.values[i];
+                    offset++;
+                }
+            }
+            else
+            {
+                for(int wordIndex = 0; wordIndex < BITMAP_WORD_COUNT; wordIndex++)
+                {
+                    long word = this.words[wordIndex];
+                    while(word != 0L)
+                    {
+                        indices[offset] = high | (wordIndex << 6) | Long.numberOfTrailingZeros(word);
+                        offset++;
+                        word &= word - 1L;
+                    }
+                }
+            }
+            return offset;
+        }
+
+        /**
+         * Get this container as a bitmap. Bitmap containers return a copy
+         * so the result can always be modified
+         * @return
+         *          the bitmap
+         */
+        public long[] toWords()
+        {
+            if(this.words == null)
+            {
+                long[] newWords = new long[BITMAP_WORD_COUNT];
+                for(int i = 0; i < this.cardinality; i++)
+                {
+                    int value = this.values[i];
+                    newWords[value >>> 6] |= 1L << value;
+                }
+                return newWords;
+            }
+            else
+            {
+                return this.words.clone();
+            }
+        }
+
+        /**
+         * Intersect with another container
+         * @param other
+         *          the other container
+         * @return
+         *          the intersection or null if it's empty
+         */
+        public Container and(Container other)
+        {
+            if(this.words != null && other.words != null)
+            {
+                long[] newWords = new long[BITMAP_WORD_COUNT];
+                for(int i = 0; i < BITMAP_WORD_COUNT; i++)
+                {
+                    newWords[i] = this.words[i] & other.words[i];
+                }
+                return fromWords(newWords);
+            }
+            else if(this.words != null)
+            {
+                return other.and(this);
+            }
+            else
+            {
+                // this is an array container so filter it
+                char[] newValues = new char[this.cardinality];
+                int newCardinality = 0;
+                if(other.words == null)
+                {
+                    int j = 0;
+                    for(int i = 0; i < this.cardinality && j < other.cardinality; )
+                    {
+                        char value1 = this.values[i];
+                        char value2 = other.values[j];
+                        if(value1 == value2)
+                        {
+                            newValues[newCardinality] = value1;
+                            newCardinality++;
+                            i++;
+                            j++;
+                        }
+                        else if(value1 < value2)
+                        {
+                            i++;
+                        }
+                        else
+                        {
+                            j++;
+                        }
+                    }
+                }
+                else
+                {
+                    for(int i = 0; i < this.cardinality; i++)
+                    {
+                        char value = this.values[i];
+                        newValues[newCardinality] = value;
+                        newCardinality += (int)(other.words[value >>> 6] >>> value) & 1;
+                    }
+                }
+                return newCardinality == 0 ? null : new Container(newValues, newCardinality);
+            }
+        }
+
+        /**
+         * Take the union with another container
+         * @param other
+         *          the other container
+         * @return
+         *          the union
+         */
+        public Container or(Container other)
+        {
+            if(this.words == null && other.words == null &&
+               this.cardinality + other.cardinality <= ARRAY_CONTAINER_LIMIT)
+            {
+                char[] newValues = new char[this.cardinality + other.cardinality];
+                int newCardinality = 0;
+                int i = 0;
+                int j = 0;
+                while(i < this.cardinality || j < other.cardinality)
+                {
+                    int value1 = i < this.cardinality ? this.values[i] : Integer.MAX_VALUE;
+                    int value2 = j < other.cardinality ? other.values[j] : Integer.MAX_VALUE;
+                    if(value1 <= value2)
+                    {
+                        newValues[newCardinality] = (char)value1;
+                        i++;
+                        if(value1 == value2)
+                        {
+                            j++;
+                        }
+                    }
+                    else
+                    {
+                        newValues[newCardinality] = (char)value2;
+                        j++;
+                    }
+                    newCardinality++;
+                }
+                return new Container(newValues, newCardinality);
+            }
+            else
+            {
+                long[] newWords = this.toWords();
+                if(other.words == null)
+                {
+                    for(int i = 0; i < other.cardinality; i++)
+                    {
+                        int value = other.values[i];
+                        newWords[value >>> 6] |= 1L << value;
+                    }
+                }
+                else
+                {
+                    for(int i = 0; i < BITMAP_WORD_COUNT; i++)
+                    {
+                        newWords[i] |= other.words[i];
+                    }
+                }
+                return fromWords(newWords);
+            }
+        }
+
+        /**
+         * Remove the values of another container from this one
+         * @param other
+         *          the other container
+         * @return
+         *          the difference or null if it's empty
+         */
+        public Container andNot(Container other)
+        {
+            if(this.words == null)
+            {
+                char[] newValues = new char[this.cardinality];
+                int newCardinality = 0;
+                for(int i = 0; i < this.cardinality; i++)
+                {
+                    char value = this.values[i];
+                    if(!other.contains(value))
+                    {
+                        newValues[newCardinality] = value;
+                        newCardinality++;
+                    }
+                }
+                return newCardinality == 0 ? null : new Container(newValues, newCardinality);
+            }
+            else
+            {
+                long[] newWords = this.words.clone();
+                if(other.words == null)
+                {
+                    for(int i = 0; i < other.cardinality; i++)
+                    {
+                        int value = other.values[i];
+                        newWords[value >>> 6] &= ~(1L << value);
+                    }
+                }
+                else
+                {
+                    for(int i = 0; i < BITMAP_WORD_COUNT; i++)
+                    {
+                        newWords[i] &= ~other.words[i];
+                    }
+                }
+                return fromWords(newWords);
+            }
+        }
+
+        /**
+         * Count the values shared with another container
+         * @param other
+         *          the other container
+         * @return
+         *          the intersection cardinality
+         */
+        public int andCardinality(Container other)
+        {
+            if(this.words != null && other.words != null)
+            {
+                int cardinality = 0;
+                for(int i = 0; i < BITMAP_WORD_COUNT; i++)
+                {
+                    cardinality += Long.bitCount(this.words[i] & other.words[i]);
+                }
+                return cardinality;
+            }
+            else if(this.words != null)
+            {
+                return other.andCardinality(this);
+            }
+            else
+            {
+                int cardinality = 0;
+                for(int i = 0; i < this.cardinality; i++)
+                {
+                    if(other.contains(this.values[i]))
+                    {
+                        cardinality++;
+                    }
+                }
+                return cardinality;
+            }
+        }
+
+        /**
+         * Determine if all of this container's values are in the other
+         * @param other
+         *          the other container
+         * @return
+         *          true if this is a subset of other
+         */
+        public boolean isSubsetOf(Container other)
+        {
+            if(this.cardinality > other.cardinality)
+            {
+                return false;
+            }
+            else if(this.words == null)
+            {
+                for(int i = 0; i < this.cardinality; i++)
+                {
+                    if(!other.contains(this.values[i]))
+                    {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            else
+            {
+                // other must be a bitmap too since it is at least as big
+                for(int i = 0; i < BITMAP_WORD_COUNT; i++)
+                {
+                    if((this.words[i] & ~other.words[i]) != 0L)
+                    {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+
+        /**
+         * Compare this container to another as if the bits were binary
+         * numbers
+         * @param other
+         *          the other container
+         * @return
+         *          a negative number, zero or a positive number if this is
+         *          less than, equal to or greater than the other container
+         */
+        public int compareBinaryValue(Container other)
+        {
+            if(this.words != null && other.words != null)
+            {
+                for(int i = BITMAP_WORD_COUNT - 1; i >= 0; i--)
+                {
+                    long difference = this.words[i] ^ other.words[i];
+                    if(difference != 0L)
+                    {
+                        // whoever owns the highest differing bit is larger
+                        long highestBit = Long.highestOneBit(difference);
+                        return (this.words[i] & highestBit) != 0L ? 1 : -1;
+                    }
+                }
+                return 0;
+            }
+            else if(this.words == null && other.words == null)
+            {
+                int i = this.cardinality - 1;
+                int j = other.cardinality - 1;
+                for( ; i >= 0 && j >= 0; i--, j--)
+                {
+                    if(this.values[i] != other.values[j])
+                    {
+                        return this.values[i] > other.values[j] ? 1 : -1;
+                    }
+                }
+                return i >= 0 ? 1 : (j >= 0 ? -1 : 0);
+            }
+            else if(this.words == null)
+            {
+                return -other.compareBinaryValue(this);
+            }
+            else
+            {
+                // walk this bitmap down alongside the other's values until
+                // the largest remaining values differ
+                int low = this.last();
+                for(int j = other.cardinality - 1; j >= 0; j--)
+                {
+                    int otherLow = other.values[j];
+                    if(low != otherLow)
+                    {
+                        return low > otherLow ? 1 : -1;
+                    }
+                    low = low == 0 ? -1 : this.previousValue(low - 1);
+                }
+                return low >= 0 ? 1 : 0;
+            }
+        }
+
+        /**
+         * Determine if this container holds the same values as another
+         * @param other
+         *          the other container
+         * @return
+         *          true if they hold the same values
+         */
+        public boolean sameBits(Container other)
+        {
+            if(this.cardinality != other.cardinality)
+            {
+                return false;
+            }
+            else if(this.words == null)
+            {
+                for(int i = 0; i < this.cardinality; i++)
+                {
+                    if(this.values[i] != other.values[i])
+                    {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            else
+            {
+                for(int i = 0; i < BITMAP_WORD_COUNT; i++)
+                {
+                    if(this.words[i] != other.words[i])
+                    {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+
+        /**
+         * Binary search the array values
+         * @param low
+         *          the value to search for
+         * @return
+         *          the position or (-(insertion point) - 1) if it's missing
+         */
+        private int search(int low)
+        {
+            int lowPosition = 0;
+            int highPosition = this.cardinality - 1;
+            while(lowPosition <= highPosition)
+            {
+                int mid = (lowPosition + highPosition) >>> 1;
+                int midValue = this.values[mid];
+                if(midValue < low)
+                {
+                    lowPosition = mid + 1;
+                }
+                else if(midValue > low)
+                {
+                    highPosition = mid - 1;
+                }
+                else
+                {
+                    return mid;
+                }
+            }
+            return -(lowPosition + 1);
+        }
+
+        /**
+         * Write the set bits of a bitmap to a value array
+         * @param words
+         *          the bitmap
+         * @param values
+         *          the array which must be exactly as long as the
+         *          cardinality
+         */
+        private static void wordsToValues(long[] words, char[] values)
+        {
+            int cursor = 0;
+            for(int wordIndex = 0; wordIndex < BITMAP_WORD_COUNT; wordIndex++)
+            {
+                long word = words[wordIndex];
+                while(word != 0L)
+                {
+                    values[cursor] = (char)((wordIndex << 6) | Long.numberOfTrailingZeros(word));
+                    cursor++;
+                    word &= word - 1L;
+                }
+            }
+        }
+    }
+}
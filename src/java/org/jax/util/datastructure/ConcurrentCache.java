@@ -0,0 +1,1180 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.datastructure;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jax.util.concurrent.ExecutorUtilities;
+import org.jax.util.math.Function;
+
+/**
+ * A thread safe cache that loads missing values with a {@link Function}.
+ * It can front anything that is expensive to recompute, like parsing a
+ * flat file or evaluating a function, and {@link #asFunction()} makes the
+ * cache itself usable wherever a function is expected.
+ * <br><br>
+ * The cache is divided into segments that each have their own lock, so
+ * threads working on different keys rarely wait for each other. Each
+ * segment evicts with a segmented LRU policy. New entries start out on
+ * probation and are promoted to a protected area when they're read again.
+ * Eviction takes the least recently used probationary entries first. So a
+ * scan over many keys that are only read once can't flush out the entries
+ * that are read over and over.
+ * <br><br>
+ * The capacity is a total weight that's shared by all of the segments.
+ * The segment that's written to evicts first. If that isn't enough, the
+ * other segments evict too, one at a time. So a single entry can use the
+ * whole capacity. Without a {@link Weigher} every entry weighs 1. Entries
+ * can also expire a fixed time after they're written. Only one load runs
+ * at a time for any key. Other threads asking for the key while it loads
+ * wait for that load instead of starting their own. Null keys and values
+ * aren't allowed.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ * @param <K>
+ *          the key type
+ * @param <V>
+ *          the value type
+ */
+public class ConcurrentCache<K, V>
+{
+    /**
+     * The fraction of the cache's capacity that each segment's protected
+     * entries can fill
+     */
+    private static final double PROTECTED_FRACTION = 0.8;
+
+    /**
+     * The segment count used when the concurrency level isn't given
+     */
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private final Function<? super K, ? extends V> loader;
+
+    private final Weigher<? super K, ? super V> weigher;
+
+    private final long expireAfterWriteNanos;
+
+    private final Executor executor;
+
+    private final long maximumWeight;
+
+    private final long maximumProtectedWeight;
+
+    /**
+     * the weight of every entry in every segment
+     */
+    private final AtomicLong totalWeight = new AtomicLong(0L);
+
+    private final List<Segment> segments;
+
+    /**
+     * Determines the weight of cache entries
+     * @param <K>
+     *          the key type
+     * @param <V>
+     *          the value type
+     */
+    public interface Weigher<K, V>
+    {
+        /**
+         * Get the weight of the given entry. This is only called once when
+         * the entry is added
+         * @param key
+         *          the key
+         * @param value
+         *          the value
+         * @return
+         *          the weight which can't be negative
+         */
+        public int weigh(K key, V value);
+    }
+
+    /**
+     * Constructor for a cache that holds at most the given number of entries
+     * and never expires them
+     * @param loader
+     *          the function used to load values. It will be called from
+     *          several threads (though only once at a time for any one key)
+     * @param maximumSize
+     *          the maximum number of entries
+     */
+    public ConcurrentCache(
+            Function<? super K, ? extends V> loader,
+            long maximumSize)
+    {
+        this(loader, maximumSize, null, 0L, null, DEFAULT_CONCURRENCY_LEVEL, null);
+    }
+
+    /**
+     * Constructor
+     * @param loader
+     *          the function used to load values. It will be called from
+     *          several threads (though only once at a time for any one key).
+     *          It can be null if all values will be {@link #put(Object, Object)}
+     * @param maximumWeight
+     *          the maximum total weight
+     * @param weigher
+     *          the weigher or null to give every entry a weight of 1
+     * @param expireAfterWrite
+     *          how long entries live after they're written or 0 for no
+     *          expiry
+     * @param expiryUnit
+     *          the unit of the expiry time. This can be null when there's
+     *          no expiry
+     * @param concurrencyLevel
+     *          the number of independently locked segments (rounded up to
+     *          a power of two)
+     * @param executor
+     *          the executor that {@link #getAsync(Object)} runs loads on or
+     *          null to load in the calling thread
+     */
+    public ConcurrentCache(
+            Function<? super K, ? extends V> loader,
+            long maximumWeight,
+            Weigher<? super K, ? super V> weigher,
+            long expireAfterWrite,
+            TimeUnit expiryUnit,
+            int concurrencyLevel,
+            Executor executor)
+    {
+        if(maximumWeight < 0L)
+        {
+            throw new IllegalArgumentException(
+                    "the maximum weight can't be negative: " + maximumWeight);
+        }
+        if(expireAfterWrite < 0L)
+        {
+            throw new IllegalArgumentException(
+                    "the expiry time can't be negative: " + expireAfterWrite);
+        }
+        if(concurrencyLevel <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "the concurrency level must be greater than 0");
+        }
+
+        this.loader = loader;
+        this.weigher = weigher;
+        this.expireAfterWriteNanos =
+            expireAfterWrite == 0L ? 0L : expiryUnit.toNanos(expireAfterWrite);
+        this.executor = executor;
+        this.maximumWeight = maximumWeight;
+        this.maximumProtectedWeight = (long)(maximumWeight * PROTECTED_FRACTION);
+
+        int segmentCount = 1;
+        while(segmentCount < concurrencyLevel)
+        {
+            segmentCount <<= 1;
+        }
+
+        this.segments = new ArrayList<Segment>(segmentCount);
+        for(int i = 0; i < segmentCount; i++)
+        {
+            this.segments.add(new Segment());
+        }
+    }
+
+    /**
+     * Get the value for the given key, loading it if it isn't cached. If
+     * another thread is already loading the key we wait for its value. The
+     * wait isn't interruptible, but the thread's interrupt status is
+     * restored afterwards
+     * @param key
+     *          the key
+     * @return
+     *          the value
+     * @throws RuntimeException
+     *          whatever the loader throws. Checked exceptions are wrapped as
+     *          described in {@link ExecutorUtilities#rethrowCause(ExecutionException)}
+     * @throws IllegalStateException
+     *          if this cache doesn't have a loader
+     */
+    public V get(K key) throws RuntimeException, IllegalStateException
+    {
+        Segment segment = this.segmentFor(key);
+        FutureTask<V> load;
+        boolean startedLoad = false;
+        segment.lock.lock();
+        try
+        {
+            V value = segment.getLive(key, this.now());
+            if(value != null)
+            {
+                return value;
+            }
+
+            load = segment.loads.get(key);
+            if(load == null)
+            {
+                load = this.createLoad(key);
+                segment.loads.put(key, load);
+                startedLoad = true;
+            }
+        }
+        finally
+        {
+            segment.lock.unlock();
+        }
+
+        if(startedLoad)
+        {
+            this.runLoad(segment, key, load);
+        }
+
+        return waitFor(load);
+    }
+
+    /**
+     * Get a future for the value of the given key. A load is started on
+     * this cache's executor if the key isn't cached or already loading.
+     * Cancelling the future cancels the load for every thread that's
+     * waiting on it
+     * @param key
+     *          the key
+     * @return
+     *          the future value
+     * @throws IllegalStateException
+     *          if this cache doesn't have a loader
+     * @throws RejectedExecutionException
+     *          if the executor won't run the load. Nothing is left loading
+     *          for the key so a later call can try again
+     */
+    public Future<V> getAsync(final K key)
+    throws IllegalStateException, RejectedExecutionException
+    {
+        final Segment segment = this.segmentFor(key);
+        final FutureTask<V> load;
+        segment.lock.lock();
+        try
+        {
+            V value = segment.getLive(key, this.now());
+            if(value != null)
+            {
+                return new CompletedFuture<V>(value);
+            }
+
+            FutureTask<V> existingLoad = segment.loads.get(key);
+            if(existingLoad != null)
+            {
+                return existingLoad;
+            }
+
+            load = this.createLoad(key);
+            segment.loads.put(key, load);
+        }
+        finally
+        {
+            segment.lock.unlock();
+        }
+
+        Runnable loadRunner = new Runnable()
+        {
+            public void run()
+            {
+                ConcurrentCache.this.runLoad(segment, key, load);
+            }
+        };
+        if(this.executor == null)
+        {
+            loadRunner.run();
+        }
+        else
+        {
+            try
+            {
+                this.executor.execute(loadRunner);
+            }
+            catch(RejectedExecutionException ex)
+            {
+                // nothing will ever run the load so don't leave it around
+                // for other callers to wait on
+                segment.lock.lock();
+                try
+                {
+                    if(segment.loads.get(key) == load)
+                    {
+                        segment.loads.remove(key);
+                    }
+                }
+                finally
+                {
+                    segment.lock.unlock();
+                }
+                load.cancel(false);
+                throw ex;
+            }
+        }
+
+        return load;
+    }
+
+    /**
+     * Get the value for the given key without loading it
+     * @param key
+     *          the key
+     * @return
+     *          the value or null if it isn't cached (values that are still
+     *          loading count as not cached)
+     */
+    public V getIfPresent(K key)
+    {
+        Segment segment = this.segmentFor(key);
+        segment.lock.lock();
+        try
+        {
+            return segment.getLive(key, this.now());
+        }
+        finally
+        {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Put the given value in the cache, replacing any cached value. The
+     * result of a load of the same key that's running now is discarded
+     * @param key
+     *          the key
+     * @param value
+     *          the value
+     */
+    public void put(K key, V value)
+    {
+        if(value == null)
+        {
+            throw new NullPointerException("null values aren't allowed");
+        }
+
+        Segment segment = this.segmentFor(key);
+        segment.lock.lock();
+        try
+        {
+            segment.loads.remove(key);
+            segment.store(key, value, this.now());
+        }
+        finally
+        {
+            segment.lock.unlock();
+        }
+        this.evictAcrossSegments(segment);
+    }
+
+    /**
+     * Remove the given key from the cache. The result of a load of the key
+     * that's running now is discarded
+     * @param key
+     *          the key
+     */
+    public void invalidate(K key)
+    {
+        Segment segment = this.segmentFor(key);
+        segment.lock.lock();
+        try
+        {
+            segment.loads.remove(key);
+            Node<K, V> node = segment.nodes.remove(key);
+            if(node != null)
+            {
+                segment.unlink(node);
+            }
+        }
+        finally
+        {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Remove everything from the cache
+     */
+    public void invalidateAll()
+    {
+        for(Segment segment: this.segments)
+        {
+            segment.lock.lock();
+            try
+            {
+                segment.clear();
+            }
+            finally
+            {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Remove any expired entries now rather than waiting for them to be
+     * found by later reads and writes
+     */
+    public void cleanUp()
+    {
+        long now = this.now();
+        for(Segment segment: this.segments)
+        {
+            segment.lock.lock();
+            try
+            {
+                segment.expireEntries(now);
+            }
+            finally
+            {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Get the number of cached entries. This can include expired entries
+     * that haven't been removed yet
+     * @return
+     *          the entry count
+     */
+    public int size()
+    {
+        int size = 0;
+        for(Segment segment: this.segments)
+        {
+            segment.lock.lock();
+            try
+            {
+                size += segment.nodes.size();
+            }
+            finally
+            {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Get the total weight of the cached entries
+     * @return
+     *          the weight
+     */
+    public long getWeightedSize()
+    {
+        return this.totalWeight.get();
+    }
+
+    /**
+     * Get a snapshot of this cache's statistics
+     * @return
+     *          the statistics
+     */
+    public CacheStatistics getStatistics()
+    {
+        long hitCount = 0L;
+        long missCount = 0L;
+        long loadSuccessCount = 0L;
+        long loadFailureCount = 0L;
+        long totalLoadTimeNanos = 0L;
+        long evictionCount = 0L;
+        for(Segment segment: this.segments)
+        {
+            segment.lock.lock();
+            try
+            {
+                hitCount += segment.hitCount;
+                missCount += segment.missCount;
+                loadSuccessCount += segment.loadSuccessCount;
+                loadFailureCount += segment.loadFailureCount;
+                totalLoadTimeNanos += segment.totalLoadTimeNanos;
+                evictionCount += segment.evictionCount;
+            }
+            finally
+            {
+                segment.lock.unlock();
+            }
+        }
+
+        return new CacheStatistics(
+                hitCount,
+                missCount,
+                loadSuccessCount,
+                loadFailureCount,
+                totalLoadTimeNanos,
+                evictionCount);
+    }
+
+    /**
+     * Get a function view of this cache which evaluates by calling
+     * {@link #get(Object)}
+     * @return
+     *          the function
+     */
+    public Function<K, V> asFunction()
+    {
+        return new Function<K, V>()
+        {
+            public V evaluate(K input)
+            {
+                return ConcurrentCache.this.get(input);
+            }
+        };
+    }
+
+    /**
+     * Get the segment that the key belongs to
+     * @param key
+     *          the key
+     * @return
+     *          the segment
+     */
+    private Segment segmentFor(K key)
+    {
+        // spread the hash bits so that keys with poor low bits still use
+        // every segment
+        int hash = key.hashCode();
+        hash ^= (hash >>> 20) ^ (hash >>> 12);
+        hash ^= (hash >>> 7) ^ (hash >>> 4);
+        return this.segments.get(hash & (this.segments.size() - 1));
+    }
+
+    /**
+     * Get the time used for expiry
+     * @return
+     *          the time in nanoseconds or 0 if we don't expire entries
+     */
+    private long now()
+    {
+        return this.expireAfterWriteNanos == 0L ? 0L : System.nanoTime();
+    }
+
+    /**
+     * Create the task that loads a key
+     * @param key
+     *          the key
+     * @return
+     *          the load
+     */
+    private FutureTask<V> createLoad(final K key)
+    {
+        if(this.loader == null)
+        {
+            throw new IllegalStateException(
+                    "this cache has no loader so values must be put in it");
+        }
+
+        return new FutureTask<V>(new Callable<V>()
+        {
+            public V call()
+            {
+                V value = ConcurrentCache.this.loader.evaluate(key);
+                if(value == null)
+                {
+                    throw new NullPointerException(
+                            "the loader returned null for key: " + key);
+                }
+                return value;
+            }
+        });
+    }
+
+    /**
+     * Run the load and store its value, unless the key was put or
+     * invalidated while it was running
+     * @param segment
+     *          the key's segment
+     * @param key
+     *          the key
+     * @param load
+     *          the load
+     */
+    private void runLoad(Segment segment, K key, FutureTask<V> load)
+    {
+        long startTime = System.nanoTime();
+        load.run();
+        long loadTime = System.nanoTime() - startTime;
+
+        V value = null;
+        try
+        {
+            value = load.get();
+        }
+        catch(Exception ex)
+        {
+            // the load failed or was cancelled. Anyone waiting on the load
+            // gets the exception from it
+        }
+
+        segment.lock.lock();
+        try
+        {
+            segment.totalLoadTimeNanos += loadTime;
+            if(value == null)
+            {
+                segment.loadFailureCount++;
+            }
+            else
+            {
+                segment.loadSuccessCount++;
+            }
+
+            if(segment.loads.get(key) == load)
+            {
+                segment.loads.remove(key);
+                if(value != null)
+                {
+                    segment.store(key, value, this.now());
+                }
+            }
+        }
+        finally
+        {
+            segment.lock.unlock();
+        }
+        this.evictAcrossSegments(segment);
+    }
+
+    /**
+     * If the cache is still too heavy after the given segment has evicted
+     * what it can, evict from the other segments in turn and then let the
+     * written segment evict its newest entry too. Only one segment lock is
+     * held at a time
+     * @param writtenSegment
+     *          the segment that was just written to (and has already
+     *          evicted)
+     */
+    private void evictAcrossSegments(Segment writtenSegment)
+    {
+        for(int i = 0; i < this.segments.size() &&
+                       this.totalWeight.get() > this.maximumWeight; i++)
+        {
+            Segment segment = this.segments.get(i);
+            if(segment != writtenSegment)
+            {
+                this.evictEntries(segment);
+            }
+        }
+
+        if(this.totalWeight.get() > this.maximumWeight)
+        {
+            this.evictEntries(writtenSegment);
+        }
+    }
+
+    /**
+     * Lock the segment and evict until the cache fits or the segment is
+     * empty
+     * @param segment
+     *          the segment
+     */
+    private void evictEntries(Segment segment)
+    {
+        segment.lock.lock();
+        try
+        {
+            segment.evictEntries(null);
+        }
+        finally
+        {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Wait for the load without being interrupted
+     * @param <V>
+     *          the value type
+     * @param load
+     *          the load
+     * @return
+     *          the value
+     */
+    private static <V> V waitFor(Future<V> load)
+    {
+        boolean interrupted = false;
+        try
+        {
+            while(true)
+            {
+                try
+                {
+                    return load.get();
+                }
+                catch(InterruptedException ex)
+                {
+                    interrupted = true;
+                }
+                catch(ExecutionException ex)
+                {
+                    throw ExecutorUtilities.rethrowCause(ex);
+                }
+            }
+        }
+        finally
+        {
+            if(interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * A cache entry which is a member of two doubly linked lists. The
+     * access list is either the probation or the protected list and
+     * the write list orders entries for expiry
+     * @param <K>
+     *          the key type
+     * @param <V>
+     *          the value type
+     */
+    private static final class Node<K, V>
+    {
+        private final K key;
+
+        private V value;
+
+        private int weight;
+
+        private long writeTime;
+
+        private boolean isProtected;
+
+        private Node<K, V> accessPrevious;
+
+        private Node<K, V> accessNext;
+
+        private Node<K, V> writePrevious;
+
+        private Node<K, V> writeNext;
+
+        /**
+         * Constructor
+         * @param key
+         *          the key (or null for a list head)
+         */
+        public Node(K key)
+        {
+            this.key = key;
+        }
+    }
+
+    /**
+     * A part of the cache with its own lock, entries and capacity. All of
+     * the fields must only be touched while holding the lock
+     */
+    private final class Segment
+    {
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final Map<K, Node<K, V>> nodes = new HashMap<K, Node<K, V>>();
+
+        private final Map<K, FutureTask<V>> loads = new HashMap<K, FutureTask<V>>();
+
+
+        /**
+         * head of the probation list. The head's next is the most recently
+         * used entry and its previous is the least recently used
+         */
+        private final Node<K, V> probationHead = createHead();
+
+        /**
+         * head of the protected list
+         */
+        private final Node<K, V> protectedHead = createHead();
+
+        /**
+         * head of the write list. The head's next is the oldest write
+         */
+        private final Node<K, V> writeHead = createHead();
+
+        private long probationWeight = 0L;
+
+        private long protectedWeight = 0L;
+
+        private long hitCount = 0L;
+
+        private long missCount = 0L;
+
+        private long loadSuccessCount = 0L;
+
+        private long loadFailureCount = 0L;
+
+        private long totalLoadTimeNanos = 0L;
+
+        private long evictionCount = 0L;
+
+
+        /**
+         * Look up the key, counting a hit or a miss and promoting the entry
+         * if it's found
+         * @param key
+         *          the key
+         * @param now
+         *          the current time
+         * @return
+         *          the value or null if there isn't a live entry
+         */
+        public V getLive(K key, long now)
+        {
+            Node<K, V> node = this.nodes.get(key);
+            if(node != null && this.isExpired(node, now))
+            {
+                this.expireEntries(now);
+                node = null;
+            }
+
+            if(node == null)
+            {
+                this.missCount++;
+                return null;
+            }
+            else
+            {
+                this.hitCount++;
+                this.recordAccess(node);
+                return node.value;
+            }
+        }
+
+        /**
+         * Store the value replacing any existing entry, then expire and
+         * evict entries as needed
+         * @param key
+         *          the key
+         * @param value
+         *          the value
+         * @param now
+         *          the current time
+         */
+        public void store(K key, V value, long now)
+        {
+            int weight = 1;
+            if(ConcurrentCache.this.weigher != null)
+            {
+                weight = ConcurrentCache.this.weigher.weigh(key, value);
+                if(weight < 0)
+                {
+                    throw new IllegalArgumentException(
+                            "weights can't be negative: " + weight);
+                }
+            }
+
+            Node<K, V> node = this.nodes.get(key);
+            if(node == null)
+            {
+                node = new Node<K, V>(key);
+                this.nodes.put(key, node);
+            }
+            else
+            {
+                this.unlink(node);
+            }
+
+            node.value = value;
+            node.weight = weight;
+            node.writeTime = now;
+            node.isProtected = false;
+            linkFirst(this.probationHead, node);
+            this.probationWeight += weight;
+            ConcurrentCache.this.totalWeight.addAndGet(weight);
+            linkWriteLast(this.writeHead, node);
+
+            this.expireEntries(now);
+            this.evictEntries(node);
+        }
+
+        /**
+         * Move the node to the front of the protected list, demoting
+         * protected entries back to probation if there's no room for it
+         * @param node
+         *          the node
+         */
+        private void recordAccess(Node<K, V> node)
+        {
+            unlinkAccess(node);
+            if(!node.isProtected)
+            {
+                this.probationWeight -= node.weight;
+                this.protectedWeight += node.weight;
+                node.isProtected = true;
+            }
+            linkFirst(this.protectedHead, node);
+
+            while(this.protectedWeight > ConcurrentCache.this.maximumProtectedWeight)
+            {
+                Node<K, V> demoted = this.protectedHead.accessPrevious;
+                unlinkAccess(demoted);
+                this.protectedWeight -= demoted.weight;
+                this.probationWeight += demoted.weight;
+                demoted.isProtected = false;
+                linkFirst(this.probationHead, demoted);
+            }
+        }
+
+        /**
+         * Evict least recently used entries until the cache is within its
+         * capacity or this segment has nothing left to evict, taking
+         * probationary entries before protected ones
+         * @param newestNode
+         *          the node that was just written which is only evicted
+         *          along with the rest of the probationary entries, so the
+         *          other segments get a chance to make room for it first.
+         *          Can be null
+         */
+        public void evictEntries(Node<K, V> newestNode)
+        {
+            AtomicLong totalWeight = ConcurrentCache.this.totalWeight;
+            long maximumWeight = ConcurrentCache.this.maximumWeight;
+            while(totalWeight.get() > maximumWeight)
+            {
+                Node<K, V> victim = this.probationHead.accessPrevious;
+                if(victim == this.probationHead || victim == newestNode)
+                {
+                    victim = this.protectedHead.accessPrevious;
+                    if(victim == this.protectedHead)
+                    {
+                        break;
+                    }
+                }
+                this.nodes.remove(victim.key);
+                this.unlink(victim);
+                this.evictionCount++;
+            }
+        }
+
+        /**
+         * Remove the entries that have expired. Entries are in write order
+         * so we can stop at the first one that's still live
+         * @param now
+         *          the current time
+         */
+        private void expireEntries(long now)
+        {
+            if(ConcurrentCache.this.expireAfterWriteNanos != 0L)
+            {
+                Node<K, V> oldest = this.writeHead.writeNext;
+                while(oldest != this.writeHead && this.isExpired(oldest, now))
+                {
+                    this.nodes.remove(oldest.key);
+                    this.unlink(oldest);
+                    this.evictionCount++;
+                    oldest = this.writeHead.writeNext;
+                }
+            }
+        }
+
+        /**
+         * Determine if the node has expired
+         * @param node
+         *          the node
+         * @param now
+         *          the current time
+         * @return
+         *          true if it's expired
+         */
+        private boolean isExpired(Node<K, V> node, long now)
+        {
+            long expireAfterWriteNanos = ConcurrentCache.this.expireAfterWriteNanos;
+            return expireAfterWriteNanos != 0L && now - node.writeTime >= expireAfterWriteNanos;
+        }
+
+        /**
+         * Remove the node from both of its lists and take away its weight
+         * @param node
+         *          the node
+         */
+        public void unlink(Node<K, V> node)
+        {
+            unlinkAccess(node);
+            node.writePrevious.writeNext = node.writeNext;
+            node.writeNext.writePrevious = node.writePrevious;
+            node.writePrevious = null;
+            node.writeNext = null;
+            if(node.isProtected)
+            {
+                this.protectedWeight -= node.weight;
+            }
+            else
+            {
+                this.probationWeight -= node.weight;
+            }
+            ConcurrentCache.this.totalWeight.addAndGet(-node.weight);
+        }
+
+        /**
+         * Remove all entries and pending loads
+         */
+        public void clear()
+        {
+            this.nodes.clear();
+            this.loads.clear();
+            this.probationHead.accessNext = this.probationHead;
+            this.probationHead.accessPrevious = this.probationHead;
+            this.protectedHead.accessNext = this.protectedHead;
+            this.protectedHead.accessPrevious = this.protectedHead;
+            this.writeHead.writeNext = this.writeHead;
+            this.writeHead.writePrevious = this.writeHead;
+            ConcurrentCache.this.totalWeight.addAndGet(
+                    -(this.probationWeight + this.protectedWeight));
+            this.probationWeight = 0L;
+            this.protectedWeight = 0L;
+        }
+    }
+
+    /**
+     * Create an empty list head
+     * @param <K>
+     *          the key type
+     * @param <V>
+     *          the value type
+     * @return
+     *          the head
+     */
+    private static <K, V> Node<K, V> createHead()
+    {
+        Node<K, V> head = new Node<K, V>(null);
+        head.accessNext = head;
+        head.accessPrevious = head;
+        head.writeNext = head;
+        head.writePrevious = head;
+        return head;
+    }
+
+    /**
+     * Link the node in as the most recently used node of the given list
+     * @param <K>
+     *          the key type
+     * @param <V>
+     *          the value type
+     * @param head
+     *          the list head
+     * @param node
+     *          the node
+     */
+    private static <K, V> void linkFirst(Node<K, V> head, Node<K, V> node)
+    {
+        node.accessPrevious = head;
+        node.accessNext = head.accessNext;
+        head.accessNext.accessPrevious = node;
+        head.accessNext = node;
+    }
+
+    /**
+     * Link the node in as the newest write
+     * @param <K>
+     *          the key type
+     * @param <V>
+     *          the value type
+     * @param head
+     *          the write list head
+     * @param node
+     *          the node
+     */
+    private static <K, V> void linkWriteLast(Node<K, V> head, Node<K, V> node)
+    {
+        node.writeNext = head;
+        node.writePrevious = head.writePrevious;
+        head.writePrevious.writeNext = node;
+        head.writePrevious = node;
+    }
+
+    /**
+     * Remove the node from its access list
+     * @param <K>
+     *          the key type
+     * @param <V>
+     *          the value type
+     * @param node
+     *          the node
+     */
+    private static <K, V> void unlinkAccess(Node<K, V> node)
+    {
+        node.accessPrevious.accessNext = node.accessNext;
+        node.accessNext.accessPrevious = node.accessPrevious;
+        node.accessPrevious = null;
+        node.accessNext = null;
+    }
+
+    /**
+     * A future that already has its value
+     * @param <V>
+     *          the value type
+     */
+    private static final class CompletedFuture<V> implements Future<V>
+    {
+        private final V value;
+
+        /**
+         * Constructor
+         * @param value
+         *          the value
+         */
+        public CompletedFuture(V value)
+        {
+            this.value = value;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            return false;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public boolean isCancelled()
+        {
+            return false;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public boolean isDone()
+        {
+            return true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public V get()
+        {
+            return this.value;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public V get(long timeout, TimeUnit unit) throws TimeoutException
+        {
+            return this.value;
+        }
+    }
+}
@@ -0,0 +1,746 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.datastructure;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import org.jax.util.Condition;
+import org.jax.util.DoubleCondition;
+import org.jax.util.IntCondition;
+import org.jax.util.concurrent.ExecutorUtilities;
+import org.jax.util.datastructure.primitive.IntArrayList;
+
+/**
+ * Functions for finding which elements of a list or array pass a condition.
+ * Each element is tested exactly once and the matches are collected
+ * directly into an index array or a {@link CompressedBitSet}, so no boolean
+ * array or boxed values are created along the way. The index arrays are
+ * ascending, which lets {@link ImmutableReorderedList} store them compactly
+ * when they're used to build a filtered view.
+ * <br><br>
+ * The parallel functions split the input into contiguous chunks. Chunks
+ * collect their own matches which are concatenated in chunk order, so the
+ * result is the same as the serial result.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public final class FilterUtilities
+{
+    /**
+     * Inputs smaller than this aren't worth splitting up. This is also the
+     * size of a {@link CompressedBitSet} container, so that the chunks of a
+     * parallel bit set filter can line up with the container boundaries
+     */
+    private static final int MIN_PARALLEL_CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Private constructor to avoid an instance being created
+     */
+    private FilterUtilities()
+    {
+    }
+
+    /**
+     * Find the indices of the values that pass the condition
+     * @param condition
+     *          the condition
+     * @param values
+     *          the values to test
+     * @return
+     *          the ascending indices of the matching values
+     */
+    public static int[] findMatches(DoubleCondition condition, double[] values)
+    {
+        return findMatches(new DoubleSource(condition, values));
+    }
+
+    /**
+     * Find the indices of the values that pass the condition
+     * @param condition
+     *          the condition
+     * @param values
+     *          the values to test
+     * @return
+     *          the ascending indices of the matching values
+     */
+    public static int[] findMatches(IntCondition condition, int[] values)
+    {
+        return findMatches(new IntSource(condition, values));
+    }
+
+    /**
+     * Find the indices of the elements that pass the condition
+     * @param <I>
+     *          the element type
+     * @param condition
+     *          the condition
+     * @param elements
+     *          the elements to test which should be
+     *          {@link java.util.RandomAccess}
+     * @return
+     *          the ascending indices of the matching elements
+     */
+    public static <I> int[] findMatches(
+            Condition<? super I> condition,
+            List<I> elements)
+    {
+        return findMatches(new ListSource<I>(condition, elements));
+    }
+
+    /**
+     * Find the indices of the values that pass the condition using several
+     * threads
+     * @param condition
+     *          the condition which must be safe to call from several threads
+     * @param values
+     *          the values to test
+     * @param executor
+     *          the executor to run the work on
+     * @param parallelism
+     *          the number of pieces to divide the work into (typically
+     *          the executor's thread count)
+     * @return
+     *          the ascending indices of the matching values
+     * @throws InterruptedException
+     *          if we're interrupted while waiting for the executor
+     */
+    public static int[] parallelFindMatches(
+            DoubleCondition condition,
+            double[] values,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException
+    {
+        return parallelFindMatches(
+                new DoubleSource(condition, values),
+                executor,
+                parallelism);
+    }
+
+    /**
+     * Find the indices of the values that pass the condition using several
+     * threads
+     * @param condition
+     *          the condition which must be safe to call from several threads
+     * @param values
+     *          the values to test
+     * @param executor
+     *          the executor to run the work on
+     * @param parallelism
+     *          the number of pieces to divide the work into (typically
+     *          the executor's thread count)
+     * @return
+     *          the ascending indices of the matching values
+     * @throws InterruptedException
+     *          if we're interrupted while waiting for the executor
+     */
+    public static int[] parallelFindMatches(
+            IntCondition condition,
+            int[] values,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException
+    {
+        return parallelFindMatches(
+                new IntSource(condition, values),
+                executor,
+                parallelism);
+    }
+
+    /**
+     * Find the indices of the elements that pass the condition using
+     * several threads
+     * @param <I>
+     *          the element type
+     * @param condition
+     *          the condition which must be safe to call from several threads
+     * @param elements
+     *          the elements to test which should be
+     *          {@link java.util.RandomAccess}
+     * @param executor
+     *          the executor to run the work on
+     * @param parallelism
+     *          the number of pieces to divide the work into (typically
+     *          the executor's thread count)
+     * @return
+     *          the ascending indices of the matching elements
+     * @throws InterruptedException
+     *          if we're interrupted while waiting for the executor
+     */
+    public static <I> int[] parallelFindMatches(
+            Condition<? super I> condition,
+            List<I> elements,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException
+    {
+        return parallelFindMatches(
+                new ListSource<I>(condition, elements),
+                executor,
+                parallelism);
+    }
+
+    /**
+     * Find the values that pass the condition
+     * @param condition
+     *          the condition
+     * @param values
+     *          the values to test
+     * @return
+     *          the set of matching indices
+     */
+    public static CompressedBitSet findMatchSet(
+            DoubleCondition condition,
+            double[] values)
+    {
+        return findMatchSet(new DoubleSource(condition, values));
+    }
+
+    /**
+     * Find the values that pass the condition
+     * @param condition
+     *          the condition
+     * @param values
+     *          the values to test
+     * @return
+     *          the set of matching indices
+     */
+    public static CompressedBitSet findMatchSet(
+            IntCondition condition,
+            int[] values)
+    {
+        return findMatchSet(new IntSource(condition, values));
+    }
+
+    /**
+     * Find the elements that pass the condition
+     * @param <I>
+     *          the element type
+     * @param condition
+     *          the condition
+     * @param elements
+     *          the elements to test which should be
+     *          {@link java.util.RandomAccess}
+     * @return
+     *          the set of matching indices
+     */
+    public static <I> CompressedBitSet findMatchSet(
+            Condition<? super I> condition,
+            List<I> elements)
+    {
+        return findMatchSet(new ListSource<I>(condition, elements));
+    }
+
+    /**
+     * Find the values that pass the condition using several threads
+     * @param condition
+     *          the condition which must be safe to call from several threads
+     * @param values
+     *          the values to test
+     * @param executor
+     *          the executor to run the work on
+     * @param parallelism
+     *          the number of pieces to divide the work into (typically
+     *          the executor's thread count)
+     * @return
+     *          the set of matching indices
+     * @throws InterruptedException
+     *          if we're interrupted while waiting for the executor
+     */
+    public static CompressedBitSet parallelFindMatchSet(
+            DoubleCondition condition,
+            double[] values,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException
+    {
+        return parallelFindMatchSet(
+                new DoubleSource(condition, values),
+                executor,
+                parallelism);
+    }
+
+    /**
+     * Find the values that pass the condition using several threads
+     * @param condition
+     *          the condition which must be safe to call from several threads
+     * @param values
+     *          the values to test
+     * @param executor
+     *          the executor to run the work on
+     * @param parallelism
+     *          the number of pieces to divide the work into (typically
+     *          the executor's thread count)
+     * @return
+     *          the set of matching indices
+     * @throws InterruptedException
+     *          if we're interrupted while waiting for the executor
+     */
+    public static CompressedBitSet parallelFindMatchSet(
+            IntCondition condition,
+            int[] values,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException
+    {
+        return parallelFindMatchSet(
+                new IntSource(condition, values),
+                executor,
+                parallelism);
+    }
+
+    /**
+     * Find the elements that pass the condition using several threads
+     * @param <I>
+     *          the element type
+     * @param condition
+     *          the condition which must be safe to call from several threads
+     * @param elements
+     *          the elements to test which should be
+     *          {@link java.util.RandomAccess}
+     * @param executor
+     *          the executor to run the work on
+     * @param parallelism
+     *          the number of pieces to divide the work into (typically
+     *          the executor's thread count)
+     * @return
+     *          the set of matching indices
+     * @throws InterruptedException
+     *          if we're interrupted while waiting for the executor
+     */
+    public static <I> CompressedBitSet parallelFindMatchSet(
+            Condition<? super I> condition,
+            List<I> elements,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException
+    {
+        return parallelFindMatchSet(
+                new ListSource<I>(condition, elements),
+                executor,
+                parallelism);
+    }
+
+    /**
+     * Find the matching indices of the given source
+     * @param source
+     *          the source
+     * @return
+     *          the matches
+     */
+    private static int[] findMatches(FilterSource source)
+    {
+        IntArrayList matches = new IntArrayList();
+        source.findMatches(0, source.size(), matches);
+        return matches.toArray();
+    }
+
+    /**
+     * Find the matching indices of the given source in parallel
+     * @param source
+     *          the source
+     * @param executor
+     *          the executor
+     * @param parallelism
+     *          the parallelism
+     * @return
+     *          the matches
+     * @throws InterruptedException
+     *          if we're interrupted while waiting for the executor
+     */
+    private static int[] parallelFindMatches(
+            final FilterSource source,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException
+    {
+        int[] chunkStarts = chunkStarts(source.size(), parallelism, false);
+        if(chunkStarts == null)
+        {
+            return findMatches(source);
+        }
+
+        List<Callable<IntArrayList>> tasks = new ArrayList<Callable<IntArrayList>>();
+        for(int i = 0; i < chunkStarts.length - 1; i++)
+        {
+            final int fromIndex = chunkStarts[i];
+            final int toIndex = chunkStarts[i + 1];
+            tasks.add(new Callable<IntArrayList>()
+            {
+                public IntArrayList call()
+                {
+                    IntArrayList matches = new IntArrayList();
+                    source.findMatches(fromIndex, toIndex, matches);
+                    return matches;
+                }
+            });
+        }
+        List<IntArrayList> chunkMatches = ExecutorUtilities.invokeAll(executor, tasks);
+
+        int matchCount = 0;
+        for(IntArrayList currMatches: chunkMatches)
+        {
+            matchCount += currMatches.size();
+        }
+        int[] matches = new int[matchCount];
+        int offset = 0;
+        for(IntArrayList currMatches: chunkMatches)
+        {
+            int currSize = currMatches.size();
+            System.arraycopy(currMatches.getBackingArray(), 0, matches, offset, currSize);
+            offset += currSize;
+        }
+
+        return matches;
+    }
+
+    /**
+     * Find the matching set of the given source
+     * @param source
+     *          the source
+     * @return
+     *          the matches
+     */
+    private static CompressedBitSet findMatchSet(FilterSource source)
+    {
+        CompressedBitSet matches = new CompressedBitSet();
+        source.findMatches(0, source.size(), matches);
+        return matches;
+    }
+
+    /**
+     * Find the matching set of the given source in parallel
+     * @param source
+     *          the source
+     * @param executor
+     *          the executor
+     * @param parallelism
+     *          the parallelism
+     * @return
+     *          the matches
+     * @throws InterruptedException
+     *          if we're interrupted while waiting for the executor
+     */
+    private static CompressedBitSet parallelFindMatchSet(
+            final FilterSource source,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException
+    {
+        int[] chunkStarts = chunkStarts(source.size(), parallelism, true);
+        if(chunkStarts == null)
+        {
+            return findMatchSet(source);
+        }
+
+        List<Callable<CompressedBitSet>> tasks = new ArrayList<Callable<CompressedBitSet>>();
+        for(int i = 0; i < chunkStarts.length - 1; i++)
+        {
+            final int fromIndex = chunkStarts[i];
+            final int toIndex = chunkStarts[i + 1];
+            tasks.add(new Callable<CompressedBitSet>()
+            {
+                public CompressedBitSet call()
+                {
+                    CompressedBitSet matches = new CompressedBitSet();
+                    source.findMatches(fromIndex, toIndex, matches);
+                    return matches;
+                }
+            });
+        }
+
+        // the chunks are container aligned so the or only has to copy
+        // the containers over without merging any of them
+        CompressedBitSet matches = new CompressedBitSet();
+        for(CompressedBitSet currMatches: ExecutorUtilities.invokeAll(executor, tasks))
+        {
+            matches.or(currMatches);
+        }
+
+        return matches;
+    }
+
+    /**
+     * Divide the input up into chunks
+     * @param size
+     *          the input size
+     * @param parallelism
+     *          the parallelism
+     * @param alignChunks
+     *          if true the chunk starts are multiples of
+     *          {@link #MIN_PARALLEL_CHUNK_SIZE}
+     * @return
+     *          the chunk starts with the size appended or null if the input
+     *          shouldn't be divided
+     */
+    private static int[] chunkStarts(int size, int parallelism, boolean alignChunks)
+    {
+        if(parallelism <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "the parallelism must be greater than 0");
+        }
+
+        int chunkCount = Math.min(parallelism, size / MIN_PARALLEL_CHUNK_SIZE);
+        if(chunkCount <= 1)
+        {
+            return null;
+        }
+
+        int[] chunkStarts = new int[chunkCount + 1];
+        for(int i = 0; i < chunkCount; i++)
+        {
+            chunkStarts[i] = (int)((long)size * i / chunkCount);
+            if(alignChunks)
+            {
+                chunkStarts[i] &= -MIN_PARALLEL_CHUNK_SIZE;
+            }
+        }
+        chunkStarts[chunkCount] = size;
+
+        return chunkStarts;
+    }
+
+    /**
+     * Something that can be filtered. The loops live in the subclasses so
+     * that each one calls its condition type directly
+     */
+    private static abstract class FilterSource
+    {
+        /**
+         * Get the number of elements
+         * @return
+         *          the size
+         */
+        public abstract int size();
+
+        /**
+         * Add the indices of matching elements in the given range to the
+         * list in ascending order
+         * @param fromIndex
+         *          the start index (inclusive)
+         * @param toIndex
+         *          the end index (exclusive)
+         * @param matches
+         *          the list to add to
+         */
+        public abstract void findMatches(int fromIndex, int toIndex, IntArrayList matches);
+
+        /**
+         * Add the indices of matching elements in the given range to the
+         * set
+         * @param fromIndex
+         *          the start index (inclusive)
+         * @param toIndex
+         *          the end index (exclusive)
+         * @param matches
+         *          the set to add to
+         */
+        public abstract void findMatches(int fromIndex, int toIndex, CompressedBitSet matches);
+    }
+
+    /**
+     * Filters a double array
+     */
+    private static final class DoubleSource extends FilterSource
+    {
+        private final DoubleCondition condition;
+
+        private final double[] values;
+
+        /**
+         * Constructor
+         * @param condition
+         *          the condition
+         * @param values
+         *          the values
+         */
+        public DoubleSource(DoubleCondition condition, double[] values)
+        {
+            this.condition = condition;
+            this.values = values;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size()
+        {
+            return this.values.length;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void findMatches(int fromIndex, int toIndex, IntArrayList matches)
+        {
+            for(int i = fromIndex; i < toIndex; i++)
+            {
+                if(this.condition.test(this.values[i]))
+                {
+                    matches.add(i);
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void findMatches(int fromIndex, int toIndex, CompressedBitSet matches)
+        {
+            for(int i = fromIndex; i < toIndex; i++)
+            {
+                if(this.condition.test(this.values[i]))
+                {
+                    matches.set(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Filters an int array
+     */
+    private static final class IntSource extends FilterSource
+    {
+        private final IntCondition condition;
+
+        private final int[] values;
+
+        /**
+         * Constructor
+         * @param condition
+         *          the condition
+         * @param values
+         *          the values
+         */
+        public IntSource(IntCondition condition, int[] values)
+        {
+            this.condition = condition;
+            this.values = values;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size()
+        {
+            return this.values.length;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void findMatches(int fromIndex, int toIndex, IntArrayList matches)
+        {
+            for(int i = fromIndex; i < toIndex; i++)
+            {
+                if(this.condition.test(this.values[i]))
+                {
+                    matches.add(i);
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void findMatches(int fromIndex, int toIndex, CompressedBitSet matches)
+        {
+            for(int i = fromIndex; i < toIndex; i++)
+            {
+                if(this.condition.test(this.values[i]))
+                {
+                    matches.set(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Filters a list
+     * @param <I>
+     *          the element type
+     */
+    private static final class ListSource<I> extends FilterSource
+    {
+        private final Condition<? super I> condition;
+
+        private final List<I> elements;
+
+        /**
+         * Constructor
+         * @param condition
+         *          the condition
+         * @param elements
+         *          the elements
+         */
+        public ListSource(Condition<? super I> condition, List<I> elements)
+        {
+            this.condition = condition;
+            this.elements = elements;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size()
+        {
+            return this.elements.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void findMatches(int fromIndex, int toIndex, IntArrayList matches)
+        {
+            for(int i = fromIndex; i < toIndex; i++)
+            {
+                if(this.condition.test(this.elements.get(i)))
+                {
+                    matches.add(i);
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void findMatches(int fromIndex, int toIndex, CompressedBitSet matches)
+        {
+            for(int i = fromIndex; i < toIndex; i++)
+            {
+                if(this.condition.test(this.elements.get(i)))
+                {
+                    matches.set(i);
+                }
+            }
+        }
+    }
+}
@@ -1,6 +1,6 @@
 /*
  * Copyright (c) 2010 The Jackson Laboratory
- * 
+ *
  * This is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
  * the Free Software Foundation, either version 3 of the License, or
@@ -18,10 +18,12 @@
 package org.jax.util.datastructure;
 
 import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.RandomAccess;
 
 import org.jax.util.Condition;
+import org.jax.util.datastructure.primitive.IntIntMap;
 
 
 /**
@@ -31,6 +33,16 @@ import org.jax.util.Condition;
  * that isn't {@link RandomAccess}. Note that both data repeats and missing
  * data are allowed in this implementation. Also note that this implementation
  * supports conditional subsetting through its constructors.
+ * <br><br>
+ * The mapping is kept as compact as possible. Subsets made by the filtering
+ * constructors are stored as runs of contiguous indices when there are
+ * few enough runs. The inverse mapping used by {@link #toReorderedIndex(int)}
+ * is only built the first time it's needed. Ascending mappings don't need
+ * one at all because they can be binary searched. Small subsets of big
+ * lists use a hash map instead of an array the size of the original list.
+ * Use {@link #createFlattened(List, int[])} to stack a reordering on top
+ * of another {@link ImmutableReorderedList} without building a chain of
+ * views.
  * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
  * @param <E>
  *          the contents type for this list
@@ -38,20 +50,56 @@ import org.jax.util.Condition;
 public class ImmutableReorderedList<E> extends AbstractList<E> implements RandomAccess
 {
     /**
-     * holds the reordered mapping
+     * a subset is stored as runs if it has no more than one run for every
+     * this many elements
+     */
+    private static final int MIN_ELEMENTS_PER_RUN = 8;
+
+    /**
+     * the inverse mapping uses a hash map when the list has fewer than one
+     * element for every this many original elements
      */
-    private final int[] toReorderedMapping;
-    
+    private static final int SPARSE_INVERSE_RATIO = 16;
+
     /**
-     * holds the original mapping
+     * holds the original mapping (null if the mapping is stored as runs)
      */
     private final int[] toOriginalMapping;
 
+    /**
+     * the reordered index that each run starts at followed by the size
+     * (null unless the mapping is stored as runs)
+     */
+    private final int[] runStarts;
+
+    /**
+     * the original index that each run starts at (null unless the mapping
+     * is stored as runs)
+     */
+    private final int[] runOriginalStarts;
+
+    private final int size;
+
+    /**
+     * true if the original indices strictly increase
+     */
+    private final boolean ascending;
+
+    /**
+     * the lazily built inverse mapping for dense lists
+     */
+    private volatile int[] toReorderedMapping;
+
+    /**
+     * the lazily built inverse mapping for sparse lists
+     */
+    private volatile IntIntMap sparseToReorderedMapping;
+
     /**
      * @see #getOriginalList()
      */
     private final List<E> originalList;
-    
+
     /**
      * Constructor for subsetting data
      * @param superset
@@ -63,7 +111,7 @@ public class ImmutableReorderedList<E> extends AbstractList<E> implements Random
     {
         this(superset, SequenceUtilities.testInputs(removeCondition, superset));
     }
-    
+
     /**
      * Constructor for subsetting data. The filter and superset
      * must be the same size
@@ -75,9 +123,54 @@ public class ImmutableReorderedList<E> extends AbstractList<E> implements Random
      */
     public ImmutableReorderedList(List<E> superset, boolean[] filter)
     {
-        this(superset, SetUtilities.createFromSubsetToSupersetIndexMap(filter));
+        this.originalList = superset;
+        this.ascending = true;
+
+        int keptCount = 0;
+        int runCount = 0;
+        for(int i = 0; i < filter.length; i++)
+        {
+            if(!filter[i])
+            {
+                keptCount++;
+                if(i == 0 || filter[i - 1])
+                {
+                    runCount++;
+                }
+            }
+        }
+        this.size = keptCount;
+
+        if((long)runCount * MIN_ELEMENTS_PER_RUN <= keptCount)
+        {
+            this.toOriginalMapping = null;
+            this.runStarts = new int[runCount + 1];
+            this.runOriginalStarts = new int[runCount];
+            int runIndex = 0;
+            int reorderedIndex = 0;
+            for(int i = 0; i < filter.length; i++)
+            {
+                if(!filter[i])
+                {
+                    if(i == 0 || filter[i - 1])
+                    {
+                        this.runStarts[runIndex] = reorderedIndex;
+                        this.runOriginalStarts[runIndex] = i;
+                        runIndex++;
+                    }
+                    reorderedIndex++;
+                }
+            }
+            this.runStarts[runCount] = keptCount;
+        }
+        else
+        {
+            this.toOriginalMapping = SetUtilities.createFromSubsetToSupersetIndexMap(filter);
+            this.runStarts = null;
+            this.runOriginalStarts = null;
+        }
     }
-    
+
     /**
      * Constructor.
      * @param originalList
@@ -91,11 +184,110 @@ public class ImmutableReorderedList<E> extends AbstractList<E> implements Random
     {
         this.originalList = originalList;
         this.toOriginalMapping = toOriginalOrderMapping;
-        this.toReorderedMapping = SetUtilities.createFromOriginalToReorderedIndexMap(
-                originalList.size(),
-                toOriginalOrderMapping);
+        this.runStarts = null;
+        this.runOriginalStarts = null;
+        this.size = toOriginalOrderMapping.length;
+
+        boolean isAscending = true;
+        for(int i = 1; isAscending && i < toOriginalOrderMapping.length; i++)
+        {
+            isAscending = toOriginalOrderMapping[i - 1] < toOriginalOrderMapping[i];
+        }
+        this.ascending = isAscending;
+    }
+
+    /**
+     * Create a reordering of the given list. If the list is itself an
+     * {@link ImmutableReorderedList} the two mappings are combined into a
+     * single mapping onto its original list, so that stacking reorderings
+     * doesn't build up a chain of views. This means that
+     * {@link #getOriginalList()} and {@link #toOriginalIndex(int)} of the
+     * result refer to the innermost original list rather than to the given
+     * list
+     * @param <E>
+     *          the element type
+     * @param list
+     *          the list to reorder
+     * @param toListMapping
+     *          the mapping from the new list's indices to the given list's
+     *          indices
+     * @return
+     *          the reordered list
+     */
+    public static <E> ImmutableReorderedList<E> createFlattened(
+            List<E> list,
+            int[] toListMapping)
+    {
+        if(list instanceof ImmutableReorderedList)
+        {
+            ImmutableReorderedList<E> reorderedList = (ImmutableReorderedList<E>)list;
+            int[] toOriginalMapping = new int[toListMapping.length];
+            for(int i = 0; i < toListMapping.length; i++)
+            {
+                toOriginalMapping[i] = reorderedList.toOriginalIndex(toListMapping[i]);
+            }
+            return new ImmutableReorderedList<E>(
+                    reorderedList.originalList,
+                    toOriginalMapping);
+        }
+        else
+        {
+            return new ImmutableReorderedList<E>(list, toListMapping);
+        }
     }
-    
+
+    /**
+     * Create a subset of the given list. If the list is itself an
+     * {@link ImmutableReorderedList} the result is flattened as described
+     * in {@link #createFlattened(List, int[])}
+     * @param <E>
+     *          the element type
+     * @param list
+     *          the list to subset
+     * @param filter
+     *          the filter we use to subset data (true means we
+     *          filter that item out).
+     * @return
+     *          the subset
+     */
+    public static <E> ImmutableReorderedList<E> createFlattened(
+            List<E> list,
+            boolean[] filter)
+    {
+        if(list instanceof ImmutableReorderedList)
+        {
+            ImmutableReorderedList<E> reorderedList = (ImmutableReorderedList<E>)list;
+            if(reorderedList.ascending)
+            {
+                // an ascending subset of an ascending list is still a
+                // subset of the original so it can keep the compact form
+                int originalSize = reorderedList.originalList.size();
+                boolean[] originalFilter = new boolean[originalSize];
+                Arrays.fill(originalFilter, true);
+                for(int i = 0; i < filter.length; i++)
+                {
+                    if(!filter[i])
+                    {
+                        originalFilter[reorderedList.toOriginalIndex(i)] = false;
+                    }
+                }
+                return new ImmutableReorderedList<E>(
+                        reorderedList.originalList,
+                        originalFilter);
+            }
+            else
+            {
+                return createFlattened(
+                        list,
+                        SetUtilities.createFromSubsetToSupersetIndexMap(filter));
+            }
+        }
+        else
+        {
+            return new ImmutableReorderedList<E>(list, filter);
+        }
+    }
+
     /**
      * get the original list
      * @return the original
@@ -120,9 +312,9 @@ public class ImmutableReorderedList<E> extends AbstractList<E> implements Random
     @Override
     public int size()
     {
-        return this.toOriginalMapping.length;
+        return this.size;
     }
-    
+
     /**
      * convert a reordered index into an original index
      * @param reorderedIndex
@@ -132,19 +324,141 @@ public class ImmutableReorderedList<E> extends AbstractList<E> implements Random
      */
     public int toOriginalIndex(int reorderedIndex)
     {
-        return this.toOriginalMapping[reorderedIndex];
+        if(this.toOriginalMapping != null)
+        {
+            return this.toOriginalMapping[reorderedIndex];
+        }
+        else
+        {
+            if(reorderedIndex < 0 || reorderedIndex >= this.size)
+            {
+                throw new IndexOutOfBoundsException(
+                        "index: " + reorderedIndex + ", size: " + this.size);
+            }
+            int runIndex = floorSearch(
+                    this.runStarts,
+                    this.runStarts.length - 1,
+                    reorderedIndex);
+            return this.runOriginalStarts[runIndex] +
+                   reorderedIndex - this.runStarts[runIndex];
+        }
     }
-    
+
     /**
      * inverse of {@link #toOriginalIndex(int)}
      * @param originalIndex
      *          the original index
      * @return
-     *          the reordered index
+     *          the reordered index or -1 if the original element isn't in
+     *          this list
      */
     public int toReorderedIndex(int originalIndex)
     {
-        return this.toReorderedMapping[originalIndex];
+        if(originalIndex < 0 || originalIndex >= this.originalList.size())
+        {
+            throw new IndexOutOfBoundsException(
+                    "index: " + originalIndex +
+                    ", original size: " + this.originalList.size());
+        }
+
+        if(this.runStarts != null)
+        {
+            int runIndex = floorSearch(
+                    this.runOriginalStarts,
+                    this.runOriginalStarts.length,
+                    originalIndex);
+            if(runIndex < 0)
+            {
+                return -1;
+            }
+            int offset = originalIndex - this.runOriginalStarts[runIndex];
+            int runLength = this.runStarts[runIndex + 1] - this.runStarts[runIndex];
+            return offset < runLength ? this.runStarts[runIndex] + offset : -1;
+        }
+        else if(this.ascending)
+        {
+            int position = floorSearch(
+                    this.toOriginalMapping,
+                    this.toOriginalMapping.length,
+                    originalIndex);
+            return position >= 0 && this.toOriginalMapping[position] == originalIndex ?
+                   position :
+                   -1;
+        }
+        else
+        {
+            return this.lookUpInverse(originalIndex);
+        }
+    }
+
+    /**
+     * Look up an index in the inverse mapping, building it if it doesn't
+     * exist yet. Two threads may both build the mapping at the same time
+     * but they build the same thing so either one can win
+     * @param originalIndex
+     *          the original index
+     * @return
+     *          the reordered index or -1
+     */
+    private int lookUpInverse(int originalIndex)
+    {
+        int originalSize = this.originalList.size();
+        if((long)this.size * SPARSE_INVERSE_RATIO < originalSize)
+        {
+            IntIntMap inverse = this.sparseToReorderedMapping;
+            if(inverse == null)
+            {
+                inverse = new IntIntMap(this.size, -1);
+                for(int i = 0; i < this.size; i++)
+                {
+                    inverse.put(this.toOriginalMapping[i], i);
+                }
+                this.sparseToReorderedMapping = inverse;
+            }
+            return inverse.get(originalIndex);
+        }
+        else
+        {
+            int[] inverse = this.toReorderedMapping;
+            if(inverse == null)
+            {
+                inverse = SetUtilities.createFromOriginalToReorderedIndexMap(
+                        originalSize,
+                        this.toOriginalMapping);
+                this.toReorderedMapping = inverse;
+            }
+            return inverse[originalIndex];
+        }
+    }
+
+    /**
+     * Find the last position in the ascending values that is &lt;= the key
+     * @param values
+     *          the ascending values
+     * @param length
+     *          the number of values to search
+     * @param key
+     *          the key
+     * @return
+     *          the position or -1 if every value is bigger than the key
+     */
+    private static int floorSearch(int[] values, int length, int key)
+    {
+        int low = 0;
+        int high = length - 1;
+        while(low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            if(values[mid] <= key)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        return high;
     }
 
 }
@@ -24,8 +24,15 @@ import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import org.jax.util.Condition;
+import org.jax.util.concurrent.ExecutorUtilities;
+import org.jax.util.datastructure.primitive.DoubleArrayList;
+import org.jax.util.datastructure.primitive.IntArrayList;
+import org.jax.util.datastructure.primitive.LongArrayList;
+import org.jax.util.math.DoubleMatrix;
 
 /**
  * Utility functions for operating on sequences of data.
@@ -33,6 +40,17 @@ import org.jax.util.Condition;
  */
 public class SequenceUtilities
 {
+    /**
+     * the width and height of the blocks used to transpose matrices
+     */
+    private static final int TRANSPOSE_BLOCK_SIZE = 32;
+    
+    /**
+     * matrices with fewer cells than this per thread are transposed in a
+     * single task
+     */
+    private static final int MIN_PARALLEL_TRANSPOSE_CELLS = 1 << 16;
+    
     /**
      * A comparator that differentiates two short arrays
      */
@@ -327,9 +345,24 @@ public class SequenceUtilities
                 tMatrix[col] = (T[])instantiateGenericArray(
                         colType,
                         rows);
-                for(int row = 0; row < rows; row++)
+            }
+            
+            // copy a block at a time so that we aren't jumping to a new
+            // column array for every element we read
+            for(int rowBlock = 0; rowBlock < rows; rowBlock += TRANSPOSE_BLOCK_SIZE)
+            {
+                int rowBlockEnd = Math.min(rows, rowBlock + TRANSPOSE_BLOCK_SIZE);
+                for(int colBlock = 0; colBlock < cols; colBlock += TRANSPOSE_BLOCK_SIZE)
                 {
-                    tMatrix[col][row] = matrix[row][col];
+                    int colBlockEnd = Math.min(cols, colBlock + TRANSPOSE_BLOCK_SIZE);
+                    for(int row = rowBlock; row < rowBlockEnd; row++)
+                    {
+                        T[] currRow = matrix[row];
+                        for(int col = colBlock; col < colBlockEnd; col++)
+                        {
+                            tMatrix[col][row] = currRow[col];
+                        }
+                    }
                 }
             }
             
@@ -337,6 +370,517 @@ public class SequenceUtilities
         }
     }
     
+    /**
+     * transpose the given matrix. The copy is done in square blocks so that
+     * the reads and writes stay in cache
+     * @param matrix    the matrix to transpose
+     * @return          the transpose of the given matrix
+     */
+    public static double[][] transposeMatrix(double[][] matrix)
+    {
+        if(matrix == null)
+        {
+            return null;
+        }
+        else if(matrix.length == 0)
+        {
+            return matrix;
+        }
+        else
+        {
+            double[][] tMatrix = new double[matrix[0].length][matrix.length];
+            transposeBlocks(matrix, tMatrix, 0, tMatrix.length);
+            return tMatrix;
+        }
+    }
+    
+    /**
+     * transpose the given matrix using several threads. This gives the same
+     * result as {@link #transposeMatrix(double[][])}
+     * @param matrix        the matrix to transpose
+     * @param executor      the executor to run the work on
+     * @param parallelism   the number of pieces to divide the work into
+     *                      (typically the executor's thread count)
+     * @return              the transpose of the given matrix
+     * @throws InterruptedException
+     *                      if we're interrupted while waiting for the
+     *                      executor
+     */
+    public static double[][] parallelTransposeMatrix(
+            final double[][] matrix,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException
+    {
+        if(matrix == null)
+        {
+            return null;
+        }
+        else if(matrix.length == 0)
+        {
+            return matrix;
+        }
+        else
+        {
+            final double[][] tMatrix = new double[matrix[0].length][];
+            int[] chunkStarts = transposeChunkStarts(
+                    matrix.length,
+                    tMatrix.length,
+                    parallelism);
+            List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+            for(int i = 0; i < chunkStarts.length - 1; i++)
+            {
+                final int colStart = chunkStarts[i];
+                final int colEnd = chunkStarts[i + 1];
+                tasks.add(new Callable<Object>()
+                {
+                    public Object call()
+                    {
+                        for(int col = colStart; col < colEnd; col++)
+                        {
+                            tMatrix[col] = new double[matrix.length];
+                        }
+                        transposeBlocks(matrix, tMatrix, colStart, colEnd);
+                        return null;
+                    }
+                });
+            }
+            ExecutorUtilities.invokeAll(executor, tasks);
+            return tMatrix;
+        }
+    }
+    
+    /**
+     * transpose the given matrix. The copy is done in square blocks so that
+     * the reads and writes stay in cache
+     * @param matrix    the matrix to transpose
+     * @return          the transpose of the given matrix
+     */
+    public static int[][] transposeMatrix(int[][] matrix)
+    {
+        if(matrix == null)
+        {
+            return null;
+        }
+        else if(matrix.length == 0)
+        {
+            return matrix;
+        }
+        else
+        {
+            int[][] tMatrix = new int[matrix[0].length][matrix.length];
+            transposeBlocks(matrix, tMatrix, 0, tMatrix.length);
+            return tMatrix;
+        }
+    }
+    
+    /**
+     * transpose the given matrix using several threads. This gives the same
+     * result as {@link #transposeMatrix(int[][])}
+     * @param matrix        the matrix to transpose
+     * @param executor      the executor to run the work on
+     * @param parallelism   the number of pieces to divide the work into
+     *                      (typically the executor's thread count)
+     * @return              the transpose of the given matrix
+     * @throws InterruptedException
+     *                      if we're interrupted while waiting for the
+     *                      executor
+     */
+    public static int[][] parallelTransposeMatrix(
+            final int[][] matrix,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException
+    {
+        if(matrix == null)
+        {
+            return null;
+        }
+        else if(matrix.length == 0)
+        {
+            return matrix;
+        }
+        else
+        {
+            final int[][] tMatrix = new int[matrix[0].length][];
+            int[] chunkStarts = transposeChunkStarts(
+                    matrix.length,
+                    tMatrix.length,
+                    parallelism);
+            List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+            for(int i = 0; i < chunkStarts.length - 1; i++)
+            {
+                final int colStart = chunkStarts[i];
+                final int colEnd = chunkStarts[i + 1];
+                tasks.add(new Callable<Object>()
+                {
+                    public Object call()
+                    {
+                        for(int col = colStart; col < colEnd; col++)
+                        {
+                            tMatrix[col] = new int[matrix.length];
+                        }
+                        transposeBlocks(matrix, tMatrix, colStart, colEnd);
+                        return null;
+                    }
+                });
+            }
+            ExecutorUtilities.invokeAll(executor, tasks);
+            return tMatrix;
+        }
+    }
+    
+    /**
+     * transpose a matrix which is stored in a flat row major array. The
+     * copy is done in square blocks so that the reads and writes stay in
+     * cache
+     * @param matrix        the row major matrix to transpose
+     * @param rowCount      the number of rows in the matrix
+     * @param columnCount   the number of columns in the matrix
+     * @return              the transpose in row major order (so it has
+     *                      columnCount rows and rowCount columns)
+     */
+    public static double[] transposeMatrix(
+            double[] matrix,
+            int rowCount,
+            int columnCount)
+    {
+        checkFlatMatrix(matrix.length, rowCount, columnCount);
+        double[] tMatrix = new double[matrix.length];
+        transposeBlocks(matrix, tMatrix, rowCount, columnCount, 0, columnCount);
+        return tMatrix;
+    }
+    
+    /**
+     * transpose a matrix which is stored in a flat row major array using
+     * several threads. This gives the same result as
+     * {@link #transposeMatrix(double[], int, int)}
+     * @param matrix        the row major matrix to transpose
+     * @param rowCount      the number of rows in the matrix
+     * @param columnCount   the number of columns in the matrix
+     * @param executor      the executor to run the work on
+     * @param parallelism   the number of pieces to divide the work into
+     *                      (typically the executor's thread count)
+     * @return              the transpose in row major order
+     * @throws InterruptedException
+     *                      if we're interrupted while waiting for the
+     *                      executor
+     */
+    public static double[] parallelTransposeMatrix(
+            final double[] matrix,
+            final int rowCount,
+            final int columnCount,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException
+    {
+        checkFlatMatrix(matrix.length, rowCount, columnCount);
+        final double[] tMatrix = new double[matrix.length];
+        int[] chunkStarts = transposeChunkStarts(rowCount, columnCount, parallelism);
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for(int i = 0; i < chunkStarts.length - 1; i++)
+        {
+            final int colStart = chunkStarts[i];
+            final int colEnd = chunkStarts[i + 1];
+            tasks.add(new Callable<Object>()
+            {
+                public Object call()
+                {
+                    transposeBlocks(
+                            matrix,
+                            tMatrix,
+                            rowCount,
+                            columnCount,
+                            colStart,
+                            colEnd);
+                    return null;
+                }
+            });
+        }
+        ExecutorUtilities.invokeAll(executor, tasks);
+        return tMatrix;
+    }
+    
+    /**
+     * transpose a matrix of ints which is stored in a flat row major array.
+     * The copy is done in square blocks so that the reads and writes stay in
+     * cache
+     * @param matrix        the row major matrix to transpose
+     * @param rowCount      the number of rows in the matrix
+     * @param columnCount   the number of columns in the matrix
+     * @return              the transpose in row major order (so it has
+     *                      columnCount rows and rowCount columns)
+     */
+    public static int[] transposeMatrix(
+            int[] matrix,
+            int rowCount,
+            int columnCount)
+    {
+        checkFlatMatrix(matrix.length, rowCount, columnCount);
+        int[] tMatrix = new int[matrix.length];
+        transposeBlocks(matrix, tMatrix, rowCount, columnCount, 0, columnCount);
+        return tMatrix;
+    }
+    
+    /**
+     * transpose a matrix of ints which is stored in a flat row major array
+     * using several threads. This gives the same result as
+     * {@link #transposeMatrix(int[], int, int)}
+     * @param matrix        the row major matrix to transpose
+     * @param rowCount      the number of rows in the matrix
+     * @param columnCount   the number of columns in the matrix
+     * @param executor      the executor to run the work on
+     * @param parallelism   the number of pieces to divide the work into
+     *                      (typically the executor's thread count)
+     * @return              the transpose in row major order
+     * @throws InterruptedException
+     *                      if we're interrupted while waiting for the
+     *                      executor
+     */
+    public static int[] parallelTransposeMatrix(
+            final int[] matrix,
+            final int rowCount,
+            final int columnCount,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException
+    {
+        checkFlatMatrix(matrix.length, rowCount, columnCount);
+        final int[] tMatrix = new int[matrix.length];
+        int[] chunkStarts = transposeChunkStarts(rowCount, columnCount, parallelism);
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for(int i = 0; i < chunkStarts.length - 1; i++)
+        {
+            final int colStart = chunkStarts[i];
+            final int colEnd = chunkStarts[i + 1];
+            tasks.add(new Callable<Object>()
+            {
+                public Object call()
+                {
+                    transposeBlocks(
+                            matrix,
+                            tMatrix,
+                            rowCount,
+                            columnCount,
+                            colStart,
+                            colEnd);
+                    return null;
+                }
+            });
+        }
+        ExecutorUtilities.invokeAll(executor, tasks);
+        return tMatrix;
+    }
+    
+    /**
+     * Copy the given columns of a matrix into the rows of its transpose one
+     * block at a time
+     * @param matrix    the matrix
+     * @param tMatrix   the transpose (rows colStart to colEnd must be
+     *                  allocated)
+     * @param colStart  the 1st column to copy
+     * @param colEnd    the end of the columns to copy (exclusive)
+     */
+    private static void transposeBlocks(
+            double[][] matrix,
+            double[][] tMatrix,
+            int colStart,
+            int colEnd)
+    {
+        int rows = matrix.length;
+        for(int rowBlock = 0; rowBlock < rows; rowBlock += TRANSPOSE_BLOCK_SIZE)
+        {
+            int rowBlockEnd = Math.min(rows, rowBlock + TRANSPOSE_BLOCK_SIZE);
+            for(int colBlock = colStart; colBlock < colEnd; colBlock += TRANSPOSE_BLOCK_SIZE)
+            {
+                int colBlockEnd = Math.min(colEnd, colBlock + TRANSPOSE_BLOCK_SIZE);
+                for(int row = rowBlock; row < rowBlockEnd; row++)
+                {
+                    double[] currRow = matrix[row];
+                    for(int col = colBlock; col < colBlockEnd; col++)
+                    {
+                        tMatrix[col][row] = currRow[col];
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Copy the given columns of a flat row major matrix into the rows of
+     * its transpose one block at a time
+     * @param matrix        the matrix
+     * @param tMatrix       the transpose
+     * @param rowCount      the row count of the matrix
+     * @param columnCount   the column count of the matrix
+     * @param colStart      the 1st column to copy
+     * @param colEnd        the end of the columns to copy (exclusive)
+     */
+    private static void transposeBlocks(
+            double[] matrix,
+            double[] tMatrix,
+            int rowCount,
+            int columnCount,
+            int colStart,
+            int colEnd)
+    {
+        for(int rowBlock = 0; rowBlock < rowCount; rowBlock += TRANSPOSE_BLOCK_SIZE)
+        {
+            int rowBlockEnd = Math.min(rowCount, rowBlock + TRANSPOSE_BLOCK_SIZE);
+            for(int colBlock = colStart; colBlock < colEnd; colBlock += TRANSPOSE_BLOCK_SIZE)
+            {
+                int colBlockEnd = Math.min(colEnd, colBlock + TRANSPOSE_BLOCK_SIZE);
+                for(int row = rowBlock; row < rowBlockEnd; row++)
+                {
+                    for(int col = colBlock, i = row * columnCount + colBlock;
+                        col < colBlockEnd;
+                        col++, i++)
+                    {
+                        tMatrix[col * rowCount + row] = matrix[i];
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Copy the given columns of a matrix into the rows of its transpose one
+     * block at a time
+     * @param matrix    the matrix
+     * @param tMatrix   the transpose (rows colStart to colEnd must be
+     *                  allocated)
+     * @param colStart  the 1st column to copy
+     * @param colEnd    the end of the columns to copy (exclusive)
+     */
+    private static void transposeBlocks(
+            int[][] matrix,
+            int[][] tMatrix,
+            int colStart,
+            int colEnd)
+    {
+        int rows = matrix.length;
+        for(int rowBlock = 0; rowBlock < rows; rowBlock += TRANSPOSE_BLOCK_SIZE)
+        {
+            int rowBlockEnd = Math.min(rows, rowBlock + TRANSPOSE_BLOCK_SIZE);
+            for(int colBlock = colStart; colBlock < colEnd; colBlock += TRANSPOSE_BLOCK_SIZE)
+            {
+                int colBlockEnd = Math.min(colEnd, colBlock + TRANSPOSE_BLOCK_SIZE);
+                for(int row = rowBlock; row < rowBlockEnd; row++)
+                {
+                    int[] currRow = matrix[row];
+                    for(int col = colBlock; col < colBlockEnd; col++)
+                    {
+                        tMatrix[col][row] = currRow[col];
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Copy the given columns of a flat row major matrix into the rows of
+     * its transpose one block at a time
+     * @param matrix        the matrix
+     * @param tMatrix       the transpose
+     * @param rowCount      the row count of the matrix
+     * @param columnCount   the column count of the matrix
+     * @param colStart      the 1st column to copy
+     * @param colEnd        the end of the columns to copy (exclusive)
+     */
+    private static void transposeBlocks(
+            int[] matrix,
+            int[] tMatrix,
+            int rowCount,
+            int columnCount,
+            int colStart,
+            int colEnd)
+    {
+        for(int rowBlock = 0; rowBlock < rowCount; rowBlock += TRANSPOSE_BLOCK_SIZE)
+        {
+            int rowBlockEnd = Math.min(rowCount, rowBlock + TRANSPOSE_BLOCK_SIZE);
+            for(int colBlock = colStart; colBlock < colEnd; colBlock += TRANSPOSE_BLOCK_SIZE)
+            {
+                int colBlockEnd = Math.min(colEnd, colBlock + TRANSPOSE_BLOCK_SIZE);
+                for(int row = rowBlock; row < rowBlockEnd; row++)
+                {
+                    for(int col = colBlock, i = row * columnCount + colBlock;
+                        col < colBlockEnd;
+                        col++, i++)
+                    {
+                        tMatrix[col * rowCount + row] = matrix[i];
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Divide the columns of a matrix into block aligned chunks for a
+     * parallel transpose. Small matrices get a single chunk
+     * @param rowCount      the row count
+     * @param columnCount   the column count
+     * @param parallelism   the requested parallelism
+     * @return              the chunk boundaries (one more than the chunk
+     *                      count)
+     */
+    private static int[] transposeChunkStarts(
+            int rowCount,
+            int columnCount,
+            int parallelism)
+    {
+        int blockCount = (columnCount + TRANSPOSE_BLOCK_SIZE - 1) / TRANSPOSE_BLOCK_SIZE;
+        long cellCount = (long)rowCount * columnCount;
+        int chunkCount = (int)Math.max(1L, Math.min(
+                Math.min(parallelism, blockCount),
+                cellCount / MIN_PARALLEL_TRANSPOSE_CELLS));
+        int[] chunkStarts = new int[chunkCount + 1];
+        for(int i = 0; i < chunkCount; i++)
+        {
+            chunkStarts[i] = (int)((long)blockCount * i / chunkCount) * TRANSPOSE_BLOCK_SIZE;
+        }
+        chunkStarts[chunkCount] = columnCount;
+        return chunkStarts;
+    }
+    
+    /**
+     * Make sure that the flat matrix length agrees with its dimensions
+     * @param length        the array length
+     * @param rowCount      the row count
+     * @param columnCount   the column count
+     */
+    private static void checkFlatMatrix(int length, int rowCount, int columnCount)
+    {
+        if(rowCount < 0 || columnCount < 0 || (long)rowCount * columnCount != length)
+        {
+            throw new IllegalArgumentException(
+                    "a " + rowCount + "x" + columnCount +
+                    " matrix can't be stored in an array of length " + length);
+        }
+    }
+    
+    /**
+     * transpose the given off-heap matrix into a new direct matrix. See
+     * {@link DoubleMatrix#transposeInto(DoubleMatrix)} for transposing into
+     * a memory mapped matrix
+     * @param matrix    the matrix to transpose
+     * @return          the transpose of the given matrix
+     */
+    public static DoubleMatrix transposeMatrix(DoubleMatrix matrix)
+    {
+        if(matrix == null)
+        {
+            return null;
+        }
+        else
+        {
+            DoubleMatrix tMatrix = DoubleMatrix.allocateDirect(
+                    matrix.getColumnCount(),
+                    matrix.getRowCount());
+            matrix.transposeInto(tMatrix);
+            return tMatrix;
+        }
+    }
+    
     /**
      * A slightly more convenient way to create generic arrays
      * @param <T>
@@ -555,6 +1099,23 @@ public class SequenceUtilities
         return doubleList;
     }
 
+    /**
+     * Convert the double list into a primitive list
+     * @param doubleList
+     *          the double list
+     * @return
+     *          the primitive list
+     */
+    public static DoubleArrayList toDoubleArrayList(List<Double> doubleList)
+    {
+        DoubleArrayList doubleArrayList = new DoubleArrayList(doubleList.size());
+        for(Double currDouble: doubleList)
+        {
+            doubleArrayList.add(currDouble);
+        }
+        return doubleArrayList;
+    }
+
     /**
      * Convert the long list into a primitive array
      * @param longList
@@ -571,6 +1132,23 @@ public class SequenceUtilities
         }
         return longArray;
     }
+
+    /**
+     * Convert the long list into a primitive list
+     * @param longList
+     *          the long list
+     * @return
+     *          the primitive list
+     */
+    public static LongArrayList toLongArrayList(List<Long> longList)
+    {
+        LongArrayList longArrayList = new LongArrayList(longList.size());
+        for(Long currLong: longList)
+        {
+            longArrayList.add(currLong);
+        }
+        return longArrayList;
+    }
     
     /**
      * Convert the integer list into a primitive array
@@ -606,6 +1184,23 @@ public class SequenceUtilities
         return integerList;
     }
 
+    /**
+     * Convert the integer list into a primitive list
+     * @param intList
+     *          the integer list
+     * @return
+     *          the primitive list
+     */
+    public static IntArrayList toIntArrayList(List<Integer> intList)
+    {
+        IntArrayList intArrayList = new IntArrayList(intList.size());
+        for(Integer currInt: intList)
+        {
+            intArrayList.add(currInt);
+        }
+        return intArrayList;
+    }
+
     /**
      * Convert the short list into a primitive array
      * @param shortList
@@ -20,7 +20,13 @@ package org.jax.util.datastructure;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jax.util.datastructure.primitive.IntHashSet;
 
 /**
  * Utility functions for sets
@@ -33,6 +39,12 @@ public class SetUtilities
      */
     private static final BitSet EMPTY_BIT_SET = new BitSet(0);
     
+    /**
+     * When one ordered array is more than this many times larger than
+     * another we gallop through it instead of merging
+     */
+    private static final int GALLOP_SIZE_RATIO = 16;
+    
     /**
      * A bit set comparator that will compare the bit sets as if they are
      * integer values
@@ -75,6 +87,22 @@ public class SetUtilities
             }
         };
     
+    /**
+     * A comparator that orders compressed bit sets in the same way that
+     * {@link #BIT_SET_COMPARATOR} orders bit sets
+     */
+    public static final Comparator<CompressedBitSet> COMPRESSED_BIT_SET_COMPARATOR =
+        new Comparator<CompressedBitSet>()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public int compare(CompressedBitSet bitSet1, CompressedBitSet bitSet2)
+            {
+                return bitSet1.compareBinaryValue(bitSet2);
+            }
+        };
+    
     /**
      * Private constructor. all of the functionality is in static methods
      */
@@ -94,21 +122,30 @@ public class SetUtilities
     {
         int[] setBitIndices = new int[bitSet.cardinality()];
         int currSetBitIndex = 0;
-        int currBitIndex = 0;
-        while(currSetBitIndex < setBitIndices.length)
+        for(int currBitIndex = bitSet.nextSetBit(0);
+            currBitIndex >= 0;
+            currBitIndex = bitSet.nextSetBit(currBitIndex + 1))
         {
-            if(bitSet.get(currBitIndex))
-            {
-                setBitIndices[currSetBitIndex] = currBitIndex;
-                currSetBitIndex++;
-            }
-            
-            currBitIndex++;
+            setBitIndices[currSetBitIndex] = currBitIndex;
+            currSetBitIndex++;
         }
         
         return setBitIndices;
     }
     
+    /**
+     * Convert a compressed bit representation of a set to its index
+     * representation
+     * @param bitSet
+     *          the bit set representations
+     * @return
+     *          the index array representation
+     */
+    public static int[] getSetBitIndices(CompressedBitSet bitSet)
+    {
+        return bitSet.toArray();
+    }
+    
     /**
      * Create an index map for: subset->superset mapping
      * @param filter
@@ -185,47 +222,10 @@ public class SetUtilities
             T[] potentialOrderedSubset,
             T[] orderedSuperset)
     {
-        if(potentialOrderedSubset.length > orderedSuperset.length)
-        {
-            return false;
-        }
-        
-        int supersetCursor = 0;
-        int subsetCursor = 0;
-        
-        while(supersetCursor < orderedSuperset.length && subsetCursor < potentialOrderedSubset.length)
-        {
-            int currComparison =
-                orderedSuperset[supersetCursor].compareTo(potentialOrderedSubset[subsetCursor]);
-            
-            if(supersetCursor >= 1)
-            {
-                assert orderedSuperset[supersetCursor].compareTo(
-                       orderedSuperset[supersetCursor - 1]) >= 0;
-            }
-            
-            if(subsetCursor >= 1)
-            {
-                assert potentialOrderedSubset[subsetCursor].compareTo(
-                       orderedSuperset[subsetCursor - 1]) >= 0;
-            }
-            
-            if(currComparison == 0)
-            {
-                supersetCursor++;
-                subsetCursor++;
-            }
-            else if(currComparison < 0)
-            {
-                supersetCursor++;
-            }
-            else
-            {
-                return false;
-            }
-        }
-        
-        return subsetCursor == potentialOrderedSubset.length;
+        return isOrderedSubset(
+                potentialOrderedSubset,
+                orderedSuperset,
+                new ComparableComparator<T>());
     }
 
     /**
@@ -248,44 +248,10 @@ public class SetUtilities
             T[] orderedSet1,
             T[] orderedSet2)
     {
-        ArrayList<T> intersectionList =
-            new ArrayList<T>(Math.min(orderedSet1.length, orderedSet2.length));
-        
-        int cursor1 = 0;
-        int cursor2 = 0;
-        
-        while(cursor1 < orderedSet1.length && cursor2 < orderedSet2.length)
-        {
-            int currComparison =
-                orderedSet1[cursor1].compareTo(orderedSet2[cursor2]);
-            if(currComparison == 0)
-            {
-                // they're equal, so add to the intersection and move the
-                // cursors together
-                intersectionList.add(orderedSet1[cursor1]);
-                cursor1++;
-                cursor2++;
-            }
-            else if(currComparison < 0)
-            {
-                // cursor 1 is less, increment it
-                cursor1++;
-            }
-            else
-            {
-                // cursor 2 is less, increment it
-                cursor2++;
-            }
-        }
-        
-        T[] intersectionArray = SequenceUtilities.<T>instantiateGenericArray(
-                orderedSet1.getClass().getComponentType(),
-                intersectionList.size());
-        
-        intersectionArray = intersectionList.toArray(
-                intersectionArray);
-        
-        return intersectionArray;
+        return intersectOrdered(
+                orderedSet1,
+                orderedSet2,
+                new ComparableComparator<T>());
     }
 
     /**
@@ -307,6 +273,32 @@ public class SetUtilities
         return sb.toString();
     }
     
+    /**
+     * Convert the compressed bit set to its string representation
+     * @param bitSet
+     *          the bit set
+     * @return
+     *          the string representation (ones and zeros)
+     */
+    public static String bitSetToBinaryString(CompressedBitSet bitSet)
+    {
+        int length = bitSet.length();
+        StringBuffer sb = new StringBuffer(length);
+        
+        int prevSetBit = -1;
+        for(int i = bitSet.nextSetBit(0); i >= 0; i = bitSet.nextSetBit(i + 1))
+        {
+            for(int j = prevSetBit + 1; j < i; j++)
+            {
+                sb.append('0');
+            }
+            sb.append('1');
+            prevSetBit = i;
+        }
+        
+        return sb.toString();
+    }
+    
     /**
      * Convert the string representation to a bit set
      * @param stringRepresentation
@@ -346,6 +338,20 @@ public class SetUtilities
         return setToTest.equals(EMPTY_BIT_SET);
     }
     
+    /**
+     * Test if the given set is empty
+     * @param setToTest
+     *          the set we're testing to see if it's empty
+     * @return
+     *          true iff its empty
+     * @throws NullPointerException
+     *          if the given set to test is null
+     */
+    public static boolean isEmptySet(CompressedBitSet setToTest) throws NullPointerException
+    {
+        return setToTest.isEmpty();
+    }
+    
     /**
      * Determine if the 1st argument is a subset of the 2nd. Since this
      * isn't a strict-subset test two equal sets will return true
@@ -365,4 +371,904 @@ public class SetUtilities
         
         return intersection.equals(subsetToTest);
     }
+    
+    /**
+     * Determine if the 1st argument is a subset of the 2nd. Since this
+     * isn't a strict-subset test two equal sets will return true
+     * @param subsetToTest
+     *          the candidate subset
+     * @param supersetToTest
+     *          the candidate superset
+     * @return
+     *          true iff the subset relationship holds
+     */
+    public static boolean isSubset(
+            CompressedBitSet subsetToTest,
+            CompressedBitSet supersetToTest)
+    {
+        return subsetToTest.isSubsetOf(supersetToTest);
+    }
+    
+    /**
+     * Intersect two ordered int arrays. Arrays of similar size are merged
+     * and a small array is galloped (exponentially searched) through a
+     * much larger one, so intersecting a handful of IDs with a long list
+     * only touches a few elements of the long list.
+     * A value repeated in both arrays is repeated the smaller number of
+     * times in the result
+     * @param orderedSet1
+     *          the 1st ascending array
+     * @param orderedSet2
+     *          the 2nd ascending array
+     * @return
+     *          the ascending intersection
+     */
+    public static int[] intersectOrdered(int[] orderedSet1, int[] orderedSet2)
+    {
+        int[] smallSet = orderedSet1;
+        int[] largeSet = orderedSet2;
+        if(smallSet.length > largeSet.length)
+        {
+            smallSet = orderedSet2;
+            largeSet = orderedSet1;
+        }
+        
+        int[] buffer = new int[smallSet.length];
+        int count = 0;
+        if(isSkewed(smallSet.length, largeSet.length))
+        {
+            int largeCursor = 0;
+            for(int i = 0; i < smallSet.length && largeCursor < largeSet.length; i++)
+            {
+                int value = smallSet[i];
+                largeCursor = gallop(largeSet, largeCursor, value);
+                if(largeCursor < largeSet.length && largeSet[largeCursor] == value)
+                {
+                    buffer[count] = value;
+                    count++;
+                    largeCursor++;
+                }
+            }
+        }
+        else
+        {
+            // the merge steps are written without data dependent branches
+            // so that the loop doesn't stall on mispredictions
+            int smallCursor = 0;
+            int largeCursor = 0;
+            while(smallCursor < smallSet.length && largeCursor < largeSet.length)
+            {
+                int smallValue = smallSet[smallCursor];
+                int largeValue = largeSet[largeCursor];
+                buffer[count] = smallValue;
+                count += smallValue == largeValue ? 1 : 0;
+                smallCursor += smallValue <= largeValue ? 1 : 0;
+                largeCursor += smallValue >= largeValue ? 1 : 0;
+            }
+        }
+        
+        return trim(buffer, count);
+    }
+    
+    /**
+     * Intersect any number of ordered int arrays. The arrays are intersected
+     * smallest first, so the running intersection is kept as small as
+     * possible and is galloped through the larger arrays. The work stops as
+     * soon as the intersection is empty
+     * @param orderedSets
+     *          the ascending arrays
+     * @return
+     *          the ascending intersection
+     * @throws IllegalArgumentException
+     *          if there are no arrays
+     */
+    public static int[] intersectAllOrdered(int[]... orderedSets)
+    throws IllegalArgumentException
+    {
+        if(orderedSets.length == 0)
+        {
+            throw new IllegalArgumentException(
+                    "can't intersect an empty list of sets");
+        }
+        
+        int[][] sortedSets = orderedSets.clone();
+        Arrays.sort(sortedSets, new Comparator<int[]>()
+        {
+            public int compare(int[] set1, int[] set2)
+            {
+                return set1.length - set2.length;
+            }
+        });
+        
+        int[] intersection = sortedSets[0].clone();
+        for(int i = 1; i < sortedSets.length && intersection.length > 0; i++)
+        {
+            intersection = intersectOrdered(intersection, sortedSets[i]);
+        }
+        
+        return intersection;
+    }
+    
+    /**
+     * Union two ordered int arrays. When one array is much smaller than the
+     * other the runs of the larger array between the small array's values
+     * are block copied. A value repeated in both arrays is repeated the
+     * larger number of times in the result
+     * @param orderedSet1
+     *          the 1st ascending array
+     * @param orderedSet2
+     *          the 2nd ascending array
+     * @return
+     *          the ascending union
+     */
+    public static int[] unionOrdered(int[] orderedSet1, int[] orderedSet2)
+    {
+        int[] smallSet = orderedSet1;
+        int[] largeSet = orderedSet2;
+        if(smallSet.length > largeSet.length)
+        {
+            smallSet = orderedSet2;
+            largeSet = orderedSet1;
+        }
+        
+        int[] buffer = new int[smallSet.length + largeSet.length];
+        int count = 0;
+        int smallCursor = 0;
+        int largeCursor = 0;
+        if(isSkewed(smallSet.length, largeSet.length))
+        {
+            for(; smallCursor < smallSet.length; smallCursor++)
+            {
+                int value = smallSet[smallCursor];
+                int runEnd = gallop(largeSet, largeCursor, value);
+                System.arraycopy(largeSet, largeCursor, buffer, count, runEnd - largeCursor);
+                count += runEnd - largeCursor;
+                largeCursor = runEnd;
+                
+                buffer[count] = value;
+                count++;
+                if(largeCursor < largeSet.length && largeSet[largeCursor] == value)
+                {
+                    largeCursor++;
+                }
+            }
+        }
+        else
+        {
+            while(smallCursor < smallSet.length && largeCursor < largeSet.length)
+            {
+                int smallValue = smallSet[smallCursor];
+                int largeValue = largeSet[largeCursor];
+                buffer[count] = smallValue <= largeValue ? smallValue : largeValue;
+                count++;
+                smallCursor += smallValue <= largeValue ? 1 : 0;
+                largeCursor += smallValue >= largeValue ? 1 : 0;
+            }
+        }
+        
+        // at most one of these copies anything
+        System.arraycopy(smallSet, smallCursor, buffer, count, smallSet.length - smallCursor);
+        count += smallSet.length - smallCursor;
+        System.arraycopy(largeSet, largeCursor, buffer, count, largeSet.length - largeCursor);
+        count += largeSet.length - largeCursor;
+        
+        return trim(buffer, count);
+    }
+    
+    /**
+     * Get the values of the 1st ordered int array that aren't in the 2nd.
+     * Galloping is used when the sizes are skewed in either direction. Each
+     * occurrence of a value in the 2nd array removes one occurrence from
+     * the 1st
+     * @param orderedSet
+     *          the ascending array to take values from
+     * @param orderedSetToRemove
+     *          the ascending array of values to remove
+     * @return
+     *          the ascending difference
+     */
+    public static int[] differenceOrdered(int[] orderedSet, int[] orderedSetToRemove)
+    {
+        int[] buffer = new int[orderedSet.length];
+        int count = 0;
+        int cursor = 0;
+        if(isSkewed(orderedSet.length, orderedSetToRemove.length))
+        {
+            // gallop through the values to remove looking for each value
+            int removeCursor = 0;
+            for(; cursor < orderedSet.length && removeCursor < orderedSetToRemove.length; cursor++)
+            {
+                int value = orderedSet[cursor];
+                removeCursor = gallop(orderedSetToRemove, removeCursor, value);
+                if(removeCursor < orderedSetToRemove.length &&
+                   orderedSetToRemove[removeCursor] == value)
+                {
+                    removeCursor++;
+                }
+                else
+                {
+                    buffer[count] = value;
+                    count++;
+                }
+            }
+        }
+        else if(isSkewed(orderedSetToRemove.length, orderedSet.length))
+        {
+            // gallop through the values looking for each value to remove
+            // and block copy the runs in between
+            for(int i = 0; i < orderedSetToRemove.length && cursor < orderedSet.length; i++)
+            {
+                int valueToRemove = orderedSetToRemove[i];
+                int runEnd = gallop(orderedSet, cursor, valueToRemove);
+                System.arraycopy(orderedSet, cursor, buffer, count, runEnd - cursor);
+                count += runEnd - cursor;
+                cursor = runEnd;
+                if(cursor < orderedSet.length && orderedSet[cursor] == valueToRemove)
+                {
+                    cursor++;
+                }
+            }
+        }
+        else
+        {
+            int removeCursor = 0;
+            while(cursor < orderedSet.length && removeCursor < orderedSetToRemove.length)
+            {
+                int value = orderedSet[cursor];
+                int valueToRemove = orderedSetToRemove[removeCursor];
+                buffer[count] = value;
+                count += value < valueToRemove ? 1 : 0;
+                cursor += value <= valueToRemove ? 1 : 0;
+                removeCursor += value >= valueToRemove ? 1 : 0;
+            }
+        }
+        
+        System.arraycopy(orderedSet, cursor, buffer, count, orderedSet.length - cursor);
+        count += orderedSet.length - cursor;
+        
+        return trim(buffer, count);
+    }
+    
+    /**
+     * Determine if the 1st ordered int array is a subset of the 2nd by
+     * galloping through the 2nd array
+     * @param potentialOrderedSubset
+     *          the ascending array that we're testing as a subset
+     * @param orderedSuperset
+     *          the ascending array that we're testing as a superset
+     * @return
+     *          true iff the subset relationship holds
+     */
+    public static boolean isOrderedSubset(
+            int[] potentialOrderedSubset,
+            int[] orderedSuperset)
+    {
+        if(potentialOrderedSubset.length > orderedSuperset.length)
+        {
+            return false;
+        }
+        
+        int supersetCursor = 0;
+        for(int value: potentialOrderedSubset)
+        {
+            supersetCursor = gallop(orderedSuperset, supersetCursor, value);
+            if(supersetCursor == orderedSuperset.length ||
+               orderedSuperset[supersetCursor] != value)
+            {
+                return false;
+            }
+            supersetCursor++;
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Intersect two int arrays that aren't ordered using a hash set of the
+     * smaller array
+     * @param set1
+     *          the 1st array in any order
+     * @param set2
+     *          the 2nd array in any order
+     * @return
+     *          the distinct values that are in both arrays in the order
+     *          that they first appear in the 1st array
+     */
+    public static int[] intersectUnordered(int[] set1, int[] set2)
+    {
+        IntHashSet matches;
+        if(set1.length <= set2.length)
+        {
+            IntHashSet candidates = new IntHashSet(set1);
+            matches = new IntHashSet();
+            for(int value: set2)
+            {
+                if(candidates.contains(value))
+                {
+                    matches.add(value);
+                }
+            }
+        }
+        else
+        {
+            matches = new IntHashSet(set2);
+        }
+        
+        // removing each match as we hit it drops any repeats
+        int[] buffer = new int[Math.min(set1.length, set2.length)];
+        int count = 0;
+        for(int i = 0; i < set1.length && count < buffer.length; i++)
+        {
+            int value = set1[i];
+            if(matches.remove(value))
+            {
+                buffer[count] = value;
+                count++;
+            }
+        }
+        
+        return trim(buffer, count);
+    }
+    
+    /**
+     * Intersect two ordered arrays choosing between a merge and galloping
+     * like {@link #intersectOrdered(int[], int[])}. When elements compare
+     * as equal the element from the 1st array is used
+     * @param <T>
+     *          the element type
+     * @param orderedSet1
+     *          the 1st array ordered by the comparator
+     * @param orderedSet2
+     *          the 2nd array ordered by the comparator
+     * @param comparator
+     *          the comparator
+     * @return
+     *          the ordered intersection which has the same array type as the
+     *          1st array
+     */
+    public static <T> T[] intersectOrdered(
+            T[] orderedSet1,
+            T[] orderedSet2,
+            Comparator<? super T> comparator)
+    {
+        boolean firstIsSmall = orderedSet1.length <= orderedSet2.length;
+        T[] smallSet = firstIsSmall ? orderedSet1 : orderedSet2;
+        T[] largeSet = firstIsSmall ? orderedSet2 : orderedSet1;
+        
+        T[] buffer = SequenceUtilities.<T>instantiateGenericArray(
+                orderedSet1.getClass().getComponentType(),
+                smallSet.length);
+        int count = 0;
+        if(isSkewed(smallSet.length, largeSet.length))
+        {
+            int largeCursor = 0;
+            for(int i = 0; i < smallSet.length && largeCursor < largeSet.length; i++)
+            {
+                T element = smallSet[i];
+                largeCursor = gallop(largeSet, largeCursor, element, comparator);
+                if(largeCursor < largeSet.length &&
+                   comparator.compare(largeSet[largeCursor], element) == 0)
+                {
+                    buffer[count] = firstIsSmall ? element : largeSet[largeCursor];
+                    count++;
+                    largeCursor++;
+                }
+            }
+        }
+        else
+        {
+            int cursor1 = 0;
+            int cursor2 = 0;
+            while(cursor1 < orderedSet1.length && cursor2 < orderedSet2.length)
+            {
+                int comparison = comparator.compare(orderedSet1[cursor1], orderedSet2[cursor2]);
+                if(comparison == 0)
+                {
+                    buffer[count] = orderedSet1[cursor1];
+                    count++;
+                    cursor1++;
+                    cursor2++;
+                }
+                else if(comparison < 0)
+                {
+                    cursor1++;
+                }
+                else
+                {
+                    cursor2++;
+                }
+            }
+        }
+        
+        return trim(buffer, count);
+    }
+    
+    /**
+     * Intersect any number of ordered arrays smallest first like
+     * {@link #intersectAllOrdered(int[][])}
+     * @param <T>
+     *          the element type
+     * @param orderedSets
+     *          the arrays ordered by the comparator
+     * @param comparator
+     *          the comparator
+     * @return
+     *          the ordered intersection which has the same array type as the
+     *          smallest array
+     * @throws IllegalArgumentException
+     *          if there are no arrays
+     */
+    public static <T> T[] intersectAllOrdered(
+            List<T[]> orderedSets,
+            Comparator<? super T> comparator)
+    throws IllegalArgumentException
+    {
+        if(orderedSets.isEmpty())
+        {
+            throw new IllegalArgumentException(
+                    "can't intersect an empty list of sets");
+        }
+        
+        List<T[]> sortedSets = new ArrayList<T[]>(orderedSets);
+        Collections.sort(sortedSets, new Comparator<T[]>()
+        {
+            public int compare(T[] set1, T[] set2)
+            {
+                return set1.length - set2.length;
+            }
+        });
+        
+        T[] intersection = sortedSets.get(0).clone();
+        for(int i = 1; i < sortedSets.size() && intersection.length > 0; i++)
+        {
+            intersection = intersectOrdered(intersection, sortedSets.get(i), comparator);
+        }
+        
+        return intersection;
+    }
+    
+    /**
+     * Union two ordered arrays like {@link #unionOrdered(int[], int[])}.
+     * When elements compare as equal the element from the 1st array is used
+     * @param <T>
+     *          the element type
+     * @param orderedSet1
+     *          the 1st array ordered by the comparator
+     * @param orderedSet2
+     *          the 2nd array ordered by the comparator
+     * @param comparator
+     *          the comparator
+     * @return
+     *          the ordered union which has the same array type as the 1st
+     *          array
+     */
+    public static <T> T[] unionOrdered(
+            T[] orderedSet1,
+            T[] orderedSet2,
+            Comparator<? super T> comparator)
+    {
+        boolean firstIsSmall = orderedSet1.length <= orderedSet2.length;
+        T[] smallSet = firstIsSmall ? orderedSet1 : orderedSet2;
+        T[] largeSet = firstIsSmall ? orderedSet2 : orderedSet1;
+        
+        T[] buffer = SequenceUtilities.<T>instantiateGenericArray(
+                orderedSet1.getClass().getComponentType(),
+                smallSet.length + largeSet.length);
+        int count = 0;
+        int smallCursor = 0;
+        int largeCursor = 0;
+        if(isSkewed(smallSet.length, largeSet.length))
+        {
+            for(; smallCursor < smallSet.length; smallCursor++)
+            {
+                T element = smallSet[smallCursor];
+                int runEnd = gallop(largeSet, largeCursor, element, comparator);
+                System.arraycopy(largeSet, largeCursor, buffer, count, runEnd - largeCursor);
+                count += runEnd - largeCursor;
+                largeCursor = runEnd;
+                
+                if(largeCursor < largeSet.length &&
+                   comparator.compare(largeSet[largeCursor], element) == 0)
+                {
+                    buffer[count] = firstIsSmall ? element : largeSet[largeCursor];
+                    largeCursor++;
+                }
+                else
+                {
+                    buffer[count] = element;
+                }
+                count++;
+            }
+        }
+        else
+        {
+            while(smallCursor < smallSet.length && largeCursor < largeSet.length)
+            {
+                T smallElement = smallSet[smallCursor];
+                T largeElement = largeSet[largeCursor];
+                int comparison = comparator.compare(smallElement, largeElement);
+                if(comparison == 0)
+                {
+                    buffer[count] = firstIsSmall ? smallElement : largeElement;
+                    smallCursor++;
+                    largeCursor++;
+                }
+                else if(comparison < 0)
+                {
+                    buffer[count] = smallElement;
+                    smallCursor++;
+                }
+                else
+                {
+                    buffer[count] = largeElement;
+                    largeCursor++;
+                }
+                count++;
+            }
+        }
+        
+        System.arraycopy(smallSet, smallCursor, buffer, count, smallSet.length - smallCursor);
+        count += smallSet.length - smallCursor;
+        System.arraycopy(largeSet, largeCursor, buffer, count, largeSet.length - largeCursor);
+        count += largeSet.length - largeCursor;
+        
+        return trim(buffer, count);
+    }
+    
+    /**
+     * Get the elements of the 1st ordered array that aren't in the 2nd like
+     * {@link #differenceOrdered(int[], int[])}
+     * @param <T>
+     *          the element type
+     * @param orderedSet
+     *          the array to take elements from ordered by the comparator
+     * @param orderedSetToRemove
+     *          the elements to remove ordered by the comparator
+     * @param comparator
+     *          the comparator
+     * @return
+     *          the ordered difference which has the same array type as the
+     *          1st array
+     */
+    public static <T> T[] differenceOrdered(
+            T[] orderedSet,
+            T[] orderedSetToRemove,
+            Comparator<? super T> comparator)
+    {
+        T[] buffer = SequenceUtilities.<T>instantiateGenericArray(
+                orderedSet.getClass().getComponentType(),
+                orderedSet.length);
+        int count = 0;
+        int cursor = 0;
+        if(isSkewed(orderedSetToRemove.length, orderedSet.length))
+        {
+            for(int i = 0; i < orderedSetToRemove.length && cursor < orderedSet.length; i++)
+            {
+                T elementToRemove = orderedSetToRemove[i];
+                int runEnd = gallop(orderedSet, cursor, elementToRemove, comparator);
+                System.arraycopy(orderedSet, cursor, buffer, count, runEnd - cursor);
+                count += runEnd - cursor;
+                cursor = runEnd;
+                if(cursor < orderedSet.length &&
+                   comparator.compare(orderedSet[cursor], elementToRemove) == 0)
+                {
+                    cursor++;
+                }
+            }
+        }
+        else
+        {
+            // a merge unless the elements to remove far outnumber the
+            // elements, in which case we gallop through them
+            boolean gallopRemovals = isSkewed(orderedSet.length, orderedSetToRemove.length);
+            int removeCursor = 0;
+            while(cursor < orderedSet.length && removeCursor < orderedSetToRemove.length)
+            {
+                T element = orderedSet[cursor];
+                if(gallopRemovals)
+                {
+                    removeCursor = gallop(orderedSetToRemove, removeCursor, element, comparator);
+                    if(removeCursor == orderedSetToRemove.length)
+                    {
+                        break;
+                    }
+                }
+                
+                int comparison = comparator.compare(element, orderedSetToRemove[removeCursor]);
+                if(comparison == 0)
+                {
+                    cursor++;
+                    removeCursor++;
+                }
+                else if(comparison < 0)
+                {
+                    buffer[count] = element;
+                    count++;
+                    cursor++;
+                }
+                else
+                {
+                    removeCursor++;
+                }
+            }
+        }
+        
+        System.arraycopy(orderedSet, cursor, buffer, count, orderedSet.length - cursor);
+        count += orderedSet.length - cursor;
+        
+        return trim(buffer, count);
+    }
+    
+    /**
+     * Determine if the 1st ordered array is a subset of the 2nd by galloping
+     * through the 2nd array
+     * @param <T>
+     *          the element type
+     * @param potentialOrderedSubset
+     *          the array that we're testing as a subset ordered by the
+     *          comparator
+     * @param orderedSuperset
+     *          the array that we're testing as a superset ordered by the
+     *          comparator
+     * @param comparator
+     *          the comparator
+     * @return
+     *          true iff the subset relationship holds
+     */
+    public static <T> boolean isOrderedSubset(
+            T[] potentialOrderedSubset,
+            T[] orderedSuperset,
+            Comparator<? super T> comparator)
+    {
+        if(potentialOrderedSubset.length > orderedSuperset.length)
+        {
+            return false;
+        }
+        
+        int supersetCursor = 0;
+        for(T element: potentialOrderedSubset)
+        {
+            supersetCursor = gallop(orderedSuperset, supersetCursor, element, comparator);
+            if(supersetCursor == orderedSuperset.length ||
+               comparator.compare(orderedSuperset[supersetCursor], element) != 0)
+            {
+                return false;
+            }
+            supersetCursor++;
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Intersect two arrays that aren't ordered using a hash set of the
+     * smaller array like {@link #intersectUnordered(int[], int[])}
+     * @param <T>
+     *          the element type which must have a hash code that is
+     *          consistent with equals
+     * @param set1
+     *          the 1st array in any order
+     * @param set2
+     *          the 2nd array in any order
+     * @return
+     *          the distinct elements that are in both arrays in the order
+     *          that they first appear in the 1st array. The array has the
+     *          same type as the 1st array
+     */
+    public static <T> T[] intersectUnordered(T[] set1, T[] set2)
+    {
+        Set<T> matches;
+        if(set1.length <= set2.length)
+        {
+            Set<T> candidates = new HashSet<T>(Arrays.asList(set1));
+            matches = new HashSet<T>();
+            for(T element: set2)
+            {
+                if(candidates.contains(element))
+                {
+                    matches.add(element);
+                }
+            }
+        }
+        else
+        {
+            matches = new HashSet<T>(Arrays.asList(set2));
+        }
+        
+        T[] buffer = SequenceUtilities.<T>instantiateGenericArray(
+                set1.getClass().getComponentType(),
+                Math.min(set1.length, set2.length));
+        int count = 0;
+        for(int i = 0; i < set1.length && count < buffer.length; i++)
+        {
+            T element = set1[i];
+            if(matches.remove(element))
+            {
+                buffer[count] = element;
+                count++;
+            }
+        }
+        
+        return trim(buffer, count);
+    }
+    
+    /**
+     * Determine if the array sizes are different enough that we should
+     * gallop through the larger array rather than merge
+     * @param smallSize
+     *          the size of the array we're iterating through
+     * @param largeSize
+     *          the size of the array we would gallop through
+     * @return
+     *          true if we should gallop
+     */
+    private static boolean isSkewed(int smallSize, int largeSize)
+    {
+        return (long)smallSize * GALLOP_SIZE_RATIO < largeSize;
+    }
+    
+    /**
+     * Find the first index at or after the from index holding a value that
+     * is at least the given value. The search steps forward in doubling
+     * strides and then binary searches the last stride, so it costs
+     * O(log d) where d is the distance moved
+     * @param orderedValues
+     *          the ascending values
+     * @param fromIndex
+     *          the index to search from
+     * @param value
+     *          the value to search for
+     * @return
+     *          the index or the array length if every value from the
+     *          from index on is smaller
+     */
+    private static int gallop(int[] orderedValues, int fromIndex, int value)
+    {
+        int length = orderedValues.length;
+        if(fromIndex >= length || orderedValues[fromIndex] >= value)
+        {
+            return fromIndex;
+        }
+        
+        // orderedValues[low] < value <= orderedValues[high] (treating the
+        // array length as infinity)
+        int low = fromIndex;
+        int stride = 1;
+        int high = low + stride;
+        while(high < length && orderedValues[high] < value)
+        {
+            low = high;
+            stride <<= 1;
+            high = low + stride;
+        }
+        if(high > length)
+        {
+            high = length;
+        }
+        
+        while(high - low > 1)
+        {
+            int middle = (low + high) >>> 1;
+            if(orderedValues[middle] < value)
+            {
+                low = middle;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        
+        return high;
+    }
+    
+    /**
+     * Find the first index at or after the from index holding an element
+     * that is at least the given element like
+     * {@link #gallop(int[], int, int)}
+     * @param <T>
+     *          the element type
+     * @param orderedElements
+     *          the ordered elements
+     * @param fromIndex
+     *          the index to search from
+     * @param element
+     *          the element to search for
+     * @param comparator
+     *          the comparator
+     * @return
+     *          the index or the array length if every element from the
+     *          from index on is smaller
+     */
+    private static <T> int gallop(
+            T[] orderedElements,
+            int fromIndex,
+            T element,
+            Comparator<? super T> comparator)
+    {
+        int length = orderedElements.length;
+        if(fromIndex >= length || comparator.compare(orderedElements[fromIndex], element) >= 0)
+        {
+            return fromIndex;
+        }
+        
+        int low = fromIndex;
+        int stride = 1;
+        int high = low + stride;
+        while(high < length && comparator.compare(orderedElements[high], element) < 0)
+        {
+            low = high;
+            stride <<= 1;
+            high = low + stride;
+        }
+        if(high > length)
+        {
+            high = length;
+        }
+        
+        while(high - low > 1)
+        {
+            int middle = (low + high) >>> 1;
+            if(comparator.compare(orderedElements[middle], element) < 0)
+            {
+                low = middle;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        
+        return high;
+    }
+    
+    /**
+     * Trim the buffer down to the count
+     * @param buffer
+     *          the buffer
+     * @param count
+     *          the number of values in use
+     * @return
+     *          the buffer if it's full or a trimmed copy
+     */
+    private static int[] trim(int[] buffer, int count)
+    {
+        if(count == buffer.length)
+        {
+            return buffer;
+        }
+        else
+        {
+            int[] trimmed = new int[count];
+            System.arraycopy(buffer, 0, trimmed, 0, count);
+            return trimmed;
+        }
+    }
+    
+    /**
+     * Trim the buffer down to the count
+     * @param <T>
+     *          the element type
+     * @param buffer
+     *          the buffer
+     * @param count
+     *          the number of elements in use
+     * @return
+     *          the buffer if it's full or a trimmed copy of the same type
+     */
+    private static <T> T[] trim(T[] buffer, int count)
+    {
+        if(count == buffer.length)
+        {
+            return buffer;
+        }
+        else
+        {
+            T[] trimmed = SequenceUtilities.<T>instantiateGenericArray(
+                    buffer.getClass().getComponentType(),
+                    count);
+            System.arraycopy(buffer, 0, trimmed, 0, count);
+            return trimmed;
+        }
+    }
 }
@@ -0,0 +1,525 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.datastructure;
+
+import java.util.Arrays;
+
+/**
+ * A bounded dictionary which maps strings to dense integer codes
+ * (0, 1, 2 ...) in the order that they are added. Lookups can be done
+ * directly against a range of a <code>char[]</code> so that no
+ * {@link String} needs to be allocated when the characters are already in
+ * the dictionary. This makes it useful both for interning repetitive values
+ * as they are parsed and for dictionary encoding columns of data.
+ * <br><br>
+ * This class is not thread safe.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class StringDictionary
+{
+    /**
+     * the value used in {@link #codeTable} for an empty slot
+     */
+    private static final int EMPTY_SLOT = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int maxSize;
+
+    /**
+     * the strings indexed by their code
+     */
+    private String[] strings;
+
+    /**
+     * the hash of each string indexed by code so that we can avoid most
+     * character comparisons and so we don't have to rehash on growth
+     */
+    private int[] hashes;
+
+    /**
+     * open addressing hash table holding codes (or {@link #EMPTY_SLOT})
+     */
+    private int[] codeTable;
+
+    private int size = 0;
+
+    private long hitCount = 0L;
+
+    private long missCount = 0L;
+
+    /**
+     * Constructor for an unbounded dictionary
+     */
+    public StringDictionary()
+    {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructor
+     * @param maxSize
+     *          the maximum number of strings that this dictionary will hold.
+     *          Once this limit is reached new strings are no longer added.
+     */
+    public StringDictionary(int maxSize)
+    {
+        if(maxSize < 0)
+        {
+            throw new IllegalArgumentException(
+                    "the max dictionary size can't be negative");
+        }
+
+        this.maxSize = maxSize;
+        this.strings = new String[INITIAL_CAPACITY];
+        this.hashes = new int[INITIAL_CAPACITY];
+        this.codeTable = new int[INITIAL_CAPACITY * 2];
+        Arrays.fill(this.codeTable, EMPTY_SLOT);
+    }
+
+    /**
+     * Getter for the number of strings in this dictionary
+     * @return
+     *          the size
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Getter for the maximum number of strings this dictionary will hold
+     * @return
+     *          the max size
+     */
+    public int getMaxSize()
+    {
+        return this.maxSize;
+    }
+
+    /**
+     * Determine if this dictionary has reached its maximum size
+     * @return
+     *          true iff no more strings can be added
+     */
+    public boolean isFull()
+    {
+        return this.size >= this.maxSize;
+    }
+
+    /**
+     * Getter for the number of times that {@link #intern(char[], int, int)}
+     * or {@link #intern(String)} found an existing entry
+     * @return
+     *          the hit count
+     */
+    public long getHitCount()
+    {
+        return this.hitCount;
+    }
+
+    /**
+     * Getter for the number of times that {@link #intern(char[], int, int)}
+     * or {@link #intern(String)} did not find an existing entry
+     * @return
+     *          the miss count
+     */
+    public long getMissCount()
+    {
+        return this.missCount;
+    }
+
+    /**
+     * Get the string for the given code
+     * @param code
+     *          the code
+     * @return
+     *          the string
+     * @throws IndexOutOfBoundsException
+     *          if there is no such code
+     */
+    public String getString(int code) throws IndexOutOfBoundsException
+    {
+        if(code < 0 || code >= this.size)
+        {
+            throw new IndexOutOfBoundsException(
+                    "no string in dictionary for code: " + code);
+        }
+
+        return this.strings[code];
+    }
+
+    /**
+     * Find the code for the given characters
+     * @param chars
+     *          the character buffer
+     * @param offset
+     *          the offset of the string in the buffer
+     * @param length
+     *          the length of the string
+     * @return
+     *          the code or -1 if the characters aren't in the dictionary
+     */
+    public int getCode(char[] chars, int offset, int length)
+    {
+        return this.codeTable[this.findSlot(
+                chars,
+                offset,
+                length,
+                hash(chars, offset, length))];
+    }
+
+    /**
+     * Find the code for the given string
+     * @param string
+     *          the string
+     * @return
+     *          the code or -1 if the string isn't in the dictionary
+     */
+    public int getCode(String string)
+    {
+        return this.codeTable[this.findSlot(string, string.hashCode())];
+    }
+
+    /**
+     * Add the given characters to the dictionary if they aren't already in it
+     * @param chars
+     *          the character buffer
+     * @param offset
+     *          the offset of the string in the buffer
+     * @param length
+     *          the length of the string
+     * @return
+     *          the code for the characters or -1 if they're new and the
+     *          dictionary is full
+     */
+    public int add(char[] chars, int offset, int length)
+    {
+        int hash = hash(chars, offset, length);
+        int slot = this.findSlot(chars, offset, length, hash);
+        int code = this.codeTable[slot];
+        if(code == EMPTY_SLOT && !this.isFull())
+        {
+            code = this.insert(slot, new String(chars, offset, length), hash);
+        }
+
+        return code;
+    }
+
+    /**
+     * Add the given string to the dictionary if it isn't already in it
+     * @param string
+     *          the string to add
+     * @return
+     *          the code for the string or -1 if it's new and the dictionary
+     *          is full
+     */
+    public int add(String string)
+    {
+        int hash = string.hashCode();
+        int slot = this.findSlot(string, hash);
+        int code = this.codeTable[slot];
+        if(code == EMPTY_SLOT && !this.isFull())
+        {
+            code = this.insert(slot, string, hash);
+        }
+
+        return code;
+    }
+
+    /**
+     * Get the canonical string for the given characters. If the characters
+     * are already in the dictionary no new string is allocated.
+     * @param chars
+     *          the character buffer
+     * @param offset
+     *          the offset of the string in the buffer
+     * @param length
+     *          the length of the string
+     * @return
+     *          the dictionary string or a new string if the characters are
+     *          not in the dictionary and it is full
+     */
+    public String intern(char[] chars, int offset, int length)
+    {
+        int hash = hash(chars, offset, length);
+        int slot = this.findSlot(chars, offset, length, hash);
+        int code = this.codeTable[slot];
+        if(code != EMPTY_SLOT)
+        {
+            this.hitCount++;
+            return this.strings[code];
+        }
+        else
+        {
+            this.missCount++;
+            String string = new String(chars, offset, length);
+            if(!this.isFull())
+            {
+                this.insert(slot, string, hash);
+            }
+
+            return string;
+        }
+    }
+
+    /**
+     * Get the canonical instance of the given string
+     * @param string
+     *          the string
+     * @return
+     *          the dictionary string or the given string if it is not in
+     *          the dictionary and the dictionary is full
+     */
+    public String intern(String string)
+    {
+        int hash = string.hashCode();
+        int slot = this.findSlot(string, hash);
+        int code = this.codeTable[slot];
+        if(code != EMPTY_SLOT)
+        {
+            this.hitCount++;
+            return this.strings[code];
+        }
+        else
+        {
+            this.missCount++;
+            if(!this.isFull())
+            {
+                this.insert(slot, string, hash);
+            }
+
+            return string;
+        }
+    }
+
+    /**
+     * Get a copy of all of the strings in code order
+     * @return
+     *          the strings
+     */
+    public String[] toArray()
+    {
+        String[] array = new String[this.size];
+        System.arraycopy(this.strings, 0, array, 0, this.size);
+        return array;
+    }
+
+    /**
+     * Insert a new string in the given empty slot
+     * @param slot
+     *          the slot
+     * @param string
+     *          the string
+     * @param hash
+     *          the string's hash
+     * @return
+     *          the new code
+     */
+    private int insert(int slot, String string, int hash)
+    {
+        int code = this.size;
+        if(code == this.strings.length)
+        {
+            this.grow();
+            slot = this.findEmptySlot(hash);
+        }
+
+        this.strings[code] = string;
+        this.hashes[code] = hash;
+        this.codeTable[slot] = code;
+        this.size++;
+
+        return code;
+    }
+
+    /**
+     * Double our capacity
+     */
+    private void grow()
+    {
+        int newCapacity = this.strings.length * 2;
+
+        String[] newStrings = new String[newCapacity];
+        System.arraycopy(this.strings, 0, newStrings, 0, this.size);
+        this.strings = newStrings;
+
+        int[] newHashes = new int[newCapacity];
+        System.arraycopy(this.hashes, 0, newHashes, 0, this.size);
+        this.hashes = newHashes;
+
+        // keeping the table at twice the capacity keeps the load factor
+        // at or below 1/2
+        this.codeTable = new int[newCapacity * 2];
+        Arrays.fill(this.codeTable, EMPTY_SLOT);
+        for(int code = 0; code < this.size; code++)
+        {
+            this.codeTable[this.findEmptySlot(this.hashes[code])] = code;
+        }
+    }
+
+    /**
+     * Find the first empty slot for the given hash
+     * @param hash
+     *          the hash
+     * @return
+     *          the slot
+     */
+    private int findEmptySlot(int hash)
+    {
+        int mask = this.codeTable.length - 1;
+        int slot = spread(hash) & mask;
+        while(this.codeTable[slot] != EMPTY_SLOT)
+        {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    /**
+     * Find the slot holding the given characters or the empty slot where
+     * they should be inserted
+     * @param chars
+     *          the character buffer
+     * @param offset
+     *          the offset of the string in the buffer
+     * @param length
+     *          the length of the string
+     * @param hash
+     *          the hash of the characters
+     * @return
+     *          the slot
+     */
+    private int findSlot(char[] chars, int offset, int length, int hash)
+    {
+        int mask = this.codeTable.length - 1;
+        int slot = spread(hash) & mask;
+        while(true)
+        {
+            int code = this.codeTable[slot];
+            if(code == EMPTY_SLOT ||
+               (this.hashes[code] == hash &&
+                regionEquals(this.strings[code], chars, offset, length)))
+            {
+                return slot;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Find the slot holding the given string or the empty slot where
+     * it should be inserted
+     * @param string
+     *          the string
+     * @param hash
+     *          the hash of the string
+     * @return
+     *          the slot
+     */
+    private int findSlot(String string, int hash)
+    {
+        int mask = this.codeTable.length - 1;
+        int slot = spread(hash) & mask;
+        while(true)
+        {
+            int code = this.codeTable[slot];
+            if(code == EMPTY_SLOT ||
+               (this.hashes[code] == hash && this.strings[code].equals(string)))
+            {
+                return slot;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Compute a hash over the characters which matches
+     * {@link String#hashCode()}
+     * @param chars
+     *          the character buffer
+     * @param offset
+     *          the offset of the string in the buffer
+     * @param length
+     *          the length of the string
+     * @return
+     *          the hash
+     */
+    private static int hash(char[] chars, int offset, int length)
+    {
+        int hash = 0;
+        int end = offset + length;
+        for(int i = offset; i < end; i++)
+        {
+            hash = 31 * hash + chars[i];
+        }
+
+        return hash;
+    }
+
+    /**
+     * Spread the high bits of the hash down since we use a power of two
+     * table size
+     * @param hash
+     *          the hash
+     * @return
+     *          the spread hash
+     */
+    private static int spread(int hash)
+    {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Determine if the given string matches the given characters
+     * @param string
+     *          the string
+     * @param chars
+     *          the character buffer
+     * @param offset
+     *          the offset of the string in the buffer
+     * @param length
+     *          the length of the string
+     * @return
+     *          true iff they match
+     */
+    private static boolean regionEquals(
+            String string,
+            char[] chars,
+            int offset,
+            int length)
+    {
+        if(string.length() != length)
+        {
+            return false;
+        }
+
+        for(int i = 0; i < length; i++)
+        {
+            if(string.charAt(i) != chars[offset + i])
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
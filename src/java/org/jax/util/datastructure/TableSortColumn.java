@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.datastructure;
+
+import java.util.Comparator;
+
+/**
+ * Describes how a {@link TableSorter} orders one of its sort columns. Null
+ * values are placed before or after all other values no matter which
+ * direction the column is sorted in.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ * @param <E>
+ *          the table element type
+ */
+public class TableSortColumn<E>
+{
+    private final int columnIndex;
+
+    private final Comparator<? super E> comparator;
+
+    private final boolean numeric;
+
+    private final boolean descending;
+
+    private final boolean nullsFirst;
+
+    /**
+     * Constructor for an ascending column that uses the natural ordering of
+     * its values (which must be {@link Comparable}) with nulls first
+     * @param columnIndex
+     *          the column index
+     */
+    public TableSortColumn(int columnIndex)
+    {
+        this(columnIndex, null, false, false, true);
+    }
+
+    /**
+     * Constructor
+     * @param columnIndex
+     *          the column index
+     * @param comparator
+     *          the comparator for the column values or null to use their
+     *          natural ordering
+     * @param descending
+     *          true to sort from largest to smallest
+     * @param nullsFirst
+     *          true to put nulls before other values and false to put them
+     *          after
+     */
+    public TableSortColumn(
+            int columnIndex,
+            Comparator<? super E> comparator,
+            boolean descending,
+            boolean nullsFirst)
+    {
+        this(columnIndex, comparator, false, descending, nullsFirst);
+    }
+
+    /**
+     * Constructor
+     * @param columnIndex
+     *          the column index
+     * @param comparator
+     *          the comparator or null
+     * @param numeric
+     *          true if the values should be parsed as numbers
+     * @param descending
+     *          true to sort from largest to smallest
+     * @param nullsFirst
+     *          true to put nulls first
+     */
+    private TableSortColumn(
+            int columnIndex,
+            Comparator<? super E> comparator,
+            boolean numeric,
+            boolean descending,
+            boolean nullsFirst)
+    {
+        if(columnIndex < 0)
+        {
+            throw new IllegalArgumentException(
+                    "column index can't be negative: " + columnIndex);
+        }
+        this.columnIndex = columnIndex;
+        this.comparator = comparator;
+        this.numeric = numeric;
+        this.descending = descending;
+        this.nullsFirst = nullsFirst;
+    }
+
+    /**
+     * Create a sort column for strings holding numbers. The sorter parses
+     * each value once with {@link Double#parseDouble(String)} before it
+     * starts sorting and orders them like
+     * {@link Double#compare(double, double)}. Empty strings are treated as
+     * nulls
+     * @param columnIndex
+     *          the column index
+     * @param descending
+     *          true to sort from largest to smallest
+     * @param nullsFirst
+     *          true to put nulls (and empty strings) before other values
+     * @return
+     *          the sort column
+     */
+    public static TableSortColumn<String> numeric(
+            int columnIndex,
+            boolean descending,
+            boolean nullsFirst)
+    {
+        return new TableSortColumn<String>(
+                columnIndex,
+                null,
+                true,
+                descending,
+                nullsFirst);
+    }
+
+    /**
+     * Getter for the column index
+     * @return
+     *          the column index
+     */
+    public int getColumnIndex()
+    {
+        return this.columnIndex;
+    }
+
+    /**
+     * Getter for the comparator
+     * @return
+     *          the comparator or null if the natural ordering (or numeric
+     *          ordering) is used
+     */
+    public Comparator<? super E> getComparator()
+    {
+        return this.comparator;
+    }
+
+    /**
+     * Determine if this column's values are parsed as numbers
+     * @return
+     *          true if the column is numeric
+     */
+    public boolean isNumeric()
+    {
+        return this.numeric;
+    }
+
+    /**
+     * Determine if this column is sorted from largest to smallest
+     * @return
+     *          true if the column is descending
+     */
+    public boolean isDescending()
+    {
+        return this.descending;
+    }
+
+    /**
+     * Determine if nulls come before other values
+     * @return
+     *          true if nulls are first
+     */
+    public boolean isNullsFirst()
+    {
+        return this.nullsFirst;
+    }
+}
@@ -0,0 +1,796 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.datastructure;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import org.jax.util.concurrent.ExecutorUtilities;
+
+/**
+ * Sorts tables that are held in memory as lists of rows. Instead of moving
+ * rows around, the sorter produces an ordering of the row indices, which
+ * can be wrapped in an {@link ImmutableReorderedList} so that the original
+ * rows are never copied. Before sorting, the values of every sort column
+ * are pulled out of the rows into flat arrays (numeric columns are parsed
+ * into doubles at this point). So each comparison reads from those arrays
+ * instead of going through the rows and reparsing values. The sort is a
+ * stable merge sort and the parallel version sorts chunks of the indices
+ * on separate threads before merging them.
+ * <br><br>
+ * This class is immutable and so it's safe to share between threads.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ * @param <E>
+ *          the table element type
+ */
+public class TableSorter<E>
+{
+    /**
+     * ranges shorter than this are insertion sorted
+     */
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    /**
+     * the smallest chunk of rows that is worth giving to its own thread
+     */
+    private static final int MIN_PARALLEL_CHUNK_SIZE = 1 << 14;
+
+    private final List<TableSortColumn<E>> sortColumns;
+
+    /**
+     * Constructor
+     * @param sortColumns
+     *          the columns to sort on in priority order
+     */
+    public TableSorter(List<TableSortColumn<E>> sortColumns)
+    {
+        this.sortColumns = new ArrayList<TableSortColumn<E>>(sortColumns);
+    }
+
+    /**
+     * Sort the rows
+     * @param rows
+     *          the rows which should be {@link java.util.RandomAccess}
+     * @return
+     *          a sorted view of the rows
+     */
+    public ImmutableReorderedList<E[]> sort(List<E[]> rows)
+    {
+        return new ImmutableReorderedList<E[]>(rows, this.sortIndices(rows));
+    }
+
+    /**
+     * Sort the rows using several threads. This gives the same result as
+     * {@link #sort(List)}
+     * @param rows
+     *          the rows which should be {@link java.util.RandomAccess}
+     * @param executor
+     *          the executor to run the work on
+     * @param parallelism
+     *          the number of pieces to divide the work into (typically
+     *          the executor's thread count)
+     * @return
+     *          a sorted view of the rows
+     * @throws InterruptedException
+     *          if we're interrupted while waiting for the executor
+     */
+    public ImmutableReorderedList<E[]> parallelSort(
+            List<E[]> rows,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException
+    {
+        return new ImmutableReorderedList<E[]>(
+                rows,
+                this.parallelSortIndices(rows, executor, parallelism));
+    }
+
+    /**
+     * Get the sorted order of the rows
+     * @param rows
+     *          the rows which should be {@link java.util.RandomAccess}
+     * @return
+     *          the row indices in sorted order
+     */
+    public int[] sortIndices(List<E[]> rows)
+    {
+        int rowCount = rows.size();
+        IndexComparator<E> comparator = this.createIndexComparator(rows, 0, rowCount);
+        int[] indices = identityIndices(rowCount);
+        sort(indices, new int[rowCount], 0, rowCount, comparator);
+        return indices;
+    }
+
+    /**
+     * Get the sorted order of the rows using several threads
+     * @param rows
+     *          the rows which should be {@link java.util.RandomAccess}
+     * @param executor
+     *          the executor to run the work on
+     * @param parallelism
+     *          the number of pieces to divide the work into (typically
+     *          the executor's thread count)
+     * @return
+     *          the row indices in sorted order
+     * @throws InterruptedException
+     *          if we're interrupted while waiting for the executor
+     */
+    public int[] parallelSortIndices(
+            final List<E[]> rows,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException
+    {
+        if(parallelism <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "the parallelism must be greater than 0");
+        }
+
+        final int rowCount = rows.size();
+        int chunkCount = Math.min(parallelism, rowCount / MIN_PARALLEL_CHUNK_SIZE);
+        if(chunkCount <= 1)
+        {
+            return this.sortIndices(rows);
+        }
+
+        int[] runStarts = new int[chunkCount + 1];
+        for(int i = 0; i <= chunkCount; i++)
+        {
+            runStarts[i] = (int)((long)rowCount * i / chunkCount);
+        }
+
+        // pull the column values out of the rows in parallel. each task
+        // fills its own range of the shared key arrays
+        final IndexComparator<E> comparator = this.createIndexComparator(rows, 0, 0);
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for(int i = 0; i < chunkCount; i++)
+        {
+            final int fromIndex = runStarts[i];
+            final int toIndex = runStarts[i + 1];
+            tasks.add(new Callable<Object>()
+            {
+                public Object call()
+                {
+                    comparator.extract(rows, fromIndex, toIndex);
+                    return null;
+                }
+            });
+        }
+        ExecutorUtilities.invokeAll(executor, tasks);
+
+        // sort the chunks independently
+        final int[] indices = identityIndices(rowCount);
+        final int[] buffer = new int[rowCount];
+        tasks.clear();
+        for(int i = 0; i < chunkCount; i++)
+        {
+            final int fromIndex = runStarts[i];
+            final int toIndex = runStarts[i + 1];
+            tasks.add(new Callable<Object>()
+            {
+                public Object call()
+                {
+                    sort(indices, buffer, fromIndex, toIndex, comparator);
+                    return null;
+                }
+            });
+        }
+        ExecutorUtilities.invokeAll(executor, tasks);
+
+        // merge pairs of adjacent runs until there is one run left,
+        // swapping between the indices and the buffer each round
+        int[] source = indices;
+        int[] target = buffer;
+        while(runStarts.length > 2)
+        {
+            int runCount = runStarts.length - 1;
+            int[] newRunStarts = new int[(runCount + 1) / 2 + 1];
+            tasks.clear();
+            for(int i = 0; i < runCount; i += 2)
+            {
+                final int fromIndex = runStarts[i];
+                final int middleIndex = runStarts[Math.min(i + 1, runCount)];
+                final int toIndex = runStarts[Math.min(i + 2, runCount)];
+                final int[] finalSource = source;
+                final int[] finalTarget = target;
+                tasks.add(new Callable<Object>()
+                {
+                    public Object call()
+                    {
+                        merge(
+                                finalSource,
+                                fromIndex,
+                                middleIndex,
+                                toIndex,
+                                finalTarget,
+                                comparator);
+                        return null;
+                    }
+                });
+                newRunStarts[i / 2] = fromIndex;
+            }
+            newRunStarts[newRunStarts.length - 1] = rowCount;
+            ExecutorUtilities.invokeAll(executor, tasks);
+
+            int[] temp = source;
+            source = target;
+            target = temp;
+            runStarts = newRunStarts;
+        }
+
+        return source;
+    }
+
+    /**
+     * Get a comparator for rows which matches the order used by this sorter.
+     * This is useful for merging or searching tables which have already
+     * been sorted, but it's much slower than sorting through the sorter
+     * itself
+     * @return
+     *          the comparator
+     */
+    public Comparator<E[]> getRowComparator()
+    {
+        return new Comparator<E[]>()
+        {
+            @SuppressWarnings("unchecked")
+            public int compare(E[] row1, E[] row2)
+            {
+                for(TableSortColumn<E> sortColumn: TableSorter.this.sortColumns)
+                {
+                    int columnIndex = sortColumn.getColumnIndex();
+                    E value1 = row1[columnIndex];
+                    E value2 = row2[columnIndex];
+                    int comparison;
+                    if(sortColumn.isNumeric())
+                    {
+                        comparison = compareNumeric(
+                                parseNumeric(value1),
+                                parseNumeric(value2),
+                                sortColumn);
+                    }
+                    else
+                    {
+                        comparison = compareObjects(value1, value2, sortColumn);
+                    }
+
+                    if(comparison != 0)
+                    {
+                        return comparison;
+                    }
+                }
+                return 0;
+            }
+        };
+    }
+
+    /**
+     * Create the comparator for the row indices
+     * @param rows
+     *          the rows
+     * @param fromIndex
+     *          the start of the rows to extract keys for now
+     * @param toIndex
+     *          the end of the rows to extract keys for now
+     * @return
+     *          the comparator
+     */
+    private IndexComparator<E> createIndexComparator(
+            List<E[]> rows,
+            int fromIndex,
+            int toIndex)
+    {
+        int rowCount = rows.size();
+        List<ColumnKeys<E>> columnKeys = new ArrayList<ColumnKeys<E>>(
+                this.sortColumns.size());
+        for(TableSortColumn<E> sortColumn: this.sortColumns)
+        {
+            if(sortColumn.isNumeric())
+            {
+                columnKeys.add(new NumericColumnKeys<E>(sortColumn, rowCount));
+            }
+            else
+            {
+                columnKeys.add(new ObjectColumnKeys<E>(sortColumn, rowCount));
+            }
+        }
+        IndexComparator<E> comparator = new IndexComparator<E>(columnKeys);
+        comparator.extract(rows, fromIndex, toIndex);
+        return comparator;
+    }
+
+    /**
+     * Parse a numeric value
+     * @param value
+     *          the value
+     * @return
+     *          the parsed value or null for null or empty values
+     */
+    private static Double parseNumeric(Object value)
+    {
+        if(value == null)
+        {
+            return null;
+        }
+        else
+        {
+            String stringValue = value.toString();
+            if(stringValue.length() == 0)
+            {
+                return null;
+            }
+            else
+            {
+                return Double.valueOf(stringValue);
+            }
+        }
+    }
+
+    /**
+     * Compare numeric values including null handling and direction
+     * @param value1
+     *          the 1st value (maybe null)
+     * @param value2
+     *          the 2nd value (maybe null)
+     * @param sortColumn
+     *          the sort column
+     * @return
+     *          the comparison
+     */
+    private static int compareNumeric(
+            Double value1,
+            Double value2,
+            TableSortColumn<?> sortColumn)
+    {
+        if(value1 == null || value2 == null)
+        {
+            return compareNulls(value1 == null, value2 == null, sortColumn);
+        }
+        else
+        {
+            int comparison = Double.compare(value1, value2);
+            return sortColumn.isDescending() ? -comparison : comparison;
+        }
+    }
+
+    /**
+     * Compare object values including null handling and direction
+     * @param <T>
+     *          the value type
+     * @param value1
+     *          the 1st value (maybe null)
+     * @param value2
+     *          the 2nd value (maybe null)
+     * @param sortColumn
+     *          the sort column
+     * @return
+     *          the comparison
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> int compareObjects(
+            T value1,
+            T value2,
+            TableSortColumn<? super T> sortColumn)
+    {
+        if(value1 == null || value2 == null)
+        {
+            return compareNulls(value1 == null, value2 == null, sortColumn);
+        }
+        else
+        {
+            // swapping the values for descending columns avoids negating
+            // a comparison of Integer.MIN_VALUE
+            if(sortColumn.isDescending())
+            {
+                T temp = value1;
+                value1 = value2;
+                value2 = temp;
+            }
+
+            Comparator<? super T> comparator = sortColumn.getComparator();
+            if(comparator == null)
+            {
+                return ((Comparable<T>)value1).compareTo(value2);
+            }
+            else
+            {
+                return comparator.compare(value1, value2);
+            }
+        }
+    }
+
+    /**
+     * Compare values when at least one of them is null
+     * @param isNull1
+     *          true if the 1st value is null
+     * @param isNull2
+     *          true if the 2nd value is null
+     * @param sortColumn
+     *          the sort column
+     * @return
+     *          the comparison
+     */
+    private static int compareNulls(
+            boolean isNull1,
+            boolean isNull2,
+            TableSortColumn<?> sortColumn)
+    {
+        if(isNull1 == isNull2)
+        {
+            return 0;
+        }
+        else
+        {
+            return isNull1 == sortColumn.isNullsFirst() ? -1 : 1;
+        }
+    }
+
+    /**
+     * Stable merge sort of a range of indices. The result ends up in the
+     * indices array
+     * @param indices
+     *          the indices
+     * @param buffer
+     *          a scratch buffer the same length as the indices
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param comparator
+     *          the comparator
+     */
+    private static void sort(
+            int[] indices,
+            int[] buffer,
+            int fromIndex,
+            int toIndex,
+            IndexComparator<?> comparator)
+    {
+        if(toIndex - fromIndex <= INSERTION_SORT_THRESHOLD)
+        {
+            insertionSort(indices, fromIndex, toIndex, comparator);
+        }
+        else
+        {
+            int middleIndex = (fromIndex + toIndex) >>> 1;
+            sort(indices, buffer, fromIndex, middleIndex, comparator);
+            sort(indices, buffer, middleIndex, toIndex, comparator);
+
+            // skip the merge if the runs are already in order
+            if(comparator.compare(indices[middleIndex - 1], indices[middleIndex]) > 0)
+            {
+                merge(indices, fromIndex, middleIndex, toIndex, buffer, comparator);
+                System.arraycopy(buffer, fromIndex, indices, fromIndex, toIndex - fromIndex);
+            }
+        }
+    }
+
+    /**
+     * Stable insertion sort of a range of indices
+     * @param indices
+     *          the indices
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param comparator
+     *          the comparator
+     */
+    private static void insertionSort(
+            int[] indices,
+            int fromIndex,
+            int toIndex,
+            IndexComparator<?> comparator)
+    {
+        for(int i = fromIndex + 1; i < toIndex; i++)
+        {
+            int index = indices[i];
+            int j = i - 1;
+            while(j >= fromIndex && comparator.compare(indices[j], index) > 0)
+            {
+                indices[j + 1] = indices[j];
+                j--;
+            }
+            indices[j + 1] = index;
+        }
+    }
+
+    /**
+     * Stable merge of two adjacent sorted runs
+     * @param indices
+     *          the source indices
+     * @param fromIndex
+     *          the start of the 1st run
+     * @param middleIndex
+     *          the end of the 1st run and start of the 2nd
+     * @param toIndex
+     *          the end of the 2nd run
+     * @param target
+     *          where the merged indices are written (to the same positions)
+     * @param comparator
+     *          the comparator
+     */
+    private static void merge(
+            int[] indices,
+            int fromIndex,
+            int middleIndex,
+            int toIndex,
+            int[] target,
+            IndexComparator<?> comparator)
+    {
+        int left = fromIndex;
+        int right = middleIndex;
+        int targetIndex = fromIndex;
+        while(left < middleIndex && right < toIndex)
+        {
+            // taking from the left on ties keeps the merge stable
+            if(comparator.compare(indices[right], indices[left]) < 0)
+            {
+                target[targetIndex] = indices[right];
+                right++;
+            }
+            else
+            {
+                target[targetIndex] = indices[left];
+                left++;
+            }
+            targetIndex++;
+        }
+
+        System.arraycopy(indices, left, target, targetIndex, middleIndex - left);
+        targetIndex += middleIndex - left;
+        System.arraycopy(indices, right, target, targetIndex, toIndex - right);
+    }
+
+    /**
+     * Create the array {0, 1, ..., length - 1}
+     * @param length
+     *          the length
+     * @return
+     *          the indices
+     */
+    private static int[] identityIndices(int length)
+    {
+        int[] indices = new int[length];
+        for(int i = 0; i < length; i++)
+        {
+            indices[i] = i;
+        }
+        return indices;
+    }
+
+    /**
+     * Compares row indices using the extracted column keys
+     */
+    private static final class IndexComparator<E>
+    {
+        private final List<ColumnKeys<E>> columnKeys;
+
+        /**
+         * Constructor
+         * @param columnKeys
+         *          the keys for each sort column
+         */
+        public IndexComparator(List<ColumnKeys<E>> columnKeys)
+        {
+            this.columnKeys = columnKeys;
+        }
+
+        /**
+         * Extract the keys for a range of rows
+         * @param rows
+         *          the rows
+         * @param fromIndex
+         *          the start row (inclusive)
+         * @param toIndex
+         *          the end row (exclusive)
+         */
+        public void extract(List<E[]> rows, int fromIndex, int toIndex)
+        {
+            for(ColumnKeys<E> currKeys: this.columnKeys)
+            {
+                currKeys.extract(rows, fromIndex, toIndex);
+            }
+        }
+
+        /**
+         * Compare two rows
+         * @param rowIndex1
+         *          the 1st row index
+         * @param rowIndex2
+         *          the 2nd row index
+         * @return
+         *          the comparison
+         */
+        public int compare(int rowIndex1, int rowIndex2)
+        {
+            for(ColumnKeys<E> currKeys: this.columnKeys)
+            {
+                int comparison = currKeys.compare(rowIndex1, rowIndex2);
+                if(comparison != 0)
+                {
+                    return comparison;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * The values of one sort column pulled out of the rows
+     */
+    private static abstract class ColumnKeys<E>
+    {
+        /**
+         * the sort column
+         */
+        protected final TableSortColumn<E> sortColumn;
+
+        /**
+         * Constructor
+         * @param sortColumn
+         *          the sort column
+         */
+        public ColumnKeys(TableSortColumn<E> sortColumn)
+        {
+            this.sortColumn = sortColumn;
+        }
+
+        /**
+         * Extract the keys for a range of rows
+         * @param rows
+         *          the rows
+         * @param fromIndex
+         *          the start row (inclusive)
+         * @param toIndex
+         *          the end row (exclusive)
+         */
+        public abstract void extract(List<E[]> rows, int fromIndex, int toIndex);
+
+        /**
+         * Compare the keys of two rows
+         * @param rowIndex1
+         *          the 1st row index
+         * @param rowIndex2
+         *          the 2nd row index
+         * @return
+         *          the comparison
+         */
+        public abstract int compare(int rowIndex1, int rowIndex2);
+    }
+
+    /**
+     * Keys for a column sorted by its objects
+     */
+    private static final class ObjectColumnKeys<E> extends ColumnKeys<E>
+    {
+        private final Object[] values;
+
+        /**
+         * Constructor
+         * @param sortColumn
+         *          the sort column
+         * @param rowCount
+         *          the row count
+         */
+        public ObjectColumnKeys(TableSortColumn<E> sortColumn, int rowCount)
+        {
+            super(sortColumn);
+            this.values = new Object[rowCount];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void extract(List<E[]> rows, int fromIndex, int toIndex)
+        {
+            int columnIndex = this.sortColumn.getColumnIndex();
+            for(int i = fromIndex; i < toIndex; i++)
+            {
+                this.values[i] = rows.get(i)[columnIndex];
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public int compare(int rowIndex1, int rowIndex2)
+        {
+            return compareObjects(
+                    (E)this.values[rowIndex1],
+                    (E)this.values[rowIndex2],
+                    this.sortColumn);
+        }
+    }
+
+    /**
+     * Keys for a column sorted by its values parsed as numbers
+     */
+    private static final class NumericColumnKeys<E> extends ColumnKeys<E>
+    {
+        private final double[] values;
+
+        private final boolean[] nulls;
+
+        private final int sign;
+
+        private final int nullOrder;
+
+        /**
+         * Constructor
+         * @param sortColumn
+         *          the sort column
+         * @param rowCount
+         *          the row count
+         */
+        public NumericColumnKeys(TableSortColumn<E> sortColumn, int rowCount)
+        {
+            super(sortColumn);
+            this.values = new double[rowCount];
+            this.nulls = new boolean[rowCount];
+            this.sign = sortColumn.isDescending() ? -1 : 1;
+            this.nullOrder = sortColumn.isNullsFirst() ? -1 : 1;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void extract(List<E[]> rows, int fromIndex, int toIndex)
+        {
+            int columnIndex = this.sortColumn.getColumnIndex();
+            for(int i = fromIndex; i < toIndex; i++)
+            {
+                Double value = parseNumeric(rows.get(i)[columnIndex]);
+                if(value == null)
+                {
+                    this.nulls[i] = true;
+                }
+                else
+                {
+                    this.values[i] = value;
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int compare(int rowIndex1, int rowIndex2)
+        {
+            boolean isNull1 = this.nulls[rowIndex1];
+            boolean isNull2 = this.nulls[rowIndex2];
+            if(isNull1 || isNull2)
+            {
+                return isNull1 == isNull2 ? 0 : (isNull1 ? this.nullOrder : -this.nullOrder);
+            }
+            else
+            {
+                return this.sign * Double.compare(this.values[rowIndex1], this.values[rowIndex2]);
+            }
+        }
+    }
+}
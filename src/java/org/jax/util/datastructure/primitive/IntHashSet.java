@@ -0,0 +1,375 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.datastructure.primitive;
+
+import java.util.Arrays;
+
+/**
+ * A hash set of int values which doesn't box. It uses open addressing with
+ * linear probing. See {@link IntSortedSet} for a set which keeps its values
+ * in order. This class is not thread safe.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class IntHashSet
+{
+    /**
+     * the table. A 0 marks a free slot so whether the set contains 0 is
+     * held separately
+     */
+    private int[] table;
+
+    private boolean containsZero;
+
+    private int size;
+
+    private int mask;
+
+    private int maxFill;
+
+    /**
+     * Constructor for an empty set
+     */
+    public IntHashSet()
+    {
+        this(PrimitiveHashing.DEFAULT_EXPECTED_SIZE);
+    }
+
+    /**
+     * Constructor for an empty set
+     * @param expectedSize
+     *          the number of values that the set can hold without growing
+     */
+    public IntHashSet(int expectedSize)
+    {
+        this.allocate(PrimitiveHashing.capacityFor(expectedSize));
+    }
+
+    /**
+     * Constructor
+     * @param values
+     *          the initial values (duplicates are fine)
+     */
+    public IntHashSet(int[] values)
+    {
+        this(values.length);
+        this.addAll(values);
+    }
+
+    /**
+     * Get the number of values in the set
+     * @return
+     *          the size
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Determine if the set is empty
+     * @return
+     *          true if the set is empty
+     */
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    /**
+     * Determine if the value is in the set
+     * @param value
+     *          the value
+     * @return
+     *          true if the value is in the set
+     */
+    public boolean contains(int value)
+    {
+        return value == 0 ? this.containsZero : this.findSlot(value) >= 0;
+    }
+
+    /**
+     * Add a value to the set
+     * @param value
+     *          the value
+     * @return
+     *          true if the value wasn't already in the set
+     */
+    public boolean add(int value)
+    {
+        if(value == 0)
+        {
+            if(this.containsZero)
+            {
+                return false;
+            }
+            else
+            {
+                this.containsZero = true;
+                this.size++;
+                return true;
+            }
+        }
+
+        int slot = this.findSlot(value);
+        if(slot >= 0)
+        {
+            return false;
+        }
+        else
+        {
+            this.table[-slot - 1] = value;
+            this.size++;
+            if(this.size >= this.maxFill)
+            {
+                this.rehash(this.table.length * 2);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Add all of the values to the set
+     * @param values
+     *          the values
+     * @return
+     *          true if the set changed
+     */
+    public boolean addAll(int[] values)
+    {
+        boolean changed = false;
+        for(int value: values)
+        {
+            changed |= this.add(value);
+        }
+        return changed;
+    }
+
+    /**
+     * Remove a value from the set
+     * @param value
+     *          the value
+     * @return
+     *          true if the value was in the set
+     */
+    public boolean remove(int value)
+    {
+        if(value == 0)
+        {
+            if(this.containsZero)
+            {
+                this.containsZero = false;
+                this.size--;
+                return true;
+            }
+            else
+            {
+                return false;
+            }
+        }
+
+        int slot = this.findSlot(value);
+        if(slot >= 0)
+        {
+            this.removeAt(slot);
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Remove every value. The capacity is unchanged
+     */
+    public void clear()
+    {
+        Arrays.fill(this.table, 0);
+        this.containsZero = false;
+        this.size = 0;
+    }
+
+    /**
+     * Copy the values into an array (in no particular order)
+     * @return
+     *          the values
+     */
+    public int[] toArray()
+    {
+        int[] array = new int[this.size];
+        int index = this.containsZero ? 1 : 0;
+        for(int value: this.table)
+        {
+            if(value != 0)
+            {
+                array[index] = value;
+                index++;
+            }
+        }
+        return array;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+        if(obj == this)
+        {
+            return true;
+        }
+        else if(obj instanceof IntHashSet)
+        {
+            IntHashSet otherSet = (IntHashSet)obj;
+            if(otherSet.size != this.size || otherSet.containsZero != this.containsZero)
+            {
+                return false;
+            }
+            for(int value: this.table)
+            {
+                if(value != 0 && !otherSet.contains(value))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}. This is the same as the hash code of a
+     * {@link java.util.Set} of the boxed values
+     */
+    @Override
+    public int hashCode()
+    {
+        int hashCode = 0;
+        for(int value: this.table)
+        {
+            hashCode += value;
+        }
+        return hashCode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return Arrays.toString(this.toArray());
+    }
+
+    /**
+     * Find the slot holding the value
+     * @param value
+     *          the value (not 0)
+     * @return
+     *          the slot or (-insertionSlot - 1) if the value isn't in the
+     *          table
+     */
+    private int findSlot(int value)
+    {
+        int[] table = this.table;
+        int slot = PrimitiveHashing.hash(value) & this.mask;
+        while(true)
+        {
+            int slotValue = table[slot];
+            if(slotValue == value)
+            {
+                return slot;
+            }
+            else if(slotValue == 0)
+            {
+                return -slot - 1;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+    }
+
+    /**
+     * Remove the value in the given slot, shifting later values of the
+     * probe sequence back so that lookups don't need tombstones
+     * @param slot
+     *          the slot
+     */
+    private void removeAt(int slot)
+    {
+        int[] table = this.table;
+        int gap = slot;
+        int currSlot = slot;
+        while(true)
+        {
+            currSlot = (currSlot + 1) & this.mask;
+            int value = table[currSlot];
+            if(value == 0)
+            {
+                break;
+            }
+
+            int homeSlot = PrimitiveHashing.hash(value) & this.mask;
+            if(PrimitiveHashing.canShift(homeSlot, gap, currSlot))
+            {
+                table[gap] = value;
+                gap = currSlot;
+            }
+        }
+        table[gap] = 0;
+        this.size--;
+    }
+
+    /**
+     * Move every value into a table with the given capacity
+     * @param capacity
+     *          the new capacity
+     */
+    private void rehash(int capacity)
+    {
+        int[] oldTable = this.table;
+        this.allocate(capacity);
+        for(int value: oldTable)
+        {
+            if(value != 0)
+            {
+                int slot = PrimitiveHashing.hash(value) & this.mask;
+                while(this.table[slot] != 0)
+                {
+                    slot = (slot + 1) & this.mask;
+                }
+                this.table[slot] = value;
+            }
+        }
+    }
+
+    /**
+     * Allocate an empty table
+     * @param capacity
+     *          the table capacity
+     */
+    private void allocate(int capacity)
+    {
+        this.table = new int[capacity];
+        this.mask = capacity - 1;
+        this.maxFill = PrimitiveHashing.maxFill(capacity);
+    }
+}
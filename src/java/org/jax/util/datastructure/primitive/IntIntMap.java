@@ -0,0 +1,445 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.datastructure.primitive;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from int keys to int values which doesn't box either. It uses
+ * open addressing with linear probing over parallel key and value arrays.
+ * Looking up a key that isn't in the map gives the "no entry value" that
+ * was passed to the constructor. This class is not thread safe.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class IntIntMap
+{
+    private final int noEntryValue;
+
+    /**
+     * the table keys. A 0 key marks a free slot so the entry for the 0 key
+     * is held separately
+     */
+    private int[] keys;
+
+    private int[] values;
+
+    private boolean containsZeroKey;
+
+    private int zeroKeyValue;
+
+    private int size;
+
+    private int mask;
+
+    private int maxFill;
+
+    /**
+     * Constructor for an empty map with a no entry value of 0
+     */
+    public IntIntMap()
+    {
+        this(PrimitiveHashing.DEFAULT_EXPECTED_SIZE, 0);
+    }
+
+    /**
+     * Constructor for an empty map
+     * @param expectedSize
+     *          the number of entries that the map can hold without growing
+     * @param noEntryValue
+     *          the value returned for keys that aren't in the map
+     */
+    public IntIntMap(int expectedSize, int noEntryValue)
+    {
+        this.noEntryValue = noEntryValue;
+        this.allocate(PrimitiveHashing.capacityFor(expectedSize));
+    }
+
+    /**
+     * Getter for the value returned for keys that aren't in the map
+     * @return
+     *          the no entry value
+     */
+    public int getNoEntryValue()
+    {
+        return this.noEntryValue;
+    }
+
+    /**
+     * Get the number of entries
+     * @return
+     *          the size
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Determine if the map is empty
+     * @return
+     *          true if there are no entries
+     */
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    /**
+     * Determine if the map has an entry for the key
+     * @param key
+     *          the key
+     * @return
+     *          true if there is an entry
+     */
+    public boolean containsKey(int key)
+    {
+        return key == 0 ? this.containsZeroKey : this.findSlot(key) >= 0;
+    }
+
+    /**
+     * Get the value for the key
+     * @param key
+     *          the key
+     * @return
+     *          the value or the no entry value if the key isn't in the map
+     */
+    public int get(int key)
+    {
+        if(key == 0)
+        {
+            return this.containsZeroKey ? this.zeroKeyValue : this.noEntryValue;
+        }
+        else
+        {
+            int slot = this.findSlot(key);
+            return slot >= 0 ? this.values[slot] : this.noEntryValue;
+        }
+    }
+
+    /**
+     * Put an entry into the map
+     * @param key
+     *          the key
+     * @param value
+     *          the value
+     * @return
+     *          the previous value or the no entry value if the key wasn't
+     *          in the map
+     */
+    public int put(int key, int value)
+    {
+        if(key == 0)
+        {
+            int oldValue = this.containsZeroKey ? this.zeroKeyValue : this.noEntryValue;
+            if(!this.containsZeroKey)
+            {
+                this.containsZeroKey = true;
+                this.size++;
+            }
+            this.zeroKeyValue = value;
+            return oldValue;
+        }
+
+        int slot = this.findSlot(key);
+        if(slot >= 0)
+        {
+            int oldValue = this.values[slot];
+            this.values[slot] = value;
+            return oldValue;
+        }
+        else
+        {
+            this.insertAt(-slot - 1, key, value);
+            return this.noEntryValue;
+        }
+    }
+
+    /**
+     * Add the delta to the key's value. If the key isn't in the map then
+     * this puts the no entry value plus the delta, which makes this useful
+     * for counting.
+     * @param key
+     *          the key
+     * @param delta
+     *          the amount to add
+     * @return
+     *          the new value
+     */
+    public int increment(int key, int delta)
+    {
+        if(key == 0)
+        {
+            if(!this.containsZeroKey)
+            {
+                this.containsZeroKey = true;
+                this.zeroKeyValue = this.noEntryValue;
+                this.size++;
+            }
+            this.zeroKeyValue += delta;
+            return this.zeroKeyValue;
+        }
+
+        int slot = this.findSlot(key);
+        if(slot >= 0)
+        {
+            this.values[slot] += delta;
+            return this.values[slot];
+        }
+        else
+        {
+            int newValue = this.noEntryValue + delta;
+            this.insertAt(-slot - 1, key, newValue);
+            return newValue;
+        }
+    }
+
+    /**
+     * Remove the entry for the key
+     * @param key
+     *          the key
+     * @return
+     *          the removed value or the no entry value if the key wasn't
+     *          in the map
+     */
+    public int remove(int key)
+    {
+        if(key == 0)
+        {
+            if(this.containsZeroKey)
+            {
+                this.containsZeroKey = false;
+                this.size--;
+                return this.zeroKeyValue;
+            }
+            else
+            {
+                return this.noEntryValue;
+            }
+        }
+
+        int slot = this.findSlot(key);
+        if(slot >= 0)
+        {
+            int oldValue = this.values[slot];
+            this.removeAt(slot);
+            return oldValue;
+        }
+        else
+        {
+            return this.noEntryValue;
+        }
+    }
+
+    /**
+     * Remove every entry. The capacity is unchanged
+     */
+    public void clear()
+    {
+        Arrays.fill(this.keys, 0);
+        this.containsZeroKey = false;
+        this.size = 0;
+    }
+
+    /**
+     * Get the keys. The order matches {@link #values()}
+     * @return
+     *          the keys
+     */
+    public int[] keys()
+    {
+        int[] keyArray = new int[this.size];
+        int index = 0;
+        if(this.containsZeroKey)
+        {
+            index++;
+        }
+        for(int key: this.keys)
+        {
+            if(key != 0)
+            {
+                keyArray[index] = key;
+                index++;
+            }
+        }
+        return keyArray;
+    }
+
+    /**
+     * Get the values. The order matches {@link #keys()}
+     * @return
+     *          the values
+     */
+    public int[] values()
+    {
+        int[] valueArray = new int[this.size];
+        int index = 0;
+        if(this.containsZeroKey)
+        {
+            valueArray[0] = this.zeroKeyValue;
+            index++;
+        }
+        for(int slot = 0; slot < this.keys.length; slot++)
+        {
+            if(this.keys[slot] != 0)
+            {
+                valueArray[index] = this.values[slot];
+                index++;
+            }
+        }
+        return valueArray;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder("{");
+        int[] keyArray = this.keys();
+        int[] valueArray = this.values();
+        for(int i = 0; i < keyArray.length; i++)
+        {
+            if(i > 0)
+            {
+                sb.append(", ");
+            }
+            sb.append(keyArray[i]).append('=').append(valueArray[i]);
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * Find the slot holding the key
+     * @param key
+     *          the key (not 0)
+     * @return
+     *          the slot or (-insertionSlot - 1) if the key isn't in the
+     *          table
+     */
+    private int findSlot(int key)
+    {
+        int[] keys = this.keys;
+        int slot = PrimitiveHashing.hash(key) & this.mask;
+        while(true)
+        {
+            int slotKey = keys[slot];
+            if(slotKey == key)
+            {
+                return slot;
+            }
+            else if(slotKey == 0)
+            {
+                return -slot - 1;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+    }
+
+    /**
+     * Insert a new entry in a free slot, growing if needed
+     * @param slot
+     *          the free slot
+     * @param key
+     *          the key
+     * @param value
+     *          the value
+     */
+    private void insertAt(int slot, int key, int value)
+    {
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        this.size++;
+        if(this.size >= this.maxFill)
+        {
+            this.rehash(this.keys.length * 2);
+        }
+    }
+
+    /**
+     * Remove the entry in the given slot, shifting later entries of the
+     * probe sequence back so that lookups don't need tombstones
+     * @param slot
+     *          the slot
+     */
+    private void removeAt(int slot)
+    {
+        int[] keys = this.keys;
+        int[] values = this.values;
+        int gap = slot;
+        int currSlot = slot;
+        while(true)
+        {
+            currSlot = (currSlot + 1) & this.mask;
+            int key = keys[currSlot];
+            if(key == 0)
+            {
+                break;
+            }
+
+            int homeSlot = PrimitiveHashing.hash(key) & this.mask;
+            if(PrimitiveHashing.canShift(homeSlot, gap, currSlot))
+            {
+                keys[gap] = key;
+                values[gap] = values[currSlot];
+                gap = currSlot;
+            }
+        }
+        keys[gap] = 0;
+        this.size--;
+    }
+
+    /**
+     * Move every entry into a table with the given capacity
+     * @param capacity
+     *          the new capacity
+     */
+    private void rehash(int capacity)
+    {
+        int[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        this.allocate(capacity);
+        for(int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++)
+        {
+            int key = oldKeys[oldSlot];
+            if(key != 0)
+            {
+                int slot = PrimitiveHashing.hash(key) & this.mask;
+                while(this.keys[slot] != 0)
+                {
+                    slot = (slot + 1) & this.mask;
+                }
+                this.keys[slot] = key;
+                this.values[slot] = oldValues[oldSlot];
+            }
+        }
+    }
+
+    /**
+     * Allocate empty tables
+     * @param capacity
+     *          the table capacity
+     */
+    private void allocate(int capacity)
+    {
+        this.keys = new int[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        this.maxFill = PrimitiveHashing.maxFill(capacity);
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.datastructure.primitive;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of int values kept in a sorted array. Lookups are binary searches
+ * and the values can be read in ascending order by index, so this suits
+ * sets that are built up front and then queried many times. Adding or
+ * removing a single value is linear in the size of the set so
+ * {@link #addAll(int[])} should be used to add many values at once. This
+ * class is not thread safe.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class IntSortedSet
+{
+    private static final int[] EMPTY_VALUES = new int[0];
+
+    private int[] values;
+
+    private int size;
+
+    /**
+     * Constructor for an empty set
+     */
+    public IntSortedSet()
+    {
+        this.values = EMPTY_VALUES;
+        this.size = 0;
+    }
+
+    /**
+     * Constructor
+     * @param values
+     *          the initial values in any order (duplicates are fine)
+     */
+    public IntSortedSet(int[] values)
+    {
+        this();
+        this.addAll(values);
+    }
+
+    /**
+     * Get the number of values in the set
+     * @return
+     *          the size
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Determine if the set is empty
+     * @return
+     *          true if the set is empty
+     */
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    /**
+     * Determine if the value is in the set
+     * @param value
+     *          the value
+     * @return
+     *          true if the value is in the set
+     */
+    public boolean contains(int value)
+    {
+        return this.indexOf(value) >= 0;
+    }
+
+    /**
+     * Find the index of the value
+     * @param value
+     *          the value
+     * @return
+     *          the index of the value if it's in the set, otherwise
+     *          (-(insertion point) - 1) like
+     *          {@link Arrays#binarySearch(int[], int)}
+     */
+    public int indexOf(int value)
+    {
+        return Arrays.binarySearch(this.values, 0, this.size, value);
+    }
+
+    /**
+     * Get the value with the given index. Values are indexed in ascending
+     * order
+     * @param index
+     *          the index
+     * @return
+     *          the value
+     * @throws IndexOutOfBoundsException
+     *          if the index is out of range
+     */
+    public int get(int index) throws IndexOutOfBoundsException
+    {
+        if(index < 0 || index >= this.size)
+        {
+            throw new IndexOutOfBoundsException(
+                    "index: " + index + ", size: " + this.size);
+        }
+        return this.values[index];
+    }
+
+    /**
+     * Get the smallest value
+     * @return
+     *          the smallest value
+     * @throws NoSuchElementException
+     *          if the set is empty
+     */
+    public int first() throws NoSuchElementException
+    {
+        if(this.size == 0)
+        {
+            throw new NoSuchElementException();
+        }
+        return this.values[0];
+    }
+
+    /**
+     * Get the largest value
+     * @return
+     *          the largest value
+     * @throws NoSuchElementException
+     *          if the set is empty
+     */
+    public int last() throws NoSuchElementException
+    {
+        if(this.size == 0)
+        {
+            throw new NoSuchElementException();
+        }
+        return this.values[this.size - 1];
+    }
+
+    /**
+     * Get the index of the smallest value that is greater than or equal to
+     * the given value
+     * @param value
+     *          the value
+     * @return
+     *          the index or {@link #size()} if there is no such value
+     */
+    public int ceilingIndex(int value)
+    {
+        int index = this.indexOf(value);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Get the index of the largest value that is less than or equal to
+     * the given value
+     * @param value
+     *          the value
+     * @return
+     *          the index or -1 if there is no such value
+     */
+    public int floorIndex(int value)
+    {
+        int index = this.indexOf(value);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * Add a value to the set
+     * @param value
+     *          the value
+     * @return
+     *          true if the value wasn't already in the set
+     */
+    public boolean add(int value)
+    {
+        int index = this.indexOf(value);
+        if(index >= 0)
+        {
+            return false;
+        }
+
+        int insertionIndex = -index - 1;
+        if(this.size == this.values.length)
+        {
+            int newCapacity = (int)Math.min(Integer.MAX_VALUE - 8, 2L * this.size + 2L);
+            int[] newValues = new int[newCapacity];
+            System.arraycopy(this.values, 0, newValues, 0, insertionIndex);
+            System.arraycopy(
+                    this.values,
+                    insertionIndex,
+                    newValues,
+                    insertionIndex + 1,
+                    this.size - insertionIndex);
+            this.values = newValues;
+        }
+        else
+        {
+            System.arraycopy(
+                    this.values,
+                    insertionIndex,
+                    this.values,
+                    insertionIndex + 1,
+                    this.size - insertionIndex);
+        }
+        this.values[insertionIndex] = value;
+        this.size++;
+        return true;
+    }
+
+    /**
+     * Add all of the values to the set. The values are sorted and merged
+     * into the set in a single pass
+     * @param values
+     *          the values in any order (duplicates are fine)
+     * @return
+     *          true if the set changed
+     */
+    public boolean addAll(int[] values)
+    {
+        if(values.length == 0)
+        {
+            return false;
+        }
+
+        int[] sortedValues = values.clone();
+        Arrays.sort(sortedValues);
+
+        // merge the two sorted arrays dropping duplicates
+        int[] mergedValues = new int[this.size + sortedValues.length];
+        int mergedCount = 0;
+        int index1 = 0;
+        int index2 = 0;
+        while(index1 < this.size || index2 < sortedValues.length)
+        {
+            int value;
+            if(index2 == sortedValues.length ||
+               (index1 < this.size && this.values[index1] <= sortedValues[index2]))
+            {
+                value = this.values[index1];
+                index1++;
+            }
+            else
+            {
+                value = sortedValues[index2];
+                index2++;
+            }
+
+            if(mergedCount == 0 || mergedValues[mergedCount - 1] != value)
+            {
+                mergedValues[mergedCount] = value;
+                mergedCount++;
+            }
+        }
+
+        boolean changed = mergedCount != this.size;
+        this.values = mergedValues;
+        this.size = mergedCount;
+        return changed;
+    }
+
+    /**
+     * Remove a value from the set
+     * @param value
+     *          the value
+     * @return
+     *          true if the value was in the set
+     */
+    public boolean remove(int value)
+    {
+        int index = this.indexOf(value);
+        if(index < 0)
+        {
+            return false;
+        }
+        else
+        {
+            System.arraycopy(
+                    this.values,
+                    index + 1,
+                    this.values,
+                    index,
+                    this.size - index - 1);
+            this.size--;
+            return true;
+        }
+    }
+
+    /**
+     * Remove every value
+     */
+    public void clear()
+    {
+        this.size = 0;
+    }
+
+    /**
+     * Copy the values into an array in ascending order
+     * @return
+     *          the values
+     */
+    public int[] toArray()
+    {
+        int[] array = new int[this.size];
+        System.arraycopy(this.values, 0, array, 0, this.size);
+        return array;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+        if(obj == this)
+        {
+            return true;
+        }
+        else if(obj instanceof IntSortedSet)
+        {
+            IntSortedSet otherSet = (IntSortedSet)obj;
+            if(otherSet.size != this.size)
+            {
+                return false;
+            }
+            for(int i = 0; i < this.size; i++)
+            {
+                if(this.values[i] != otherSet.values[i])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}. This is the same as the hash code of a
+     * {@link java.util.Set} of the boxed values
+     */
+    @Override
+    public int hashCode()
+    {
+        int hashCode = 0;
+        for(int i = 0; i < this.size; i++)
+        {
+            int value = this.values[i];
+            hashCode += value;
+        }
+        return hashCode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return Arrays.toString(this.toArray());
+    }
+}
@@ -0,0 +1,559 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.datastructure.primitive;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A growable array of long values. This is the primitive version of an
+ * {@link java.util.ArrayList} and it avoids boxing every value. Use
+ * {@link #asList()} when the values need to be passed to code which expects
+ * a {@link List} and {@link #getBackingArray()} to hand the values to
+ * functions which work on array slices without copying them. This
+ * class is not thread safe.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class LongArrayList
+{
+    private static final int DEFAULT_CAPACITY = 10;
+
+    private long[] values;
+
+    private int size;
+
+    /**
+     * Constructor for an empty list with a default capacity
+     */
+    public LongArrayList()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor for an empty list
+     * @param initialCapacity
+     *          the initial capacity
+     */
+    public LongArrayList(int initialCapacity)
+    {
+        if(initialCapacity < 0)
+        {
+            throw new IllegalArgumentException(
+                    "the capacity can't be negative: " + initialCapacity);
+        }
+        this.values = new long[initialCapacity];
+        this.size = 0;
+    }
+
+    /**
+     * Constructor
+     * @param values
+     *          the initial values (these are copied)
+     */
+    public LongArrayList(long[] values)
+    {
+        this.values = values.clone();
+        this.size = values.length;
+    }
+
+    /**
+     * Get the number of values in the list
+     * @return
+     *          the size
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Determine if the list is empty
+     * @return
+     *          true if the list is empty
+     */
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    /**
+     * Get the value at the given index
+     * @param index
+     *          the index
+     * @return
+     *          the value
+     * @throws IndexOutOfBoundsException
+     *          if the index is out of range
+     */
+    public long get(int index) throws IndexOutOfBoundsException
+    {
+        this.checkIndex(index);
+        return this.values[index];
+    }
+
+    /**
+     * Set the value at the given index
+     * @param index
+     *          the index
+     * @param value
+     *          the new value
+     * @return
+     *          the old value
+     * @throws IndexOutOfBoundsException
+     *          if the index is out of range
+     */
+    public long set(int index, long value) throws IndexOutOfBoundsException
+    {
+        this.checkIndex(index);
+        long oldValue = this.values[index];
+        this.values[index] = value;
+        return oldValue;
+    }
+
+    /**
+     * Append a value to the end of the list
+     * @param value
+     *          the value
+     */
+    public void add(long value)
+    {
+        if(this.size == this.values.length)
+        {
+            this.ensureCapacity(this.size + 1);
+        }
+        this.values[this.size] = value;
+        this.size++;
+    }
+
+    /**
+     * Insert a value into the list shifting any following values up by one
+     * @param index
+     *          the index to insert at
+     * @param value
+     *          the value
+     * @throws IndexOutOfBoundsException
+     *          if the index is out of range
+     */
+    public void add(int index, long value) throws IndexOutOfBoundsException
+    {
+        if(index < 0 || index > this.size)
+        {
+            throw this.indexOutOfBounds(index);
+        }
+        this.ensureCapacity(this.size + 1);
+        System.arraycopy(
+                this.values,
+                index,
+                this.values,
+                index + 1,
+                this.size - index);
+        this.values[index] = value;
+        this.size++;
+    }
+
+    /**
+     * Append all of the given values to the end of the list
+     * @param values
+     *          the values
+     */
+    public void addAll(long[] values)
+    {
+        this.addAll(values, 0, values.length);
+    }
+
+    /**
+     * Append a slice of the given values to the end of the list
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     */
+    public void addAll(long[] values, int fromIndex, int toIndex)
+    {
+        if(fromIndex < 0 || fromIndex > toIndex || toIndex > values.length)
+        {
+            throw new IndexOutOfBoundsException(
+                    "bad range [" + fromIndex + ", " + toIndex +
+                    ") for length " + values.length);
+        }
+        int count = toIndex - fromIndex;
+        this.ensureCapacity(this.size + count);
+        System.arraycopy(values, fromIndex, this.values, this.size, count);
+        this.size += count;
+    }
+
+    /**
+     * Append all of the values in the given list to the end of this list
+     * @param otherList
+     *          the other list
+     */
+    public void addAll(LongArrayList otherList)
+    {
+        this.addAll(otherList.values, 0, otherList.size);
+    }
+
+    /**
+     * Remove the value at the given index shifting any following values
+     * down by one
+     * @param index
+     *          the index
+     * @return
+     *          the removed value
+     * @throws IndexOutOfBoundsException
+     *          if the index is out of range
+     */
+    public long removeAt(int index) throws IndexOutOfBoundsException
+    {
+        this.checkIndex(index);
+        long oldValue = this.values[index];
+        System.arraycopy(
+                this.values,
+                index + 1,
+                this.values,
+                index,
+                this.size - index - 1);
+        this.size--;
+        return oldValue;
+    }
+
+    /**
+     * Remove the values in the given range
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @throws IndexOutOfBoundsException
+     *          if the range is bad
+     */
+    public void removeRange(int fromIndex, int toIndex)
+    throws IndexOutOfBoundsException
+    {
+        if(fromIndex < 0 || fromIndex > toIndex || toIndex > this.size)
+        {
+            throw new IndexOutOfBoundsException(
+                    "bad range [" + fromIndex + ", " + toIndex +
+                    ") for size " + this.size);
+        }
+        System.arraycopy(
+                this.values,
+                toIndex,
+                this.values,
+                fromIndex,
+                this.size - toIndex);
+        this.size -= toIndex - fromIndex;
+    }
+
+    /**
+     * Remove all of the values. The capacity is unchanged
+     */
+    public void clear()
+    {
+        this.size = 0;
+    }
+
+    /**
+     * Find the 1st index of the given value
+     * @param value
+     *          the value
+     * @return
+     *          the index or -1 if the value isn't in the list
+     */
+    public int indexOf(long value)
+    {
+        for(int i = 0; i < this.size; i++)
+        {
+            if(equal(this.values[i], value))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Determine if the list contains the given value
+     * @param value
+     *          the value
+     * @return
+     *          true if the list contains the value
+     */
+    public boolean contains(long value)
+    {
+        return this.indexOf(value) != -1;
+    }
+
+    /**
+     * Sort the list in ascending order
+     */
+    public void sort()
+    {
+        Arrays.sort(this.values, 0, this.size);
+    }
+
+    /**
+     * Make sure that the list can hold at least the given number of values
+     * without growing
+     * @param minCapacity
+     *          the capacity needed
+     */
+    public void ensureCapacity(int minCapacity)
+    {
+        if(minCapacity > this.values.length)
+        {
+            long doubledCapacity = 2L * this.values.length + 2L;
+            int newCapacity = (int)Math.max(
+                    minCapacity,
+                    Math.min(Integer.MAX_VALUE - 8, doubledCapacity));
+            long[] newValues = new long[newCapacity];
+            System.arraycopy(this.values, 0, newValues, 0, this.size);
+            this.values = newValues;
+        }
+    }
+
+    /**
+     * Release any unused capacity
+     */
+    public void trimToSize()
+    {
+        if(this.values.length != this.size)
+        {
+            this.values = this.toArray();
+        }
+    }
+
+    /**
+     * Copy the values into a new array
+     * @return
+     *          the values
+     */
+    public long[] toArray()
+    {
+        long[] array = new long[this.size];
+        System.arraycopy(this.values, 0, array, 0, this.size);
+        return array;
+    }
+
+    /**
+     * Get the array backing this list. Only the 1st {@link #size()} values
+     * are meaningful. Writes to the array are seen by the list until the
+     * list has to grow, at which point it moves to a new array.
+     * @return
+     *          the backing array
+     */
+    public long[] getBackingArray()
+    {
+        return this.values;
+    }
+
+    /**
+     * Get a {@link List} view of this list. The view reads and writes
+     * through to this list, boxing values as they pass through it, and it
+     * supports adding and removing.
+     * @return
+     *          the view
+     */
+    public List<Long> asList()
+    {
+        return new BoxedView();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+        if(obj == this)
+        {
+            return true;
+        }
+        else if(obj instanceof LongArrayList)
+        {
+            LongArrayList otherList = (LongArrayList)obj;
+            if(otherList.size != this.size)
+            {
+                return false;
+            }
+            for(int i = 0; i < this.size; i++)
+            {
+                if(!equal(this.values[i], otherList.values[i]))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}. This is the same as the hash code of
+     * {@link #asList()}
+     */
+    @Override
+    public int hashCode()
+    {
+        int hashCode = 1;
+        for(int i = 0; i < this.size; i++)
+        {
+            long value = this.values[i];
+            hashCode = 31 * hashCode + (int)(value ^ (value >>> 32));
+        }
+        return hashCode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder("[");
+        for(int i = 0; i < this.size; i++)
+        {
+            if(i > 0)
+            {
+                sb.append(", ");
+            }
+            sb.append(this.values[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Check that the index is in range
+     * @param index
+     *          the index
+     */
+    private void checkIndex(int index)
+    {
+        if(index < 0 || index >= this.size)
+        {
+            throw this.indexOutOfBounds(index);
+        }
+    }
+
+    /**
+     * Create an exception for a bad index
+     * @param index
+     *          the index
+     * @return
+     *          the exception
+     */
+    private IndexOutOfBoundsException indexOutOfBounds(int index)
+    {
+        return new IndexOutOfBoundsException(
+                "index: " + index + ", size: " + this.size);
+    }
+
+    /**
+     * Compare values the same way that {@link Long#equals(Object)} does
+     * @param a
+     *          the 1st value
+     * @param b
+     *          the 2nd value
+     * @return
+     *          true if they're equal
+     */
+    private static boolean equal(long a, long b)
+    {
+        return a == b;
+    }
+
+    /**
+     * A boxed view of the list
+     */
+    private class BoxedView extends AbstractList<Long> implements RandomAccess
+    {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Long get(int index)
+        {
+            return LongArrayList.this.get(index);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Long set(int index, Long element)
+        {
+            return LongArrayList.this.set(index, element);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void add(int index, Long element)
+        {
+            LongArrayList.this.add(index, element);
+            this.modCount++;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Long remove(int index)
+        {
+            Long oldValue = LongArrayList.this.removeAt(index);
+            this.modCount++;
+            return oldValue;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void removeRange(int fromIndex, int toIndex)
+        {
+            LongArrayList.this.removeRange(fromIndex, toIndex);
+            this.modCount++;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void clear()
+        {
+            LongArrayList.this.clear();
+            this.modCount++;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size()
+        {
+            return LongArrayList.this.size;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.datastructure.primitive;
+
+/**
+ * Hashing and sizing functions shared by the open addressing hash tables
+ * in this package. Table capacities are always powers of two and tables
+ * are kept at most three quarters full.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+final class PrimitiveHashing
+{
+    /**
+     * the default number of entries that a new table can hold without
+     * growing
+     */
+    static final int DEFAULT_EXPECTED_SIZE = 16;
+
+    private static final int MIN_CAPACITY = 4;
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * Private constructor to avoid an instance being created
+     */
+    private PrimitiveHashing()
+    {
+    }
+
+    /**
+     * Hash an int key. Multiplying by the golden ratio and folding the
+     * high bits down means that sequential keys spread out over the table
+     * rather than sitting in consecutive slots.
+     * @param key
+     *          the key
+     * @return
+     *          the hash
+     */
+    static int hash(int key)
+    {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Hash a long key
+     * @param key
+     *          the key
+     * @return
+     *          the hash
+     */
+    static int hash(long key)
+    {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 32;
+        return (int)(hash ^ (hash >>> 16));
+    }
+
+    /**
+     * Get the table capacity needed to hold the given number of entries
+     * @param expectedSize
+     *          the number of entries
+     * @return
+     *          the capacity
+     */
+    static int capacityFor(int expectedSize)
+    {
+        if(expectedSize < 0)
+        {
+            throw new IllegalArgumentException(
+                    "the expected size can't be negative: " + expectedSize);
+        }
+
+        long neededCapacity = (expectedSize * 4L + 2L) / 3L + 1L;
+        int capacity = MIN_CAPACITY;
+        while(capacity < neededCapacity)
+        {
+            if(capacity == MAX_CAPACITY)
+            {
+                throw new IllegalStateException(
+                        "too many entries for a hash table: " + expectedSize);
+            }
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Get the number of entries that trigger growing the table
+     * @param capacity
+     *          the table capacity
+     * @return
+     *          the fill limit
+     */
+    static int maxFill(int capacity)
+    {
+        return Math.min(capacity - 1, (int)(capacity * 3L / 4L));
+    }
+
+    /**
+     * Determine whether an entry whose home slot is homeSlot can be moved
+     * from slot to the empty gap when deleting with backward shifting
+     * @param homeSlot
+     *          the slot that the entry hashes to
+     * @param gap
+     *          the empty slot
+     * @param slot
+     *          the slot that the entry is in now
+     * @return
+     *          true if the entry can move into the gap
+     */
+    static boolean canShift(int homeSlot, int gap, int slot)
+    {
+        // the entry can only move if its home slot isn't cyclically in
+        // (gap, slot]
+        return gap <= slot ?
+               (homeSlot <= gap || homeSlot > slot) :
+               (homeSlot <= gap && homeSlot > slot);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A Bloom filter over the string values of a column chunk. This lets
+ * {@link BinaryTableReader} skip blocks that can't contain a value without
+ * decoding them. A filter sized with {@link #BITS_PER_VALUE} bits per
+ * distinct value has a false positive rate of roughly 1%.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+final class BinaryTableBloomFilter
+{
+    /**
+     * the number of bits we use for each distinct value
+     */
+    static final int BITS_PER_VALUE = 10;
+
+    /**
+     * the number of hash functions (optimal for 10 bits per value)
+     */
+    private static final int HASH_COUNT = 7;
+
+    private final long[] words;
+
+    private final int bitCount;
+
+    /**
+     * Constructor
+     * @param distinctValueCount
+     *          the number of distinct values that will be added
+     */
+    BinaryTableBloomFilter(int distinctValueCount)
+    {
+        this(new long[Math.max(1, (distinctValueCount * BITS_PER_VALUE + 63) >>> 6)]);
+    }
+
+    /**
+     * Constructor
+     * @param words
+     *          the bit words
+     */
+    private BinaryTableBloomFilter(long[] words)
+    {
+        this.words = words;
+        this.bitCount = words.length << 6;
+    }
+
+    /**
+     * Add the given value to the filter
+     * @param value
+     *          the value
+     */
+    void add(String value)
+    {
+        long hash = hash(value);
+        int hash1 = (int)hash;
+        int hash2 = (int)(hash >>> 32);
+        for(int i = 0; i < HASH_COUNT; i++)
+        {
+            int bit = ((hash1 + i * hash2) & Integer.MAX_VALUE) % this.bitCount;
+            this.words[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Test the given value
+     * @param value
+     *          the value
+     * @return
+     *          false if the value was definitely never added and true if
+     *          it might have been
+     */
+    boolean mightContain(String value)
+    {
+        long hash = hash(value);
+        int hash1 = (int)hash;
+        int hash2 = (int)(hash >>> 32);
+        for(int i = 0; i < HASH_COUNT; i++)
+        {
+            int bit = ((hash1 + i * hash2) & Integer.MAX_VALUE) % this.bitCount;
+            if((this.words[bit >>> 6] & (1L << bit)) == 0L)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Write this filter
+     * @param sink
+     *          the sink to write to
+     */
+    void write(BinaryTableFormat.ByteSink sink)
+    {
+        sink.writeVarLong(this.words.length);
+        for(long word: this.words)
+        {
+            sink.writeLong(word);
+        }
+    }
+
+    /**
+     * Read a filter that was written with
+     * {@link #write(BinaryTableFormat.ByteSink)}
+     * @param buffer
+     *          the buffer to read from
+     * @return
+     *          the filter
+     */
+    static BinaryTableBloomFilter read(ByteBuffer buffer)
+    {
+        long[] words = new long[(int)BinaryTableFormat.readVarLong(buffer)];
+        for(int i = 0; i < words.length; i++)
+        {
+            words[i] = buffer.getLong();
+        }
+
+        return new BinaryTableBloomFilter(words);
+    }
+
+    /**
+     * A 64 bit FNV-1a hash of the string's chars followed by a final mix so
+     * that both halves are usable as independent hashes
+     * @param value
+     *          the value to hash
+     * @return
+     *          the hash
+     */
+    private static long hash(String value)
+    {
+        long hash = 0xCBF29CE484222325L;
+        int length = value.length();
+        for(int i = 0; i < length; i++)
+        {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+
+        return hash;
+    }
+}
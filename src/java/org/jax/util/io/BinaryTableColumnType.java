@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.io;
+
+/**
+ * The value types that a {@link BinaryTableWriter} detects for its columns.
+ * A column is only given a numeric type if every one of its values is
+ * written exactly the way that {@link Long#toString(long)} or
+ * {@link Double#toString(double)} would write it, which is what allows
+ * numeric columns to be converted back to text without any change.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public enum BinaryTableColumnType
+{
+    /**
+     * every value is a canonical long
+     */
+    LONG,
+    
+    /**
+     * every value is a canonical long or a canonical double
+     */
+    DOUBLE,
+    
+    /**
+     * values are arbitrary strings
+     */
+    STRING;
+    
+    /**
+     * Get the most specific type that covers both this type and the given
+     * type
+     * @param otherType
+     *          the other type
+     * @return
+     *          the combined type
+     */
+    public BinaryTableColumnType combine(BinaryTableColumnType otherType)
+    {
+        return this.ordinal() >= otherType.ordinal() ? this : otherType;
+    }
+}
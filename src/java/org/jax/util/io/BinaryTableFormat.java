@@ -0,0 +1,649 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Constants and low level encoding functions shared by
+ * {@link BinaryTableWriter} and {@link BinaryTableReader}. The file layout
+ * is:
+ * <pre>
+ *    file    = header block* footer trailer
+ *    header  = MAGIC(int) VERSION(int)
+ *    block   = [row-lengths] chunk*          (one chunk per column)
+ *    footer  = column-count block-count block-meta* column-stats*
+ *    trailer = footer-offset(long) footer-length(int) MAGIC(int)
+ * </pre>
+ * Every chunk is stored as a region which may be deflate compressed. After
+ * decompression a chunk starts with its value encoding and null bitmap
+ * followed by the encoded values. The block metadata in the footer holds
+ * a zone map (the chunk statistics) and an optional Bloom filter for each
+ * chunk so that readers can rule blocks out without touching them.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+final class BinaryTableFormat
+{
+    /**
+     * marks the start and end of a binary table file ("JAXB")
+     */
+    static final int MAGIC = 0x4A415842;
+
+    /**
+     * the file format version
+     */
+    static final int VERSION = 2;
+
+    /**
+     * the size of the header in bytes
+     */
+    static final int HEADER_SIZE = 8;
+
+    /**
+     * the size of the trailer in bytes
+     */
+    static final int TRAILER_SIZE = 16;
+
+    /**
+     * region is stored uncompressed
+     */
+    static final byte CODEC_NONE = 0;
+
+    /**
+     * region is stored using {@link java.util.zip.Deflater}
+     */
+    static final byte CODEC_DEFLATE = 1;
+
+    /**
+     * strings stored one after the other
+     */
+    static final byte ENCODING_PLAIN = 0;
+
+    /**
+     * distinct strings followed by fixed width codes
+     */
+    static final byte ENCODING_DICTIONARY = 1;
+
+    /**
+     * zig-zag variable length deltas of long values
+     */
+    static final byte ENCODING_LONG = 2;
+
+    /**
+     * raw 8 byte double values
+     */
+    static final byte ENCODING_DOUBLE = 3;
+
+    /**
+     * no instances
+     */
+    private BinaryTableFormat()
+    {
+    }
+
+    /**
+     * Determine if the given string is exactly what {@link Long#toString(long)}
+     * would produce for some long value
+     * @param value
+     *          the value to test
+     * @return
+     *          true iff the string is a canonical long
+     */
+    static boolean isCanonicalLong(String value)
+    {
+        int length = value.length();
+        if(length == 0 || length > 20)
+        {
+            return false;
+        }
+
+        int start = value.charAt(0) == '-' ? 1 : 0;
+        if(start == length)
+        {
+            return false;
+        }
+        else if(value.charAt(start) == '0' && (length - start > 1 || start == 1))
+        {
+            // leading zeros and negative zero aren't canonical
+            return false;
+        }
+
+        for(int i = start; i < length; i++)
+        {
+            char currChar = value.charAt(i);
+            if(currChar < '0' || currChar > '9')
+            {
+                return false;
+            }
+        }
+
+        if(length - start < 19)
+        {
+            return true;
+        }
+        else
+        {
+            // we may be outside of the long range
+            try
+            {
+                Long.parseLong(value);
+                return true;
+            }
+            catch(NumberFormatException ex)
+            {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Determine if the given string is exactly what
+     * {@link Double#toString(double)} would produce for some double value
+     * @param value
+     *          the value to test
+     * @return
+     *          true iff the string is a canonical double
+     */
+    static boolean isCanonicalDouble(String value)
+    {
+        if(value.length() == 0)
+        {
+            return false;
+        }
+
+        char firstChar = value.charAt(0);
+        if(!((firstChar >= '0' && firstChar <= '9') ||
+             firstChar == '-' || firstChar == 'N' || firstChar == 'I'))
+        {
+            return false;
+        }
+
+        try
+        {
+            return Double.toString(Double.parseDouble(value)).equals(value);
+        }
+        catch(NumberFormatException ex)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * A growable byte array that the writer encodes into
+     */
+    static final class ByteSink
+    {
+        private byte[] bytes;
+
+        private int length = 0;
+
+        /**
+         * Constructor
+         * @param initialCapacity
+         *          the initial capacity
+         */
+        ByteSink(int initialCapacity)
+        {
+            this.bytes = new byte[Math.max(16, initialCapacity)];
+        }
+
+        /**
+         * Getter for the number of bytes written
+         * @return
+         *          the length
+         */
+        int length()
+        {
+            return this.length;
+        }
+
+        /**
+         * Getter for the backing array. Only the first {@link #length()}
+         * bytes are meaningful
+         * @return
+         *          the bytes
+         */
+        byte[] getBytes()
+        {
+            return this.bytes;
+        }
+
+        /**
+         * Forget everything that has been written
+         */
+        void reset()
+        {
+            this.length = 0;
+        }
+
+        /**
+         * make sure that we have room for the given number of bytes
+         * @param byteCount
+         *          the number of bytes
+         */
+        private void ensureRoom(int byteCount)
+        {
+            int required = this.length + byteCount;
+            if(required > this.bytes.length)
+            {
+                byte[] newBytes = new byte[Math.max(required, this.bytes.length * 2)];
+                System.arraycopy(this.bytes, 0, newBytes, 0, this.length);
+                this.bytes = newBytes;
+            }
+        }
+
+        /**
+         * Write a single byte
+         * @param value
+         *          the byte
+         */
+        void writeByte(int value)
+        {
+            this.ensureRoom(1);
+            this.bytes[this.length++] = (byte)value;
+        }
+
+        /**
+         * Write the given bytes
+         * @param source
+         *          the source array
+         * @param offset
+         *          the offset in the source
+         * @param count
+         *          the number of bytes
+         */
+        void writeBytes(byte[] source, int offset, int count)
+        {
+            this.ensureRoom(count);
+            System.arraycopy(source, offset, this.bytes, this.length, count);
+            this.length += count;
+        }
+
+        /**
+         * Write a big endian int
+         * @param value
+         *          the value
+         */
+        void writeInt(int value)
+        {
+            this.ensureRoom(4);
+            this.bytes[this.length++] = (byte)(value >>> 24);
+            this.bytes[this.length++] = (byte)(value >>> 16);
+            this.bytes[this.length++] = (byte)(value >>> 8);
+            this.bytes[this.length++] = (byte)value;
+        }
+
+        /**
+         * Write a big endian long
+         * @param value
+         *          the value
+         */
+        void writeLong(long value)
+        {
+            this.writeInt((int)(value >>> 32));
+            this.writeInt((int)value);
+        }
+
+        /**
+         * Write a double as its raw long bits
+         * @param value
+         *          the value
+         */
+        void writeDouble(double value)
+        {
+            this.writeLong(Double.doubleToRawLongBits(value));
+        }
+
+        /**
+         * Write an unsigned variable length long (7 bits per byte)
+         * @param value
+         *          the value (treated as unsigned)
+         */
+        void writeVarLong(long value)
+        {
+            while((value & ~0x7FL) != 0L)
+            {
+                this.writeByte((int)((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            this.writeByte((int)value);
+        }
+
+        /**
+         * Write a signed variable length long using zig-zag encoding so that
+         * small negative values are small too
+         * @param value
+         *          the value
+         */
+        void writeZigZagLong(long value)
+        {
+            this.writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        /**
+         * Write a string as a byte count followed by a modified UTF-8
+         * encoding where every char is encoded independently. Unlike
+         * standard UTF-8 this round trips any string exactly (including
+         * unpaired surrogates).
+         * @param value
+         *          the string
+         */
+        void writeString(String value)
+        {
+            int charCount = value.length();
+            int byteCount = 0;
+            for(int i = 0; i < charCount; i++)
+            {
+                char currChar = value.charAt(i);
+                if(currChar >= 0x0001 && currChar <= 0x007F)
+                {
+                    byteCount++;
+                }
+                else if(currChar <= 0x07FF)
+                {
+                    byteCount += 2;
+                }
+                else
+                {
+                    byteCount += 3;
+                }
+            }
+
+            this.writeVarLong(byteCount);
+            this.ensureRoom(byteCount);
+            for(int i = 0; i < charCount; i++)
+            {
+                char currChar = value.charAt(i);
+                if(currChar >= 0x0001 && currChar <= 0x007F)
+                {
+                    this.bytes[this.length++] = (byte)currChar;
+                }
+                else if(currChar <= 0x07FF)
+                {
+                    this.bytes[this.length++] = (byte)(0xC0 | (currChar >> 6));
+                    this.bytes[this.length++] = (byte)(0x80 | (currChar & 0x3F));
+                }
+                else
+                {
+                    this.bytes[this.length++] = (byte)(0xE0 | (currChar >> 12));
+                    this.bytes[this.length++] = (byte)(0x80 | ((currChar >> 6) & 0x3F));
+                    this.bytes[this.length++] = (byte)(0x80 | (currChar & 0x3F));
+                }
+            }
+        }
+    }
+
+    /**
+     * Describes where a (possibly compressed) region of bytes lives in
+     * the file
+     */
+    static final class Region
+    {
+        final long offset;
+
+        final int storedLength;
+
+        final int rawLength;
+
+        final byte codec;
+
+        /**
+         * Constructor
+         * @param offset
+         *          the file offset
+         * @param storedLength
+         *          the number of bytes stored in the file
+         * @param rawLength
+         *          the number of bytes after decompression
+         * @param codec
+         *          the compression codec
+         */
+        Region(long offset, int storedLength, int rawLength, byte codec)
+        {
+            this.offset = offset;
+            this.storedLength = storedLength;
+            this.rawLength = rawLength;
+            this.codec = codec;
+        }
+
+        /**
+         * Write this region description
+         * @param sink
+         *          the sink to write to
+         */
+        void write(ByteSink sink)
+        {
+            sink.writeVarLong(this.offset);
+            sink.writeVarLong(this.storedLength);
+            sink.writeVarLong(this.rawLength);
+            sink.writeByte(this.codec);
+        }
+
+        /**
+         * Read a region description
+         * @param buffer
+         *          the buffer to read from
+         * @return
+         *          the region
+         */
+        static Region read(ByteBuffer buffer)
+        {
+            long offset = readVarLong(buffer);
+            int storedLength = (int)readVarLong(buffer);
+            int rawLength = (int)readVarLong(buffer);
+            byte codec = buffer.get();
+            return new Region(offset, storedLength, rawLength, codec);
+        }
+    }
+
+    /**
+     * The footer metadata for a block of rows
+     */
+    static final class Block
+    {
+        final int rowCount;
+
+        /**
+         * the row lengths or null if every row is
+         * {@link #chunks}<code>.length</code> long
+         */
+        final Region rowLengths;
+
+        final Region[] chunks;
+
+        /**
+         * the zone map for each chunk
+         */
+        final BinaryTableStatistics[] chunkStatistics;
+
+        /**
+         * the Bloom filter for each chunk (elements are null for chunks
+         * that don't have one)
+         */
+        final BinaryTableBloomFilter[] bloomFilters;
+
+        /**
+         * Constructor
+         * @param rowCount
+         *          the number of rows in the block
+         * @param rowLengths
+         *          the row lengths region (null for uniform rows)
+         * @param chunks
+         *          the column chunk regions
+         * @param chunkStatistics
+         *          the statistics for each chunk
+         * @param bloomFilters
+         *          the Bloom filters for each chunk (elements can be null)
+         */
+        Block(
+                int rowCount,
+                Region rowLengths,
+                Region[] chunks,
+                BinaryTableStatistics[] chunkStatistics,
+                BinaryTableBloomFilter[] bloomFilters)
+        {
+            this.rowCount = rowCount;
+            this.rowLengths = rowLengths;
+            this.chunks = chunks;
+            this.chunkStatistics = chunkStatistics;
+            this.bloomFilters = bloomFilters;
+        }
+
+        /**
+         * Write this block description
+         * @param sink
+         *          the sink to write to
+         */
+        void write(ByteSink sink)
+        {
+            sink.writeVarLong(this.rowCount);
+            sink.writeByte(this.rowLengths == null ? 0 : 1);
+            if(this.rowLengths != null)
+            {
+                this.rowLengths.write(sink);
+            }
+
+            sink.writeVarLong(this.chunks.length);
+            for(int i = 0; i < this.chunks.length; i++)
+            {
+                this.chunks[i].write(sink);
+                this.chunkStatistics[i].write(sink);
+                sink.writeByte(this.bloomFilters[i] == null ? 0 : 1);
+                if(this.bloomFilters[i] != null)
+                {
+                    this.bloomFilters[i].write(sink);
+                }
+            }
+        }
+
+        /**
+         * Read a block description
+         * @param buffer
+         *          the buffer to read from
+         * @param charBuffer
+         *          scratch space for reading strings
+         * @return
+         *          the block
+         */
+        static Block read(ByteBuffer buffer, char[] charBuffer)
+        {
+            int rowCount = (int)readVarLong(buffer);
+            Region rowLengths = buffer.get() == 0 ? null : Region.read(buffer);
+            int chunkCount = (int)readVarLong(buffer);
+            Region[] chunks = new Region[chunkCount];
+            BinaryTableStatistics[] chunkStatistics =
+                new BinaryTableStatistics[chunkCount];
+            BinaryTableBloomFilter[] bloomFilters =
+                new BinaryTableBloomFilter[chunkCount];
+            for(int i = 0; i < chunkCount; i++)
+            {
+                chunks[i] = Region.read(buffer);
+                chunkStatistics[i] = BinaryTableStatistics.read(buffer, charBuffer);
+                if(buffer.get() != 0)
+                {
+                    bloomFilters[i] = BinaryTableBloomFilter.read(buffer);
+                }
+            }
+
+            return new Block(
+                    rowCount,
+                    rowLengths,
+                    chunks,
+                    chunkStatistics,
+                    bloomFilters);
+        }
+    }
+
+    /**
+     * Read an unsigned variable length long
+     * @see ByteSink#writeVarLong(long)
+     * @param buffer
+     *          the buffer to read from
+     * @return
+     *          the value
+     */
+    static long readVarLong(ByteBuffer buffer)
+    {
+        long value = 0L;
+        int shift = 0;
+        while(true)
+        {
+            byte currByte = buffer.get();
+            value |= (long)(currByte & 0x7F) << shift;
+            if((currByte & 0x80) == 0)
+            {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    /**
+     * Read a zig-zag encoded long
+     * @see ByteSink#writeZigZagLong(long)
+     * @param buffer
+     *          the buffer to read from
+     * @return
+     *          the value
+     */
+    static long readZigZagLong(ByteBuffer buffer)
+    {
+        long encoded = readVarLong(buffer);
+        return (encoded >>> 1) ^ -(encoded & 1L);
+    }
+
+    /**
+     * Read a string
+     * @see ByteSink#writeString(String)
+     * @param buffer
+     *          the buffer to read from
+     * @param charBuffer
+     *          a scratch buffer which is used if it is big enough
+     * @return
+     *          the string
+     */
+    static String readString(ByteBuffer buffer, char[] charBuffer)
+    {
+        int byteCount = (int)readVarLong(buffer);
+        char[] chars = byteCount <= charBuffer.length ? charBuffer : new char[byteCount];
+        int charCount = 0;
+        int end = buffer.position() + byteCount;
+        while(buffer.position() < end)
+        {
+            int currByte = buffer.get() & 0xFF;
+            if(currByte < 0x80)
+            {
+                chars[charCount++] = (char)currByte;
+            }
+            else if(currByte < 0xE0)
+            {
+                int byte2 = buffer.get() & 0x3F;
+                chars[charCount++] = (char)(((currByte & 0x1F) << 6) | byte2);
+            }
+            else
+            {
+                int byte2 = buffer.get() & 0x3F;
+                int byte3 = buffer.get() & 0x3F;
+                chars[charCount++] =
+                    (char)(((currByte & 0x0F) << 12) | (byte2 << 6) | byte3);
+            }
+        }
+
+        return new String(chars, 0, charCount);
+    }
+}
@@ -0,0 +1,480 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.io;
+
+import org.jax.util.Condition;
+
+/**
+ * A row predicate which {@link BinaryTableReader} can check against the
+ * zone maps and Bloom filters of a block so that blocks which can't
+ * contain a matching row are skipped without being read. Null values
+ * (including cells missing from short rows) never match. Predicates also
+ * work as plain row {@link Condition}s over full (unprojected) rows.
+ * @see BinaryTableReader#setRowPredicate(BinaryTablePredicate)
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public abstract class BinaryTablePredicate implements Condition<String[]>
+{
+    /**
+     * package private so that all predicates come from the factory methods
+     */
+    BinaryTablePredicate()
+    {
+    }
+
+    /**
+     * Create a predicate that matches rows where the given column is equal
+     * to the given string. This can use Bloom filters.
+     * @param columnIndex
+     *          the column index
+     * @param value
+     *          the value to match
+     * @return
+     *          the predicate
+     */
+    public static BinaryTablePredicate equalTo(int columnIndex, String value)
+    {
+        return new EqualTo(columnIndex, value);
+    }
+
+    /**
+     * Create a predicate which matches rows where the given column is
+     * numeric and within the given range. Values which don't parse as
+     * numbers don't match.
+     * @param columnIndex
+     *          the column index
+     * @param minimum
+     *          the inclusive minimum
+     * @param maximum
+     *          the inclusive maximum
+     * @return
+     *          the predicate
+     */
+    public static BinaryTablePredicate between(
+            int columnIndex,
+            double minimum,
+            double maximum)
+    {
+        return new NumericRange(columnIndex, minimum, maximum);
+    }
+
+    /**
+     * Create a predicate which matches rows where the given column is
+     * within the given range using {@link String#compareTo(String)}
+     * ordering
+     * @param columnIndex
+     *          the column index
+     * @param minimum
+     *          the inclusive minimum
+     * @param maximum
+     *          the inclusive maximum
+     * @return
+     *          the predicate
+     */
+    public static BinaryTablePredicate between(
+            int columnIndex,
+            String minimum,
+            String maximum)
+    {
+        return new StringRange(columnIndex, minimum, maximum);
+    }
+
+    /**
+     * Create a predicate that matches rows which match all of the given
+     * predicates
+     * @param predicates
+     *          the predicates
+     * @return
+     *          the predicate
+     */
+    public static BinaryTablePredicate and(BinaryTablePredicate... predicates)
+    {
+        return new Conjunction(predicates.clone(), true);
+    }
+
+    /**
+     * Create a predicate that matches rows which match any of the given
+     * predicates
+     * @param predicates
+     *          the predicates
+     * @return
+     *          the predicate
+     */
+    public static BinaryTablePredicate or(BinaryTablePredicate... predicates)
+    {
+        return new Conjunction(predicates.clone(), false);
+    }
+
+    /**
+     * Test the given full row
+     * @param row
+     *          the row
+     * @return
+     *          true if the row matches
+     */
+    public boolean test(String[] row)
+    {
+        return this.matches(new String[][] {row}, 0, true);
+    }
+
+    /**
+     * Determine if any row of the given block might match
+     * @param block
+     *          the block
+     * @return
+     *          false if no row in the block can match
+     */
+    abstract boolean mightMatch(BinaryTableFormat.Block block);
+
+    /**
+     * Test a row
+     * @param values
+     *          if byRow is true this holds rows otherwise it holds columns
+     *          (indexed by table column index, null if not decoded)
+     * @param index
+     *          the row index
+     * @param byRow
+     *          determines how values is indexed
+     * @return
+     *          true if the row matches
+     */
+    abstract boolean matches(String[][] values, int index, boolean byRow);
+
+    /**
+     * Flag the columns that this predicate needs
+     * @param columnFlags
+     *          flags indexed by column. Columns outside of this array are
+     *          all null and don't need flagging
+     */
+    abstract void flagColumns(boolean[] columnFlags);
+
+    /**
+     * A predicate on a single column
+     */
+    private static abstract class ColumnPredicate extends BinaryTablePredicate
+    {
+        private final int columnIndex;
+
+        /**
+         * Constructor
+         * @param columnIndex
+         *          the column index
+         */
+        public ColumnPredicate(int columnIndex)
+        {
+            if(columnIndex < 0)
+            {
+                throw new IndexOutOfBoundsException(
+                        "negative column index: " + columnIndex);
+            }
+            this.columnIndex = columnIndex;
+        }
+
+        /**
+         * Test a non-null value
+         * @param value
+         *          the value
+         * @return
+         *          true if it matches
+         */
+        protected abstract boolean matchesValue(String value);
+
+        /**
+         * Determine if any value in a chunk might match
+         * @param chunkStatistics
+         *          the chunk's zone map (which has at least one value)
+         * @param bloomFilter
+         *          the chunk's Bloom filter or null
+         * @return
+         *          false if no value can match
+         */
+        protected abstract boolean mightMatchChunk(
+                BinaryTableStatistics chunkStatistics,
+                BinaryTableBloomFilter bloomFilter);
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        boolean mightMatch(BinaryTableFormat.Block block)
+        {
+            return this.columnIndex < block.chunks.length &&
+                   block.chunkStatistics[this.columnIndex].getValueCount() > 0 &&
+                   this.mightMatchChunk(
+                           block.chunkStatistics[this.columnIndex],
+                           block.bloomFilters[this.columnIndex]);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        boolean matches(String[][] values, int index, boolean byRow)
+        {
+            String value;
+            if(byRow)
+            {
+                String[] row = values[index];
+                value = this.columnIndex < row.length ? row[this.columnIndex] : null;
+            }
+            else
+            {
+                String[] column = this.columnIndex < values.length ?
+                        values[this.columnIndex] : null;
+                value = column == null ? null : column[index];
+            }
+
+            return value != null && this.matchesValue(value);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        void flagColumns(boolean[] columnFlags)
+        {
+            if(this.columnIndex < columnFlags.length)
+            {
+                columnFlags[this.columnIndex] = true;
+            }
+        }
+    }
+
+    /**
+     * string equality
+     */
+    private static final class EqualTo extends ColumnPredicate
+    {
+        private final String value;
+
+        /**
+         * Constructor
+         * @param columnIndex
+         *          the column index
+         * @param value
+         *          the value to match
+         */
+        public EqualTo(int columnIndex, String value)
+        {
+            super(columnIndex);
+            this.value = value;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected boolean matchesValue(String value)
+        {
+            return this.value.equals(value);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected boolean mightMatchChunk(
+                BinaryTableStatistics chunkStatistics,
+                BinaryTableBloomFilter bloomFilter)
+        {
+            return this.value.compareTo(chunkStatistics.getStringMin()) >= 0 &&
+                   this.value.compareTo(chunkStatistics.getStringMax()) <= 0 &&
+                   (bloomFilter == null || bloomFilter.mightContain(this.value));
+        }
+    }
+
+    /**
+     * numeric range
+     */
+    private static final class NumericRange extends ColumnPredicate
+    {
+        private final double minimum;
+
+        private final double maximum;
+
+        /**
+         * Constructor
+         * @param columnIndex
+         *          the column index
+         * @param minimum
+         *          inclusive min
+         * @param maximum
+         *          inclusive max
+         */
+        public NumericRange(int columnIndex, double minimum, double maximum)
+        {
+            super(columnIndex);
+            this.minimum = minimum;
+            this.maximum = maximum;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected boolean matchesValue(String value)
+        {
+            try
+            {
+                double doubleValue = Double.parseDouble(value);
+                return doubleValue >= this.minimum && doubleValue <= this.maximum;
+            }
+            catch(NumberFormatException ex)
+            {
+                return false;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected boolean mightMatchChunk(
+                BinaryTableStatistics chunkStatistics,
+                BinaryTableBloomFilter bloomFilter)
+        {
+            if(chunkStatistics.getType() == BinaryTableColumnType.STRING)
+            {
+                // non-canonical numbers like "007" could still match
+                return true;
+            }
+            else
+            {
+                return chunkStatistics.getDoubleMax() >= this.minimum &&
+                       chunkStatistics.getDoubleMin() <= this.maximum;
+            }
+        }
+    }
+
+    /**
+     * string range
+     */
+    private static final class StringRange extends ColumnPredicate
+    {
+        private final String minimum;
+
+        private final String maximum;
+
+        /**
+         * Constructor
+         * @param columnIndex
+         *          the column index
+         * @param minimum
+         *          inclusive min
+         * @param maximum
+         *          inclusive max
+         */
+        public StringRange(int columnIndex, String minimum, String maximum)
+        {
+            super(columnIndex);
+            this.minimum = minimum;
+            this.maximum = maximum;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected boolean matchesValue(String value)
+        {
+            return value.compareTo(this.minimum) >= 0 &&
+                   value.compareTo(this.maximum) <= 0;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected boolean mightMatchChunk(
+                BinaryTableStatistics chunkStatistics,
+                BinaryTableBloomFilter bloomFilter)
+        {
+            return chunkStatistics.getStringMax().compareTo(this.minimum) >= 0 &&
+                   chunkStatistics.getStringMin().compareTo(this.maximum) <= 0;
+        }
+    }
+
+    /**
+     * logical and/or of other predicates
+     */
+    private static final class Conjunction extends BinaryTablePredicate
+    {
+        private final BinaryTablePredicate[] predicates;
+
+        private final boolean and;
+
+        /**
+         * Constructor
+         * @param predicates
+         *          the predicates to combine
+         * @param and
+         *          true for and, false for or
+         */
+        public Conjunction(BinaryTablePredicate[] predicates, boolean and)
+        {
+            this.predicates = predicates;
+            this.and = and;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        boolean mightMatch(BinaryTableFormat.Block block)
+        {
+            for(BinaryTablePredicate predicate: this.predicates)
+            {
+                if(predicate.mightMatch(block) != this.and)
+                {
+                    return !this.and;
+                }
+            }
+
+            return this.and;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        boolean matches(String[][] values, int index, boolean byRow)
+        {
+            for(BinaryTablePredicate predicate: this.predicates)
+            {
+                if(predicate.matches(values, index, byRow) != this.and)
+                {
+                    return !this.and;
+                }
+            }
+
+            return this.and;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        void flagColumns(boolean[] columnFlags)
+        {
+            for(BinaryTablePredicate predicate: this.predicates)
+            {
+                predicate.flagColumns(columnFlags);
+            }
+        }
+    }
+}
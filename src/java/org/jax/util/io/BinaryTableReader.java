@@ -0,0 +1,781 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.io;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads tables that were written by {@link BinaryTableWriter}. Only the
+ * column chunks that are actually needed are read (see
+ * {@link #setColumnProjection(int[])}) and uncompressed chunks are memory
+ * mapped rather than copied. Cells that were missing from short rows are
+ * read back as null when they're projected.
+ * <br><br>
+ * If a {@link #setRowPredicate(BinaryTablePredicate) row predicate} is set
+ * it is first checked against the zone maps and Bloom filters in the
+ * footer so that blocks which can't match are skipped without being read
+ * (see {@link #getSkippedBlockCount()}) and then against the rows of the
+ * remaining blocks.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class BinaryTableReader extends AbstractTableReader implements Closeable
+{
+    private final RandomAccessFile randomAccessFile;
+
+    private final FileChannel channel;
+
+    private final int columnCount;
+
+    private final long rowCount;
+
+    private final BinaryTableFormat.Block[] blocks;
+
+    private final BinaryTableStatistics[] columnStatistics;
+
+    private final Inflater inflater = new Inflater();
+
+    private char[] charBuffer = new char[256];
+
+    private int[] columnProjection = null;
+
+    private BinaryTablePredicate rowPredicate = null;
+
+    private int skippedBlockCount = 0;
+
+    private int nextBlockIndex = 0;
+
+    private int currentBlockRowCount = 0;
+
+    private int currentBlockRow = 0;
+
+    /**
+     * the decoded columns of the current block indexed by table column
+     * (null for columns that we don't need)
+     */
+    private String[][] currentBlockColumns = null;
+
+    private int[] currentRowLengths = null;
+
+    /**
+     * which rows of the current block match the predicate
+     */
+    private boolean[] currentRowMatches = null;
+
+    /**
+     * Constructor
+     * @param file
+     *          the file to read
+     * @throws IOException
+     *          if the read fails
+     * @throws IllegalFormatException
+     *          if the file isn't a binary table
+     */
+    public BinaryTableReader(File file) throws IOException, IllegalFormatException
+    {
+        this.randomAccessFile = new RandomAccessFile(file, "r");
+        this.channel = this.randomAccessFile.getChannel();
+
+        try
+        {
+            long fileLength = this.channel.size();
+            if(fileLength < BinaryTableFormat.HEADER_SIZE + BinaryTableFormat.TRAILER_SIZE)
+            {
+                throw new IllegalFormatException(
+                        file + " is too short to be a binary table");
+            }
+
+            ByteBuffer header = this.readFully(0L, BinaryTableFormat.HEADER_SIZE);
+            if(header.getInt() != BinaryTableFormat.MAGIC)
+            {
+                throw new IllegalFormatException(
+                        file + " is not a binary table");
+            }
+            int version = header.getInt();
+            if(version != BinaryTableFormat.VERSION)
+            {
+                throw new IllegalFormatException(
+                        "unsupported binary table version: " + version);
+            }
+
+            ByteBuffer trailer = this.readFully(
+                    fileLength - BinaryTableFormat.TRAILER_SIZE,
+                    BinaryTableFormat.TRAILER_SIZE);
+            long footerOffset = trailer.getLong();
+            int footerLength = trailer.getInt();
+            if(trailer.getInt() != BinaryTableFormat.MAGIC ||
+               footerOffset < BinaryTableFormat.HEADER_SIZE ||
+               footerLength < 0 ||
+               footerOffset + footerLength + BinaryTableFormat.TRAILER_SIZE != fileLength)
+            {
+                throw new IllegalFormatException(
+                        file + " is truncated or has a corrupt trailer");
+            }
+
+            ByteBuffer footer = this.readFully(footerOffset, footerLength);
+            this.columnCount = (int)BinaryTableFormat.readVarLong(footer);
+            this.blocks = new BinaryTableFormat.Block[
+                    (int)BinaryTableFormat.readVarLong(footer)];
+            long totalRowCount = 0L;
+            for(int i = 0; i < this.blocks.length; i++)
+            {
+                this.blocks[i] = BinaryTableFormat.Block.read(
+                        footer,
+                        this.charBuffer);
+                totalRowCount += this.blocks[i].rowCount;
+            }
+            this.rowCount = totalRowCount;
+
+            this.columnStatistics = new BinaryTableStatistics[this.columnCount];
+            for(int i = 0; i < this.columnCount; i++)
+            {
+                this.columnStatistics[i] = BinaryTableStatistics.read(
+                        footer,
+                        this.charBuffer);
+            }
+        }
+        catch(BufferUnderflowException ex)
+        {
+            this.close();
+            throw new IllegalFormatException(
+                    file + " has a corrupt footer", ex);
+        }
+        catch(IllegalFormatException ex)
+        {
+            this.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Getter for the number of columns (the length of the longest row)
+     * @return
+     *          the column count
+     */
+    public int getColumnCount()
+    {
+        return this.columnCount;
+    }
+
+    /**
+     * Getter for the total number of rows
+     * @return
+     *          the row count
+     */
+    public long getRowCount()
+    {
+        return this.rowCount;
+    }
+
+    /**
+     * Getter for the number of row blocks
+     * @return
+     *          the block count
+     */
+    public int getBlockCount()
+    {
+        return this.blocks.length;
+    }
+
+    /**
+     * Getter for the number of rows in the given block
+     * @param blockIndex
+     *          the block index
+     * @return
+     *          the row count
+     */
+    public int getBlockRowCount(int blockIndex)
+    {
+        return this.blocks[blockIndex].rowCount;
+    }
+
+    /**
+     * Get the zone map statistics for a single column of a single block
+     * @param blockIndex
+     *          the block index
+     * @param columnIndex
+     *          the column index
+     * @return
+     *          the statistics (all null for columns which are missing
+     *          from the block)
+     */
+    public BinaryTableStatistics getBlockStatistics(int blockIndex, int columnIndex)
+    {
+        BinaryTableFormat.Block block = this.blocks[blockIndex];
+        if(columnIndex < block.chunks.length)
+        {
+            return block.chunkStatistics[columnIndex];
+        }
+        else
+        {
+            return new BinaryTableStatistics(
+                    BinaryTableColumnType.LONG,
+                    0,
+                    block.rowCount,
+                    Long.MAX_VALUE,
+                    Long.MIN_VALUE,
+                    Double.POSITIVE_INFINITY,
+                    Double.NEGATIVE_INFINITY,
+                    null,
+                    null);
+        }
+    }
+
+    /**
+     * Get the type of the given column. This is the most specific type
+     * that all of the column's non-null values fit
+     * @param columnIndex
+     *          the column index
+     * @return
+     *          the type
+     */
+    public BinaryTableColumnType getColumnType(int columnIndex)
+    {
+        return this.columnStatistics[columnIndex].getType();
+    }
+
+    /**
+     * Get the statistics for the given column
+     * @param columnIndex
+     *          the column index
+     * @return
+     *          the statistics
+     */
+    public BinaryTableStatistics getColumnStatistics(int columnIndex)
+    {
+        return this.columnStatistics[columnIndex];
+    }
+
+    /**
+     * Getter for the column projection
+     * @return
+     *          the column projection or null if full rows are read
+     */
+    public int[] getColumnProjection()
+    {
+        return this.columnProjection == null ? null : this.columnProjection.clone();
+    }
+
+    /**
+     * Setter for the column projection. When this is set
+     * {@link #readRow()} only decodes the given columns and returns rows
+     * holding just those columns in the given order. This should be set
+     * before reading begins.
+     * @param columnProjection
+     *          the column indices to read or null to read full rows
+     */
+    public void setColumnProjection(int[] columnProjection)
+    {
+        if(columnProjection != null)
+        {
+            for(int columnIndex: columnProjection)
+            {
+                if(columnIndex < 0 || columnIndex >= this.columnCount)
+                {
+                    throw new IndexOutOfBoundsException(
+                            "column index " + columnIndex + " is out of " +
+                            "bounds for a table with " + this.columnCount +
+                            " columns");
+                }
+            }
+            columnProjection = columnProjection.clone();
+        }
+
+        this.columnProjection = columnProjection;
+    }
+
+    /**
+     * Getter for the row predicate
+     * @return
+     *          the row predicate or null if all rows are read
+     */
+    public BinaryTablePredicate getRowPredicate()
+    {
+        return this.rowPredicate;
+    }
+
+    /**
+     * Setter for the row predicate. When this is set {@link #readRow()} only
+     * returns matching rows. The predicate uses table column indices
+     * regardless of the {@link #setColumnProjection(int[]) projection}. This
+     * should be set before reading begins.
+     * @param rowPredicate
+     *          the predicate or null to read all rows
+     */
+    public void setRowPredicate(BinaryTablePredicate rowPredicate)
+    {
+        this.rowPredicate = rowPredicate;
+    }
+
+    /**
+     * Getter for the number of blocks that {@link #readRow()} has skipped
+     * so far because the zone maps or Bloom filters ruled them out
+     * @return
+     *          the skipped block count
+     */
+    public int getSkippedBlockCount()
+    {
+        return this.skippedBlockCount;
+    }
+
+    /**
+     * Decode a single column of a single block
+     * @param blockIndex
+     *          the block index
+     * @param columnIndex
+     *          the column index
+     * @return
+     *          an array holding a value for every row in the block
+     *          (values that are missing from short rows are null)
+     * @throws IOException
+     *          if the read fails
+     * @throws IllegalFormatException
+     *          if the chunk is corrupt
+     */
+    public String[] readBlockColumn(int blockIndex, int columnIndex)
+    throws IOException, IllegalFormatException
+    {
+        BinaryTableFormat.Block block = this.blocks[blockIndex];
+        String[] values = new String[block.rowCount];
+        if(columnIndex >= block.chunks.length)
+        {
+            return values;
+        }
+
+        try
+        {
+            ByteBuffer chunk = this.readRegion(block.chunks[columnIndex]);
+            byte encoding = chunk.get();
+            byte[] presence = null;
+            if(chunk.get() != 0)
+            {
+                presence = new byte[(block.rowCount + 7) >>> 3];
+                chunk.get(presence);
+            }
+
+            switch(encoding)
+            {
+                case BinaryTableFormat.ENCODING_LONG:
+                {
+                    long value = 0L;
+                    for(int i = 0; i < values.length; i++)
+                    {
+                        if(isPresent(presence, i))
+                        {
+                            value += BinaryTableFormat.readZigZagLong(chunk);
+                            values[i] = Long.toString(value);
+                        }
+                    }
+                }
+                break;
+
+                case BinaryTableFormat.ENCODING_DOUBLE:
+                {
+                    for(int i = 0; i < values.length; i++)
+                    {
+                        if(isPresent(presence, i))
+                        {
+                            values[i] = Double.toString(
+                                    Double.longBitsToDouble(chunk.getLong()));
+                        }
+                    }
+                }
+                break;
+
+                case BinaryTableFormat.ENCODING_DICTIONARY:
+                {
+                    String[] dictionary =
+                        new String[(int)BinaryTableFormat.readVarLong(chunk)];
+                    for(int i = 0; i < dictionary.length; i++)
+                    {
+                        dictionary[i] = BinaryTableFormat.readString(
+                                chunk,
+                                this.charBuffer);
+                    }
+
+                    boolean wideCodes = chunk.get() == 2;
+                    for(int i = 0; i < values.length; i++)
+                    {
+                        if(isPresent(presence, i))
+                        {
+                            int code = chunk.get() & 0xFF;
+                            if(wideCodes)
+                            {
+                                code = (code << 8) | (chunk.get() & 0xFF);
+                            }
+                            values[i] = dictionary[code];
+                        }
+                    }
+                }
+                break;
+
+                case BinaryTableFormat.ENCODING_PLAIN:
+                {
+                    for(int i = 0; i < values.length; i++)
+                    {
+                        if(isPresent(presence, i))
+                        {
+                            values[i] = BinaryTableFormat.readString(
+                                    chunk,
+                                    this.charBuffer);
+                        }
+                    }
+                }
+                break;
+
+                default:
+                {
+                    throw new IllegalFormatException(
+                            "unknown column encoding: " + encoding);
+                }
+            }
+        }
+        catch(BufferUnderflowException ex)
+        {
+            throw new IllegalFormatException(
+                    "column " + columnIndex + " of block " + blockIndex +
+                    " is corrupt",
+                    ex);
+        }
+        catch(ArrayIndexOutOfBoundsException ex)
+        {
+            throw new IllegalFormatException(
+                    "column " + columnIndex + " of block " + blockIndex +
+                    " is corrupt",
+                    ex);
+        }
+
+        return values;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String[] readRow() throws IOException, IllegalFormatException
+    {
+        while(true)
+        {
+            if(this.currentBlockRow >= this.currentBlockRowCount)
+            {
+                if(!this.loadNextBlock())
+                {
+                    return null;
+                }
+            }
+            else if(this.currentRowMatches != null &&
+                    !this.currentRowMatches[this.currentBlockRow])
+            {
+                this.currentBlockRow++;
+            }
+            else
+            {
+                break;
+            }
+        }
+
+        String[] row;
+        int blockRow = this.currentBlockRow;
+        if(this.columnProjection == null)
+        {
+            int rowLength = this.currentRowLengths == null ?
+                    this.blocks[this.nextBlockIndex - 1].chunks.length :
+                    this.currentRowLengths[blockRow];
+            row = new String[rowLength];
+            for(int i = 0; i < rowLength; i++)
+            {
+                row[i] = this.currentBlockColumns[i][blockRow];
+            }
+        }
+        else
+        {
+            row = new String[this.columnProjection.length];
+            for(int i = 0; i < row.length; i++)
+            {
+                row[i] = this.currentBlockColumns[this.columnProjection[i]][blockRow];
+            }
+        }
+        this.currentBlockRow++;
+
+        return row;
+    }
+
+    /**
+     * Decode the columns that we need from the next block that might
+     * match the row predicate
+     * @return
+     *          true if a block was loaded or false if there are no more
+     * @throws IOException
+     *          if the read fails
+     * @throws IllegalFormatException
+     *          if the block is corrupt
+     */
+    private boolean loadNextBlock() throws IOException, IllegalFormatException
+    {
+        while(this.nextBlockIndex < this.blocks.length &&
+              this.rowPredicate != null &&
+              !this.rowPredicate.mightMatch(this.blocks[this.nextBlockIndex]))
+        {
+            this.skippedBlockCount++;
+            this.nextBlockIndex++;
+        }
+
+        if(this.nextBlockIndex >= this.blocks.length)
+        {
+            this.currentBlockColumns = null;
+            this.currentRowLengths = null;
+            this.currentRowMatches = null;
+            this.currentBlockRowCount = 0;
+            this.currentBlockRow = 0;
+            return false;
+        }
+
+        int blockIndex = this.nextBlockIndex;
+        BinaryTableFormat.Block block = this.blocks[blockIndex];
+        boolean[] neededColumns = new boolean[this.columnCount];
+        if(this.columnProjection == null)
+        {
+            for(int i = 0; i < block.chunks.length; i++)
+            {
+                neededColumns[i] = true;
+            }
+        }
+        else
+        {
+            for(int columnIndex: this.columnProjection)
+            {
+                neededColumns[columnIndex] = true;
+            }
+        }
+        if(this.rowPredicate != null)
+        {
+            this.rowPredicate.flagColumns(neededColumns);
+        }
+
+        this.currentBlockColumns = new String[this.columnCount][];
+        for(int i = 0; i < this.columnCount; i++)
+        {
+            if(neededColumns[i])
+            {
+                this.currentBlockColumns[i] = this.readBlockColumn(blockIndex, i);
+            }
+        }
+
+        if(this.columnProjection != null || block.rowLengths == null)
+        {
+            this.currentRowLengths = null;
+        }
+        else
+        {
+            try
+            {
+                ByteBuffer rowLengthsBuffer = this.readRegion(block.rowLengths);
+                this.currentRowLengths = new int[block.rowCount];
+                for(int i = 0; i < block.rowCount; i++)
+                {
+                    this.currentRowLengths[i] =
+                        (int)BinaryTableFormat.readVarLong(rowLengthsBuffer);
+                }
+            }
+            catch(BufferUnderflowException ex)
+            {
+                throw new IllegalFormatException(
+                        "the row lengths of block " + blockIndex +
+                        " are corrupt",
+                        ex);
+            }
+        }
+
+        if(this.rowPredicate == null)
+        {
+            this.currentRowMatches = null;
+        }
+        else
+        {
+            this.currentRowMatches = new boolean[block.rowCount];
+            for(int i = 0; i < block.rowCount; i++)
+            {
+                this.currentRowMatches[i] = this.rowPredicate.matches(
+                        this.currentBlockColumns,
+                        i,
+                        false);
+            }
+        }
+
+        this.nextBlockIndex++;
+        this.currentBlockRowCount = block.rowCount;
+        this.currentBlockRow = 0;
+
+        return true;
+    }
+
+    /**
+     * Get the uncompressed contents of the given region
+     * @param region
+     *          the region
+     * @return
+     *          a buffer holding the contents
+     * @throws IOException
+     *          if the read fails
+     * @throws IllegalFormatException
+     *          if the region can't be decompressed
+     */
+    private ByteBuffer readRegion(BinaryTableFormat.Region region)
+    throws IOException, IllegalFormatException
+    {
+        switch(region.codec)
+        {
+            case BinaryTableFormat.CODEC_NONE:
+            {
+                return this.channel.map(
+                        FileChannel.MapMode.READ_ONLY,
+                        region.offset,
+                        region.storedLength);
+            }
+
+            case BinaryTableFormat.CODEC_DEFLATE:
+            {
+                ByteBuffer stored = this.readFully(region.offset, region.storedLength);
+                byte[] raw = new byte[region.rawLength];
+                this.inflater.reset();
+                this.inflater.setInput(stored.array(), 0, region.storedLength);
+                try
+                {
+                    int rawCount = 0;
+                    while(rawCount < raw.length && !this.inflater.finished())
+                    {
+                        int byteCount = this.inflater.inflate(
+                                raw, rawCount, raw.length - rawCount);
+                        if(byteCount == 0 && this.inflater.needsInput())
+                        {
+                            break;
+                        }
+                        rawCount += byteCount;
+                    }
+
+                    if(rawCount != raw.length)
+                    {
+                        throw new IllegalFormatException(
+                                "compressed region at offset " + region.offset +
+                                " is truncated");
+                    }
+                }
+                catch(DataFormatException ex)
+                {
+                    throw new IllegalFormatException(
+                            "compressed region at offset " + region.offset +
+                            " is corrupt",
+                            ex);
+                }
+
+                return ByteBuffer.wrap(raw);
+            }
+
+            default:
+            {
+                throw new IllegalFormatException(
+                        "unknown compression codec: " + region.codec);
+            }
+        }
+    }
+
+    /**
+     * Read the given number of bytes into a heap buffer
+     * @param position
+     *          the file position to start reading at
+     * @param byteCount
+     *          the byte count
+     * @return
+     *          the buffer (positioned at 0)
+     * @throws IOException
+     *          if the read fails or we hit the end of the file
+     */
+    private ByteBuffer readFully(long position, int byteCount) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(byteCount);
+        while(buffer.hasRemaining())
+        {
+            int readCount = this.channel.read(buffer, position + buffer.position());
+            if(readCount < 0)
+            {
+                throw new IOException("unexpected end of file");
+            }
+        }
+        buffer.flip();
+
+        return buffer;
+    }
+
+    /**
+     * Closes the file
+     * @throws IOException
+     *          if the close fails
+     */
+    public void close() throws IOException
+    {
+        this.inflater.end();
+        this.randomAccessFile.close();
+    }
+
+    /**
+     * Check the given presence bitmap
+     * @param presence
+     *          the bitmap (null means everything is present)
+     * @param index
+     *          the index to check
+     * @return
+     *          true if the value at index is not null
+     */
+    private static boolean isPresent(byte[] presence, int index)
+    {
+        return presence == null || (presence[index >>> 3] & (1 << (index & 7))) != 0;
+    }
+
+    /**
+     * Main for converting a binary table to CSV on standard out
+     * @param args
+     *          the binary table file
+     * @throws IOException
+     *          if we can't read/write
+     * @throws IllegalFormatException
+     *          if the file format is bad
+     */
+    public static void main(String[] args) throws IOException, IllegalFormatException
+    {
+        BinaryTableReader reader = new BinaryTableReader(new File(args[0]));
+        TableWriter writer = new FlatFileWriter(
+                new BufferedWriter(new OutputStreamWriter(System.out)),
+                CommonFlatFileFormat.CSV_UNIX);
+
+        String[] row;
+        while((row = reader.readRow()) != null)
+        {
+            writer.writeRow(row);
+        }
+        writer.flush();
+        reader.close();
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Summary statistics for the values of a column in a binary table.
+ * String minimum and maximum values (using {@link String#compareTo(String)})
+ * are always available. Numeric minimum and maximum values are only
+ * available when the column {@link #getType() type} allows it. Missing
+ * values (from rows that are shorter than the column count) are counted
+ * by {@link #getNullCount()} and are not included in any of the other
+ * statistics.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class BinaryTableStatistics
+{
+    private final BinaryTableColumnType type;
+
+    private final int valueCount;
+
+    private final int nullCount;
+
+    private final long longMin;
+
+    private final long longMax;
+
+    private final double doubleMin;
+
+    private final double doubleMax;
+
+    private final String stringMin;
+
+    private final String stringMax;
+
+    /**
+     * Constructor
+     * @param type
+     *          the column type
+     * @param valueCount
+     *          the number of non-null values
+     * @param nullCount
+     *          the number of null values
+     * @param longMin
+     *          the min value (only meaningful for long columns)
+     * @param longMax
+     *          the max value (only meaningful for long columns)
+     * @param doubleMin
+     *          the min value (only meaningful for numeric columns)
+     * @param doubleMax
+     *          the max value (only meaningful for numeric columns)
+     * @param stringMin
+     *          the min string value (null if there are no values)
+     * @param stringMax
+     *          the max string value (null if there are no values)
+     */
+    BinaryTableStatistics(
+            BinaryTableColumnType type,
+            int valueCount,
+            int nullCount,
+            long longMin,
+            long longMax,
+            double doubleMin,
+            double doubleMax,
+            String stringMin,
+            String stringMax)
+    {
+        this.type = type;
+        this.valueCount = valueCount;
+        this.nullCount = nullCount;
+        this.longMin = longMin;
+        this.longMax = longMax;
+        this.doubleMin = doubleMin;
+        this.doubleMax = doubleMax;
+        this.stringMin = stringMin;
+        this.stringMax = stringMax;
+    }
+
+    /**
+     * Getter for the type
+     * @return
+     *          the type
+     */
+    public BinaryTableColumnType getType()
+    {
+        return this.type;
+    }
+
+    /**
+     * Getter for the number of non-null values
+     * @return
+     *          the value count
+     */
+    public int getValueCount()
+    {
+        return this.valueCount;
+    }
+
+    /**
+     * Getter for the number of null values
+     * @return
+     *          the null count
+     */
+    public int getNullCount()
+    {
+        return this.nullCount;
+    }
+
+    /**
+     * Getter for the minimum long value
+     * @return
+     *          the minimum
+     * @throws IllegalStateException
+     *          if the type isn't {@link BinaryTableColumnType#LONG}
+     */
+    public long getLongMin() throws IllegalStateException
+    {
+        this.checkType(BinaryTableColumnType.LONG);
+        return this.longMin;
+    }
+
+    /**
+     * Getter for the maximum long value
+     * @return
+     *          the maximum
+     * @throws IllegalStateException
+     *          if the type isn't {@link BinaryTableColumnType#LONG}
+     */
+    public long getLongMax() throws IllegalStateException
+    {
+        this.checkType(BinaryTableColumnType.LONG);
+        return this.longMax;
+    }
+
+    /**
+     * Getter for the minimum numeric value (NaN values are ignored)
+     * @return
+     *          the minimum
+     * @throws IllegalStateException
+     *          if the type isn't numeric
+     */
+    public double getDoubleMin() throws IllegalStateException
+    {
+        this.checkType(BinaryTableColumnType.DOUBLE);
+        return this.doubleMin;
+    }
+
+    /**
+     * Getter for the maximum numeric value (NaN values are ignored)
+     * @return
+     *          the maximum
+     * @throws IllegalStateException
+     *          if the type isn't numeric
+     */
+    public double getDoubleMax() throws IllegalStateException
+    {
+        this.checkType(BinaryTableColumnType.DOUBLE);
+        return this.doubleMax;
+    }
+
+    /**
+     * Getter for the minimum string value
+     * @return
+     *          the minimum or null if there are no values
+     */
+    public String getStringMin()
+    {
+        return this.stringMin;
+    }
+
+    /**
+     * Getter for the maximum string value
+     * @return
+     *          the maximum or null if there are no values
+     */
+    public String getStringMax()
+    {
+        return this.stringMax;
+    }
+
+    /**
+     * Make sure that our type is at least as specific as the given type
+     * @param requiredType
+     *          the required type
+     * @throws IllegalStateException
+     *          if it isn't
+     */
+    private void checkType(BinaryTableColumnType requiredType)
+    throws IllegalStateException
+    {
+        if(this.type.ordinal() > requiredType.ordinal())
+        {
+            throw new IllegalStateException(
+                    "statistic is not available for " + this.type +
+                    " columns");
+        }
+    }
+
+    /**
+     * Combine the given statistics
+     * @param stats1
+     *          the 1st statistics
+     * @param stats2
+     *          the 2nd statistics
+     * @return
+     *          statistics covering both
+     */
+    static BinaryTableStatistics merge(
+            BinaryTableStatistics stats1,
+            BinaryTableStatistics stats2)
+    {
+        return new BinaryTableStatistics(
+                stats1.type.combine(stats2.type),
+                stats1.valueCount + stats2.valueCount,
+                stats1.nullCount + stats2.nullCount,
+                Math.min(stats1.longMin, stats2.longMin),
+                Math.max(stats1.longMax, stats2.longMax),
+                Math.min(stats1.doubleMin, stats2.doubleMin),
+                Math.max(stats1.doubleMax, stats2.doubleMax),
+                minString(stats1.stringMin, stats2.stringMin),
+                maxString(stats1.stringMax, stats2.stringMax));
+    }
+
+    /**
+     * Null tolerant string min
+     * @param string1
+     *          the 1st string
+     * @param string2
+     *          the 2nd string
+     * @return
+     *          the min
+     */
+    private static String minString(String string1, String string2)
+    {
+        if(string1 == null)
+        {
+            return string2;
+        }
+        else if(string2 == null)
+        {
+            return string1;
+        }
+        else
+        {
+            return string1.compareTo(string2) <= 0 ? string1 : string2;
+        }
+    }
+
+    /**
+     * Null tolerant string max
+     * @param string1
+     *          the 1st string
+     * @param string2
+     *          the 2nd string
+     * @return
+     *          the max
+     */
+    private static String maxString(String string1, String string2)
+    {
+        if(string1 == null)
+        {
+            return string2;
+        }
+        else if(string2 == null)
+        {
+            return string1;
+        }
+        else
+        {
+            return string1.compareTo(string2) >= 0 ? string1 : string2;
+        }
+    }
+
+    /**
+     * Write these statistics
+     * @param sink
+     *          the sink to write to
+     */
+    void write(BinaryTableFormat.ByteSink sink)
+    {
+        sink.writeByte(this.type.ordinal());
+        sink.writeVarLong(this.valueCount);
+        sink.writeVarLong(this.nullCount);
+        sink.writeLong(this.longMin);
+        sink.writeLong(this.longMax);
+        sink.writeDouble(this.doubleMin);
+        sink.writeDouble(this.doubleMax);
+        sink.writeByte(this.stringMin == null ? 0 : 1);
+        if(this.stringMin != null)
+        {
+            sink.writeString(this.stringMin);
+            sink.writeString(this.stringMax);
+        }
+    }
+
+    /**
+     * Read statistics that were written with
+     * {@link #write(BinaryTableFormat.ByteSink)}
+     * @param buffer
+     *          the buffer to read from
+     * @param charBuffer
+     *          scratch space for reading strings
+     * @return
+     *          the statistics
+     */
+    static BinaryTableStatistics read(ByteBuffer buffer, char[] charBuffer)
+    {
+        BinaryTableColumnType type = BinaryTableColumnType.values()[buffer.get()];
+        int valueCount = (int)BinaryTableFormat.readVarLong(buffer);
+        int nullCount = (int)BinaryTableFormat.readVarLong(buffer);
+        long longMin = buffer.getLong();
+        long longMax = buffer.getLong();
+        double doubleMin = buffer.getDouble();
+        double doubleMax = buffer.getDouble();
+        String stringMin = null;
+        String stringMax = null;
+        if(buffer.get() != 0)
+        {
+            stringMin = BinaryTableFormat.readString(buffer, charBuffer);
+            stringMax = BinaryTableFormat.readString(buffer, charBuffer);
+        }
+
+        return new BinaryTableStatistics(
+                type,
+                valueCount,
+                nullCount,
+                longMin,
+                longMax,
+                doubleMin,
+                doubleMax,
+                stringMin,
+                stringMax);
+    }
+}
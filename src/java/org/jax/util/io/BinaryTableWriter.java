@@ -0,0 +1,671 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.io;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+import org.jax.util.datastructure.StringDictionary;
+
+/**
+ * Writes tables in a compact binary columnar format which can be read
+ * back using {@link BinaryTableReader}. Rows are buffered into blocks and
+ * each block is stored column by column. Every column chunk gets the most
+ * compact encoding that still reproduces the original strings exactly:
+ * canonical longs are stored as variable length deltas, canonical doubles
+ * as raw 8 byte values and other strings are either dictionary encoded
+ * or stored plainly. Chunks are deflate compressed when that makes them
+ * smaller. Rows may have differing lengths.
+ * <br><br>
+ * Every chunk's statistics are kept in the footer as a zone map and
+ * columns can optionally get a Bloom filter per chunk too (see
+ * {@link #setBloomFilterColumns(int[])}) so that
+ * {@link BinaryTableReader#setRowPredicate(BinaryTablePredicate)} can skip
+ * blocks.
+ * <br><br>
+ * Nothing is readable until {@link #close()} writes the file footer.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class BinaryTableWriter implements TableWriter
+{
+    /**
+     * The default number of rows in a block
+     */
+    public static final int DEFAULT_BLOCK_ROW_COUNT = 64 * 1024;
+
+    /**
+     * the largest dictionary that we'll use for a column chunk
+     */
+    private static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+    private final OutputStream outputStream;
+
+    private final int blockRowCount;
+
+    private final Deflater deflater;
+
+    private final String[][] blockRows;
+
+    private int bufferedRowCount = 0;
+
+    private long filePosition = 0L;
+
+    private final List<BinaryTableFormat.Block> blocks =
+        new ArrayList<BinaryTableFormat.Block>();
+
+    private final List<BinaryTableStatistics> columnStatistics =
+        new ArrayList<BinaryTableStatistics>();
+
+    private long rowCount = 0L;
+
+    private boolean closed = false;
+
+    private final BinaryTableFormat.ByteSink chunkSink;
+
+    private final BinaryTableFormat.ByteSink compressedSink;
+
+    private final String[] columnValues;
+
+    private final int[] dictionaryCodes;
+
+    private int[] bloomFilterColumns = new int[0];
+
+    /**
+     * Constructor which uses {@link #DEFAULT_BLOCK_ROW_COUNT} and compression
+     * @param file
+     *          the file to write
+     * @throws IOException
+     *          if we can't open the file for writing
+     */
+    public BinaryTableWriter(File file) throws IOException
+    {
+        this(new BufferedOutputStream(new FileOutputStream(file)),
+             DEFAULT_BLOCK_ROW_COUNT,
+             true);
+    }
+
+    /**
+     * Constructor
+     * @param outputStream
+     *          the stream to write to
+     * @param blockRowCount
+     *          the number of rows per block. Larger blocks compress better
+     *          but take more memory to read and write
+     * @param compress
+     *          if true chunks are deflate compressed (when it helps)
+     * @throws IOException
+     *          if we fail to write the file header
+     */
+    public BinaryTableWriter(
+            OutputStream outputStream,
+            int blockRowCount,
+            boolean compress) throws IOException
+    {
+        if(blockRowCount <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "the block row count must be greater than 0");
+        }
+
+        this.outputStream = outputStream;
+        this.blockRowCount = blockRowCount;
+        this.deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        this.blockRows = new String[blockRowCount][];
+        this.chunkSink = new BinaryTableFormat.ByteSink(blockRowCount * 8);
+        this.compressedSink = new BinaryTableFormat.ByteSink(blockRowCount * 8);
+        this.columnValues = new String[blockRowCount];
+        this.dictionaryCodes = new int[blockRowCount];
+
+        BinaryTableFormat.ByteSink headerSink =
+            new BinaryTableFormat.ByteSink(BinaryTableFormat.HEADER_SIZE);
+        headerSink.writeInt(BinaryTableFormat.MAGIC);
+        headerSink.writeInt(BinaryTableFormat.VERSION);
+        this.writeToStream(headerSink);
+    }
+
+    /**
+     * Getter for the columns that get Bloom filters
+     * @return
+     *          the column indices (sorted)
+     */
+    public int[] getBloomFilterColumns()
+    {
+        return this.bloomFilterColumns.clone();
+    }
+
+    /**
+     * Setter for the columns that get Bloom filters. Bloom filters let
+     * readers skip blocks for {@link BinaryTablePredicate#equalTo(int, String)}
+     * lookups on values that fall inside a block's min/max range but aren't
+     * in the block. They cost about {@link BinaryTableBloomFilter#BITS_PER_VALUE}
+     * bits of footer per distinct value per block. This only affects
+     * blocks that haven't been written yet.
+     * @param bloomFilterColumns
+     *          the column indices
+     */
+    public void setBloomFilterColumns(int[] bloomFilterColumns)
+    {
+        int[] sortedColumns = bloomFilterColumns.clone();
+        Arrays.sort(sortedColumns);
+        this.bloomFilterColumns = sortedColumns;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void writeRow(String[] row) throws IOException
+    {
+        if(this.closed)
+        {
+            throw new IOException("can't write to a closed writer");
+        }
+
+        this.blockRows[this.bufferedRowCount] = row.clone();
+        this.bufferedRowCount++;
+        this.rowCount++;
+
+        if(this.bufferedRowCount == this.blockRowCount)
+        {
+            this.writeBlock();
+        }
+    }
+
+    /**
+     * Flushes the underlying stream. Note that rows are only written once a
+     * full block has been buffered (or on {@link #close()}), so this does
+     * not force partial blocks out.
+     * @throws IOException
+     *          if the underlying stream fails to flush
+     */
+    public void flush() throws IOException
+    {
+        this.outputStream.flush();
+    }
+
+    /**
+     * Writes any buffered rows followed by the file footer and then
+     * closes the underlying stream
+     * @throws IOException
+     *          if the write fails
+     */
+    public void close() throws IOException
+    {
+        if(!this.closed)
+        {
+            if(this.bufferedRowCount > 0)
+            {
+                this.writeBlock();
+            }
+            this.writeFooter();
+            this.closed = true;
+
+            if(this.deflater != null)
+            {
+                this.deflater.end();
+            }
+            this.outputStream.close();
+        }
+    }
+
+    /**
+     * Encode and write the buffered rows as a block
+     * @throws IOException
+     *          if the write fails
+     */
+    private void writeBlock() throws IOException
+    {
+        int blockColumnCount = 0;
+        boolean uniformRows = true;
+        for(int i = 0; i < this.bufferedRowCount; i++)
+        {
+            int rowLength = this.blockRows[i].length;
+            if(i > 0 && rowLength != blockColumnCount)
+            {
+                uniformRows = false;
+            }
+            blockColumnCount = Math.max(blockColumnCount, rowLength);
+        }
+
+        BinaryTableFormat.Region rowLengthsRegion = null;
+        if(!uniformRows)
+        {
+            this.chunkSink.reset();
+            for(int i = 0; i < this.bufferedRowCount; i++)
+            {
+                this.chunkSink.writeVarLong(this.blockRows[i].length);
+            }
+            rowLengthsRegion = this.writeRegion(this.chunkSink);
+        }
+
+        BinaryTableFormat.Region[] chunks =
+            new BinaryTableFormat.Region[blockColumnCount];
+        BinaryTableStatistics[] chunkStatistics =
+            new BinaryTableStatistics[blockColumnCount];
+        BinaryTableBloomFilter[] bloomFilters =
+            new BinaryTableBloomFilter[blockColumnCount];
+        for(int column = 0; column < blockColumnCount; column++)
+        {
+            this.chunkSink.reset();
+            BinaryTableStatistics chunkStats = this.encodeChunk(column);
+            chunks[column] = this.writeRegion(this.chunkSink);
+            chunkStatistics[column] = chunkStats;
+            if(Arrays.binarySearch(this.bloomFilterColumns, column) >= 0)
+            {
+                bloomFilters[column] = this.createBloomFilter(
+                        chunkStats.getValueCount());
+            }
+
+            if(column < this.columnStatistics.size())
+            {
+                this.columnStatistics.set(column, BinaryTableStatistics.merge(
+                        this.columnStatistics.get(column),
+                        chunkStats));
+            }
+            else
+            {
+                // rows in earlier blocks were all too short for this column
+                long earlierRowCount = this.rowCount - this.bufferedRowCount;
+                this.columnStatistics.add(BinaryTableStatistics.merge(
+                        nullStatistics((int)earlierRowCount),
+                        chunkStats));
+            }
+        }
+
+        // columns which aren't in this block are all null
+        for(int column = blockColumnCount; column < this.columnStatistics.size(); column++)
+        {
+            this.columnStatistics.set(column, BinaryTableStatistics.merge(
+                    this.columnStatistics.get(column),
+                    nullStatistics(this.bufferedRowCount)));
+        }
+
+        this.blocks.add(new BinaryTableFormat.Block(
+                this.bufferedRowCount,
+                rowLengthsRegion,
+                chunks,
+                chunkStatistics,
+                bloomFilters));
+
+        for(int i = 0; i < this.bufferedRowCount; i++)
+        {
+            this.blockRows[i] = null;
+        }
+        this.bufferedRowCount = 0;
+    }
+
+    /**
+     * Encode the given column of the buffered rows into {@link #chunkSink}
+     * @param column
+     *          the column index
+     * @return
+     *          the statistics for the chunk
+     */
+    private BinaryTableStatistics encodeChunk(int column)
+    {
+        final int chunkRowCount = this.bufferedRowCount;
+        int valueCount = 0;
+        String stringMin = null;
+        String stringMax = null;
+        for(int i = 0; i < chunkRowCount; i++)
+        {
+            String[] row = this.blockRows[i];
+            String value = column < row.length ? row[column] : null;
+            if(value != null)
+            {
+                this.columnValues[valueCount] = value;
+                valueCount++;
+
+                if(stringMin == null || value.compareTo(stringMin) < 0)
+                {
+                    stringMin = value;
+                }
+                if(stringMax == null || value.compareTo(stringMax) > 0)
+                {
+                    stringMax = value;
+                }
+            }
+        }
+        final int nullCount = chunkRowCount - valueCount;
+
+        BinaryTableColumnType type = BinaryTableColumnType.LONG;
+        for(int i = 0; i < valueCount && type == BinaryTableColumnType.LONG; i++)
+        {
+            if(!BinaryTableFormat.isCanonicalLong(this.columnValues[i]))
+            {
+                type = BinaryTableColumnType.DOUBLE;
+            }
+        }
+        for(int i = 0; i < valueCount && type == BinaryTableColumnType.DOUBLE; i++)
+        {
+            if(!BinaryTableFormat.isCanonicalDouble(this.columnValues[i]))
+            {
+                type = BinaryTableColumnType.STRING;
+            }
+        }
+
+        // reserve the encoding byte and write the null bitmap
+        this.chunkSink.writeByte(0);
+        this.chunkSink.writeByte(nullCount == 0 ? 0 : 1);
+        if(nullCount > 0)
+        {
+            int bits = 0;
+            for(int i = 0; i < chunkRowCount; i++)
+            {
+                String[] row = this.blockRows[i];
+                if(column < row.length && row[column] != null)
+                {
+                    bits |= 1 << (i & 7);
+                }
+
+                if((i & 7) == 7 || i == chunkRowCount - 1)
+                {
+                    this.chunkSink.writeByte(bits);
+                    bits = 0;
+                }
+            }
+        }
+
+        long longMin = Long.MAX_VALUE;
+        long longMax = Long.MIN_VALUE;
+        double doubleMin = Double.POSITIVE_INFINITY;
+        double doubleMax = Double.NEGATIVE_INFINITY;
+        final byte encoding;
+        switch(type)
+        {
+            case LONG:
+            {
+                encoding = BinaryTableFormat.ENCODING_LONG;
+                long previousValue = 0L;
+                for(int i = 0; i < valueCount; i++)
+                {
+                    long value = Long.parseLong(this.columnValues[i]);
+                    this.chunkSink.writeZigZagLong(value - previousValue);
+                    previousValue = value;
+
+                    longMin = Math.min(longMin, value);
+                    longMax = Math.max(longMax, value);
+                }
+                doubleMin = longMin;
+                doubleMax = longMax;
+            }
+            break;
+
+            case DOUBLE:
+            {
+                encoding = BinaryTableFormat.ENCODING_DOUBLE;
+                for(int i = 0; i < valueCount; i++)
+                {
+                    double value = Double.parseDouble(this.columnValues[i]);
+                    this.chunkSink.writeDouble(value);
+
+                    if(!Double.isNaN(value))
+                    {
+                        doubleMin = Math.min(doubleMin, value);
+                        doubleMax = Math.max(doubleMax, value);
+                    }
+                }
+            }
+            break;
+
+            default:
+            {
+                encoding = this.encodeStrings(valueCount);
+            }
+            break;
+        }
+        this.chunkSink.getBytes()[0] = encoding;
+
+        return new BinaryTableStatistics(
+                type,
+                valueCount,
+                nullCount,
+                longMin,
+                longMax,
+                doubleMin,
+                doubleMax,
+                stringMin,
+                stringMax);
+    }
+
+    /**
+     * Create a Bloom filter for the values in {@link #columnValues}
+     * @param valueCount
+     *          the number of values
+     * @return
+     *          the filter
+     */
+    private BinaryTableBloomFilter createBloomFilter(int valueCount)
+    {
+        Set<String> distinctValues = new HashSet<String>();
+        for(int i = 0; i < valueCount; i++)
+        {
+            distinctValues.add(this.columnValues[i]);
+        }
+
+        BinaryTableBloomFilter bloomFilter =
+            new BinaryTableBloomFilter(distinctValues.size());
+        for(String value: distinctValues)
+        {
+            bloomFilter.add(value);
+        }
+
+        return bloomFilter;
+    }
+
+    /**
+     * Encode the string values in {@link #columnValues} into
+     * {@link #chunkSink} using a dictionary if it's worthwhile
+     * @param valueCount
+     *          the number of values
+     * @return
+     *          the encoding that was used
+     */
+    private byte encodeStrings(int valueCount)
+    {
+        // only use a dictionary if values repeat on average
+        StringDictionary dictionary = new StringDictionary(
+                Math.min(MAX_DICTIONARY_SIZE, Math.max(1, valueCount / 2)));
+        boolean useDictionary = true;
+        for(int i = 0; i < valueCount && useDictionary; i++)
+        {
+            this.dictionaryCodes[i] = dictionary.add(this.columnValues[i]);
+            useDictionary = this.dictionaryCodes[i] != -1;
+        }
+
+        if(useDictionary)
+        {
+            int dictionarySize = dictionary.size();
+            this.chunkSink.writeVarLong(dictionarySize);
+            for(int code = 0; code < dictionarySize; code++)
+            {
+                this.chunkSink.writeString(dictionary.getString(code));
+            }
+
+            final int codeWidth = dictionarySize <= 0x100 ? 1 : 2;
+            this.chunkSink.writeByte(codeWidth);
+            for(int i = 0; i < valueCount; i++)
+            {
+                int code = this.dictionaryCodes[i];
+                if(codeWidth == 2)
+                {
+                    this.chunkSink.writeByte(code >>> 8);
+                }
+                this.chunkSink.writeByte(code);
+            }
+
+            return BinaryTableFormat.ENCODING_DICTIONARY;
+        }
+        else
+        {
+            for(int i = 0; i < valueCount; i++)
+            {
+                this.chunkSink.writeString(this.columnValues[i]);
+            }
+
+            return BinaryTableFormat.ENCODING_PLAIN;
+        }
+    }
+
+    /**
+     * Write the given bytes as a region, compressing them if that helps
+     * @param rawSink
+     *          the raw bytes
+     * @return
+     *          the region description
+     * @throws IOException
+     *          if the write fails
+     */
+    private BinaryTableFormat.Region writeRegion(BinaryTableFormat.ByteSink rawSink)
+    throws IOException
+    {
+        BinaryTableFormat.ByteSink storedSink = rawSink;
+        byte codec = BinaryTableFormat.CODEC_NONE;
+        if(this.deflater != null)
+        {
+            this.deflater.reset();
+            this.deflater.setInput(rawSink.getBytes(), 0, rawSink.length());
+            this.deflater.finish();
+
+            this.compressedSink.reset();
+            byte[] buffer = new byte[8 * 1024];
+            while(!this.deflater.finished() &&
+                  this.compressedSink.length() < rawSink.length())
+            {
+                int byteCount = this.deflater.deflate(buffer);
+                this.compressedSink.writeBytes(buffer, 0, byteCount);
+            }
+
+            if(this.deflater.finished() &&
+               this.compressedSink.length() < rawSink.length())
+            {
+                storedSink = this.compressedSink;
+                codec = BinaryTableFormat.CODEC_DEFLATE;
+            }
+        }
+
+        BinaryTableFormat.Region region = new BinaryTableFormat.Region(
+                this.filePosition,
+                storedSink.length(),
+                rawSink.length(),
+                codec);
+        this.writeToStream(storedSink);
+
+        return region;
+    }
+
+    /**
+     * Write the footer and trailer
+     * @throws IOException
+     *          if the write fails
+     */
+    private void writeFooter() throws IOException
+    {
+        long footerOffset = this.filePosition;
+        BinaryTableFormat.ByteSink footerSink =
+            new BinaryTableFormat.ByteSink(1024);
+        footerSink.writeVarLong(this.columnStatistics.size());
+        footerSink.writeVarLong(this.blocks.size());
+        for(BinaryTableFormat.Block block: this.blocks)
+        {
+            block.write(footerSink);
+        }
+        for(BinaryTableStatistics stats: this.columnStatistics)
+        {
+            stats.write(footerSink);
+        }
+        int footerLength = footerSink.length();
+
+        footerSink.writeLong(footerOffset);
+        footerSink.writeInt(footerLength);
+        footerSink.writeInt(BinaryTableFormat.MAGIC);
+        this.writeToStream(footerSink);
+    }
+
+    /**
+     * Write the sink contents to the output stream
+     * @param sink
+     *          the sink
+     * @throws IOException
+     *          if the write fails
+     */
+    private void writeToStream(BinaryTableFormat.ByteSink sink) throws IOException
+    {
+        this.outputStream.write(sink.getBytes(), 0, sink.length());
+        this.filePosition += sink.length();
+    }
+
+    /**
+     * Create statistics for a run of null values
+     * @param nullCount
+     *          the number of nulls
+     * @return
+     *          the statistics
+     */
+    private static BinaryTableStatistics nullStatistics(int nullCount)
+    {
+        return new BinaryTableStatistics(
+                BinaryTableColumnType.LONG,
+                0,
+                nullCount,
+                Long.MAX_VALUE,
+                Long.MIN_VALUE,
+                Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY,
+                null,
+                null);
+    }
+
+    /**
+     * Main for converting a flat file into a binary table
+     * @param args
+     *          input file (csv format), output file
+     * @throws FileNotFoundException
+     *          if we can't find the input file
+     * @throws IOException
+     *          if we can't read/write
+     * @throws IllegalFormatException
+     *          if the input file format is bad
+     */
+    public static void main(String[] args)
+    throws FileNotFoundException, IOException, IllegalFormatException
+    {
+        TableReader reader = new FlatFileReader(
+                new BufferedReader(new FileReader(args[0])),
+                CommonFlatFileFormat.CSV_UNIX);
+        TableWriter writer = new BinaryTableWriter(new File(args[1]));
+
+        String[] row;
+        while((row = reader.readRow()) != null)
+        {
+            writer.writeRow(row);
+        }
+        writer.close();
+    }
+}
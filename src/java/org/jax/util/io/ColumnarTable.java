@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.io;
+
+import java.io.IOException;
+
+/**
+ * An in-memory table which is loaded column by column from a
+ * {@link TableReader}. Each column is a {@link DictionaryEncodedColumn} so
+ * tables with a lot of repeated values take up a small fraction of the
+ * memory that a <code>String[][]</code> would.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class ColumnarTable
+{
+    /**
+     * The default per column dictionary size used by
+     * {@link #load(TableReader)}
+     */
+    public static final int DEFAULT_MAX_DICTIONARY_SIZE = 1 << 16;
+
+    private final DictionaryEncodedColumn[] columns;
+
+    private final int rowCount;
+
+    /**
+     * Constructor
+     * @param columns
+     *          the columns (they must all be the same size)
+     */
+    public ColumnarTable(DictionaryEncodedColumn[] columns)
+    {
+        this.columns = columns;
+        this.rowCount = columns.length == 0 ? 0 : columns[0].size();
+        for(DictionaryEncodedColumn column: columns)
+        {
+            if(column.size() != this.rowCount)
+            {
+                throw new IllegalArgumentException(
+                        "all of the columns must be the same size");
+            }
+        }
+    }
+
+    /**
+     * Load a table using {@link #DEFAULT_MAX_DICTIONARY_SIZE}
+     * @param reader
+     *          the reader to load from
+     * @return
+     *          the table
+     * @throws IOException
+     *          if the read fails
+     * @throws IllegalFormatException
+     *          if the format is bad or the rows have differing lengths
+     */
+    public static ColumnarTable load(TableReader reader)
+    throws IOException, IllegalFormatException
+    {
+        return ColumnarTable.load(reader, DEFAULT_MAX_DICTIONARY_SIZE);
+    }
+
+    /**
+     * Load all of the rows from the given reader into a table
+     * @param reader
+     *          the reader to load from
+     * @param maxDictionarySizePerColumn
+     *          the maximum number of distinct values a column can have
+     *          before it gives up on dictionary encoding
+     * @return
+     *          the table
+     * @throws IOException
+     *          if the read fails
+     * @throws IllegalFormatException
+     *          if the format is bad or the rows have differing lengths
+     */
+    public static ColumnarTable load(
+            TableReader reader,
+            int maxDictionarySizePerColumn)
+    throws IOException, IllegalFormatException
+    {
+        if(reader instanceof FlatFileReader)
+        {
+            // intern the strings as they're parsed too so that we don't
+            // allocate a string per field
+            FlatFileReader flatFileReader = (FlatFileReader)reader;
+            if(flatFileReader.getMaxDictionarySizePerColumn() == 0)
+            {
+                flatFileReader.setMaxDictionarySizePerColumn(
+                        maxDictionarySizePerColumn);
+            }
+        }
+
+        DictionaryEncodedColumn[] columns = null;
+        int rowIndex = 0;
+        String[] row;
+        while((row = reader.readRow()) != null)
+        {
+            if(columns == null)
+            {
+                columns = new DictionaryEncodedColumn[row.length];
+                for(int i = 0; i < columns.length; i++)
+                {
+                    columns[i] = new DictionaryEncodedColumn(
+                            maxDictionarySizePerColumn);
+                }
+            }
+            else if(row.length != columns.length)
+            {
+                throw new IllegalFormatException(
+                        "row " + rowIndex + " has " + row.length +
+                        " columns but " + columns.length + " were expected");
+            }
+
+            for(int i = 0; i < columns.length; i++)
+            {
+                columns[i].add(row[i]);
+            }
+            rowIndex++;
+        }
+
+        if(columns == null)
+        {
+            columns = new DictionaryEncodedColumn[0];
+        }
+
+        for(DictionaryEncodedColumn column: columns)
+        {
+            column.trimToSize();
+        }
+
+        return new ColumnarTable(columns);
+    }
+
+    /**
+     * Getter for the row count
+     * @return
+     *          the row count
+     */
+    public int getRowCount()
+    {
+        return this.rowCount;
+    }
+
+    /**
+     * Getter for the column count
+     * @return
+     *          the column count
+     */
+    public int getColumnCount()
+    {
+        return this.columns.length;
+    }
+
+    /**
+     * Get the given column
+     * @param columnIndex
+     *          the column index
+     * @return
+     *          the column
+     */
+    public DictionaryEncodedColumn getColumn(int columnIndex)
+    {
+        return this.columns[columnIndex];
+    }
+
+    /**
+     * Get a single value
+     * @param rowIndex
+     *          the row index
+     * @param columnIndex
+     *          the column index
+     * @return
+     *          the value
+     */
+    public String getValue(int rowIndex, int columnIndex)
+    {
+        return this.columns[columnIndex].get(rowIndex);
+    }
+
+    /**
+     * Get the given row
+     * @param rowIndex
+     *          the row index
+     * @return
+     *          a new array holding the row
+     */
+    public String[] getRow(int rowIndex)
+    {
+        String[] row = new String[this.columns.length];
+        for(int i = 0; i < row.length; i++)
+        {
+            row[i] = this.columns[i].get(rowIndex);
+        }
+
+        return row;
+    }
+
+    /**
+     * Get a reader over the rows of this table
+     * @return
+     *          the reader
+     */
+    public TableReader toReader()
+    {
+        return new AbstractTableReader()
+        {
+            private int nextRowIndex = 0;
+
+            /**
+             * {@inheritDoc}
+             */
+            public String[] readRow()
+            {
+                if(this.nextRowIndex < ColumnarTable.this.rowCount)
+                {
+                    String[] row = ColumnarTable.this.getRow(this.nextRowIndex);
+                    this.nextRowIndex++;
+                    return row;
+                }
+                else
+                {
+                    return null;
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.io;
+
+import org.jax.util.datastructure.StringDictionary;
+
+/**
+ * A growable column of strings which is stored as an <code>int</code> code
+ * per row plus a {@link StringDictionary} of the distinct values. If the
+ * number of distinct values grows beyond the dictionary limit the column
+ * falls back to storing plain strings (see {@link #isEncoded()}). Null
+ * values are allowed and use the code {@link #NULL_CODE}.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class DictionaryEncodedColumn
+{
+    /**
+     * The code used for null values
+     */
+    public static final int NULL_CODE = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final StringDictionary dictionary;
+
+    private int[] codes = new int[INITIAL_CAPACITY];
+
+    private String[] plainValues = null;
+
+    private int size = 0;
+
+    /**
+     * Constructor
+     * @param maxDictionarySize
+     *          the maximum number of distinct values that will be dictionary
+     *          encoded before this column falls back on plain strings
+     */
+    public DictionaryEncodedColumn(int maxDictionarySize)
+    {
+        this.dictionary = new StringDictionary(maxDictionarySize);
+    }
+
+    /**
+     * Getter for the number of values in this column
+     * @return
+     *          the size
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Determine if this column is still dictionary encoded
+     * @return
+     *          true if values are stored as dictionary codes or false if
+     *          the dictionary overflowed and values are stored as strings
+     */
+    public boolean isEncoded()
+    {
+        return this.plainValues == null;
+    }
+
+    /**
+     * Getter for the dictionary. This is only meaningful if
+     * {@link #isEncoded()} is true.
+     * @return
+     *          the dictionary
+     */
+    public StringDictionary getDictionary()
+    {
+        return this.dictionary;
+    }
+
+    /**
+     * Append the given value to this column
+     * @param value
+     *          the value (can be null)
+     */
+    public void add(String value)
+    {
+        if(this.plainValues == null)
+        {
+            int code = value == null ? NULL_CODE : this.dictionary.add(value);
+            if(code == NULL_CODE && value != null)
+            {
+                // the dictionary is full so we need to give up on encoding
+                this.decode();
+                this.addPlain(value);
+            }
+            else
+            {
+                if(this.size == this.codes.length)
+                {
+                    int[] newCodes = new int[this.codes.length * 2];
+                    System.arraycopy(this.codes, 0, newCodes, 0, this.size);
+                    this.codes = newCodes;
+                }
+
+                this.codes[this.size] = code;
+                this.size++;
+            }
+        }
+        else
+        {
+            this.addPlain(value);
+        }
+    }
+
+    /**
+     * Get the value at the given row
+     * @param rowIndex
+     *          the row
+     * @return
+     *          the value
+     */
+    public String get(int rowIndex)
+    {
+        if(rowIndex < 0 || rowIndex >= this.size)
+        {
+            throw new IndexOutOfBoundsException(
+                    "row index " + rowIndex + " is out of bounds for a " +
+                    "column of size " + this.size);
+        }
+
+        if(this.plainValues == null)
+        {
+            int code = this.codes[rowIndex];
+            return code == NULL_CODE ? null : this.dictionary.getString(code);
+        }
+        else
+        {
+            return this.plainValues[rowIndex];
+        }
+    }
+
+    /**
+     * Get the dictionary code at the given row
+     * @param rowIndex
+     *          the row
+     * @return
+     *          the code
+     * @throws IllegalStateException
+     *          if this column is not encoded
+     */
+    public int getCode(int rowIndex) throws IllegalStateException
+    {
+        if(this.plainValues != null)
+        {
+            throw new IllegalStateException(
+                    "the column is no longer dictionary encoded");
+        }
+        else if(rowIndex < 0 || rowIndex >= this.size)
+        {
+            throw new IndexOutOfBoundsException(
+                    "row index " + rowIndex + " is out of bounds for a " +
+                    "column of size " + this.size);
+        }
+
+        return this.codes[rowIndex];
+    }
+
+    /**
+     * Get a copy of the dictionary codes for this column
+     * @return
+     *          the codes
+     * @throws IllegalStateException
+     *          if this column is not encoded
+     */
+    public int[] getCodes() throws IllegalStateException
+    {
+        if(this.plainValues != null)
+        {
+            throw new IllegalStateException(
+                    "the column is no longer dictionary encoded");
+        }
+
+        int[] codesCopy = new int[this.size];
+        System.arraycopy(this.codes, 0, codesCopy, 0, this.size);
+        return codesCopy;
+    }
+
+    /**
+     * Release any unused capacity
+     */
+    public void trimToSize()
+    {
+        if(this.plainValues == null)
+        {
+            if(this.codes.length > this.size)
+            {
+                this.codes = this.getCodes();
+            }
+        }
+        else if(this.plainValues.length > this.size)
+        {
+            String[] newValues = new String[this.size];
+            System.arraycopy(this.plainValues, 0, newValues, 0, this.size);
+            this.plainValues = newValues;
+        }
+    }
+
+    /**
+     * Append a value to the plain string storage
+     * @param value
+     *          the value
+     */
+    private void addPlain(String value)
+    {
+        if(this.size == this.plainValues.length)
+        {
+            String[] newValues = new String[this.plainValues.length * 2];
+            System.arraycopy(this.plainValues, 0, newValues, 0, this.size);
+            this.plainValues = newValues;
+        }
+
+        this.plainValues[this.size] = value;
+        this.size++;
+    }
+
+    /**
+     * Switch from dictionary codes to plain string storage
+     */
+    private void decode()
+    {
+        String[] values = new String[Math.max(INITIAL_CAPACITY, this.size * 2)];
+        for(int i = 0; i < this.size; i++)
+        {
+            int code = this.codes[i];
+            values[i] = code == NULL_CODE ? null : this.dictionary.getString(code);
+        }
+
+        this.plainValues = values;
+        this.codes = null;
+    }
+}
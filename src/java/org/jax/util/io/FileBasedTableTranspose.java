@@ -0,0 +1,473 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jax.util.datastructure.SequenceUtilities;
+
+/**
+ * Transposes tables that are too big to fit in memory. The table is read
+ * in bands of rows which are transposed in memory and written to temporary
+ * files. The bands are then read back side by side to build each output
+ * row. At most {@link #MAX_OPEN_BAND_FILES} band files are open at once.
+ * If there are more bands than that then groups of neighbouring bands are
+ * first merged into wider bands, as many times as it takes.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class FileBasedTableTranspose
+{
+    private static final String TMP_FILE_PREFIX = "transpose-data-";
+
+    /**
+     * The default number of table cells held in memory by
+     * {@link #transpose(TableReader, TableWriter)}
+     */
+    public static final int DEFAULT_IN_MEMORY_CELL_LIMIT = 1 << 22;
+
+    /**
+     * The largest number of band files that are read at the same time
+     */
+    public static final int MAX_OPEN_BAND_FILES = 64;
+
+    /**
+     * Transpose the table using {@link #DEFAULT_IN_MEMORY_CELL_LIMIT}
+     * @param reader
+     *          the table to transpose. Every row must be the same length
+     * @param writer
+     *          the writer that the transposed table is written to. This
+     *          function flushes the writer but does not close it
+     * @throws IOException
+     *          if we fail to read, write or use a temporary file
+     * @throws IllegalFormatException
+     *          if the reader fails to parse the table or the rows aren't
+     *          all the same length
+     */
+    public void transpose(TableReader reader, TableWriter writer)
+    throws IOException, IllegalFormatException
+    {
+        this.transpose(reader, writer, DEFAULT_IN_MEMORY_CELL_LIMIT);
+    }
+
+    /**
+     * Transpose the table
+     * @param reader
+     *          the table to transpose. Every row must be the same length
+     * @param writer
+     *          the writer that the transposed table is written to. This
+     *          function flushes the writer but does not close it
+     * @param inMemoryCellLimit
+     *          the number of cells to hold in memory at a time. A band
+     *          always holds at least one row
+     * @throws IOException
+     *          if we fail to read, write or use a temporary file
+     * @throws IllegalFormatException
+     *          if the reader fails to parse the table or the rows aren't
+     *          all the same length
+     * @throws IllegalArgumentException
+     *          if the cell limit is less than 1
+     */
+    public void transpose(
+            TableReader reader,
+            TableWriter writer,
+            int inMemoryCellLimit)
+    throws IOException, IllegalFormatException, IllegalArgumentException
+    {
+        if(inMemoryCellLimit < 1)
+        {
+            throw new IllegalArgumentException(
+                    "the in memory cell limit must be at least 1 but it is " +
+                    inMemoryCellLimit);
+        }
+
+        List<File> bandFiles = new ArrayList<File>();
+        List<Integer> bandRowCounts = new ArrayList<Integer>();
+        try
+        {
+            int columnCount = -1;
+            List<String[]> band = new ArrayList<String[]>();
+            String[] row;
+            while((row = reader.readRow()) != null)
+            {
+                if(columnCount == -1)
+                {
+                    columnCount = row.length;
+                }
+                else if(row.length != columnCount)
+                {
+                    throw new IllegalFormatException(
+                            "can't transpose a table with rows of different " +
+                            "lengths. Expected " + columnCount +
+                            " fields but found " + row.length);
+                }
+
+                band.add(row);
+                if((long)band.size() * columnCount >= inMemoryCellLimit)
+                {
+                    bandFiles.add(this.dumpBandToTempFile(band, columnCount));
+                    bandRowCounts.add(band.size());
+                    band.clear();
+                }
+            }
+
+            if(bandFiles.isEmpty())
+            {
+                // everything fit in memory so we don't need to touch disk
+                if(!band.isEmpty())
+                {
+                    String[][] transposedBand = SequenceUtilities.transposeMatrix(
+                            band.toArray(new String[band.size()][]));
+                    for(String[] transposedRow: transposedBand)
+                    {
+                        writer.writeRow(transposedRow);
+                    }
+                }
+            }
+            else
+            {
+                if(!band.isEmpty())
+                {
+                    bandFiles.add(this.dumpBandToTempFile(band, columnCount));
+                    bandRowCounts.add(band.size());
+                    band.clear();
+                }
+                while(bandFiles.size() > MAX_OPEN_BAND_FILES)
+                {
+                    this.mergeBandGroups(bandFiles, bandRowCounts, columnCount);
+                }
+                this.mergeBands(bandFiles, bandRowCounts, columnCount, writer);
+            }
+            writer.flush();
+        }
+        finally
+        {
+            for(File bandFile: bandFiles)
+            {
+                bandFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Merge each group of {@link #MAX_OPEN_BAND_FILES} neighbouring bands
+     * into a single band, replacing the contents of the given lists with
+     * the merged bands. The files for the old bands are deleted
+     * @param bandFiles
+     *          the transposed bands in table order
+     * @param bandRowCounts
+     *          the number of input rows in each band
+     * @param columnCount
+     *          the input column count
+     * @throws IOException
+     *          if we fail to read a band or write a merged band
+     */
+    private void mergeBandGroups(
+            List<File> bandFiles,
+            List<Integer> bandRowCounts,
+            int columnCount)
+    throws IOException
+    {
+        List<File> groupFiles = new ArrayList<File>(bandFiles);
+        List<Integer> groupRowCounts = new ArrayList<Integer>(bandRowCounts);
+        bandFiles.clear();
+        bandRowCounts.clear();
+        try
+        {
+            for(int start = 0; start < groupFiles.size(); start += MAX_OPEN_BAND_FILES)
+            {
+                int end = Math.min(start + MAX_OPEN_BAND_FILES, groupFiles.size());
+                List<Integer> rowCounts = groupRowCounts.subList(start, end);
+                int mergedRowCount = 0;
+                for(Integer rowCount: rowCounts)
+                {
+                    mergedRowCount += rowCount;
+                }
+
+                File mergedFile = File.createTempFile(TMP_FILE_PREFIX, null);
+                mergedFile.deleteOnExit();
+                bandFiles.add(mergedFile);
+                bandRowCounts.add(mergedRowCount);
+
+                DataInputStream[] bandInputs = openBands(groupFiles.subList(start, end));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(mergedFile)));
+                try
+                {
+                    // the merged file has the same layout as a single band:
+                    // each input column in turn, with the column's fields
+                    // from every band in the group
+                    for(int column = 0; column < columnCount; column++)
+                    {
+                        for(int i = 0; i < bandInputs.length; i++)
+                        {
+                            int bandRowCount = rowCounts.get(i);
+                            for(int j = 0; j < bandRowCount; j++)
+                            {
+                                writeField(out, readField(bandInputs[i]));
+                            }
+                        }
+                    }
+                }
+                finally
+                {
+                    out.close();
+                    closeBands(bandInputs);
+                }
+            }
+        }
+        finally
+        {
+            for(File groupFile: groupFiles)
+            {
+                groupFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Build the output rows by reading the transposed bands side by side
+     * @param bandFiles
+     *          the transposed bands in table order. There must be no more
+     *          than {@link #MAX_OPEN_BAND_FILES} of them
+     * @param bandRowCounts
+     *          the number of input rows in each band
+     * @param columnCount
+     *          the input column count (which is the output row count)
+     * @param writer
+     *          the writer for the output rows
+     * @throws IOException
+     *          if we fail to read a band or write a row
+     */
+    private void mergeBands(
+            List<File> bandFiles,
+            List<Integer> bandRowCounts,
+            int columnCount,
+            TableWriter writer)
+    throws IOException
+    {
+        int bandCount = bandFiles.size();
+        int outputRowLength = 0;
+        for(Integer bandRowCount: bandRowCounts)
+        {
+            outputRowLength += bandRowCount;
+        }
+
+        DataInputStream[] bandInputs = openBands(bandFiles);
+        try
+        {
+            for(int outputRow = 0; outputRow < columnCount; outputRow++)
+            {
+                String[] row = new String[outputRowLength];
+                int cursor = 0;
+                for(int i = 0; i < bandCount; i++)
+                {
+                    int bandRowCount = bandRowCounts.get(i);
+                    for(int j = 0; j < bandRowCount; j++)
+                    {
+                        row[cursor] = readField(bandInputs[i]);
+                        cursor++;
+                    }
+                }
+                writer.writeRow(row);
+            }
+        }
+        finally
+        {
+            closeBands(bandInputs);
+        }
+    }
+
+    /**
+     * Open an input stream for each of the band files
+     * @param bandFiles
+     *          the band files
+     * @return
+     *          the streams
+     * @throws IOException
+     *          if a file can't be opened. Any streams that were already
+     *          opened are closed
+     */
+    private static DataInputStream[] openBands(List<File> bandFiles)
+    throws IOException
+    {
+        DataInputStream[] bandInputs = new DataInputStream[bandFiles.size()];
+        boolean opened = false;
+        try
+        {
+            for(int i = 0; i < bandInputs.length; i++)
+            {
+                bandInputs[i] = new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(bandFiles.get(i))));
+            }
+            opened = true;
+            return bandInputs;
+        }
+        finally
+        {
+            if(!opened)
+            {
+                closeBands(bandInputs);
+            }
+        }
+    }
+
+    /**
+     * Close the band streams that aren't null
+     * @param bandInputs
+     *          the streams
+     * @throws IOException
+     *          if closing fails
+     */
+    private static void closeBands(DataInputStream[] bandInputs)
+    throws IOException
+    {
+        for(DataInputStream bandInput: bandInputs)
+        {
+            if(bandInput != null)
+            {
+                bandInput.close();
+            }
+        }
+    }
+
+    /**
+     * Write the transpose of the given band to a temporary file
+     * @param band
+     *          the band of rows
+     * @param columnCount
+     *          the column count
+     * @return
+     *          the file
+     * @throws IOException
+     *          if we fail to write to a temporary file
+     */
+    private File dumpBandToTempFile(List<String[]> band, int columnCount)
+    throws IOException
+    {
+        File tempFile = File.createTempFile(TMP_FILE_PREFIX, null);
+        tempFile.deleteOnExit();
+
+        String[][] rows = band.toArray(new String[band.size()][]);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tempFile)));
+        try
+        {
+            // walk the band a column at a time so that the file holds the
+            // band's transpose
+            for(int column = 0; column < columnCount; column++)
+            {
+                for(String[] row: rows)
+                {
+                    writeField(out, row[column]);
+                }
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+
+        return tempFile;
+    }
+
+    /**
+     * Write a field as its length followed by its characters. We avoid
+     * {@link DataOutputStream#writeUTF(String)} because it can't handle
+     * fields longer than 64K
+     * @param out
+     *          the stream to write to
+     * @param field
+     *          the field
+     * @throws IOException
+     *          if the write fails
+     */
+    private static void writeField(DataOutputStream out, String field)
+    throws IOException
+    {
+        out.writeInt(field.length());
+        out.writeChars(field);
+    }
+
+    /**
+     * Read a field written by {@link #writeField(DataOutputStream, String)}
+     * @param in
+     *          the stream to read from
+     * @return
+     *          the field
+     * @throws IOException
+     *          if the read fails
+     */
+    private static String readField(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        char[] chars = new char[length];
+        for(int i = 0; i < length; i++)
+        {
+            chars[i] = in.readChar();
+        }
+        return new String(chars);
+    }
+
+    /**
+     * A main for testing the transpose
+     * @param args
+     *          ignored
+     * @throws Exception
+     *          if the test fails
+     */
+    public static void main(String[] args) throws Exception
+    {
+        StringBuilder table = new StringBuilder();
+        for(int row = 0; row < 7; row++)
+        {
+            for(int column = 0; column < 5; column++)
+            {
+                if(column > 0)
+                {
+                    table.append(',');
+                }
+                table.append("r" + row + "c" + column);
+            }
+            table.append('\n');
+        }
+
+        StringWriter transposed = new StringWriter();
+        FlatFileWriter writer = new FlatFileWriter(
+                transposed,
+                CommonFlatFileFormat.CSV_UNIX);
+        new FileBasedTableTranspose().transpose(
+                new FlatFileReader(
+                        new StringReader(table.toString()),
+                        CommonFlatFileFormat.CSV_UNIX),
+                writer,
+                10);
+        System.out.println(table);
+        System.out.println(transposed);
+    }
+}
@@ -21,6 +21,8 @@ import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
 
+import org.jax.util.datastructure.StringDictionary;
+
 /**
  * For reading character delimited files.
  * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
@@ -45,7 +47,13 @@ public class FlatFileReader extends AbstractTableReader
     
     private final char[] charBuffer = new char[1024*4];
     
-    private final StringBuilder fieldBuilder = new StringBuilder();
+    private char[] fieldChars = new char[256];
+    
+    private int fieldLength = 0;
+    
+    private int maxDictionarySizePerColumn = 0;
+    
+    private StringDictionary[] columnDictionaries = null;
 
     private int charBufferLength = 0;
     
@@ -161,6 +169,160 @@ public class FlatFileReader extends AbstractTableReader
         return this.commentChar;
     }
     
+    /**
+     * Turn on string interning for the fields that this reader creates. Each
+     * column gets its own {@link StringDictionary} holding up to the given
+     * number of distinct values. Field values that are already in their
+     * column's dictionary are returned without allocating a new
+     * {@link String} which can greatly reduce the memory used by tables with
+     * many repeated values. Once a column's dictionary is full, values that
+     * aren't in it are allocated as normal, and if the column turns out to
+     * be mostly unique values the dictionary stops being consulted.
+     * @param maxDictionarySizePerColumn
+     *          the maximum number of distinct values to intern per column.
+     *          zero (the default) turns interning off
+     */
+    public void setMaxDictionarySizePerColumn(int maxDictionarySizePerColumn)
+    {
+        if(maxDictionarySizePerColumn < 0)
+        {
+            throw new IllegalArgumentException(
+                    "the dictionary size can't be negative");
+        }
+        
+        this.maxDictionarySizePerColumn = maxDictionarySizePerColumn;
+        this.columnDictionaries =
+            maxDictionarySizePerColumn == 0 ? null : new StringDictionary[0];
+    }
+    
+    /**
+     * Getter for the maximum number of distinct values that are interned
+     * per column
+     * @see #setMaxDictionarySizePerColumn(int)
+     * @return
+     *          the max dictionary size (zero means interning is off)
+     */
+    public int getMaxDictionarySizePerColumn()
+    {
+        return this.maxDictionarySizePerColumn;
+    }
+    
+    /**
+     * Get the dictionary that is being used to intern the given column
+     * @see #setMaxDictionarySizePerColumn(int)
+     * @param columnIndex
+     *          the column index
+     * @return
+     *          the dictionary or null if there isn't one
+     */
+    public StringDictionary getColumnDictionary(int columnIndex)
+    {
+        if(this.columnDictionaries == null ||
+           columnIndex >= this.columnDictionaries.length)
+        {
+            return null;
+        }
+        else
+        {
+            return this.columnDictionaries[columnIndex];
+        }
+    }
+    
+    /**
+     * Append the given character to the field that we're building
+     * @param currChar
+     *          the character
+     */
+    private void appendFieldChar(char currChar)
+    {
+        if(this.fieldLength == this.fieldChars.length)
+        {
+            char[] newFieldChars = new char[this.fieldChars.length * 2];
+            System.arraycopy(
+                    this.fieldChars,
+                    0,
+                    newFieldChars,
+                    0,
+                    this.fieldLength);
+            this.fieldChars = newFieldChars;
+        }
+        
+        this.fieldChars[this.fieldLength] = currChar;
+        this.fieldLength++;
+    }
+    
+    /**
+     * Add the field that we've been building to the current row and reset
+     * the field buffer
+     */
+    private void closeField()
+    {
+        final String field;
+        if(this.fieldLength == 0)
+        {
+            field = EMPTY_STRING;
+        }
+        else if(this.columnDictionaries == null)
+        {
+            field = new String(this.fieldChars, 0, this.fieldLength);
+        }
+        else
+        {
+            StringDictionary dictionary = this.getOrCreateDictionary(
+                    this.fields.size());
+            if(dictionary == null)
+            {
+                field = new String(this.fieldChars, 0, this.fieldLength);
+            }
+            else
+            {
+                field = dictionary.intern(this.fieldChars, 0, this.fieldLength);
+            }
+        }
+        
+        this.fields.add(field);
+        this.fieldLength = 0;
+    }
+    
+    /**
+     * Get the dictionary to use for the given column
+     * @param columnIndex
+     *          the column
+     * @return
+     *          the dictionary or null if the column shouldn't be interned
+     */
+    private StringDictionary getOrCreateDictionary(int columnIndex)
+    {
+        if(columnIndex >= this.columnDictionaries.length)
+        {
+            StringDictionary[] newDictionaries =
+                new StringDictionary[columnIndex + 1];
+            System.arraycopy(
+                    this.columnDictionaries,
+                    0,
+                    newDictionaries,
+                    0,
+                    this.columnDictionaries.length);
+            this.columnDictionaries = newDictionaries;
+        }
+        
+        StringDictionary dictionary = this.columnDictionaries[columnIndex];
+        if(dictionary == null)
+        {
+            dictionary = new StringDictionary(this.maxDictionarySizePerColumn);
+            this.columnDictionaries[columnIndex] = dictionary;
+        }
+        else if(dictionary.isFull() &&
+                dictionary.getMissCount() - dictionary.size() > dictionary.getHitCount())
+        {
+            // since filling up, the column has missed more often than
+            // it has hit, so probing the dictionary is just wasted effort
+            return null;
+        }
+        
+        return dictionary;
+    }
+    
     /**
      * If the next row is a comment row read through it
      * @return
@@ -324,7 +486,7 @@ public class FlatFileReader extends AbstractTableReader
                         case PLAIN_FIELD:
                         {
                             // close out the field
-                            this.fields.add(this.fieldBuilder.toString());
+                            this.closeField();
                         }
                         break;
                         
@@ -338,7 +500,7 @@ public class FlatFileReader extends AbstractTableReader
                         case QUOTE_IN_QUOTED_FIELD:
                         {
                             // close out the quoted field
-                            this.fields.add(this.fieldBuilder.toString());
+                            this.closeField();
                         }
                         break;
                     }
@@ -358,7 +520,7 @@ public class FlatFileReader extends AbstractTableReader
                 {
                     case FIELD_START:
                     {
-                        assert this.fieldBuilder.length() == 0;
+                        assert this.fieldLength == 0;
                         
                         if(currChar == this.quoteChar)
                         {
@@ -390,7 +552,7 @@ public class FlatFileReader extends AbstractTableReader
                         else
                         {
                             // this is a plain (unquoted) field
-                            this.fieldBuilder.append(currChar);
+                            this.appendFieldChar(currChar);
                             cursorMode = CursorMode.PLAIN_FIELD;
                         }
                     }
@@ -406,8 +568,7 @@ public class FlatFileReader extends AbstractTableReader
                         else if(currChar == this.fieldDelimiter)
                         {
                             // close out this field and start a new one
-                            this.fields.add(this.fieldBuilder.toString());
-                            this.fieldBuilder.setLength(0);
+                            this.closeField();
                             cursorMode = CursorMode.FIELD_START;
                         }
                         else if(this.matchesRowDelimiterStart(currChar))
@@ -415,8 +576,7 @@ public class FlatFileReader extends AbstractTableReader
                             // close out this field and go into row delimiter
                             // mode (assuming the row delimiter is more
                             // than one char)
-                            this.fields.add(this.fieldBuilder.toString());
-                            this.fieldBuilder.setLength(0);
+                            this.closeField();
                             
                             if(this.rowDelimiter.length() >= 2)
                             {
@@ -433,7 +593,7 @@ public class FlatFileReader extends AbstractTableReader
                         else
                         {
                             // it's just a part of the field
-                            this.fieldBuilder.append(currChar);
+                            this.appendFieldChar(currChar);
                         }
                     }
                     break;
@@ -446,7 +606,7 @@ public class FlatFileReader extends AbstractTableReader
                         }
                         else
                         {
-                            this.fieldBuilder.append(currChar);
+                            this.appendFieldChar(currChar);
                         }
                     }
                     break;
@@ -457,14 +617,13 @@ public class FlatFileReader extends AbstractTableReader
                         {
                             // this is an escaped quote character. go back
                             // to quoted field mode
-                            this.fieldBuilder.append(currChar);
+                            this.appendFieldChar(currChar);
                             cursorMode = CursorMode.QUOTED_FIELD;
                         }
                         else if(currChar == this.fieldDelimiter)
                         {
                             // close out this field and start another
-                            this.fields.add(this.fieldBuilder.toString());
-                            this.fieldBuilder.setLength(0);
+                            this.closeField();
                             cursorMode = CursorMode.FIELD_START;
                         }
                         else if(this.matchesRowDelimiterStart(currChar))
@@ -472,8 +631,7 @@ public class FlatFileReader extends AbstractTableReader
                             // close out this field and go into row delimiter
                             // mode (assuming the row delimiter is more
                             // than one char)
-                            this.fields.add(this.fieldBuilder.toString());
-                            this.fieldBuilder.setLength(0);
+                            this.closeField();
                             
                             if(this.rowDelimiter.length() >= 2)
                             {
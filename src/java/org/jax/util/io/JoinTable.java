@@ -29,8 +29,6 @@ import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.LinkedBlockingQueue;
 
-import org.jax.util.datastructure.FileBasedHybridSort;
-
 /**
  * A table view that joins to other tables together
  * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
@@ -116,12 +114,9 @@ public class JoinTable extends AbstractTableReader
         }
         else
         {
-            FileBasedHybridSort fileBasedHybridSort = new FileBasedHybridSort();
-            TableColumnComparator comparator = new TableColumnComparator(
+            NormalizedKeyEncoder keyEncoder = new NormalizedKeyEncoder(
                     table1JoinIndices);
-            this.table1Iterator = fileBasedHybridSort.sort(
-                    table1Iterator,
-                    comparator);
+            this.table1Iterator = keyEncoder.sortRows(table1Iterator);
         }
         this.table1JoinIndices = table1JoinIndices;
         
@@ -131,12 +126,9 @@ public class JoinTable extends AbstractTableReader
         }
         else
         {
-            FileBasedHybridSort fileBasedHybridSort = new FileBasedHybridSort();
-            TableColumnComparator comparator = new TableColumnComparator(
+            NormalizedKeyEncoder keyEncoder = new NormalizedKeyEncoder(
                     table2JoinIndices);
-            this.table2Iterator = fileBasedHybridSort.sort(
-                    table2Iterator,
-                    comparator);
+            this.table2Iterator = keyEncoder.sortRows(table2Iterator);
         }
         this.table2JoinIndices = table2JoinIndices;
     }
@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.io;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+
+import org.jax.util.datastructure.FileBasedHybridSort;
+
+/**
+ * Encodes the key columns of a table row as a single normalized key. A
+ * normalized key is an array of longs whose unsigned, word by word order is
+ * the same as the order of the rows' key columns. Once a row has been
+ * encoded, comparing it to other rows only takes a few long comparisons.
+ * There is no per column dispatch, no character by character
+ * {@link String#compareTo(String)} and no number parsing. With only
+ * {@link SortKeyType#STRING} columns the order is the same as
+ * {@link TableColumnComparator}. {@link SortKeyType#LONG} and
+ * {@link SortKeyType#DOUBLE} columns are ordered numerically, so numbers
+ * don't need to be zero padded to sort correctly.
+ * <br><br>
+ * Each column encoding is prefix free: no encoded value is the start of
+ * another encoded value. Numbers take a fixed 8 bytes. Strings take two
+ * bytes per char and end in a three byte terminator. So the first differing
+ * byte of two keys always decides their order, and the zero padding in the
+ * last word never does.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class NormalizedKeyEncoder
+{
+    /**
+     * Compares normalized keys as unsigned longs
+     */
+    public static final Comparator<long[]> KEY_COMPARATOR =
+        new Comparator<long[]>()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public int compare(long[] key1, long[] key2)
+            {
+                return compareKeys(key1, key2);
+            }
+        };
+
+    /**
+     * Compares keyed rows on their normalized keys
+     */
+    public static final Comparator<KeyedRow> KEYED_ROW_COMPARATOR =
+        new Comparator<KeyedRow>()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public int compare(KeyedRow row1, KeyedRow row2)
+            {
+                return compareKeys(row1.key, row2.key);
+            }
+        };
+
+    private final int[] keyColumnIndices;
+
+    private final SortKeyType[] keyTypes;
+
+    /**
+     * Constructor for keys made of string columns
+     * @param keyColumnIndices
+     *          the indices of the key columns in priority order
+     */
+    public NormalizedKeyEncoder(int[] keyColumnIndices)
+    {
+        this(keyColumnIndices, null);
+    }
+
+    /**
+     * Constructor
+     * @param keyColumnIndices
+     *          the indices of the key columns in priority order
+     * @param keyTypes
+     *          the type of each key column. If this is null all columns are
+     *          treated as {@link SortKeyType#STRING}
+     */
+    public NormalizedKeyEncoder(int[] keyColumnIndices, SortKeyType[] keyTypes)
+    {
+        if(keyTypes == null)
+        {
+            keyTypes = new SortKeyType[keyColumnIndices.length];
+            Arrays.fill(keyTypes, SortKeyType.STRING);
+        }
+        else if(keyTypes.length != keyColumnIndices.length)
+        {
+            throw new IllegalArgumentException(
+                    "expected " + keyColumnIndices.length +
+                    " key types but got " + keyTypes.length);
+        }
+
+        this.keyColumnIndices = keyColumnIndices.clone();
+        this.keyTypes = keyTypes.clone();
+    }
+
+    /**
+     * Encode the key columns of the given row
+     * @param row
+     *          the row
+     * @return
+     *          the normalized key
+     * @throws NumberFormatException
+     *          if a numeric key column doesn't hold a number
+     */
+    public long[] encode(String[] row) throws NumberFormatException
+    {
+        KeyBuilder builder = new KeyBuilder();
+        for(int i = 0; i < this.keyColumnIndices.length; i++)
+        {
+            String value = row[this.keyColumnIndices[i]];
+            switch(this.keyTypes[i])
+            {
+                case LONG:
+                {
+                    // flipping the sign bit makes the signed order unsigned
+                    builder.appendLong(Long.parseLong(value.trim()) ^ Long.MIN_VALUE);
+                }
+                break;
+
+                case DOUBLE:
+                {
+                    // doubleToLongBits gives every NaN the same bits, which
+                    // sort after positive infinity like Double.compare
+                    long bits = Double.doubleToLongBits(Double.parseDouble(value));
+                    builder.appendLong(bits < 0L ? ~bits : bits ^ Long.MIN_VALUE);
+                }
+                break;
+
+                case STRING:
+                {
+                    int length = value.length();
+                    for(int j = 0; j < length; j++)
+                    {
+                        char c = value.charAt(j);
+                        if(c == 0)
+                        {
+                            // two zero bytes would look like the terminator
+                            // so '\0' gets a third byte to sort after it
+                            builder.appendByte(0);
+                            builder.appendByte(0);
+                            builder.appendByte(1);
+                        }
+                        else
+                        {
+                            builder.appendByte(c >>> 8);
+                            builder.appendByte(c);
+                        }
+                    }
+                    builder.appendByte(0);
+                    builder.appendByte(0);
+                    builder.appendByte(0);
+                }
+                break;
+
+                default: throw new IllegalStateException(
+                        "unexpected key type: " + this.keyTypes[i]);
+            }
+        }
+        return builder.toKey();
+    }
+
+    /**
+     * Pair the given row with its normalized key
+     * @param row
+     *          the row
+     * @return
+     *          the keyed row
+     * @throws NumberFormatException
+     *          if a numeric key column doesn't hold a number
+     */
+    public KeyedRow createKeyedRow(String[] row) throws NumberFormatException
+    {
+        return new KeyedRow(this.encode(row), row);
+    }
+
+    /**
+     * Sort the rows on their key columns using a {@link FileBasedHybridSort}.
+     * Each row is encoded once up front, so the sort and the file merges
+     * only compare normalized keys. Rows with equal keys keep their
+     * original order
+     * @param rows
+     *          the rows to sort
+     * @return
+     *          the sorted rows
+     * @throws IOException
+     *          if the sort fails to use its temporary files
+     * @throws NumberFormatException
+     *          if a numeric key column doesn't hold a number
+     */
+    public Iterator<String[]> sortRows(final Iterator<String[]> rows)
+    throws IOException, NumberFormatException
+    {
+        Iterator<KeyedRow> keyedRows = new Iterator<KeyedRow>()
+        {
+            public boolean hasNext()
+            {
+                return rows.hasNext();
+            }
+
+            public KeyedRow next()
+            {
+                return NormalizedKeyEncoder.this.createKeyedRow(rows.next());
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        final Iterator<KeyedRow> sortedKeyedRows = new FileBasedHybridSort().sort(
+                keyedRows,
+                KEYED_ROW_COMPARATOR);
+        return new Iterator<String[]>()
+        {
+            public boolean hasNext()
+            {
+                return sortedKeyedRows.hasNext();
+            }
+
+            public String[] next()
+            {
+                return sortedKeyedRows.next().row;
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Compare two normalized keys
+     * @param key1
+     *          the 1st key
+     * @param key2
+     *          the 2nd key
+     * @return
+     *          a negative number, zero or a positive number if the 1st key
+     *          is less than, equal to or greater than the 2nd key
+     */
+    public static int compareKeys(long[] key1, long[] key2)
+    {
+        int length = Math.min(key1.length, key2.length);
+        for(int i = 0; i < length; i++)
+        {
+            long word1 = key1[i];
+            long word2 = key2[i];
+            if(word1 != word2)
+            {
+                return (word1 ^ Long.MIN_VALUE) < (word2 ^ Long.MIN_VALUE) ? -1 : 1;
+            }
+        }
+        return key1.length - key2.length;
+    }
+
+    /**
+     * A row paired with its normalized key
+     */
+    public static final class KeyedRow implements Serializable
+    {
+        /**
+         * every {@link java.io.Serializable} is supposed to have one of these
+         */
+        private static final long serialVersionUID = -2694530158021826513L;
+
+        private final long[] key;
+
+        private final String[] row;
+
+        /**
+         * Constructor
+         * @param key
+         *          the normalized key
+         * @param row
+         *          the row
+         */
+        public KeyedRow(long[] key, String[] row)
+        {
+            this.key = key;
+            this.row = row;
+        }
+
+        /**
+         * Getter for the normalized key
+         * @return
+         *          the key
+         */
+        public long[] getKey()
+        {
+            return this.key;
+        }
+
+        /**
+         * Getter for the row
+         * @return
+         *          the row
+         */
+        public String[] getRow()
+        {
+            return this.row;
+        }
+    }
+
+    /**
+     * Packs bytes big endian into a growing array of longs
+     */
+    private static final class KeyBuilder
+    {
+        private long[] words = new long[4];
+
+        private int byteCount = 0;
+
+        /**
+         * Append the low 8 bits of the given value
+         * @param value
+         *          the byte value
+         */
+        public void appendByte(int value)
+        {
+            int wordIndex = this.byteCount >>> 3;
+            if(wordIndex == this.words.length)
+            {
+                this.grow();
+            }
+            this.words[wordIndex] |= (value & 0xFFL) << (56 - ((this.byteCount & 7) << 3));
+            this.byteCount++;
+        }
+
+        /**
+         * Append all 8 bytes of the given value
+         * @param value
+         *          the value
+         */
+        public void appendLong(long value)
+        {
+            int shift = (this.byteCount & 7) << 3;
+            int wordIndex = this.byteCount >>> 3;
+            if(wordIndex + 1 >= this.words.length)
+            {
+                this.grow();
+            }
+            if(shift == 0)
+            {
+                this.words[wordIndex] = value;
+            }
+            else
+            {
+                this.words[wordIndex] |= value >>> shift;
+                this.words[wordIndex + 1] = value << (64 - shift);
+            }
+            this.byteCount += 8;
+        }
+
+        /**
+         * Get the key
+         * @return
+         *          the key trimmed to the bytes in use
+         */
+        public long[] toKey()
+        {
+            long[] key = new long[(this.byteCount + 7) >>> 3];
+            System.arraycopy(this.words, 0, key, 0, key.length);
+            return key;
+        }
+
+        /**
+         * double the capacity
+         */
+        private void grow()
+        {
+            long[] newWords = new long[this.words.length * 2];
+            System.arraycopy(this.words, 0, newWords, 0, this.words.length);
+            this.words = newWords;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.io;
+
+/**
+ * How a {@link NormalizedKeyEncoder} orders the values of a key column
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public enum SortKeyType
+{
+    /**
+     * values are parsed with {@link Long#parseLong(String)} and ordered
+     * numerically
+     */
+    LONG,
+    
+    /**
+     * values are parsed with {@link Double#parseDouble(String)} and ordered
+     * like {@link Double#compare(double, double)}
+     */
+    DOUBLE,
+    
+    /**
+     * values are ordered like {@link String#compareTo(String)}
+     */
+    STRING
+}
@@ -27,8 +27,6 @@ import java.util.Iterator;
 import java.util.Queue;
 import java.util.concurrent.LinkedBlockingQueue;
 
-import org.jax.util.datastructure.FileBasedHybridSort;
-
 /**
  * A table view that joins to other tables together
  * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
@@ -110,12 +108,9 @@ public class SubtractTable extends AbstractTableReader
         }
         else
         {
-            FileBasedHybridSort fileBasedHybridSort = new FileBasedHybridSort();
-            TableColumnComparator comparator = new TableColumnComparator(
+            NormalizedKeyEncoder keyEncoder = new NormalizedKeyEncoder(
                     minuendJoinIndices);
-            this.minuendIterator = fileBasedHybridSort.sort(
-                    minuendTableIterator,
-                    comparator);
+            this.minuendIterator = keyEncoder.sortRows(minuendTableIterator);
         }
         this.minuendJoinIndices = minuendJoinIndices;
         
@@ -125,12 +120,9 @@ public class SubtractTable extends AbstractTableReader
         }
         else
         {
-            FileBasedHybridSort fileBasedHybridSort = new FileBasedHybridSort();
-            TableColumnComparator comparator = new TableColumnComparator(
+            NormalizedKeyEncoder keyEncoder = new NormalizedKeyEncoder(
                     subtrahendJoinIndices);
-            this.subtrahendIterator = fileBasedHybridSort.sort(
-                    subtrahendTableIterator,
-                    comparator);
+            this.subtrahendIterator = keyEncoder.sortRows(subtrahendTableIterator);
         }
         this.subtrahendJoinIndices = subtrahendJoinIndices;
     }
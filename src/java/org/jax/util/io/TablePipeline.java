@@ -0,0 +1,697 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.jax.util.Condition;
+import org.jax.util.concurrent.ExecutorUtilities;
+import org.jax.util.datastructure.FileBasedHybridSort;
+import org.jax.util.math.Function;
+
+/**
+ * A lazily evaluated chain of table operations. Nothing is read until
+ * {@link #toReader()} or one of the <code>writeTo</code> functions is called.
+ * Row level operations ({@link #filter(Condition)},
+ * {@link #project(int[])} and {@link #map(Function)}) that are adjacent to
+ * each other are fused together so that they are applied to each row in a
+ * single pass. Operations that need to see the whole table
+ * ({@link #sort(int[])}, {@link #join(TablePipeline, int[], int[])} and
+ * {@link #subtract(TablePipeline, int[], int[])}) break the pipeline into
+ * stages which are built on top of {@link FileBasedHybridSort},
+ * {@link JoinTable} and {@link SubtractTable}.
+ * <br><br>
+ * Since the underlying {@link TableReader}s can only be read once, a
+ * pipeline should only be executed once. Pipelines themselves are immutable
+ * so it is safe to branch off of a common pipeline prefix, but only one of
+ * the branches can be executed.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class TablePipeline
+{
+    /**
+     * The default number of rows handed to a worker at a time by
+     * {@link #writeTo(TableWriter, ExecutorService)}
+     */
+    public static final int DEFAULT_PARALLEL_BATCH_SIZE = 4096;
+
+    /**
+     * The default number of batches that are allowed to be in flight
+     * at once by {@link #writeTo(TableWriter, ExecutorService)}
+     */
+    public static final int DEFAULT_MAX_PENDING_BATCHES = 16;
+
+    private final TableSource source;
+
+    private final RowOperation[] rowOperations;
+
+    /**
+     * Constructor
+     * @param source
+     *          the source of rows for this pipeline
+     * @param rowOperations
+     *          the fused row operations that are applied to the source
+     */
+    private TablePipeline(TableSource source, RowOperation[] rowOperations)
+    {
+        this.source = source;
+        this.rowOperations = rowOperations;
+    }
+
+    /**
+     * Start a new pipeline which reads from the given reader
+     * @param reader
+     *          the reader
+     * @return
+     *          the pipeline
+     */
+    public static TablePipeline from(final TableReader reader)
+    {
+        return new TablePipeline(
+                new TableSource()
+                {
+                    public TableReader open()
+                    {
+                        return reader;
+                    }
+                },
+                new RowOperation[0]);
+    }
+
+    /**
+     * Filter the rows in this pipeline
+     * @param acceptCondition
+     *          rows that test true are kept and all others are dropped. This
+     *          condition must be thread safe if the pipeline is executed
+     *          using {@link #writeTo(TableWriter, ExecutorService)}
+     * @return
+     *          the new pipeline
+     */
+    public TablePipeline filter(Condition<String[]> acceptCondition)
+    {
+        return this.append(new FilterOperation(acceptCondition));
+    }
+
+    /**
+     * Project the rows in this pipeline on the given columns
+     * @param columnIndices
+     *          the column indices to keep (in the order that they should be
+     *          kept). Repeats are allowed.
+     * @return
+     *          the new pipeline
+     */
+    public TablePipeline project(int[] columnIndices)
+    {
+        int lastIndex = this.rowOperations.length - 1;
+        if(lastIndex >= 0 && this.rowOperations[lastIndex] instanceof ProjectOperation)
+        {
+            // collapse the two projections into a single one
+            int[] previousIndices =
+                ((ProjectOperation)this.rowOperations[lastIndex]).columnIndices;
+            int[] composedIndices = new int[columnIndices.length];
+            for(int i = 0; i < columnIndices.length; i++)
+            {
+                composedIndices[i] = previousIndices[columnIndices[i]];
+            }
+
+            RowOperation[] newOperations = this.rowOperations.clone();
+            newOperations[lastIndex] = new ProjectOperation(composedIndices);
+            return new TablePipeline(this.source, newOperations);
+        }
+        else
+        {
+            return this.append(new ProjectOperation(columnIndices.clone()));
+        }
+    }
+
+    /**
+     * Transform the rows in this pipeline
+     * @param rowFunction
+     *          the function to transform each row with. A null output means
+     *          that the row should be dropped. This function must be thread
+     *          safe if the pipeline is executed using
+     *          {@link #writeTo(TableWriter, ExecutorService)}
+     * @return
+     *          the new pipeline
+     */
+    public TablePipeline map(Function<String[], String[]> rowFunction)
+    {
+        return this.append(new MapOperation(rowFunction));
+    }
+
+    /**
+     * Sort the rows in this pipeline in the same order as a
+     * {@link TableColumnComparator}
+     * @param sortColumnIndices
+     *          the columns to sort on
+     * @return
+     *          the new pipeline
+     */
+    public TablePipeline sort(int[] sortColumnIndices)
+    {
+        return this.sort(sortColumnIndices, null);
+    }
+
+    /**
+     * Sort the rows in this pipeline using a {@link NormalizedKeyEncoder}
+     * @param sortColumnIndices
+     *          the columns to sort on
+     * @param sortKeyTypes
+     *          how each sort column is ordered or null to order them all
+     *          as strings
+     * @return
+     *          the new pipeline
+     */
+    public TablePipeline sort(int[] sortColumnIndices, SortKeyType[] sortKeyTypes)
+    {
+        final TablePipeline upstream = this;
+        final NormalizedKeyEncoder keyEncoder = new NormalizedKeyEncoder(
+                sortColumnIndices,
+                sortKeyTypes);
+        return new TablePipeline(
+                new TableSource()
+                {
+                    public TableReader open() throws IOException
+                    {
+                        final Iterator<String[]> sortedIter = keyEncoder.sortRows(
+                                upstream.toReader().iterator());
+                        return new IteratorTableReader(sortedIter);
+                    }
+                },
+                new RowOperation[0]);
+    }
+
+    /**
+     * Join the rows in this pipeline to the rows in the given pipeline.
+     * See {@link JoinTable} for a description of how the rows are joined.
+     * @param rightPipeline
+     *          the pipeline to join against
+     * @param joinIndices
+     *          the join indices for this pipeline
+     * @param rightJoinIndices
+     *          the join indices for the right pipeline
+     * @return
+     *          the new pipeline
+     */
+    public TablePipeline join(
+            final TablePipeline rightPipeline,
+            final int[] joinIndices,
+            final int[] rightJoinIndices)
+    {
+        final TablePipeline upstream = this;
+        return new TablePipeline(
+                new TableSource()
+                {
+                    public TableReader open() throws IOException
+                    {
+                        return new JoinTable(
+                                upstream.toReader().iterator(),
+                                joinIndices,
+                                rightPipeline.toReader().iterator(),
+                                rightJoinIndices);
+                    }
+                },
+                new RowOperation[0]);
+    }
+
+    /**
+     * Remove any rows in this pipeline that match rows in the given pipeline.
+     * See {@link SubtractTable} for more details.
+     * @param subtrahendPipeline
+     *          the rows to subtract
+     * @param joinIndices
+     *          the indices to match on for this pipeline
+     * @param subtrahendJoinIndices
+     *          the indices to match on for the subtrahend pipeline
+     * @return
+     *          the new pipeline
+     */
+    public TablePipeline subtract(
+            final TablePipeline subtrahendPipeline,
+            final int[] joinIndices,
+            final int[] subtrahendJoinIndices)
+    {
+        final TablePipeline upstream = this;
+        return new TablePipeline(
+                new TableSource()
+                {
+                    public TableReader open() throws IOException
+                    {
+                        return new SubtractTable(
+                                upstream.toReader().iterator(),
+                                joinIndices,
+                                subtrahendPipeline.toReader().iterator(),
+                                subtrahendJoinIndices);
+                    }
+                },
+                new RowOperation[0]);
+    }
+
+    /**
+     * Get a reader for the output of this pipeline. This is what triggers
+     * any upstream stages to be opened.
+     * @return
+     *          the reader
+     * @throws IOException
+     *          if opening an upstream stage fails
+     */
+    public TableReader toReader() throws IOException
+    {
+        final TableReader sourceReader = this.source.open();
+        if(this.rowOperations.length == 0)
+        {
+            return sourceReader;
+        }
+        else
+        {
+            final RowOperation[] operations = this.rowOperations;
+            return new AbstractTableReader()
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                public String[] readRow() throws IOException, IllegalFormatException
+                {
+                    String[] row;
+                    while((row = sourceReader.readRow()) != null)
+                    {
+                        row = applyOperations(operations, row);
+                        if(row != null)
+                        {
+                            return row;
+                        }
+                    }
+
+                    return null;
+                }
+            };
+        }
+    }
+
+    /**
+     * Execute this pipeline in the calling thread writing all of the results
+     * to the given writer. The writer is flushed but not closed.
+     * @param writer
+     *          the writer
+     * @return
+     *          the number of rows written
+     * @throws IOException
+     *          if reading or writing fails
+     * @throws IllegalFormatException
+     *          if one of the inputs is badly formatted
+     */
+    public long writeTo(TableWriter writer) throws IOException, IllegalFormatException
+    {
+        TableReader reader = this.toReader();
+        long rowCount = 0L;
+        String[] row;
+        while((row = reader.readRow()) != null)
+        {
+            writer.writeRow(row);
+            rowCount++;
+        }
+        writer.flush();
+
+        return rowCount;
+    }
+
+    /**
+     * Like {@link #writeTo(TableWriter, ExecutorService, int, int)} using
+     * {@link #DEFAULT_PARALLEL_BATCH_SIZE} and
+     * {@link #DEFAULT_MAX_PENDING_BATCHES}
+     * @param writer
+     *          the writer
+     * @param executor
+     *          the executor that the row operations are run on
+     * @return
+     *          the number of rows written
+     * @throws IOException
+     *          if reading or writing fails
+     * @throws IllegalFormatException
+     *          if one of the inputs is badly formatted
+     * @throws InterruptedException
+     *          if we're interrupted while waiting on a worker
+     */
+    public long writeTo(TableWriter writer, ExecutorService executor)
+    throws IOException, IllegalFormatException, InterruptedException
+    {
+        return this.writeTo(
+                writer,
+                executor,
+                DEFAULT_PARALLEL_BATCH_SIZE,
+                DEFAULT_MAX_PENDING_BATCHES);
+    }
+
+    /**
+     * Execute this pipeline writing all of the results to the given writer.
+     * Rows are read from the upstream stages in the calling thread and
+     * partitioned into batches, the fused row operations are applied to
+     * the batches in the given executor and the results are written in the
+     * calling thread in their original order. The writer is flushed but not
+     * closed.
+     * @param writer
+     *          the writer
+     * @param executor
+     *          the executor that the row operations are run on
+     * @param batchSize
+     *          the number of rows in each batch
+     * @param maxPendingBatches
+     *          the maximum number of batches that can be in flight at once.
+     *          This bounds the memory used by the pipeline
+     * @return
+     *          the number of rows written
+     * @throws IOException
+     *          if reading or writing fails
+     * @throws IllegalFormatException
+     *          if one of the inputs is badly formatted
+     * @throws InterruptedException
+     *          if we're interrupted while waiting on a worker
+     */
+    public long writeTo(
+            TableWriter writer,
+            ExecutorService executor,
+            int batchSize,
+            int maxPendingBatches)
+    throws IOException, IllegalFormatException, InterruptedException
+    {
+        if(batchSize <= 0 || maxPendingBatches <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "the batch size and pending batch count must be " +
+                    "greater than 0");
+        }
+
+        if(this.rowOperations.length == 0)
+        {
+            // there's nothing to parallelize
+            return this.writeTo(writer);
+        }
+
+        final TableReader sourceReader = this.source.open();
+        final Queue<Future<List<String[]>>> pendingBatches =
+            new LinkedList<Future<List<String[]>>>();
+        long rowCount = 0L;
+
+        try
+        {
+            boolean endOfSource = false;
+            while(!endOfSource || !pendingBatches.isEmpty())
+            {
+                // fill the pipeline up with work
+                while(!endOfSource && pendingBatches.size() < maxPendingBatches)
+                {
+                    List<String[]> batch = new ArrayList<String[]>(batchSize);
+                    String[] row;
+                    while(batch.size() < batchSize &&
+                          (row = sourceReader.readRow()) != null)
+                    {
+                        batch.add(row);
+                    }
+
+                    endOfSource = batch.size() < batchSize;
+                    if(!batch.isEmpty())
+                    {
+                        pendingBatches.add(executor.submit(
+                                new BatchTask(this.rowOperations, batch)));
+                    }
+                }
+
+                // drain the oldest batch so that we preserve row order
+                if(!pendingBatches.isEmpty())
+                {
+                    for(String[] resultRow: pendingBatches.remove().get())
+                    {
+                        writer.writeRow(resultRow);
+                        rowCount++;
+                    }
+                }
+            }
+        }
+        catch(ExecutionException ex)
+        {
+            throw ExecutorUtilities.rethrowCause(ex);
+        }
+        finally
+        {
+            for(Future<List<String[]>> pendingBatch: pendingBatches)
+            {
+                pendingBatch.cancel(true);
+            }
+        }
+        writer.flush();
+
+        return rowCount;
+    }
+
+    /**
+     * Append the given row operation to this pipeline
+     * @param operation
+     *          the operation
+     * @return
+     *          the new pipeline
+     */
+    private TablePipeline append(RowOperation operation)
+    {
+        RowOperation[] newOperations =
+            new RowOperation[this.rowOperations.length + 1];
+        System.arraycopy(
+                this.rowOperations,
+                0,
+                newOperations,
+                0,
+                this.rowOperations.length);
+        newOperations[this.rowOperations.length] = operation;
+
+        return new TablePipeline(this.source, newOperations);
+    }
+
+    /**
+     * Apply all of the given operations to the row
+     * @param operations
+     *          the operations
+     * @param row
+     *          the row
+     * @return
+     *          the result or null if the row was dropped
+     */
+    private static String[] applyOperations(RowOperation[] operations, String[] row)
+    {
+        for(int i = 0; row != null && i < operations.length; i++)
+        {
+            row = operations[i].apply(row);
+        }
+
+        return row;
+    }
+
+    /**
+     * Opens the rows for a pipeline stage
+     */
+    private static interface TableSource
+    {
+        /**
+         * Open the reader for this source
+         * @return
+         *          the reader
+         * @throws IOException
+         *          if we fail to open the reader
+         */
+        public TableReader open() throws IOException;
+    }
+
+    /**
+     * An operation that is applied to one row at a time
+     */
+    private static abstract class RowOperation
+    {
+        /**
+         * Apply this operation to the given row
+         * @param row
+         *          the row
+         * @return
+         *          the resulting row or null if the row should be dropped
+         */
+        public abstract String[] apply(String[] row);
+    }
+
+    /**
+     * Filters rows using a condition
+     */
+    private static final class FilterOperation extends RowOperation
+    {
+        private final Condition<String[]> acceptCondition;
+
+        /**
+         * Constructor
+         * @param acceptCondition
+         *          the condition rows must pass to be kept
+         */
+        public FilterOperation(Condition<String[]> acceptCondition)
+        {
+            this.acceptCondition = acceptCondition;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String[] apply(String[] row)
+        {
+            return this.acceptCondition.test(row) ? row : null;
+        }
+    }
+
+    /**
+     * Projects rows onto a set of columns
+     */
+    private static final class ProjectOperation extends RowOperation
+    {
+        private final int[] columnIndices;
+
+        /**
+         * Constructor
+         * @param columnIndices
+         *          the columns to project onto
+         */
+        public ProjectOperation(int[] columnIndices)
+        {
+            this.columnIndices = columnIndices;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String[] apply(String[] row)
+        {
+            String[] projectedRow = new String[this.columnIndices.length];
+            for(int i = 0; i < projectedRow.length; i++)
+            {
+                projectedRow[i] = row[this.columnIndices[i]];
+            }
+
+            return projectedRow;
+        }
+    }
+
+    /**
+     * Transforms rows using a function
+     */
+    private static final class MapOperation extends RowOperation
+    {
+        private final Function<String[], String[]> rowFunction;
+
+        /**
+         * Constructor
+         * @param rowFunction
+         *          the row function
+         */
+        public MapOperation(Function<String[], String[]> rowFunction)
+        {
+            this.rowFunction = rowFunction;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String[] apply(String[] row)
+        {
+            return this.rowFunction.evaluate(row);
+        }
+    }
+
+    /**
+     * Applies the row operations to a batch of rows
+     */
+    private static final class BatchTask implements Callable<List<String[]>>
+    {
+        private final RowOperation[] operations;
+
+        private final List<String[]> batch;
+
+        /**
+         * Constructor
+         * @param operations
+         *          the operations to apply
+         * @param batch
+         *          the rows to apply them to
+         */
+        public BatchTask(RowOperation[] operations, List<String[]> batch)
+        {
+            this.operations = operations;
+            this.batch = batch;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public List<String[]> call()
+        {
+            // results are compacted in place since a row never grows
+            // into more than one row
+            int resultCount = 0;
+            for(int i = 0; i < this.batch.size(); i++)
+            {
+                String[] result = applyOperations(this.operations, this.batch.get(i));
+                if(result != null)
+                {
+                    this.batch.set(resultCount, result);
+                    resultCount++;
+                }
+            }
+
+            return this.batch.subList(0, resultCount);
+        }
+    }
+
+    /**
+     * Presents an iterator as a table reader
+     */
+    private static final class IteratorTableReader extends AbstractTableReader
+    {
+        private final Iterator<String[]> rowIterator;
+
+        /**
+         * Constructor
+         * @param rowIterator
+         *          the iterator to read from
+         */
+        public IteratorTableReader(Iterator<String[]> rowIterator)
+        {
+            this.rowIterator = rowIterator;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public String[] readRow()
+        {
+            return this.rowIterator.hasNext() ? this.rowIterator.next() : null;
+        }
+    }
+}
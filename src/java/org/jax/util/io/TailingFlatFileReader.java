@@ -0,0 +1,648 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows a flat file that is being appended to (like <code>tail -f</code>).
+ * The reader remembers its position, so each poll only reads the bytes that
+ * were appended since the last one. A row is only returned once its row
+ * delimiter has been written, so a partially written last row is held back
+ * until it is complete. Row delimiters inside of quoted fields are handled
+ * the same way as {@link FlatFileReader} handles them. The file is read in
+ * fixed size chunks, so following a large existing file only ever buffers
+ * one chunk plus the incomplete row at its end.
+ * <br><br>
+ * {@link #getCheckpoint()} gives the byte offset just past the last row that
+ * was returned. Passing that offset to
+ * {@link #TailingFlatFileReader(File, FlatFileFormat, Charset, long)}
+ * resumes reading from the next row, so a consumer that saves its
+ * checkpoint along with its results can be restarted without seeing
+ * duplicate or missing rows.
+ * <br><br>
+ * The file's charset must be ASCII compatible (eg: UTF-8 or ISO-8859-1) and
+ * the format's delimiter, quote and comment characters must be ASCII. New
+ * data is found by polling the file length.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class TailingFlatFileReader extends AbstractTableReader
+{
+    /**
+     * The default time to wait between checks for new data
+     */
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 1000L;
+
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * the most that we read from the file at a time
+     */
+    private static final int READ_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * enum for keeping track of where we are in the row while scanning for
+     * row ends. This follows the cursor modes of {@link FlatFileReader}
+     */
+    private enum ScanMode {
+        ROW_START,
+        COMMENT,
+        FIELD_START,
+        PLAIN_FIELD,
+        QUOTED_FIELD,
+        QUOTE_IN_QUOTED_FIELD}
+
+    private final File file;
+
+    private final FlatFileFormat format;
+
+    private final Charset charset;
+
+    private final RandomAccessFile randomAccessFile;
+
+    private volatile long pollIntervalMillis = DEFAULT_POLL_INTERVAL_MILLIS;
+
+    private volatile boolean closed = false;
+
+    private final char rowTerminator;
+
+    private final int fieldDelimiter;
+
+    private final int quoteChar;
+
+    private final int commentChar;
+
+    /**
+     * rows that are complete but haven't been returned yet
+     */
+    private final Queue<String[]> pendingRows = new LinkedList<String[]>();
+
+    /**
+     * the byte offsets just past each of the {@link #pendingRows}
+     */
+    private final Queue<Long> pendingRowEnds = new LinkedList<Long>();
+
+    private long checkpoint;
+
+    /**
+     * holds the bytes of any incomplete row
+     */
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+    private int bufferLength = 0;
+
+    /**
+     * the file offset of buffer[0]
+     */
+    private long bufferOffset;
+
+    /**
+     * how far into the buffer we've scanned for row ends
+     */
+    private int scanPosition = 0;
+
+    private ScanMode scanMode = ScanMode.ROW_START;
+
+    /**
+     * set once the scan finds a format error. It's thrown after the rows in
+     * front of the error have been returned
+     */
+    private String scanError = null;
+
+    /**
+     * Constructor which reads from the start of the file using the
+     * default charset
+     * @param file
+     *          the file to follow
+     * @param format
+     *          the file format
+     * @throws FileNotFoundException
+     *          if the file can't be opened
+     */
+    public TailingFlatFileReader(File file, FlatFileFormat format)
+    throws FileNotFoundException
+    {
+        this(file, format, Charset.defaultCharset(), 0L);
+    }
+
+    /**
+     * Constructor
+     * @param file
+     *          the file to follow
+     * @param format
+     *          the file format
+     * @param charset
+     *          the file's charset (must be ASCII compatible)
+     * @param checkpoint
+     *          the byte offset to start reading from. This should be
+     *          zero or a value previously returned by {@link #getCheckpoint()}
+     * @throws FileNotFoundException
+     *          if the file can't be opened
+     */
+    public TailingFlatFileReader(
+            File file,
+            FlatFileFormat format,
+            Charset charset,
+            long checkpoint)
+    throws FileNotFoundException
+    {
+        if(checkpoint < 0L)
+        {
+            throw new IllegalArgumentException(
+                    "the checkpoint can't be negative");
+        }
+
+        CharSequence[] rowDelimiterChoices = format.getRowDelimiterChoices();
+        CharSequence firstChoice = rowDelimiterChoices[0];
+        this.rowTerminator = firstChoice.charAt(firstChoice.length() - 1);
+        for(CharSequence rowDelimiterChoice: rowDelimiterChoices)
+        {
+            if(rowDelimiterChoice.charAt(rowDelimiterChoice.length() - 1) !=
+               this.rowTerminator)
+            {
+                throw new IllegalArgumentException(
+                        "all of the row delimiter choices must end with " +
+                        "the same character");
+            }
+        }
+
+        this.fieldDelimiter = format.getFieldDelimiter();
+        this.quoteChar = format.getQuoteChar();
+        this.commentChar = format.getCommentChar();
+        if(this.rowTerminator > 0x7F ||
+           this.fieldDelimiter > 0x7F ||
+           this.quoteChar > 0x7F ||
+           this.commentChar > 0x7F)
+        {
+            throw new IllegalArgumentException(
+                    "the format's special characters must be ASCII");
+        }
+
+        this.file = file;
+        this.format = format;
+        this.charset = charset;
+        this.checkpoint = checkpoint;
+        this.bufferOffset = checkpoint;
+        this.randomAccessFile = new RandomAccessFile(file, "r");
+    }
+
+    /**
+     * Getter for the file that we're following
+     * @return
+     *          the file
+     */
+    public File getFile()
+    {
+        return this.file;
+    }
+
+    /**
+     * Getter for the time to wait between checks for new data
+     * @return
+     *          the poll interval in milliseconds
+     */
+    public long getPollIntervalMillis()
+    {
+        return this.pollIntervalMillis;
+    }
+
+    /**
+     * Setter for the time to wait between checks for new data
+     * @param pollIntervalMillis
+     *          the poll interval in milliseconds
+     */
+    public void setPollIntervalMillis(long pollIntervalMillis)
+    {
+        if(pollIntervalMillis <= 0L)
+        {
+            throw new IllegalArgumentException(
+                    "the poll interval must be positive");
+        }
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    /**
+     * Get the byte offset just past the last row returned by this reader.
+     * This can be passed to
+     * {@link #TailingFlatFileReader(File, FlatFileFormat, Charset, long)}
+     * to resume reading after the last row.
+     * @return
+     *          the checkpoint
+     */
+    public long getCheckpoint()
+    {
+        return this.checkpoint;
+    }
+
+    /**
+     * Read the next row, waiting for as long as it takes for a complete row
+     * to be appended to the file. Since the file can always grow, this only
+     * returns null if the reader is closed.
+     * @return
+     *          the row or null if this reader was closed
+     * @throws InterruptedIOException
+     *          if the thread is interrupted while waiting
+     * @throws IOException
+     *          if the read fails or the file is truncated
+     * @throws IllegalFormatException
+     *          if the format is bad
+     */
+    public String[] readRow() throws IOException, IllegalFormatException
+    {
+        while(!this.closed)
+        {
+            String[] row = this.pollRow();
+            if(row != null)
+            {
+                return row;
+            }
+            this.sleep(this.pollIntervalMillis);
+        }
+
+        return null;
+    }
+
+    /**
+     * Read the next row waiting up to the given timeout for a complete row
+     * to be appended to the file
+     * @param timeout
+     *          the maximum time to wait
+     * @param unit
+     *          the timeout's unit
+     * @return
+     *          the row or null if we timed out or this reader was closed
+     * @throws InterruptedIOException
+     *          if the thread is interrupted while waiting
+     * @throws IOException
+     *          if the read fails or the file is truncated
+     * @throws IllegalFormatException
+     *          if the format is bad
+     */
+    public String[] readRow(long timeout, TimeUnit unit)
+    throws IOException, IllegalFormatException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while(!this.closed)
+        {
+            String[] row = this.pollRow();
+            if(row != null)
+            {
+                return row;
+            }
+
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(
+                    deadline - System.nanoTime());
+            if(remainingMillis <= 0L)
+            {
+                break;
+            }
+            this.sleep(Math.min(remainingMillis, this.pollIntervalMillis));
+        }
+
+        return null;
+    }
+
+    /**
+     * Read the next row without waiting
+     * @return
+     *          the row or null if no complete row is available yet
+     * @throws IOException
+     *          if the read fails or the file is truncated
+     * @throws IllegalFormatException
+     *          if the format is bad
+     */
+    public String[] pollRow() throws IOException, IllegalFormatException
+    {
+        if(this.pendingRows.isEmpty() && !this.closed)
+        {
+            this.readAppendedRows();
+        }
+
+        String[] row = this.pendingRows.poll();
+        if(row != null)
+        {
+            this.checkpoint = this.pendingRowEnds.remove();
+        }
+
+        return row;
+    }
+
+    /**
+     * Stops following the file. Any thread waiting in {@link #readRow()}
+     * will return null
+     * @throws IOException
+     *          if closing the file fails
+     */
+    public void close() throws IOException
+    {
+        this.closed = true;
+        synchronized(this.randomAccessFile)
+        {
+            this.randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Sleep for the given time
+     * @param millis
+     *          the time to sleep
+     * @throws InterruptedIOException
+     *          if we're interrupted
+     */
+    private void sleep(long millis) throws InterruptedIOException
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch(InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            InterruptedIOException ioEx = new InterruptedIOException(
+                    "interrupted while waiting for rows to be appended to " +
+                    this.file);
+            ioEx.initCause(ex);
+            throw ioEx;
+        }
+    }
+
+    /**
+     * Read chunks of the bytes that have been appended to the file until we
+     * have at least one complete row in {@link #pendingRows} or we run out
+     * of new bytes
+     * @throws IOException
+     *          if the read fails
+     * @throws IllegalFormatException
+     *          if the format is bad
+     */
+    private void readAppendedRows() throws IOException, IllegalFormatException
+    {
+        while(this.pendingRows.isEmpty())
+        {
+            if(this.scanError != null)
+            {
+                throw new IllegalFormatException(this.scanError);
+            }
+
+            if(!this.readChunk())
+            {
+                break;
+            }
+            this.parseCompleteRows();
+        }
+    }
+
+    /**
+     * Append the next chunk of the file to the buffer
+     * @return
+     *          true if any bytes were read, false if there's nothing new
+     *          (or we're closed)
+     * @throws IOException
+     *          if the read fails or the file was truncated
+     */
+    private boolean readChunk() throws IOException
+    {
+        synchronized(this.randomAccessFile)
+        {
+            if(this.closed)
+            {
+                return false;
+            }
+
+            long readOffset = this.bufferOffset + this.bufferLength;
+            long fileLength = this.randomAccessFile.length();
+            if(fileLength < readOffset)
+            {
+                throw new IOException(
+                        this.file + " was truncated from " + readOffset +
+                        " to " + fileLength + " bytes");
+            }
+            else if(fileLength == readOffset)
+            {
+                return false;
+            }
+
+            int chunkSize = (int)Math.min(READ_CHUNK_SIZE, fileLength - readOffset);
+            if(this.bufferLength + (long)chunkSize > Integer.MAX_VALUE - 8)
+            {
+                throw new IOException("row is too long to buffer");
+            }
+            this.ensureCapacity(this.bufferLength + chunkSize);
+
+            this.randomAccessFile.seek(readOffset);
+            this.randomAccessFile.readFully(
+                    this.buffer,
+                    this.bufferLength,
+                    chunkSize);
+            this.bufferLength += chunkSize;
+            return true;
+        }
+    }
+
+    /**
+     * Scan the new bytes in the buffer for row ends, parse the completed
+     * rows into {@link #pendingRows} and shift the incomplete row to the
+     * start of the buffer
+     * @throws IOException
+     *          if parsing fails
+     * @throws IllegalFormatException
+     *          if the format is bad
+     */
+    private void parseCompleteRows() throws IOException, IllegalFormatException
+    {
+        // scan for the ends of complete rows, tracking which are comments
+        LinkedList<Integer> rowEnds = new LinkedList<Integer>();
+        int completeLength = 0;
+        for(; this.scanPosition < this.bufferLength && this.scanError == null;
+            this.scanPosition++)
+        {
+            int currByte = this.buffer[this.scanPosition] & 0xFF;
+            if(this.scanMode == ScanMode.ROW_START)
+            {
+                this.scanMode = currByte == this.commentChar ?
+                        ScanMode.COMMENT :
+                        ScanMode.FIELD_START;
+            }
+
+            boolean rowEnd = false;
+            switch(this.scanMode)
+            {
+                case COMMENT:
+                {
+                    rowEnd = currByte == this.rowTerminator;
+                }
+                break;
+
+                case FIELD_START:
+                case PLAIN_FIELD:
+                case QUOTE_IN_QUOTED_FIELD:
+                {
+                    if(currByte == this.quoteChar)
+                    {
+                        if(this.scanMode == ScanMode.PLAIN_FIELD)
+                        {
+                            // stop here, the rows in front of this one are
+                            // still good
+                            this.scanError =
+                                "Illegal quote found in unquoted field at byte " +
+                                (this.bufferOffset + this.scanPosition) +
+                                " of " + this.file;
+                        }
+                        else
+                        {
+                            // either a quoted field is starting or this is
+                            // an escaped quote
+                            this.scanMode = ScanMode.QUOTED_FIELD;
+                        }
+                    }
+                    else if(currByte == this.fieldDelimiter)
+                    {
+                        this.scanMode = ScanMode.FIELD_START;
+                    }
+                    else if(currByte == this.rowTerminator)
+                    {
+                        rowEnd = true;
+                    }
+                    else if(this.scanMode == ScanMode.FIELD_START)
+                    {
+                        this.scanMode = ScanMode.PLAIN_FIELD;
+                    }
+                }
+                break;
+
+                case QUOTED_FIELD:
+                {
+                    if(currByte == this.quoteChar)
+                    {
+                        this.scanMode = ScanMode.QUOTE_IN_QUOTED_FIELD;
+                    }
+                }
+                break;
+
+                default:
+                {
+                    throw new IllegalStateException(
+                            "Internal error. We should never reach " +
+                            "this exception.");
+                }
+            }
+
+            if(rowEnd)
+            {
+                completeLength = this.scanPosition + 1;
+                if(this.scanMode != ScanMode.COMMENT)
+                {
+                    rowEnds.add(completeLength);
+                }
+                this.scanMode = ScanMode.ROW_START;
+            }
+        }
+
+        if(completeLength > 0)
+        {
+            String completeRowsText = new String(
+                    this.buffer,
+                    0,
+                    completeLength,
+                    this.charset);
+            FlatFileReader rowParser = new FlatFileReader(
+                    new StringReader(completeRowsText),
+                    this.format);
+            String[] row;
+            while((row = rowParser.readRow()) != null)
+            {
+                Integer rowEnd = rowEnds.poll();
+                if(rowEnd == null)
+                {
+                    throw new IllegalFormatException(
+                            "failed to find the end of a row in " + this.file);
+                }
+                this.pendingRows.add(row);
+                this.pendingRowEnds.add(this.bufferOffset + rowEnd);
+            }
+
+            // shift the incomplete row to the start of the buffer
+            System.arraycopy(
+                    this.buffer,
+                    completeLength,
+                    this.buffer,
+                    0,
+                    this.bufferLength - completeLength);
+            this.bufferLength -= completeLength;
+            this.bufferOffset += completeLength;
+            this.scanPosition -= completeLength;
+        }
+    }
+
+    /**
+     * Make sure that the buffer can hold the given number of bytes
+     * @param capacity
+     *          the capacity
+     */
+    private void ensureCapacity(int capacity)
+    {
+        if(capacity > this.buffer.length)
+        {
+            byte[] newBuffer = new byte[Math.max(
+                    capacity,
+                    (int)Math.min(Integer.MAX_VALUE - 8, this.buffer.length * 2L))];
+            System.arraycopy(this.buffer, 0, newBuffer, 0, this.bufferLength);
+            this.buffer = newBuffer;
+        }
+    }
+
+    /**
+     * Main for following a CSV file and echoing its rows to standard out
+     * @param args
+     *          the file to follow and optionally the checkpoint to start at
+     * @throws IOException
+     *          if we can't read/write
+     * @throws IllegalFormatException
+     *          if the file format is bad
+     */
+    public static void main(String[] args) throws IOException, IllegalFormatException
+    {
+        TailingFlatFileReader reader = new TailingFlatFileReader(
+                new File(args[0]),
+                CommonFlatFileFormat.CSV_UNIX,
+                Charset.defaultCharset(),
+                args.length >= 2 ? Long.parseLong(args[1]) : 0L);
+        TableWriter writer = new FlatFileWriter(
+                new BufferedWriter(new OutputStreamWriter(System.out)),
+                CommonFlatFileFormat.CSV_UNIX);
+
+        String[] row;
+        while((row = reader.readRow()) != null)
+        {
+            writer.writeRow(row);
+            writer.flush();
+            System.err.println("checkpoint: " + reader.getCheckpoint());
+        }
+    }
+}
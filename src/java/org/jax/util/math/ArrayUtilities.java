@@ -0,0 +1,1066 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.math;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import org.jax.util.concurrent.ExecutorUtilities;
+import org.jax.util.datastructure.primitive.IntHashSet;
+
+/**
+ * Linear time array kernels: argmax/argmin, comparison masks, finding
+ * indices and set operations on int arrays. The functions that work on
+ * slices write into caller supplied buffers rather than allocating so they
+ * can be used inside per-permutation loops. Comparison loops are
+ * specialized per {@link ComparisonOperator} so there is no branching on
+ * the operator inside the loop. {@link Matlab} delegates to these
+ * functions.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public final class ArrayUtilities
+{
+    /**
+     * arrays smaller than this are processed in the calling thread by the
+     * parallel functions
+     */
+    private static final int MIN_PARALLEL_CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Private constructor to avoid an instance being created
+     */
+    private ArrayUtilities()
+    {
+    }
+
+    /**
+     * Find the index of the largest value in the slice. Ties go to the
+     * lowest index.
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @return
+     *          the index or -1 if the slice is empty
+     */
+    public static int argmax(int[] values, int fromIndex, int toIndex)
+    {
+        checkRange(values.length, fromIndex, toIndex);
+        if(fromIndex == toIndex)
+        {
+            return -1;
+        }
+
+        int maxIndex = fromIndex;
+        int max = values[fromIndex];
+        for(int i = fromIndex + 1; i < toIndex; i++)
+        {
+            int value = values[i];
+            if(value > max)
+            {
+                max = value;
+                maxIndex = i;
+            }
+        }
+        return maxIndex;
+    }
+
+    /**
+     * Find the index of the smallest value in the slice. Ties go to the
+     * lowest index.
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @return
+     *          the index or -1 if the slice is empty
+     */
+    public static int argmin(int[] values, int fromIndex, int toIndex)
+    {
+        checkRange(values.length, fromIndex, toIndex);
+        if(fromIndex == toIndex)
+        {
+            return -1;
+        }
+
+        int minIndex = fromIndex;
+        int min = values[fromIndex];
+        for(int i = fromIndex + 1; i < toIndex; i++)
+        {
+            int value = values[i];
+            if(value < min)
+            {
+                min = value;
+                minIndex = i;
+            }
+        }
+        return minIndex;
+    }
+
+    /**
+     * Find the index of the largest value in the slice. Ties go to the
+     * lowest index.
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param nanPolicy
+     *          how NaN values are treated. When NaN values are propagated
+     *          the index of the 1st NaN is returned
+     * @return
+     *          the index or -1 if there are no values
+     * @throws IllegalArgumentException
+     *          if there is a NaN and the policy is {@link NaNPolicy#ERROR}
+     */
+    public static int argmax(
+            double[] values,
+            int fromIndex,
+            int toIndex,
+            NaNPolicy nanPolicy)
+    throws IllegalArgumentException
+    {
+        checkRange(values.length, fromIndex, toIndex);
+
+        int maxIndex = -1;
+        double max = Double.NEGATIVE_INFINITY;
+        for(int i = fromIndex; i < toIndex; i++)
+        {
+            double value = values[i];
+            if(value > max || (maxIndex == -1 && value == max))
+            {
+                max = value;
+                maxIndex = i;
+            }
+            else if(value != value)
+            {
+                int nanIndex = handleNaN(nanPolicy, i);
+                if(nanIndex != -1)
+                {
+                    return nanIndex;
+                }
+            }
+        }
+        return maxIndex;
+    }
+
+    /**
+     * Find the index of the smallest value in the slice. Ties go to the
+     * lowest index.
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param nanPolicy
+     *          how NaN values are treated. When NaN values are propagated
+     *          the index of the 1st NaN is returned
+     * @return
+     *          the index or -1 if there are no values
+     * @throws IllegalArgumentException
+     *          if there is a NaN and the policy is {@link NaNPolicy#ERROR}
+     */
+    public static int argmin(
+            double[] values,
+            int fromIndex,
+            int toIndex,
+            NaNPolicy nanPolicy)
+    throws IllegalArgumentException
+    {
+        checkRange(values.length, fromIndex, toIndex);
+
+        int minIndex = -1;
+        double min = Double.POSITIVE_INFINITY;
+        for(int i = fromIndex; i < toIndex; i++)
+        {
+            double value = values[i];
+            if(value < min || (minIndex == -1 && value == min))
+            {
+                min = value;
+                minIndex = i;
+            }
+            else if(value != value)
+            {
+                int nanIndex = handleNaN(nanPolicy, i);
+                if(nanIndex != -1)
+                {
+                    return nanIndex;
+                }
+            }
+        }
+        return minIndex;
+    }
+
+    /**
+     * Find the index of the largest value using several threads. This
+     * gives the same result as
+     * {@link #argmax(double[], int, int, NaNPolicy)} over the whole array
+     * @param values
+     *          the values
+     * @param nanPolicy
+     *          how NaN values are treated
+     * @param executor
+     *          the executor to run the work on
+     * @param parallelism
+     *          the number of pieces to divide the work into (typically
+     *          the executor's thread count)
+     * @return
+     *          the index or -1 if there are no values
+     * @throws InterruptedException
+     *          if we're interrupted while waiting for the executor
+     */
+    public static int parallelArgmax(
+            double[] values,
+            NaNPolicy nanPolicy,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException
+    {
+        return parallelArgExtreme(values, nanPolicy, executor, parallelism, true);
+    }
+
+    /**
+     * Find the index of the smallest value using several threads. This
+     * gives the same result as
+     * {@link #argmin(double[], int, int, NaNPolicy)} over the whole array
+     * @param values
+     *          the values
+     * @param nanPolicy
+     *          how NaN values are treated
+     * @param executor
+     *          the executor to run the work on
+     * @param parallelism
+     *          the number of pieces to divide the work into (typically
+     *          the executor's thread count)
+     * @return
+     *          the index or -1 if there are no values
+     * @throws InterruptedException
+     *          if we're interrupted while waiting for the executor
+     */
+    public static int parallelArgmin(
+            double[] values,
+            NaNPolicy nanPolicy,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException
+    {
+        return parallelArgExtreme(values, nanPolicy, executor, parallelism, false);
+    }
+
+    /**
+     * Fill in a mask for the slice where mask[i] is the result of comparing
+     * values[i] to the threshold
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param operator
+     *          the comparison
+     * @param threshold
+     *          the threshold
+     * @param mask
+     *          the mask to fill in. It is indexed the same way as the values
+     * @return
+     *          the number of true values in the mask
+     */
+    public static int mask(
+            double[] values,
+            int fromIndex,
+            int toIndex,
+            ComparisonOperator operator,
+            double threshold,
+            boolean[] mask)
+    {
+        checkRange(values.length, fromIndex, toIndex);
+        checkRange(mask.length, fromIndex, toIndex);
+
+        int count = 0;
+        switch(operator)
+        {
+            case GREATER_THAN:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    boolean match = values[i] > threshold;
+                    mask[i] = match;
+                    count += match ? 1 : 0;
+                }
+                break;
+
+            case GREATER_THAN_OR_EQUAL:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    boolean match = values[i] >= threshold;
+                    mask[i] = match;
+                    count += match ? 1 : 0;
+                }
+                break;
+
+            case EQUAL:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    boolean match = values[i] == threshold;
+                    mask[i] = match;
+                    count += match ? 1 : 0;
+                }
+                break;
+
+            case NOT_EQUAL:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    boolean match = values[i] != threshold;
+                    mask[i] = match;
+                    count += match ? 1 : 0;
+                }
+                break;
+
+            case LESS_THAN:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    boolean match = values[i] < threshold;
+                    mask[i] = match;
+                    count += match ? 1 : 0;
+                }
+                break;
+
+            case LESS_THAN_OR_EQUAL:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    boolean match = values[i] <= threshold;
+                    mask[i] = match;
+                    count += match ? 1 : 0;
+                }
+                break;
+
+            default:
+                throw new IllegalArgumentException(
+                        "unknown operator: " + operator);
+        }
+        return count;
+    }
+
+    /**
+     * Fill in a mask for the slice where mask[i] is the result of comparing
+     * values[i] to the threshold
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param operator
+     *          the comparison
+     * @param threshold
+     *          the threshold
+     * @param mask
+     *          the mask to fill in. It is indexed the same way as the values
+     * @return
+     *          the number of true values in the mask
+     */
+    public static int mask(
+            int[] values,
+            int fromIndex,
+            int toIndex,
+            ComparisonOperator operator,
+            int threshold,
+            boolean[] mask)
+    {
+        checkRange(values.length, fromIndex, toIndex);
+        checkRange(mask.length, fromIndex, toIndex);
+
+        int count = 0;
+        switch(operator)
+        {
+            case GREATER_THAN:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    boolean match = values[i] > threshold;
+                    mask[i] = match;
+                    count += match ? 1 : 0;
+                }
+                break;
+
+            case GREATER_THAN_OR_EQUAL:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    boolean match = values[i] >= threshold;
+                    mask[i] = match;
+                    count += match ? 1 : 0;
+                }
+                break;
+
+            case EQUAL:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    boolean match = values[i] == threshold;
+                    mask[i] = match;
+                    count += match ? 1 : 0;
+                }
+                break;
+
+            case NOT_EQUAL:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    boolean match = values[i] != threshold;
+                    mask[i] = match;
+                    count += match ? 1 : 0;
+                }
+                break;
+
+            case LESS_THAN:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    boolean match = values[i] < threshold;
+                    mask[i] = match;
+                    count += match ? 1 : 0;
+                }
+                break;
+
+            case LESS_THAN_OR_EQUAL:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    boolean match = values[i] <= threshold;
+                    mask[i] = match;
+                    count += match ? 1 : 0;
+                }
+                break;
+
+            default:
+                throw new IllegalArgumentException(
+                        "unknown operator: " + operator);
+        }
+        return count;
+    }
+
+    /**
+     * Find the indices in the slice where the mask is true
+     * @param mask
+     *          the mask
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param indexBuffer
+     *          the buffer that the indices are written to (starting at 0).
+     *          It must be at least as long as the slice
+     * @return
+     *          the number of indices written to the buffer
+     */
+    public static int find(
+            boolean[] mask,
+            int fromIndex,
+            int toIndex,
+            int[] indexBuffer)
+    {
+        checkRange(mask.length, fromIndex, toIndex);
+        checkBuffer(indexBuffer, fromIndex, toIndex);
+
+        // always writing the index and only advancing on a match keeps
+        // the loop free of unpredictable branches
+        int count = 0;
+        for(int i = fromIndex; i < toIndex; i++)
+        {
+            indexBuffer[count] = i;
+            count += mask[i] ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Find the indices in the slice whose values match the comparison
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param operator
+     *          the comparison
+     * @param threshold
+     *          the threshold
+     * @param indexBuffer
+     *          the buffer that the indices are written to (starting at 0).
+     *          It must be at least as long as the slice
+     * @return
+     *          the number of indices written to the buffer
+     */
+    public static int find(
+            double[] values,
+            int fromIndex,
+            int toIndex,
+            ComparisonOperator operator,
+            double threshold,
+            int[] indexBuffer)
+    {
+        checkRange(values.length, fromIndex, toIndex);
+        checkBuffer(indexBuffer, fromIndex, toIndex);
+        return find(values, fromIndex, toIndex, operator, threshold, indexBuffer, 0);
+    }
+
+    /**
+     * Implementation of
+     * {@link #find(double[], int, int, ComparisonOperator, double, int[])}
+     * which writes to the buffer starting at the given offset
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param operator
+     *          the comparison
+     * @param threshold
+     *          the threshold
+     * @param indexBuffer
+     *          the buffer that the indices are written to
+     * @param bufferOffset
+     *          where to start writing in the buffer
+     * @return
+     *          the number of indices written to the buffer
+     */
+    private static int find(
+            double[] values,
+            int fromIndex,
+            int toIndex,
+            ComparisonOperator operator,
+            double threshold,
+            int[] indexBuffer,
+            int bufferOffset)
+    {
+        int count = bufferOffset;
+        switch(operator)
+        {
+            case GREATER_THAN:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    indexBuffer[count] = i;
+                    count += values[i] > threshold ? 1 : 0;
+                }
+                break;
+
+            case GREATER_THAN_OR_EQUAL:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    indexBuffer[count] = i;
+                    count += values[i] >= threshold ? 1 : 0;
+                }
+                break;
+
+            case EQUAL:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    indexBuffer[count] = i;
+                    count += values[i] == threshold ? 1 : 0;
+                }
+                break;
+
+            case NOT_EQUAL:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    indexBuffer[count] = i;
+                    count += values[i] != threshold ? 1 : 0;
+                }
+                break;
+
+            case LESS_THAN:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    indexBuffer[count] = i;
+                    count += values[i] < threshold ? 1 : 0;
+                }
+                break;
+
+            case LESS_THAN_OR_EQUAL:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    indexBuffer[count] = i;
+                    count += values[i] <= threshold ? 1 : 0;
+                }
+                break;
+
+            default:
+                throw new IllegalArgumentException(
+                        "unknown operator: " + operator);
+        }
+        return count - bufferOffset;
+    }
+
+    /**
+     * Find the indices in the slice whose values match the comparison
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param operator
+     *          the comparison
+     * @param threshold
+     *          the threshold
+     * @param indexBuffer
+     *          the buffer that the indices are written to (starting at 0).
+     *          It must be at least as long as the slice
+     * @return
+     *          the number of indices written to the buffer
+     */
+    public static int find(
+            int[] values,
+            int fromIndex,
+            int toIndex,
+            ComparisonOperator operator,
+            int threshold,
+            int[] indexBuffer)
+    {
+        checkRange(values.length, fromIndex, toIndex);
+        checkBuffer(indexBuffer, fromIndex, toIndex);
+
+        int count = 0;
+        switch(operator)
+        {
+            case GREATER_THAN:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    indexBuffer[count] = i;
+                    count += values[i] > threshold ? 1 : 0;
+                }
+                break;
+
+            case GREATER_THAN_OR_EQUAL:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    indexBuffer[count] = i;
+                    count += values[i] >= threshold ? 1 : 0;
+                }
+                break;
+
+            case EQUAL:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    indexBuffer[count] = i;
+                    count += values[i] == threshold ? 1 : 0;
+                }
+                break;
+
+            case NOT_EQUAL:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    indexBuffer[count] = i;
+                    count += values[i] != threshold ? 1 : 0;
+                }
+                break;
+
+            case LESS_THAN:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    indexBuffer[count] = i;
+                    count += values[i] < threshold ? 1 : 0;
+                }
+                break;
+
+            case LESS_THAN_OR_EQUAL:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    indexBuffer[count] = i;
+                    count += values[i] <= threshold ? 1 : 0;
+                }
+                break;
+
+            default:
+                throw new IllegalArgumentException(
+                        "unknown operator: " + operator);
+        }
+        return count;
+    }
+
+    /**
+     * Find the indices whose values match the comparison using several
+     * threads
+     * @param values
+     *          the values
+     * @param operator
+     *          the comparison
+     * @param threshold
+     *          the threshold
+     * @param executor
+     *          the executor to run the work on
+     * @param parallelism
+     *          the number of pieces to divide the work into (typically
+     *          the executor's thread count)
+     * @return
+     *          the matching indices in ascending order
+     * @throws InterruptedException
+     *          if we're interrupted while waiting for the executor
+     */
+    public static int[] parallelFind(
+            final double[] values,
+            final ComparisonOperator operator,
+            final double threshold,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException
+    {
+        final int[] chunkStarts = chunkStarts(values.length, parallelism);
+        int chunkCount = chunkStarts.length - 1;
+        final int[] indexBuffer = new int[values.length];
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>(chunkCount);
+        for(int chunk = 0; chunk < chunkCount; chunk++)
+        {
+            final int fromIndex = chunkStarts[chunk];
+            final int toIndex = chunkStarts[chunk + 1];
+            tasks.add(new Callable<Integer>()
+            {
+                public Integer call()
+                {
+                    // every chunk writes into its own part of the buffer
+                    return find(
+                            values,
+                            fromIndex,
+                            toIndex,
+                            operator,
+                            threshold,
+                            indexBuffer,
+                            fromIndex);
+                }
+            });
+        }
+
+        List<Integer> counts;
+        if(chunkCount == 1)
+        {
+            counts = new ArrayList<Integer>(1);
+            counts.add(find(values, 0, values.length, operator, threshold, indexBuffer));
+        }
+        else
+        {
+            counts = ExecutorUtilities.invokeAll(executor, tasks);
+        }
+
+        int totalCount = 0;
+        for(Integer count: counts)
+        {
+            totalCount += count;
+        }
+
+        int[] indices = new int[totalCount];
+        int offset = 0;
+        for(int chunk = 0; chunk < chunkCount; chunk++)
+        {
+            int count = counts.get(chunk);
+            System.arraycopy(indexBuffer, chunkStarts[chunk], indices, offset, count);
+            offset += count;
+        }
+        return indices;
+    }
+
+    /**
+     * Find the values of the 1st array which also appear in the 2nd array
+     * using a hash set of the 2nd array's values
+     * @param values
+     *          the values to filter
+     * @param otherValues
+     *          the values to check membership against
+     * @return
+     *          the values from the 1st array (in order and including
+     *          repeats) that appear in the 2nd array
+     */
+    public static int[] retainAll(int[] values, int[] otherValues)
+    {
+        IntHashSet otherSet = new IntHashSet(otherValues);
+        int[] buffer = new int[values.length];
+        int count = 0;
+        for(int i = 0; i < values.length; i++)
+        {
+            int value = values[i];
+            buffer[count] = value;
+            count += otherSet.contains(value) ? 1 : 0;
+        }
+        return trim(buffer, count);
+    }
+
+    /**
+     * Get the distinct values sorted in ascending order
+     * @param values
+     *          the values
+     * @return
+     *          the sorted distinct values
+     */
+    public static int[] unique(int[] values)
+    {
+        int[] sortedValues = values.clone();
+        Arrays.sort(sortedValues);
+
+        // compact in place with a single merge style pass
+        int count = 0;
+        for(int i = 0; i < sortedValues.length; i++)
+        {
+            if(count == 0 || sortedValues[i] != sortedValues[count - 1])
+            {
+                sortedValues[count] = sortedValues[i];
+                count++;
+            }
+        }
+        return trim(sortedValues, count);
+    }
+
+    /**
+     * Get the sorted values that are in both of the sorted arrays using a
+     * linear merge
+     * @param sortedValues1
+     *          the 1st sorted values
+     * @param sortedValues2
+     *          the 2nd sorted values
+     * @return
+     *          the sorted intersection. A value that is repeated in both
+     *          arrays is repeated the smaller number of times
+     */
+    public static int[] intersectSorted(int[] sortedValues1, int[] sortedValues2)
+    {
+        int[] buffer = new int[Math.min(sortedValues1.length, sortedValues2.length)];
+        int count = 0;
+        int index1 = 0;
+        int index2 = 0;
+        while(index1 < sortedValues1.length && index2 < sortedValues2.length)
+        {
+            int value1 = sortedValues1[index1];
+            int value2 = sortedValues2[index2];
+            if(value1 < value2)
+            {
+                index1++;
+            }
+            else if(value1 > value2)
+            {
+                index2++;
+            }
+            else
+            {
+                buffer[count] = value1;
+                count++;
+                index1++;
+                index2++;
+            }
+        }
+        return trim(buffer, count);
+    }
+
+    /**
+     * Shared implementation of the parallel argmax and argmin
+     * @param values
+     *          the values
+     * @param nanPolicy
+     *          the NaN policy
+     * @param executor
+     *          the executor
+     * @param parallelism
+     *          the parallelism
+     * @param findMax
+     *          true for argmax and false for argmin
+     * @return
+     *          the index
+     * @throws InterruptedException
+     *          if we're interrupted
+     */
+    private static int parallelArgExtreme(
+            final double[] values,
+            final NaNPolicy nanPolicy,
+            ExecutorService executor,
+            int parallelism,
+            final boolean findMax)
+    throws InterruptedException
+    {
+        int[] chunkStarts = chunkStarts(values.length, parallelism);
+        int chunkCount = chunkStarts.length - 1;
+        if(chunkCount == 1)
+        {
+            return findMax ?
+                   argmax(values, 0, values.length, nanPolicy) :
+                   argmin(values, 0, values.length, nanPolicy);
+        }
+
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>(chunkCount);
+        for(int chunk = 0; chunk < chunkCount; chunk++)
+        {
+            final int fromIndex = chunkStarts[chunk];
+            final int toIndex = chunkStarts[chunk + 1];
+            tasks.add(new Callable<Integer>()
+            {
+                public Integer call()
+                {
+                    return findMax ?
+                           argmax(values, fromIndex, toIndex, nanPolicy) :
+                           argmin(values, fromIndex, toIndex, nanPolicy);
+                }
+            });
+        }
+
+        // combine the chunk results in chunk order so that ties and
+        // propagated NaNs go to the lowest index like the sequential version
+        int bestIndex = -1;
+        for(int chunkIndex: ExecutorUtilities.invokeAll(executor, tasks))
+        {
+            if(chunkIndex != -1)
+            {
+                double value = values[chunkIndex];
+                if(value != value)
+                {
+                    return chunkIndex;
+                }
+                else if(bestIndex == -1 ||
+                        (findMax ? value > values[bestIndex] : value < values[bestIndex]))
+                {
+                    bestIndex = chunkIndex;
+                }
+            }
+        }
+        return bestIndex;
+    }
+
+    /**
+     * Divide an array into chunks for parallel processing
+     * @param length
+     *          the array length
+     * @param parallelism
+     *          the requested parallelism
+     * @return
+     *          the chunk start indices followed by the array length
+     */
+    private static int[] chunkStarts(int length, int parallelism)
+    {
+        if(parallelism <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "the parallelism must be greater than 0");
+        }
+
+        int chunkCount = Math.max(1, Math.min(parallelism, length / MIN_PARALLEL_CHUNK_SIZE));
+        int[] chunkStarts = new int[chunkCount + 1];
+        for(int i = 0; i <= chunkCount; i++)
+        {
+            chunkStarts[i] = (int)((long)length * i / chunkCount);
+        }
+        return chunkStarts;
+    }
+
+    /**
+     * Deal with a NaN found by argmax or argmin
+     * @param nanPolicy
+     *          the policy
+     * @param index
+     *          the index of the NaN
+     * @return
+     *          the index that should be returned or -1 if the NaN should
+     *          be skipped
+     * @throws IllegalArgumentException
+     *          if the policy is {@link NaNPolicy#ERROR}
+     */
+    private static int handleNaN(NaNPolicy nanPolicy, int index)
+    throws IllegalArgumentException
+    {
+        switch(nanPolicy)
+        {
+            case SKIP:
+                return -1;
+
+            case ERROR:
+                throw new IllegalArgumentException(
+                        "found a NaN value at index " + index);
+
+            default:
+                return index;
+        }
+    }
+
+    /**
+     * Copy the 1st count values into a new array unless the array already
+     * has that length
+     * @param values
+     *          the values
+     * @param count
+     *          the count
+     * @return
+     *          the trimmed values
+     */
+    private static int[] trim(int[] values, int count)
+    {
+        if(count == values.length)
+        {
+            return values;
+        }
+        else
+        {
+            int[] trimmedValues = new int[count];
+            System.arraycopy(values, 0, trimmedValues, 0, count);
+            return trimmedValues;
+        }
+    }
+
+    /**
+     * Check that an index buffer is big enough for the slice
+     * @param indexBuffer
+     *          the buffer
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     */
+    private static void checkBuffer(int[] indexBuffer, int fromIndex, int toIndex)
+    {
+        if(indexBuffer.length < toIndex - fromIndex)
+        {
+            throw new IllegalArgumentException(
+                    "the index buffer length (" + indexBuffer.length +
+                    ") is smaller than the slice length (" +
+                    (toIndex - fromIndex) + ")");
+        }
+    }
+
+    /**
+     * Check that the slice is in range
+     * @param length
+     *          the array length
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     */
+    private static void checkRange(int length, int fromIndex, int toIndex)
+    {
+        if(fromIndex > toIndex)
+        {
+            throw new IllegalArgumentException(
+                    "fromIndex(" + fromIndex + ") > toIndex(" + toIndex + ")");
+        }
+        else if(fromIndex < 0)
+        {
+            throw new ArrayIndexOutOfBoundsException(fromIndex);
+        }
+        else if(toIndex > length)
+        {
+            throw new ArrayIndexOutOfBoundsException(toIndex);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.math;
+
+/**
+ * The comparisons used by the {@link ArrayUtilities} mask and find
+ * functions. Comparisons follow the java operators, so any comparison
+ * involving NaN is false except for {@link #NOT_EQUAL}.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public enum ComparisonOperator
+{
+    /**
+     * value &gt; threshold
+     */
+    GREATER_THAN(">"),
+
+    /**
+     * value &gt;= threshold
+     */
+    GREATER_THAN_OR_EQUAL(">="),
+
+    /**
+     * value == threshold
+     */
+    EQUAL("=="),
+
+    /**
+     * value != threshold
+     */
+    NOT_EQUAL("!="),
+
+    /**
+     * value &lt; threshold
+     */
+    LESS_THAN("<"),
+
+    /**
+     * value &lt;= threshold
+     */
+    LESS_THAN_OR_EQUAL("<=");
+
+    private final String symbol;
+
+    /**
+     * Constructor
+     * @param symbol
+     *          the java operator symbol
+     */
+    private ComparisonOperator(String symbol)
+    {
+        this.symbol = symbol;
+    }
+
+    /**
+     * Getter for the java operator symbol (eg ">=")
+     * @return
+     *          the symbol
+     */
+    public String getSymbol()
+    {
+        return this.symbol;
+    }
+
+    /**
+     * Find the operator for the given symbol
+     * @param symbol
+     *          the java operator symbol (eg ">=")
+     * @return
+     *          the operator or null if there is no match
+     */
+    public static ComparisonOperator fromSymbol(String symbol)
+    {
+        for(ComparisonOperator operator: ComparisonOperator.values())
+        {
+            if(operator.symbol.equals(symbol))
+            {
+                return operator;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return this.symbol;
+    }
+}
@@ -0,0 +1,1048 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.math;
+
+/**
+ * Descriptive statistics over slices of double arrays. These functions
+ * don't allocate anything so that they can be called from the inner loop of
+ * a scan. Sums are accumulated in fixed size blocks using several
+ * independent accumulators (which keeps the loops simple enough for the JIT
+ * to unroll and pipeline) and the block totals are added together using
+ * compensated summation, so the rounding error doesn't grow with the slice
+ * length the way that a naive running sum's does. Variances and covariances
+ * use the corrected two-pass algorithm which doesn't suffer from the
+ * cancellation problems of the textbook sum of squares formula. See
+ * {@link RunningStatistics} if the values can only be seen one at a time.
+ * <p>
+ * Every function takes a {@link NaNPolicy}. Functions return NaN when there
+ * are too few values to calculate the statistic (for example the variance
+ * of a single value).
+ * </p>
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public final class DescriptiveStatistics
+{
+    /**
+     * the number of values summed directly before the sum gets folded into
+     * the compensated total
+     */
+    private static final int BLOCK_SIZE = 256;
+
+    /**
+     * Private constructor to avoid an instance being created
+     */
+    private DescriptiveStatistics()
+    {
+    }
+
+    /**
+     * Count the values in the slice that aren't NaN
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @return
+     *          the count
+     */
+    public static int count(double[] values, int fromIndex, int toIndex)
+    {
+        checkRange(values.length, fromIndex, toIndex);
+
+        int count = 0;
+        for(int i = fromIndex; i < toIndex; i++)
+        {
+            double value = values[i];
+            count += value == value ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Calculate the sum of the slice
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param nanPolicy
+     *          how NaN values are treated
+     * @return
+     *          the sum (0 for an empty slice)
+     */
+    public static double sum(
+            double[] values,
+            int fromIndex,
+            int toIndex,
+            NaNPolicy nanPolicy)
+    {
+        checkRange(values.length, fromIndex, toIndex);
+        boolean skipNaN = applyPolicy(values, fromIndex, toIndex, nanPolicy);
+
+        double sum = 0.0;
+        double sumError = 0.0;
+        int blockEnd;
+        for(int blockStart = fromIndex; blockStart < toIndex; blockStart = blockEnd)
+        {
+            blockEnd = blockEnd(blockStart, toIndex);
+            double blockSum = skipNaN ?
+                    blockSumSkipNaN(values, blockStart, blockEnd) :
+                    blockSum(values, blockStart, blockEnd);
+
+            double newSum = sum + blockSum;
+            sumError += roundingError(sum, blockSum, newSum);
+            sum = newSum;
+        }
+
+        return compensate(sum, sumError);
+    }
+
+    /**
+     * Calculate the mean of the slice
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param nanPolicy
+     *          how NaN values are treated
+     * @return
+     *          the mean or NaN if there are no values
+     */
+    public static double mean(
+            double[] values,
+            int fromIndex,
+            int toIndex,
+            NaNPolicy nanPolicy)
+    {
+        int n = nanPolicy == NaNPolicy.SKIP ?
+                count(values, fromIndex, toIndex) :
+                toIndex - fromIndex;
+        if(n == 0)
+        {
+            checkRange(values.length, fromIndex, toIndex);
+            return Double.NaN;
+        }
+        else
+        {
+            return sum(values, fromIndex, toIndex, nanPolicy) / n;
+        }
+    }
+
+    /**
+     * Calculate the sum of squared deviations from the mean (the residual
+     * sum of squares) for the slice
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param nanPolicy
+     *          how NaN values are treated
+     * @return
+     *          the sum of squared deviations (0 for an empty slice)
+     */
+    public static double sumOfSquaredDeviations(
+            double[] values,
+            int fromIndex,
+            int toIndex,
+            NaNPolicy nanPolicy)
+    {
+        checkRange(values.length, fromIndex, toIndex);
+        boolean skipNaN = applyPolicy(values, fromIndex, toIndex, nanPolicy);
+        int n = skipNaN ? count(values, fromIndex, toIndex) : toIndex - fromIndex;
+        if(n == 0)
+        {
+            return 0.0;
+        }
+        else
+        {
+            return sumOfSquaredDeviations(
+                    values,
+                    fromIndex,
+                    toIndex,
+                    skipNaN,
+                    n);
+        }
+    }
+
+    /**
+     * Calculate the sample variance (using n - 1 as the denominator) of
+     * the slice
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param nanPolicy
+     *          how NaN values are treated
+     * @return
+     *          the variance or NaN if there are fewer than two values
+     */
+    public static double variance(
+            double[] values,
+            int fromIndex,
+            int toIndex,
+            NaNPolicy nanPolicy)
+    {
+        checkRange(values.length, fromIndex, toIndex);
+        boolean skipNaN = applyPolicy(values, fromIndex, toIndex, nanPolicy);
+        int n = skipNaN ? count(values, fromIndex, toIndex) : toIndex - fromIndex;
+        if(n < 2)
+        {
+            return Double.NaN;
+        }
+        else
+        {
+            return sumOfSquaredDeviations(
+                    values,
+                    fromIndex,
+                    toIndex,
+                    skipNaN,
+                    n) / (n - 1);
+        }
+    }
+
+    /**
+     * Calculate the sample standard deviation (the square root of
+     * {@link #variance(double[], int, int, NaNPolicy)}) of the slice
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param nanPolicy
+     *          how NaN values are treated
+     * @return
+     *          the standard deviation or NaN if there are fewer than two
+     *          values
+     */
+    public static double standardDeviation(
+            double[] values,
+            int fromIndex,
+            int toIndex,
+            NaNPolicy nanPolicy)
+    {
+        return Math.sqrt(variance(values, fromIndex, toIndex, nanPolicy));
+    }
+
+    /**
+     * Find the minimum value in the slice
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param nanPolicy
+     *          how NaN values are treated
+     * @return
+     *          the minimum or NaN if there are no values
+     */
+    public static double min(
+            double[] values,
+            int fromIndex,
+            int toIndex,
+            NaNPolicy nanPolicy)
+    {
+        checkRange(values.length, fromIndex, toIndex);
+        boolean skipNaN = applyPolicy(values, fromIndex, toIndex, nanPolicy);
+
+        double min = Double.POSITIVE_INFINITY;
+        boolean foundValue = false;
+        for(int i = fromIndex; i < toIndex; i++)
+        {
+            double value = values[i];
+            if(value != value)
+            {
+                if(!skipNaN)
+                {
+                    return Double.NaN;
+                }
+            }
+            else
+            {
+                min = value < min ? value : min;
+                foundValue = true;
+            }
+        }
+
+        return foundValue ? min : Double.NaN;
+    }
+
+    /**
+     * Find the maximum value in the slice
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param nanPolicy
+     *          how NaN values are treated
+     * @return
+     *          the maximum or NaN if there are no values
+     */
+    public static double max(
+            double[] values,
+            int fromIndex,
+            int toIndex,
+            NaNPolicy nanPolicy)
+    {
+        checkRange(values.length, fromIndex, toIndex);
+        boolean skipNaN = applyPolicy(values, fromIndex, toIndex, nanPolicy);
+
+        double max = Double.NEGATIVE_INFINITY;
+        boolean foundValue = false;
+        for(int i = fromIndex; i < toIndex; i++)
+        {
+            double value = values[i];
+            if(value != value)
+            {
+                if(!skipNaN)
+                {
+                    return Double.NaN;
+                }
+            }
+            else
+            {
+                max = value > max ? value : max;
+                foundValue = true;
+            }
+        }
+
+        return foundValue ? max : Double.NaN;
+    }
+
+    /**
+     * Calculate the weighted mean of the slice. Weights should not be
+     * negative (this isn't checked). A value is treated as missing if
+     * either it or its weight is NaN.
+     * @param values
+     *          the values
+     * @param weights
+     *          the weights which are indexed the same way as the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param nanPolicy
+     *          how NaN values are treated
+     * @return
+     *          the weighted mean or NaN if there are no values or the
+     *          weights sum to 0
+     */
+    public static double weightedMean(
+            double[] values,
+            double[] weights,
+            int fromIndex,
+            int toIndex,
+            NaNPolicy nanPolicy)
+    {
+        checkRange(values.length, fromIndex, toIndex);
+        checkRange(weights.length, fromIndex, toIndex);
+        boolean skipNaN =
+            applyPolicy(values, fromIndex, toIndex, nanPolicy) &
+            applyPolicy(weights, fromIndex, toIndex, nanPolicy);
+
+        double weightSum = 0.0;
+        double weightSumError = 0.0;
+        double weightedSum = 0.0;
+        double weightedSumError = 0.0;
+        int blockEnd;
+        for(int blockStart = fromIndex; blockStart < toIndex; blockStart = blockEnd)
+        {
+            blockEnd = blockEnd(blockStart, toIndex);
+            double blockWeightSum = 0.0;
+            double blockWeightedSum = 0.0;
+            if(skipNaN)
+            {
+                for(int i = blockStart; i < blockEnd; i++)
+                {
+                    double value = values[i];
+                    double weight = weights[i];
+                    boolean present = value == value && weight == weight;
+                    blockWeightSum += present ? weight : 0.0;
+                    blockWeightedSum += present ? weight * value : 0.0;
+                }
+            }
+            else
+            {
+                for(int i = blockStart; i < blockEnd; i++)
+                {
+                    double weight = weights[i];
+                    blockWeightSum += weight;
+                    blockWeightedSum += weight * values[i];
+                }
+            }
+
+            double newWeightSum = weightSum + blockWeightSum;
+            weightSumError += roundingError(weightSum, blockWeightSum, newWeightSum);
+            weightSum = newWeightSum;
+
+            double newWeightedSum = weightedSum + blockWeightedSum;
+            weightedSumError += roundingError(weightedSum, blockWeightedSum, newWeightedSum);
+            weightedSum = newWeightedSum;
+        }
+
+        weightSum = compensate(weightSum, weightSumError);
+        if(weightSum == 0.0)
+        {
+            return Double.NaN;
+        }
+        else
+        {
+            return compensate(weightedSum, weightedSumError) / weightSum;
+        }
+    }
+
+    /**
+     * Calculate the weighted variance of the slice. The weights are
+     * treated as frequency weights so the denominator is the weight sum
+     * minus one, which means that using weights of 1 gives the same result
+     * as {@link #variance(double[], int, int, NaNPolicy)}. A value is treated
+     * as missing if either it or its weight is NaN.
+     * @param values
+     *          the values
+     * @param weights
+     *          the weights which are indexed the same way as the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param nanPolicy
+     *          how NaN values are treated
+     * @return
+     *          the weighted variance or NaN if the weights sum to 1 or
+     *          less
+     */
+    public static double weightedVariance(
+            double[] values,
+            double[] weights,
+            int fromIndex,
+            int toIndex,
+            NaNPolicy nanPolicy)
+    {
+        double mean = weightedMean(values, weights, fromIndex, toIndex, nanPolicy);
+        if(mean != mean)
+        {
+            return Double.NaN;
+        }
+        boolean skipNaN = nanPolicy == NaNPolicy.SKIP;
+
+        double weightSum = 0.0;
+        double weightSumError = 0.0;
+        double deviationSum = 0.0;
+        double deviationSumError = 0.0;
+        double squaredDeviationSum = 0.0;
+        double squaredDeviationSumError = 0.0;
+        int blockEnd;
+        for(int blockStart = fromIndex; blockStart < toIndex; blockStart = blockEnd)
+        {
+            blockEnd = blockEnd(blockStart, toIndex);
+            double blockWeightSum = 0.0;
+            double blockDeviationSum = 0.0;
+            double blockSquaredDeviationSum = 0.0;
+            for(int i = blockStart; i < blockEnd; i++)
+            {
+                double value = values[i];
+                double weight = weights[i];
+                boolean present = !skipNaN || (value == value && weight == weight);
+                double deviation = present ? value - mean : 0.0;
+                double weightedDeviation = present ? weight * deviation : 0.0;
+                blockWeightSum += present ? weight : 0.0;
+                blockDeviationSum += weightedDeviation;
+                blockSquaredDeviationSum += weightedDeviation * deviation;
+            }
+
+            double newSum = weightSum + blockWeightSum;
+            weightSumError += roundingError(weightSum, blockWeightSum, newSum);
+            weightSum = newSum;
+
+            newSum = deviationSum + blockDeviationSum;
+            deviationSumError += roundingError(deviationSum, blockDeviationSum, newSum);
+            deviationSum = newSum;
+
+            newSum = squaredDeviationSum + blockSquaredDeviationSum;
+            squaredDeviationSumError += roundingError(
+                    squaredDeviationSum,
+                    blockSquaredDeviationSum,
+                    newSum);
+            squaredDeviationSum = newSum;
+        }
+
+        weightSum = compensate(weightSum, weightSumError);
+        if(weightSum <= 1.0)
+        {
+            return Double.NaN;
+        }
+        else
+        {
+            deviationSum = compensate(deviationSum, deviationSumError);
+            double correctedSum =
+                compensate(squaredDeviationSum, squaredDeviationSumError) -
+                deviationSum * deviationSum / weightSum;
+            return Math.max(0.0, correctedSum) / (weightSum - 1.0);
+        }
+    }
+
+    /**
+     * Calculate the sample covariance (using n - 1 as the denominator) of
+     * two paired slices
+     * @param x
+     *          the 1st values
+     * @param y
+     *          the 2nd values which are indexed the same way as x
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param nanPolicy
+     *          how NaN values are treated. When NaN values are skipped a
+     *          pair is skipped if either of its values is NaN
+     * @return
+     *          the covariance or NaN if there are fewer than two pairs
+     */
+    public static double covariance(
+            double[] x,
+            double[] y,
+            int fromIndex,
+            int toIndex,
+            NaNPolicy nanPolicy)
+    {
+        checkRange(x.length, fromIndex, toIndex);
+        checkRange(y.length, fromIndex, toIndex);
+        boolean skipNaN =
+            applyPolicy(x, fromIndex, toIndex, nanPolicy) &
+            applyPolicy(y, fromIndex, toIndex, nanPolicy);
+        int n = skipNaN ? pairCount(x, y, fromIndex, toIndex) : toIndex - fromIndex;
+        if(n < 2)
+        {
+            return Double.NaN;
+        }
+
+        double xMean = pairedSum(x, y, fromIndex, toIndex, skipNaN) / n;
+        double yMean = pairedSum(y, x, fromIndex, toIndex, skipNaN) / n;
+
+        double xDeviationSum = 0.0;
+        double xDeviationSumError = 0.0;
+        double yDeviationSum = 0.0;
+        double yDeviationSumError = 0.0;
+        double productSum = 0.0;
+        double productSumError = 0.0;
+        int blockEnd;
+        for(int blockStart = fromIndex; blockStart < toIndex; blockStart = blockEnd)
+        {
+            blockEnd = blockEnd(blockStart, toIndex);
+            double blockXDeviationSum = 0.0;
+            double blockYDeviationSum = 0.0;
+            double blockProductSum = 0.0;
+            for(int i = blockStart; i < blockEnd; i++)
+            {
+                double xValue = x[i];
+                double yValue = y[i];
+                boolean present = !skipNaN || (xValue == xValue && yValue == yValue);
+                double xDeviation = present ? xValue - xMean : 0.0;
+                double yDeviation = present ? yValue - yMean : 0.0;
+                blockXDeviationSum += xDeviation;
+                blockYDeviationSum += yDeviation;
+                blockProductSum += xDeviation * yDeviation;
+            }
+
+            double newSum = xDeviationSum + blockXDeviationSum;
+            xDeviationSumError += roundingError(xDeviationSum, blockXDeviationSum, newSum);
+            xDeviationSum = newSum;
+
+            newSum = yDeviationSum + blockYDeviationSum;
+            yDeviationSumError += roundingError(yDeviationSum, blockYDeviationSum, newSum);
+            yDeviationSum = newSum;
+
+            newSum = productSum + blockProductSum;
+            productSumError += roundingError(productSum, blockProductSum, newSum);
+            productSum = newSum;
+        }
+
+        xDeviationSum = compensate(xDeviationSum, xDeviationSumError);
+        yDeviationSum = compensate(yDeviationSum, yDeviationSumError);
+        productSum = compensate(productSum, productSumError);
+        return (productSum - xDeviationSum * yDeviationSum / n) / (n - 1);
+    }
+
+    /**
+     * Calculate the Pearson correlation of two paired slices
+     * @param x
+     *          the 1st values
+     * @param y
+     *          the 2nd values which are indexed the same way as x
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param nanPolicy
+     *          how NaN values are treated. When NaN values are skipped a
+     *          pair is skipped if either of its values is NaN
+     * @return
+     *          the correlation or NaN if there are fewer than two pairs or
+     *          either slice is constant
+     */
+    public static double correlation(
+            double[] x,
+            double[] y,
+            int fromIndex,
+            int toIndex,
+            NaNPolicy nanPolicy)
+    {
+        checkRange(x.length, fromIndex, toIndex);
+        checkRange(y.length, fromIndex, toIndex);
+        boolean skipNaN =
+            applyPolicy(x, fromIndex, toIndex, nanPolicy) &
+            applyPolicy(y, fromIndex, toIndex, nanPolicy);
+        int n = skipNaN ? pairCount(x, y, fromIndex, toIndex) : toIndex - fromIndex;
+        if(n < 2)
+        {
+            return Double.NaN;
+        }
+
+        double xMean = pairedSum(x, y, fromIndex, toIndex, skipNaN) / n;
+        double yMean = pairedSum(y, x, fromIndex, toIndex, skipNaN) / n;
+
+        double xDeviationSum = 0.0;
+        double xDeviationSumError = 0.0;
+        double yDeviationSum = 0.0;
+        double yDeviationSumError = 0.0;
+        double xSquareSum = 0.0;
+        double xSquareSumError = 0.0;
+        double ySquareSum = 0.0;
+        double ySquareSumError = 0.0;
+        double productSum = 0.0;
+        double productSumError = 0.0;
+        int blockEnd;
+        for(int blockStart = fromIndex; blockStart < toIndex; blockStart = blockEnd)
+        {
+            blockEnd = blockEnd(blockStart, toIndex);
+            double blockXDeviationSum = 0.0;
+            double blockYDeviationSum = 0.0;
+            double blockXSquareSum = 0.0;
+            double blockYSquareSum = 0.0;
+            double blockProductSum = 0.0;
+            for(int i = blockStart; i < blockEnd; i++)
+            {
+                double xValue = x[i];
+                double yValue = y[i];
+                boolean present = !skipNaN || (xValue == xValue && yValue == yValue);
+                double xDeviation = present ? xValue - xMean : 0.0;
+                double yDeviation = present ? yValue - yMean : 0.0;
+                blockXDeviationSum += xDeviation;
+                blockYDeviationSum += yDeviation;
+                blockXSquareSum += xDeviation * xDeviation;
+                blockYSquareSum += yDeviation * yDeviation;
+                blockProductSum += xDeviation * yDeviation;
+            }
+
+            double newSum = xDeviationSum + blockXDeviationSum;
+            xDeviationSumError += roundingError(xDeviationSum, blockXDeviationSum, newSum);
+            xDeviationSum = newSum;
+
+            newSum = yDeviationSum + blockYDeviationSum;
+            yDeviationSumError += roundingError(yDeviationSum, blockYDeviationSum, newSum);
+            yDeviationSum = newSum;
+
+            newSum = xSquareSum + blockXSquareSum;
+            xSquareSumError += roundingError(xSquareSum, blockXSquareSum, newSum);
+            xSquareSum = newSum;
+
+            newSum = ySquareSum + blockYSquareSum;
+            ySquareSumError += roundingError(ySquareSum, blockYSquareSum, newSum);
+            ySquareSum = newSum;
+
+            newSum = productSum + blockProductSum;
+            productSumError += roundingError(productSum, blockProductSum, newSum);
+            productSum = newSum;
+        }
+
+        xDeviationSum = compensate(xDeviationSum, xDeviationSumError);
+        yDeviationSum = compensate(yDeviationSum, yDeviationSumError);
+        double sxx =
+            compensate(xSquareSum, xSquareSumError) -
+            xDeviationSum * xDeviationSum / n;
+        double syy =
+            compensate(ySquareSum, ySquareSumError) -
+            yDeviationSum * yDeviationSum / n;
+        double sxy =
+            compensate(productSum, productSumError) -
+            xDeviationSum * yDeviationSum / n;
+
+        if(sxx <= 0.0 || syy <= 0.0)
+        {
+            // a constant slice (or NaN) so the correlation is undefined
+            return Double.NaN;
+        }
+        else
+        {
+            double correlation = sxy / Math.sqrt(sxx * syy);
+            return Math.max(-1.0, Math.min(1.0, correlation));
+        }
+    }
+
+    /**
+     * The corrected two-pass sum of squared deviations
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param skipNaN
+     *          if true NaN values are skipped
+     * @param n
+     *          the number of values that aren't skipped (must be > 0)
+     * @return
+     *          the sum of squared deviations
+     */
+    private static double sumOfSquaredDeviations(
+            double[] values,
+            int fromIndex,
+            int toIndex,
+            boolean skipNaN,
+            int n)
+    {
+        double mean = (skipNaN ?
+                sum(values, fromIndex, toIndex, NaNPolicy.SKIP) :
+                sum(values, fromIndex, toIndex, NaNPolicy.PROPAGATE)) / n;
+
+        double deviationSum = 0.0;
+        double deviationSumError = 0.0;
+        double squaredDeviationSum = 0.0;
+        double squaredDeviationSumError = 0.0;
+        int blockEnd;
+        for(int blockStart = fromIndex; blockStart < toIndex; blockStart = blockEnd)
+        {
+            blockEnd = blockEnd(blockStart, toIndex);
+            double blockDeviationSum = 0.0;
+            double blockSquaredDeviationSum = 0.0;
+            if(skipNaN)
+            {
+                for(int i = blockStart; i < blockEnd; i++)
+                {
+                    double value = values[i];
+                    double deviation = value == value ? value - mean : 0.0;
+                    blockDeviationSum += deviation;
+                    blockSquaredDeviationSum += deviation * deviation;
+                }
+            }
+            else
+            {
+                for(int i = blockStart; i < blockEnd; i++)
+                {
+                    double deviation = values[i] - mean;
+                    blockDeviationSum += deviation;
+                    blockSquaredDeviationSum += deviation * deviation;
+                }
+            }
+
+            double newSum = deviationSum + blockDeviationSum;
+            deviationSumError += roundingError(deviationSum, blockDeviationSum, newSum);
+            deviationSum = newSum;
+
+            newSum = squaredDeviationSum + blockSquaredDeviationSum;
+            squaredDeviationSumError += roundingError(
+                    squaredDeviationSum,
+                    blockSquaredDeviationSum,
+                    newSum);
+            squaredDeviationSum = newSum;
+        }
+
+        // the deviation sum would be exactly 0 if there were no rounding
+        // errors in the mean so subtracting its square corrects for them
+        deviationSum = compensate(deviationSum, deviationSumError);
+        double correctedSum =
+            compensate(squaredDeviationSum, squaredDeviationSumError) -
+            deviationSum * deviationSum / n;
+        return Math.max(0.0, correctedSum);
+    }
+
+    /**
+     * Sum a block using four independent accumulators
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @return
+     *          the sum
+     */
+    private static double blockSum(double[] values, int fromIndex, int toIndex)
+    {
+        double sum0 = 0.0;
+        double sum1 = 0.0;
+        double sum2 = 0.0;
+        double sum3 = 0.0;
+        int i = fromIndex;
+        for(; i < toIndex - 3; i += 4)
+        {
+            sum0 += values[i];
+            sum1 += values[i + 1];
+            sum2 += values[i + 2];
+            sum3 += values[i + 3];
+        }
+        for(; i < toIndex; i++)
+        {
+            sum0 += values[i];
+        }
+
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * Like {@link #blockSum(double[], int, int)} except that NaN values are
+     * skipped. This uses a select rather than a branch so that the loop
+     * doesn't suffer from branch misprediction
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @return
+     *          the sum
+     */
+    private static double blockSumSkipNaN(double[] values, int fromIndex, int toIndex)
+    {
+        double sum0 = 0.0;
+        double sum1 = 0.0;
+        double sum2 = 0.0;
+        double sum3 = 0.0;
+        int i = fromIndex;
+        for(; i < toIndex - 3; i += 4)
+        {
+            double value0 = values[i];
+            double value1 = values[i + 1];
+            double value2 = values[i + 2];
+            double value3 = values[i + 3];
+            sum0 += value0 == value0 ? value0 : 0.0;
+            sum1 += value1 == value1 ? value1 : 0.0;
+            sum2 += value2 == value2 ? value2 : 0.0;
+            sum3 += value3 == value3 ? value3 : 0.0;
+        }
+        for(; i < toIndex; i++)
+        {
+            double value = values[i];
+            sum0 += value == value ? value : 0.0;
+        }
+
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * Sum the values in the slice whose partner value isn't NaN
+     * @param values
+     *          the values to sum
+     * @param partners
+     *          the partner values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param skipNaN
+     *          if true pairs containing NaN are skipped
+     * @return
+     *          the sum
+     */
+    private static double pairedSum(
+            double[] values,
+            double[] partners,
+            int fromIndex,
+            int toIndex,
+            boolean skipNaN)
+    {
+        if(!skipNaN)
+        {
+            return sum(values, fromIndex, toIndex, NaNPolicy.PROPAGATE);
+        }
+
+        double sum = 0.0;
+        double sumError = 0.0;
+        int blockEnd;
+        for(int blockStart = fromIndex; blockStart < toIndex; blockStart = blockEnd)
+        {
+            blockEnd = blockEnd(blockStart, toIndex);
+            double blockSum = 0.0;
+            for(int i = blockStart; i < blockEnd; i++)
+            {
+                double value = values[i];
+                double partner = partners[i];
+                blockSum += value == value && partner == partner ? value : 0.0;
+            }
+
+            double newSum = sum + blockSum;
+            sumError += roundingError(sum, blockSum, newSum);
+            sum = newSum;
+        }
+
+        return compensate(sum, sumError);
+    }
+
+    /**
+     * Count the pairs where neither value is NaN
+     * @param x
+     *          the 1st values
+     * @param y
+     *          the 2nd values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @return
+     *          the count
+     */
+    private static int pairCount(double[] x, double[] y, int fromIndex, int toIndex)
+    {
+        int count = 0;
+        for(int i = fromIndex; i < toIndex; i++)
+        {
+            double xValue = x[i];
+            double yValue = y[i];
+            count += xValue == xValue && yValue == yValue ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Get the rounding error of adding a and b (the Neumaier variant of
+     * Kahan summation)
+     * @param a
+     *          the 1st addend
+     * @param b
+     *          the 2nd addend
+     * @param sum
+     *          the rounded sum of a and b
+     * @return
+     *          the error
+     */
+    private static double roundingError(double a, double b, double sum)
+    {
+        return Math.abs(a) >= Math.abs(b) ? (a - sum) + b : (b - sum) + a;
+    }
+
+    /**
+     * Add the accumulated error back into a sum
+     * @param sum
+     *          the sum
+     * @param error
+     *          the accumulated rounding error
+     * @return
+     *          the compensated sum
+     */
+    private static double compensate(double sum, double error)
+    {
+        double compensatedSum = sum + error;
+
+        // infinite sums make the error NaN
+        return compensatedSum != compensatedSum ? sum : compensatedSum;
+    }
+
+    /**
+     * Get the end of the block that starts at the given index
+     * @param blockStart
+     *          the start of the block
+     * @param toIndex
+     *          the end of the slice
+     * @return
+     *          the end of the block
+     */
+    private static int blockEnd(int blockStart, int toIndex)
+    {
+        return toIndex - blockStart > BLOCK_SIZE ? blockStart + BLOCK_SIZE : toIndex;
+    }
+
+    /**
+     * Apply the NaN policy
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     * @param nanPolicy
+     *          the policy
+     * @return
+     *          true if NaN values should be skipped
+     * @throws IllegalArgumentException
+     *          if the policy is {@link NaNPolicy#ERROR} and there is a NaN
+     */
+    private static boolean applyPolicy(
+            double[] values,
+            int fromIndex,
+            int toIndex,
+            NaNPolicy nanPolicy)
+    throws IllegalArgumentException
+    {
+        switch(nanPolicy)
+        {
+            case SKIP:
+                return true;
+
+            case ERROR:
+                for(int i = fromIndex; i < toIndex; i++)
+                {
+                    if(Double.isNaN(values[i]))
+                    {
+                        throw new IllegalArgumentException(
+                                "found a NaN value at index " + i);
+                    }
+                }
+                return false;
+
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Check that the slice is in range
+     * @param length
+     *          the array length
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     */
+    private static void checkRange(int length, int fromIndex, int toIndex)
+    {
+        if(fromIndex > toIndex)
+        {
+            throw new IllegalArgumentException(
+                    "fromIndex(" + fromIndex + ") > toIndex(" + toIndex + ")");
+        }
+        else if(fromIndex < 0)
+        {
+            throw new ArrayIndexOutOfBoundsException(fromIndex);
+        }
+        else if(toIndex > length)
+        {
+            throw new ArrayIndexOutOfBoundsException(toIndex);
+        }
+    }
+}
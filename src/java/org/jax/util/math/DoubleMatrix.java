@@ -0,0 +1,774 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.math;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A dense matrix of doubles which is stored outside of the java heap,
+ * either in direct buffers or in a memory mapped file. Keeping big matrices
+ * off of the heap means that they don't add to garbage collection pauses
+ * and a mapped matrix can be larger than the available RAM. Values are
+ * stored in row major order as little endian doubles. A single
+ * {@link ByteBuffer} can't be larger than 2GB so the rows are split over
+ * as many buffers as needed.
+ * <p>
+ * Reading from several threads at once is safe. Writes from one thread
+ * are not guaranteed to be seen by other threads without some other form
+ * of synchronization.
+ * </p>
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class DoubleMatrix
+{
+    /**
+     * the largest number of bytes that we put in a single buffer
+     */
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    /**
+     * the number of rows or columns in a block for blocked transposition
+     */
+    private static final int TRANSPOSE_BLOCK_SIZE = 64;
+
+    private final int rowCount;
+
+    private final int columnCount;
+
+    private final int rowsPerChunk;
+
+    private final DoubleBuffer[] chunks;
+
+    /**
+     * the mapped buffers (null if the matrix isn't mapped)
+     */
+    private final MappedByteBuffer[] mappedChunks;
+
+    /**
+     * Constructor
+     * @param rowCount
+     *          the row count
+     * @param columnCount
+     *          the column count
+     * @param rowsPerChunk
+     *          the number of rows in every chunk (except possibly the last)
+     * @param chunks
+     *          the chunks
+     * @param mappedChunks
+     *          the mapped chunks or null
+     */
+    private DoubleMatrix(
+            int rowCount,
+            int columnCount,
+            int rowsPerChunk,
+            DoubleBuffer[] chunks,
+            MappedByteBuffer[] mappedChunks)
+    {
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.rowsPerChunk = rowsPerChunk;
+        this.chunks = chunks;
+        this.mappedChunks = mappedChunks;
+    }
+
+    /**
+     * Allocate a matrix in direct buffers. All values start at 0.
+     * @param rowCount
+     *          the row count
+     * @param columnCount
+     *          the column count
+     * @return
+     *          the matrix
+     */
+    public static DoubleMatrix allocateDirect(int rowCount, int columnCount)
+    {
+        int rowsPerChunk = rowsPerChunk(rowCount, columnCount);
+        int chunkCount = chunkCount(rowCount, rowsPerChunk);
+        DoubleBuffer[] chunks = new DoubleBuffer[chunkCount];
+        for(int i = 0; i < chunkCount; i++)
+        {
+            int chunkRows = Math.min(rowsPerChunk, rowCount - i * rowsPerChunk);
+            chunks[i] = ByteBuffer.allocateDirect(chunkRows * columnCount * 8).order(
+                    ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        }
+        return new DoubleMatrix(rowCount, columnCount, rowsPerChunk, chunks, null);
+    }
+
+    /**
+     * Allocate a matrix in direct buffers and copy the given values into
+     * it
+     * @param values
+     *          the values indexed by row then column. Every row must have
+     *          the same length
+     * @return
+     *          the matrix
+     */
+    public static DoubleMatrix allocateDirect(double[][] values)
+    {
+        int columnCount = values.length == 0 ? 0 : values[0].length;
+        DoubleMatrix matrix = allocateDirect(values.length, columnCount);
+        for(int row = 0; row < values.length; row++)
+        {
+            matrix.setRow(row, values[row]);
+        }
+        return matrix;
+    }
+
+    /**
+     * Map a matrix onto the given file. The file is created if it doesn't
+     * exist and its length is set to match the matrix size.
+     * @param file
+     *          the file
+     * @param rowCount
+     *          the row count
+     * @param columnCount
+     *          the column count
+     * @return
+     *          the matrix
+     * @throws IOException
+     *          if the file can't be mapped
+     */
+    public static DoubleMatrix createMapped(File file, int rowCount, int columnCount)
+    throws IOException
+    {
+        checkDimensions(rowCount, columnCount);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try
+        {
+            randomAccessFile.setLength(8L * rowCount * columnCount);
+            return map(randomAccessFile.getChannel(), rowCount, columnCount, false);
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Map a matrix onto an existing file (for example one written by
+     * {@link #createMapped(File, int, int)})
+     * @param file
+     *          the file
+     * @param rowCount
+     *          the row count
+     * @param columnCount
+     *          the column count
+     * @param readOnly
+     *          if true the matrix can't be modified
+     * @return
+     *          the matrix
+     * @throws IOException
+     *          if the file can't be mapped or its length doesn't match the
+     *          dimensions
+     */
+    public static DoubleMatrix openMapped(
+            File file,
+            int rowCount,
+            int columnCount,
+            boolean readOnly)
+    throws IOException
+    {
+        checkDimensions(rowCount, columnCount);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, readOnly ? "r" : "rw");
+        try
+        {
+            long expectedLength = 8L * rowCount * columnCount;
+            if(randomAccessFile.length() != expectedLength)
+            {
+                throw new IOException(
+                        "expected " + file + " to have a length of " +
+                        expectedLength + " bytes for a " + rowCount + "x" +
+                        columnCount + " matrix but its length is " +
+                        randomAccessFile.length());
+            }
+            return map(randomAccessFile.getChannel(), rowCount, columnCount, readOnly);
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Map the chunks of a matrix. The mappings stay valid after the channel
+     * is closed
+     * @param channel
+     *          the channel
+     * @param rowCount
+     *          the row count
+     * @param columnCount
+     *          the column count
+     * @param readOnly
+     *          true for a read only mapping
+     * @return
+     *          the matrix
+     * @throws IOException
+     *          if the mapping fails
+     */
+    private static DoubleMatrix map(
+            FileChannel channel,
+            int rowCount,
+            int columnCount,
+            boolean readOnly)
+    throws IOException
+    {
+        int rowsPerChunk = rowsPerChunk(rowCount, columnCount);
+        int chunkCount = chunkCount(rowCount, rowsPerChunk);
+        DoubleBuffer[] chunks = new DoubleBuffer[chunkCount];
+        MappedByteBuffer[] mappedChunks = new MappedByteBuffer[chunkCount];
+        long chunkBytes = 8L * rowsPerChunk * columnCount;
+        for(int i = 0; i < chunkCount; i++)
+        {
+            int chunkRows = Math.min(rowsPerChunk, rowCount - i * rowsPerChunk);
+            mappedChunks[i] = channel.map(
+                    readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE,
+                    i * chunkBytes,
+                    8L * chunkRows * columnCount);
+            mappedChunks[i].order(ByteOrder.LITTLE_ENDIAN);
+            chunks[i] = mappedChunks[i].asDoubleBuffer();
+        }
+        return new DoubleMatrix(rowCount, columnCount, rowsPerChunk, chunks, mappedChunks);
+    }
+
+    /**
+     * Getter for the row count
+     * @return
+     *          the row count
+     */
+    public int getRowCount()
+    {
+        return this.rowCount;
+    }
+
+    /**
+     * Getter for the column count
+     * @return
+     *          the column count
+     */
+    public int getColumnCount()
+    {
+        return this.columnCount;
+    }
+
+    /**
+     * Determine if this matrix is backed by a memory mapped file
+     * @return
+     *          true if the matrix is mapped
+     */
+    public boolean isMapped()
+    {
+        return this.mappedChunks != null;
+    }
+
+    /**
+     * Get a value
+     * @param row
+     *          the row index
+     * @param column
+     *          the column index
+     * @return
+     *          the value
+     */
+    public double get(int row, int column)
+    {
+        this.checkColumn(column);
+        return this.chunks[this.chunkIndex(row)].get(this.chunkOffset(row) + column);
+    }
+
+    /**
+     * Set a value
+     * @param row
+     *          the row index
+     * @param column
+     *          the column index
+     * @param value
+     *          the new value
+     */
+    public void set(int row, int column, double value)
+    {
+        this.checkColumn(column);
+        this.chunks[this.chunkIndex(row)].put(this.chunkOffset(row) + column, value);
+    }
+
+    /**
+     * Copy a row into the given buffer
+     * @param row
+     *          the row index
+     * @param buffer
+     *          the buffer which must be at least as long as a row. If it's
+     *          null a new buffer is allocated
+     * @return
+     *          the buffer
+     */
+    public double[] getRow(int row, double[] buffer)
+    {
+        if(buffer == null)
+        {
+            buffer = new double[this.columnCount];
+        }
+        this.getRowBuffer(row).get(buffer, 0, this.columnCount);
+        return buffer;
+    }
+
+    /**
+     * Copy the given values into a row
+     * @param row
+     *          the row index
+     * @param values
+     *          the values which must be at least as long as a row
+     */
+    public void setRow(int row, double[] values)
+    {
+        this.getRowBuffer(row).put(values, 0, this.columnCount);
+    }
+
+    /**
+     * Copy a column into the given buffer. This reads one value from every
+     * row, so reading many columns is much faster with
+     * {@link #transposeInto(DoubleMatrix)} followed by row reads.
+     * @param column
+     *          the column index
+     * @param buffer
+     *          the buffer which must be at least as long as a column. If
+     *          it's null a new buffer is allocated
+     * @return
+     *          the buffer
+     */
+    public double[] getColumn(int column, double[] buffer)
+    {
+        this.checkColumn(column);
+        if(buffer == null)
+        {
+            buffer = new double[this.rowCount];
+        }
+        int row = 0;
+        for(DoubleBuffer chunk: this.chunks)
+        {
+            int chunkRows = chunk.capacity() / this.columnCount;
+            for(int chunkRow = 0, index = column; chunkRow < chunkRows; chunkRow++, index += this.columnCount)
+            {
+                buffer[row] = chunk.get(index);
+                row++;
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Copy the given values into a column
+     * @param column
+     *          the column index
+     * @param values
+     *          the values which must be at least as long as a column
+     */
+    public void setColumn(int column, double[] values)
+    {
+        this.checkColumn(column);
+        int row = 0;
+        for(DoubleBuffer chunk: this.chunks)
+        {
+            int chunkRows = chunk.capacity() / this.columnCount;
+            for(int chunkRow = 0, index = column; chunkRow < chunkRows; chunkRow++, index += this.columnCount)
+            {
+                chunk.put(index, values[row]);
+                row++;
+            }
+        }
+    }
+
+    /**
+     * Get a view of a row. The view reads and writes through to the matrix
+     * @param row
+     *          the row index
+     * @return
+     *          the view
+     */
+    public VectorView getRowView(int row)
+    {
+        final DoubleBuffer rowBuffer = this.getRowBuffer(row).slice();
+        return new VectorView()
+        {
+            @Override
+            public int size()
+            {
+                return rowBuffer.capacity();
+            }
+
+            @Override
+            public double get(int index)
+            {
+                return rowBuffer.get(index);
+            }
+
+            @Override
+            public void set(int index, double value)
+            {
+                rowBuffer.put(index, value);
+            }
+        };
+    }
+
+    /**
+     * Get a view of a column. The view reads and writes through to the
+     * matrix
+     * @param column
+     *          the column index
+     * @return
+     *          the view
+     */
+    public VectorView getColumnView(final int column)
+    {
+        this.checkColumn(column);
+        return new VectorView()
+        {
+            @Override
+            public int size()
+            {
+                return DoubleMatrix.this.rowCount;
+            }
+
+            @Override
+            public double get(int index)
+            {
+                return DoubleMatrix.this.get(index, column);
+            }
+
+            @Override
+            public void set(int index, double value)
+            {
+                DoubleMatrix.this.set(index, column, value);
+            }
+        };
+    }
+
+    /**
+     * Calculate the mean of every row using
+     * {@link DescriptiveStatistics#mean(double[], int, int, NaNPolicy)}
+     * @param nanPolicy
+     *          how NaN values are treated
+     * @return
+     *          the row means
+     */
+    public double[] getRowMeans(NaNPolicy nanPolicy)
+    {
+        double[] rowBuffer = new double[this.columnCount];
+        double[] means = new double[this.rowCount];
+        for(int row = 0; row < this.rowCount; row++)
+        {
+            this.getRow(row, rowBuffer);
+            means[row] = DescriptiveStatistics.mean(
+                    rowBuffer,
+                    0,
+                    this.columnCount,
+                    nanPolicy);
+        }
+        return means;
+    }
+
+    /**
+     * Calculate the sample variance of every row using
+     * {@link DescriptiveStatistics#variance(double[], int, int, NaNPolicy)}
+     * @param nanPolicy
+     *          how NaN values are treated
+     * @return
+     *          the row variances
+     */
+    public double[] getRowVariances(NaNPolicy nanPolicy)
+    {
+        double[] rowBuffer = new double[this.columnCount];
+        double[] variances = new double[this.rowCount];
+        for(int row = 0; row < this.rowCount; row++)
+        {
+            this.getRow(row, rowBuffer);
+            variances[row] = DescriptiveStatistics.variance(
+                    rowBuffer,
+                    0,
+                    this.columnCount,
+                    nanPolicy);
+        }
+        return variances;
+    }
+
+    /**
+     * Calculate statistics for every column. The matrix is read a row at a
+     * time (which is the order that it is stored in) and every column's
+     * {@link RunningStatistics} is updated as we go
+     * @param nanPolicy
+     *          how NaN values are treated
+     * @return
+     *          the statistics for each column
+     */
+    public RunningStatistics[] getColumnStatistics(NaNPolicy nanPolicy)
+    {
+        RunningStatistics[] statistics = new RunningStatistics[this.columnCount];
+        for(int column = 0; column < this.columnCount; column++)
+        {
+            statistics[column] = new RunningStatistics(nanPolicy);
+        }
+
+        double[] rowBuffer = new double[this.columnCount];
+        for(int row = 0; row < this.rowCount; row++)
+        {
+            this.getRow(row, rowBuffer);
+            for(int column = 0; column < this.columnCount; column++)
+            {
+                statistics[column].add(rowBuffer[column]);
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Write the transpose of this matrix into the target. The copy is done
+     * in square blocks so that both the reads and the writes stay within a
+     * few pages at a time
+     * @param target
+     *          the target matrix which must have as many rows as this
+     *          matrix has columns and as many columns as this matrix has
+     *          rows
+     */
+    public void transposeInto(DoubleMatrix target)
+    {
+        if(target.rowCount != this.columnCount || target.columnCount != this.rowCount)
+        {
+            throw new IllegalArgumentException(
+                    "a " + this.rowCount + "x" + this.columnCount +
+                    " matrix can't be transposed into a " + target.rowCount +
+                    "x" + target.columnCount + " matrix");
+        }
+
+        for(int rowStart = 0; rowStart < this.rowCount; rowStart += TRANSPOSE_BLOCK_SIZE)
+        {
+            int rowEnd = Math.min(this.rowCount, rowStart + TRANSPOSE_BLOCK_SIZE);
+            for(int columnStart = 0; columnStart < this.columnCount; columnStart += TRANSPOSE_BLOCK_SIZE)
+            {
+                int columnEnd = Math.min(this.columnCount, columnStart + TRANSPOSE_BLOCK_SIZE);
+                for(int row = rowStart; row < rowEnd; row++)
+                {
+                    DoubleBuffer sourceChunk = this.chunks[this.chunkIndex(row)];
+                    int sourceOffset = this.chunkOffset(row);
+                    for(int column = columnStart; column < columnEnd; column++)
+                    {
+                        target.chunks[target.chunkIndex(column)].put(
+                                target.chunkOffset(column) + row,
+                                sourceChunk.get(sourceOffset + column));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy the matrix onto the heap
+     * @return
+     *          the values indexed by row then column
+     */
+    public double[][] toArray()
+    {
+        double[][] values = new double[this.rowCount][];
+        for(int row = 0; row < this.rowCount; row++)
+        {
+            values[row] = this.getRow(row, null);
+        }
+        return values;
+    }
+
+    /**
+     * Write any changes to a mapped matrix out to its file. This does
+     * nothing if the matrix isn't mapped
+     */
+    public void force()
+    {
+        if(this.mappedChunks != null)
+        {
+            for(MappedByteBuffer mappedChunk: this.mappedChunks)
+            {
+                mappedChunk.force();
+            }
+        }
+    }
+
+    /**
+     * Get a buffer positioned at the start of the given row and limited to
+     * its end
+     * @param row
+     *          the row index
+     * @return
+     *          the buffer
+     */
+    private DoubleBuffer getRowBuffer(int row)
+    {
+        DoubleBuffer rowBuffer = this.chunks[this.chunkIndex(row)].duplicate();
+        int offset = this.chunkOffset(row);
+        rowBuffer.limit(offset + this.columnCount);
+        rowBuffer.position(offset);
+        return rowBuffer;
+    }
+
+    /**
+     * Get the index of the chunk holding the row
+     * @param row
+     *          the row
+     * @return
+     *          the chunk index
+     */
+    private int chunkIndex(int row)
+    {
+        if(row < 0 || row >= this.rowCount)
+        {
+            throw new IndexOutOfBoundsException(
+                    "row index: " + row + ", row count: " + this.rowCount);
+        }
+        return row / this.rowsPerChunk;
+    }
+
+    /**
+     * Get the offset of the row within its chunk
+     * @param row
+     *          the row
+     * @return
+     *          the offset
+     */
+    private int chunkOffset(int row)
+    {
+        return (row % this.rowsPerChunk) * this.columnCount;
+    }
+
+    /**
+     * Check that the column index is in range
+     * @param column
+     *          the column index
+     */
+    private void checkColumn(int column)
+    {
+        if(column < 0 || column >= this.columnCount)
+        {
+            throw new IndexOutOfBoundsException(
+                    "column index: " + column + ", column count: " + this.columnCount);
+        }
+    }
+
+    /**
+     * Work out how many rows fit in a chunk
+     * @param rowCount
+     *          the row count
+     * @param columnCount
+     *          the column count
+     * @return
+     *          the rows per chunk
+     */
+    private static int rowsPerChunk(int rowCount, int columnCount)
+    {
+        checkDimensions(rowCount, columnCount);
+        if(columnCount == 0)
+        {
+            return Math.max(1, rowCount);
+        }
+        return (int)Math.max(1L, Math.min(rowCount, MAX_CHUNK_BYTES / (8L * columnCount)));
+    }
+
+    /**
+     * Work out the number of chunks
+     * @param rowCount
+     *          the row count
+     * @param rowsPerChunk
+     *          the rows per chunk
+     * @return
+     *          the chunk count
+     */
+    private static int chunkCount(int rowCount, int rowsPerChunk)
+    {
+        return (rowCount + rowsPerChunk - 1) / rowsPerChunk;
+    }
+
+    /**
+     * Check that the dimensions are usable
+     * @param rowCount
+     *          the row count
+     * @param columnCount
+     *          the column count
+     */
+    private static void checkDimensions(int rowCount, int columnCount)
+    {
+        if(rowCount < 0 || columnCount < 0)
+        {
+            throw new IllegalArgumentException(
+                    "matrix dimensions can't be negative: " + rowCount +
+                    "x" + columnCount);
+        }
+        else if(8L * columnCount > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException(
+                    "a single row of " + columnCount +
+                    " columns is too large for a buffer");
+        }
+    }
+
+    /**
+     * A view of a row or a column of a matrix
+     */
+    public static abstract class VectorView
+    {
+        /**
+         * Get the number of values in the view
+         * @return
+         *          the size
+         */
+        public abstract int size();
+
+        /**
+         * Get a value
+         * @param index
+         *          the index
+         * @return
+         *          the value
+         */
+        public abstract double get(int index);
+
+        /**
+         * Set a value
+         * @param index
+         *          the index
+         * @param value
+         *          the new value
+         */
+        public abstract void set(int index, double value);
+
+        /**
+         * Copy the values onto the heap
+         * @return
+         *          the values
+         */
+        public double[] toArray()
+        {
+            double[] values = new double[this.size()];
+            for(int i = 0; i < values.length; i++)
+            {
+                values[i] = this.get(i);
+            }
+            return values;
+        }
+    }
+}
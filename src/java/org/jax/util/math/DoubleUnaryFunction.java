@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.math;
+
+/**
+ * A primitive double-to-double function. Unlike a {@link Function} of
+ * {@link Double}s it doesn't box each input and output. See
+ * {@link FunctionUtilities} for evaluating one over whole arrays
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public interface DoubleUnaryFunction
+{
+    /**
+     * Evaluate the input and return the output
+     * @param input
+     *          the input
+     * @return
+     *          the output
+     */
+    public double evaluate(double input);
+}
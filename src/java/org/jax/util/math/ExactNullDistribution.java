@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.math;
+
+import java.util.Arrays;
+
+/**
+ * A null distribution which keeps every statistic so that p-values are
+ * exact. Memory use is 8 bytes per statistic. The sample is sorted lazily
+ * the first time that it is queried after being modified. Ordering follows
+ * {@link Arrays#sort(double[])} so NaN statistics are treated as larger
+ * than everything else.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class ExactNullDistribution
+implements NullDistributionAccumulator<ExactNullDistribution>
+{
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private double[] sample;
+
+    private int sampleCount;
+
+    private boolean sorted;
+
+    /**
+     * Constructor for an empty distribution
+     */
+    public ExactNullDistribution()
+    {
+        this.sample = new double[INITIAL_CAPACITY];
+        this.sampleCount = 0;
+        this.sorted = true;
+    }
+
+    /**
+     * Constructor
+     * @param sample
+     *          the null hypothesis sample (in any order). It is copied
+     */
+    public ExactNullDistribution(double[] sample)
+    {
+        this.sample = sample.clone();
+        this.sampleCount = sample.length;
+        this.sorted = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ExactNullDistribution createEmpty()
+    {
+        return new ExactNullDistribution();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void add(double statistic)
+    {
+        this.ensureCapacity(this.sampleCount + 1);
+        this.sample[this.sampleCount] = statistic;
+        this.sampleCount++;
+        this.sorted = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void merge(ExactNullDistribution other)
+    {
+        this.ensureCapacity(this.sampleCount + other.sampleCount);
+        System.arraycopy(
+                other.sample,
+                0,
+                this.sample,
+                this.sampleCount,
+                other.sampleCount);
+        this.sampleCount += other.sampleCount;
+        this.sorted = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getSampleCount()
+    {
+        return this.sampleCount;
+    }
+
+    /**
+     * Get a sorted copy of the sample
+     * @return
+     *          the sorted sample
+     */
+    public double[] getSortedSample()
+    {
+        this.sort();
+        double[] sortedSample = new double[this.sampleCount];
+        System.arraycopy(this.sample, 0, sortedSample, 0, this.sampleCount);
+        return sortedSample;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double calculatePValue(double dataPoint) throws IllegalStateException
+    {
+        this.checkNotEmpty();
+        this.sort();
+
+        // binary search for the first sample >= the data point
+        int low = 0;
+        int high = this.sampleCount;
+        while(low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if(Double.compare(this.sample[mid], dataPoint) < 0)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+
+        return (this.sampleCount - low) / (double)this.sampleCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double[] calculatePValues(double[] dataPoints)
+    throws IllegalStateException
+    {
+        this.checkNotEmpty();
+        this.sort();
+
+        double[] sortedDataPoints = dataPoints.clone();
+        Arrays.sort(sortedDataPoints);
+        this.trimToSize();
+        double[] sortedPValues = StatisticUtilities.calculatePValuesForSortedDataPoints(
+                sortedDataPoints,
+                this.sample);
+
+        // map back to the original order. equal data points have equal
+        // p-values so it doesn't matter which match the search finds
+        double[] pValues = new double[dataPoints.length];
+        for(int i = 0; i < dataPoints.length; i++)
+        {
+            pValues[i] = sortedPValues[
+                    Arrays.binarySearch(sortedDataPoints, dataPoints[i])];
+        }
+
+        return pValues;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double calculateDataPoint(double pValue)
+    throws IllegalArgumentException, IllegalStateException
+    {
+        this.checkNotEmpty();
+        this.sort();
+
+        this.trimToSize();
+        return StatisticUtilities.calculateDataPointForPValue(pValue, this.sample);
+    }
+
+    /**
+     * Release any unused capacity
+     */
+    public void trimToSize()
+    {
+        if(this.sample.length != this.sampleCount)
+        {
+            double[] newSample = new double[this.sampleCount];
+            System.arraycopy(this.sample, 0, newSample, 0, this.sampleCount);
+            this.sample = newSample;
+        }
+    }
+
+    /**
+     * sort the sample if needed
+     */
+    private void sort()
+    {
+        if(!this.sorted)
+        {
+            Arrays.sort(this.sample, 0, this.sampleCount);
+            this.sorted = true;
+        }
+    }
+
+    /**
+     * Make sure that there's something in the sample
+     * @throws IllegalStateException
+     *          if the sample is empty
+     */
+    private void checkNotEmpty() throws IllegalStateException
+    {
+        if(this.sampleCount == 0)
+        {
+            throw new IllegalStateException(
+                    "can't use an empty null distribution");
+        }
+    }
+
+    /**
+     * Make sure that the sample array can hold the given number of values
+     * @param capacity
+     *          the capacity
+     */
+    private void ensureCapacity(int capacity)
+    {
+        if(capacity > this.sample.length)
+        {
+            double[] newSample = new double[Math.max(
+                    capacity,
+                    (int)Math.min(Integer.MAX_VALUE - 8, this.sample.length * 2L))];
+            System.arraycopy(this.sample, 0, newSample, 0, this.sampleCount);
+            this.sample = newSample;
+        }
+    }
+}
@@ -18,12 +18,13 @@
 package org.jax.util.math;
 
 import org.jax.util.Condition;
+import org.jax.util.DoubleCondition;
 
 /**
  * Tests for a number being finite (not NaN and not Infinite).
  * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
  */
-public class FiniteCondition implements Condition<Number>
+public class FiniteCondition implements Condition<Number>, DoubleCondition
 {
     /**
      * Test to see if the given number is finite
@@ -34,7 +35,19 @@ public class FiniteCondition implements Condition<Number>
      */
     public boolean test(Number input)
     {
-        double currDatumAsDouble = input.doubleValue();
-        return !Double.isNaN(currDatumAsDouble) && !Double.isInfinite(currDatumAsDouble);
+        return this.test(input.doubleValue());
+    }
+    
+    /**
+     * Test to see if the given number is finite
+     * @param input
+     *          the input we're testing
+     * @return 
+     *          true if the number is finite
+     */
+    public boolean test(double input)
+    {
+        // NaN and the infinities are the only values that give NaN here
+        return !Double.isNaN(input - input);
     }
 }
@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.math;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import org.jax.util.concurrent.ExecutorUtilities;
+import org.jax.util.datastructure.ConcurrentCache;
+
+/**
+ * Functions for evaluating {@link Function}s and
+ * {@link DoubleUnaryFunction}s efficiently
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public final class FunctionUtilities
+{
+    /**
+     * Arrays smaller than this aren't worth splitting up
+     */
+    private static final int MIN_PARALLEL_CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Private constructor to avoid an instance being created
+     */
+    private FunctionUtilities()
+    {
+    }
+
+    /**
+     * Evaluate the function for every input
+     * @param function
+     *          the function
+     * @param inputs
+     *          the inputs
+     * @return
+     *          a new array of outputs
+     */
+    public static double[] evaluate(DoubleUnaryFunction function, double[] inputs)
+    {
+        double[] outputs = new double[inputs.length];
+        evaluate(function, inputs, outputs);
+        return outputs;
+    }
+
+    /**
+     * Evaluate the function for every input
+     * @param function
+     *          the function
+     * @param inputs
+     *          the inputs
+     * @param outputs
+     *          the array to write the outputs to. This can be the inputs
+     *          array to transform the values in place
+     * @throws IllegalArgumentException
+     *          if the arrays have different lengths
+     */
+    public static void evaluate(
+            DoubleUnaryFunction function,
+            double[] inputs,
+            double[] outputs)
+    throws IllegalArgumentException
+    {
+        checkLengths(inputs, outputs);
+        evaluate(function, inputs, outputs, 0, inputs.length);
+    }
+
+    /**
+     * Evaluate the function for every input using several threads
+     * @param function
+     *          the function which must be safe to call from several threads
+     * @param inputs
+     *          the inputs
+     * @param executor
+     *          the executor to run the work on
+     * @param parallelism
+     *          the number of pieces to divide the work into (typically
+     *          the executor's thread count)
+     * @return
+     *          a new array of outputs
+     * @throws InterruptedException
+     *          if we're interrupted while waiting for the executor
+     */
+    public static double[] parallelEvaluate(
+            DoubleUnaryFunction function,
+            double[] inputs,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException
+    {
+        double[] outputs = new double[inputs.length];
+        parallelEvaluate(function, inputs, outputs, executor, parallelism);
+        return outputs;
+    }
+
+    /**
+     * Evaluate the function for every input using several threads
+     * @param function
+     *          the function which must be safe to call from several threads
+     * @param inputs
+     *          the inputs
+     * @param outputs
+     *          the array to write the outputs to. This can be the inputs
+     *          array to transform the values in place
+     * @param executor
+     *          the executor to run the work on
+     * @param parallelism
+     *          the number of pieces to divide the work into (typically
+     *          the executor's thread count)
+     * @throws InterruptedException
+     *          if we're interrupted while waiting for the executor
+     * @throws IllegalArgumentException
+     *          if the arrays have different lengths
+     */
+    public static void parallelEvaluate(
+            final DoubleUnaryFunction function,
+            final double[] inputs,
+            final double[] outputs,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException, IllegalArgumentException
+    {
+        checkLengths(inputs, outputs);
+        if(parallelism <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "the parallelism must be greater than 0");
+        }
+
+        int chunkCount = Math.min(parallelism, inputs.length / MIN_PARALLEL_CHUNK_SIZE);
+        if(chunkCount <= 1)
+        {
+            evaluate(function, inputs, outputs, 0, inputs.length);
+        }
+        else
+        {
+            List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(chunkCount);
+            for(int i = 0; i < chunkCount; i++)
+            {
+                final int fromIndex = (int)((long)inputs.length * i / chunkCount);
+                final int toIndex = (int)((long)inputs.length * (i + 1) / chunkCount);
+                tasks.add(new Callable<Object>()
+                {
+                    public Object call()
+                    {
+                        evaluate(function, inputs, outputs, fromIndex, toIndex);
+                        return null;
+                    }
+                });
+            }
+            ExecutorUtilities.invokeAll(executor, tasks);
+        }
+    }
+
+    /**
+     * Get a boxed view of the given function
+     * @param function
+     *          the function
+     * @return
+     *          the boxed function
+     */
+    public static Function<Double, Double> toFunction(final DoubleUnaryFunction function)
+    {
+        return new Function<Double, Double>()
+        {
+            public Double evaluate(Double input)
+            {
+                return Double.valueOf(function.evaluate(input.doubleValue()));
+            }
+        };
+    }
+
+    /**
+     * Wrap the function so that it remembers the outputs for recent inputs
+     * in a {@link ConcurrentCache}. This only pays off when evaluating the
+     * function costs more than a hash lookup
+     * @param <I>
+     *          the input type
+     * @param <O>
+     *          the output type
+     * @param function
+     *          the function which must be safe to call from several threads
+     *          and must never return null
+     * @param maximumSize
+     *          the maximum number of outputs to remember
+     * @return
+     *          the memoizing function
+     */
+    public static <I, O> Function<I, O> memoize(
+            Function<? super I, ? extends O> function,
+            long maximumSize)
+    {
+        return new ConcurrentCache<I, O>(function, maximumSize).asFunction();
+    }
+
+    /**
+     * Wrap the function so that it remembers the outputs for recent inputs
+     * like {@link #memoize(Function, long)}. The inputs are boxed to look
+     * them up, so this is only worthwhile for functions that are much more
+     * expensive than {@link NegativeLog10}
+     * @param function
+     *          the function which must be safe to call from several threads
+     * @param maximumSize
+     *          the maximum number of outputs to remember
+     * @return
+     *          the memoizing function
+     */
+    public static DoubleUnaryFunction memoizeDouble(
+            DoubleUnaryFunction function,
+            long maximumSize)
+    {
+        final Function<Double, Double> memoizedFunction = memoize(
+                toFunction(function),
+                maximumSize);
+        return new DoubleUnaryFunction()
+        {
+            public double evaluate(double input)
+            {
+                return memoizedFunction.evaluate(Double.valueOf(input)).doubleValue();
+            }
+        };
+    }
+
+    /**
+     * Evaluate the function over a range
+     * @param function
+     *          the function
+     * @param inputs
+     *          the inputs
+     * @param outputs
+     *          the outputs
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     */
+    private static void evaluate(
+            DoubleUnaryFunction function,
+            double[] inputs,
+            double[] outputs,
+            int fromIndex,
+            int toIndex)
+    {
+        for(int i = fromIndex; i < toIndex; i++)
+        {
+            outputs[i] = function.evaluate(inputs[i]);
+        }
+    }
+
+    /**
+     * Make sure that the input and output arrays line up
+     * @param inputs
+     *          the inputs
+     * @param outputs
+     *          the outputs
+     * @throws IllegalArgumentException
+     *          if the lengths are different
+     */
+    private static void checkLengths(double[] inputs, double[] outputs)
+    throws IllegalArgumentException
+    {
+        if(inputs.length != outputs.length)
+        {
+            throw new IllegalArgumentException(
+                    "the input length (" + inputs.length +
+                    ") doesn't match the output length (" + outputs.length + ")");
+        }
+    }
+}
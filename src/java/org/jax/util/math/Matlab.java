@@ -16,7 +16,6 @@
  */
 package org.jax.util.math;
 
-import java.util.Arrays;
 import java.util.Random;
 
 /**
@@ -57,115 +56,56 @@ public class Matlab{
   }
 
   public static int[] find(boolean[] arr) {
-    int n = arr.length;
-    int[] out = new int[n];
-    int count = 0;
-    for(int i=0; i<n; i++) {
-      if(arr[i]) {
-        out[count] = i;
-        count ++;
-      }
-    }
-    int[] result = new int[count];
-    System.arraycopy(out, 0, result, 0, count);
-    return result;
+    int[] out = new int[arr.length];
+    int count = ArrayUtilities.find(arr, 0, arr.length, out);
+    return trim(out, count);
   }
 
 
   public static int[] find(int[] arr) {
-    int n = arr.length;
-    int[] out = new int[n];
-    int count = 0;
-    for(int i=0; i<n; i++) {
-      if(arr[i] != 0) {
-        out[count] = i;
-        count ++;
-      }
-    }
-    int[] result = new int[count];
-    System.arraycopy(out, 0, result, 0, count);
-    return result;
+    int[] out = new int[arr.length];
+    int count = ArrayUtilities.find(
+        arr, 0, arr.length, ComparisonOperator.NOT_EQUAL, 0, out);
+    return trim(out, count);
   }
 
+  /**
+   * find the indices where arr[i] op th holds. op must be one of ">",
+   * ">=", "==", "<" or "<=". Any other operator (including "!=") matches
+   * nothing
+   */
   public static int[] find(int[] arr, int th, String op) {
-    int n = arr.length;
-    int[] out = new int[n];
-    int count = 0;
-    for(int i=0; i<n; i++) {
-      if(op == ">") {
-        if(arr[i] > th) {
-          out[count] = i;
-          count ++;
-        }
-      }
-      else if(op == ">=") {
-        if(arr[i] >= th) {
-          out[count] = i;
-          count ++;
-        }
-      }
-      else if(op == "==") {
-        if(arr[i] == th) {
-          out[count] = i;
-          count ++;
-        }
-      }
-      else if(op == "<") {
-        if(arr[i] < th) {
-          out[count] = i;
-          count ++;
-        }
-      }
-      else if(op == "<=") {
-        if(arr[i] <= th) {
-          out[count] = i;
-          count ++;
-        }
-      }
-    }
-    int[] result = new int[count];
-    System.arraycopy(out, 0, result, 0, count);
-    return result;
+    ComparisonOperator operator = findOperator(op);
+    if(operator == null)
+      return new int[0];
+    int[] out = new int[arr.length];
+    int count = ArrayUtilities.find(arr, 0, arr.length, operator, th, out);
+    return trim(out, count);
   }
 
+  /**
+   * find the indices where arr[i] op th holds. op must be one of ">",
+   * ">=", "==", "<" or "<=". Any other operator (including "!=") matches
+   * nothing
+   */
   public static int[] find(double[] arr, double th, String op) {
-    int n = arr.length;
-    int[] out = new int[n];
-    int count = 0;
-    for(int i=0; i<n; i++) {
-      if(op == ">") {
-        if(arr[i] > th) {
-          out[count] = i;
-          count ++;
-        }
-      }
-      else if(op == ">=") {
-        if(arr[i] >= th) {
-          out[count] = i;
-          count ++;
-        }
-      }
-      else if(op == "==") {
-        if(arr[i] == th) {
-          out[count] = i;
-          count ++;
-        }
-      }
-      else if(op == "<") {
-        if(arr[i] < th) {
-          out[count] = i;
-          count ++;
-        }
-      }
-      else if(op == "<=") {
-        if(arr[i] <= th) {
-          out[count] = i;
-          count ++;
-        }
-      }
-    }
+    ComparisonOperator operator = findOperator(op);
+    if(operator == null)
+      return new int[0];
+    int[] out = new int[arr.length];
+    int count = ArrayUtilities.find(arr, 0, arr.length, operator, th, out);
+    return trim(out, count);
+  }
+
+  // "!=" was never one of the find operators so it stays unmatched
+  private static ComparisonOperator findOperator(String op) {
+    ComparisonOperator operator = ComparisonOperator.fromSymbol(op);
+    return operator == ComparisonOperator.NOT_EQUAL ? null : operator;
+  }
+
+  private static int[] trim(int[] arr, int count) {
     int[] result = new int[count];
-    System.arraycopy(out, 0, result, 0, count);
+    System.arraycopy(arr, 0, result, 0, count);
     return result;
   }
 
@@ -241,31 +181,13 @@ public class Matlab{
 
   public static  double Mean(double[] arr)
   {
-    double mean=0;
-    double Sum=0;
-    //double[] arr=M.getColumnPackedCopy();
-    for(int i=0;i<arr.length;i++){
-      Sum=Sum+arr[i];
-    }
-    mean=Sum/arr.length;
-    return mean;
+    return DescriptiveStatistics.mean(arr, 0, arr.length, NaNPolicy.PROPAGATE);
   }
 
   public static  double SumResSq(double[] arr)
   {
-    double Sum=0;
-    double SR=0;
-    double mean=0;
-    //double[] arr=M.getColumnPackedCopy();
-    for(int i=0;i<arr.length;i++){
-      Sum=Sum+arr[i];
-    }
-    mean=Sum/arr.length;
-    for(int i=0;i<arr.length;i++){
-      SR=SR+Math.pow(arr[i]-mean,2);
-    }
-
-    return SR;
+    return DescriptiveStatistics.sumOfSquaredDeviations(
+        arr, 0, arr.length, NaNPolicy.PROPAGATE);
   }
 
   public static  double SumSq(double[] arr)
@@ -309,28 +231,18 @@ public class Matlab{
 
   public static double Max(double[] arr)
   {
-    // return maximum element  of double array
-    double r;
-    double[] t=new double[arr.length];
-    System.arraycopy(arr, 0, t, 0, arr.length);
-    Arrays.sort(t);
-    double m = 0.0;
-    for(int i=t.length-1; i>=0; i--) {
-      m = t[i];
-      if(!Double.isNaN(m))
-        break;
-    }
-    return m;
+    // return maximum element of double array ignoring NaN (NaN if they're
+    // all NaN and 0 if the array is empty)
+    int i = ArrayUtilities.argmax(arr, 0, arr.length, NaNPolicy.SKIP);
+    if(i == -1)
+      return arr.length == 0 ? 0.0 : Double.NaN;
+    return arr[i];
   }
 
   public static  int Max(int[] arr)
   {
     // return maximum element of int array
-    int r;
-    int[] t=new int[arr.length];
-    System.arraycopy(arr, 0, t, 0, arr.length);
-    Arrays.sort(t);
-    return t[t.length-1];
+    return arr[ArrayUtilities.argmax(arr, 0, arr.length)];
   }
 
   public static double Min(double[][] arr) {
@@ -343,22 +255,16 @@ public class Matlab{
 
   public static  double Min(double[] arr)
   {
-    // return maximum element  of double array
-    double r;
-    double[] t=new double[arr.length];
-    System.arraycopy(arr, 0, t, 0, arr.length);
-    Arrays.sort(t);
-    return t[0];
+    // return minimum element of double array ignoring NaN (NaN if they're
+    // all NaN)
+    int i = ArrayUtilities.argmin(arr, 0, arr.length, NaNPolicy.SKIP);
+    return i == -1 ? arr[0] : arr[i];
   }
 
   public static  int Min(int[] arr)
   {
-    // return maximum element of int array
-    int r;
-    int[] t=new int[arr.length];
-    System.arraycopy(arr, 0, t, 0, arr.length);
-    Arrays.sort(t);
-    return t[0];
+    // return minimum element of int array
+    return arr[ArrayUtilities.argmin(arr, 0, arr.length)];
   }
   
   public static int[] RandPerm(int n)
@@ -404,35 +310,11 @@ public class Matlab{
 
   // find the intersect of two integer sets
   public static int[] intersect(int[] set1, int[] set2) {
-    int[] longset, shortset, tmpset;
-    int n, count=0;
-    if(set1.length > set2.length) {
-      longset = (int[])set1.clone();
-      shortset = (int[])set2.clone();
-      n = set2.length;
-    }
-    else {
-      longset = (int[])set2.clone();
-      shortset = (int[])set1.clone();
-      n = set1.length;
-    }
-    // sort longset
-    Arrays.sort(longset);
-    tmpset = new int[shortset.length];
-    // loop for all elements in shortset
-    for(int i=0; i<shortset.length; i++) {
-      if( Arrays.binarySearch(longset, shortset[i]) >= 0 ) {
-        // this element in shortset is found in longset
-        tmpset[count] = shortset[i];
-        count ++;
-      }
-    }
-    // make return array
-    int[] result = new int[count];
-    for(int i=0; i<count; i++)
-      result[i] = tmpset[i];
-
-    return result;
+    // keep the values of the shorter set which are in the longer set
+    if(set1.length > set2.length)
+      return ArrayUtilities.retainAll(set2, set1);
+    else
+      return ArrayUtilities.retainAll(set1, set2);
   }
 
   /**
@@ -441,78 +323,27 @@ public class Matlab{
    * @return
    */
   public static double std(double[] x) {
-    double mx = Mean(x);
-    double var = 0.0;
-    for(int i=0; i<x.length; i++)
-      var = var + (x[i]-mx)*(x[i]-mx);
-    var = var / (x.length-1);
-    double sd = Math.sqrt(var);
-    return(sd);
+    return DescriptiveStatistics.standardDeviation(
+        x, 0, x.length, NaNPolicy.PROPAGATE);
   }
 
   /**
    * sort the input integer array in ascending order and return the index
    */
   public static int[] order(int[] x) {
-    int n = x.length, index;
-    // init result
-    int[] idx = new int[n];
-    for(int i=0; i<n; i++)
-      idx[i] = i;
-    // start to order
-    for(int i=0; i<n; i++) {
-      index = i;
-      // find the smallest
-      for (int j=i+1; j<n; j++)
-        if (x[idx[j]] < x[idx[index]])
-          index = j;
-      idx[i] = index;
-      idx[index] = i;
-    }
-    return(idx);
+    return OrderUtilities.order(x, false);
   }
 
   /**
    * sort the input double array in ascending order and return the index
    */
   public static int[] order(double[] x) {
-    int n = x.length, index;
-    // init result
-    int[] idx = new int[n];
-    for(int i=0; i<n; i++)
-      idx[i] = i;
-    // start to order
-    for(int i=0; i<n; i++) {
-      index = i;
-      // find the smallest
-      for (int j=i+1; j<n; j++)
-        if (x[idx[j]] < x[idx[index]])
-          index = j;
-      // swap
-      int temp = idx[i];
-      idx[i] = idx[index];
-      idx[index] = temp;
-    }
-    return(idx);
+    return OrderUtilities.order(x, false);
   }
 
   // extract the unique elements of an integer array
   public static int[] unique(int[] arr) {
-    int n = arr.length;
-    int[] t=new int[n], t2 = new int[n], result;
-    int idx=0;
-    System.arraycopy(arr, 0, t, 0, n);
-    Arrays.sort(t);
-    t2[0] = t[0]; idx ++;
-    for(int i=1; i<n; i++) {
-      if(t[i] != t[i-1]) {
-        t2[idx] = t[i];
-        idx ++;
-      }
-    }
-    result = new int[idx];
-    System.arraycopy(t2, 0, result, 0, idx);
-    return(result);
+    return ArrayUtilities.unique(arr);
   }
 
   public static int mod(int x, int y) {
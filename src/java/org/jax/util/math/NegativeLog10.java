@@ -21,13 +21,21 @@ package org.jax.util.math;
  * A function that does <code>-Math.log10(input)</code> to the input
  * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
  */
-public class NegativeLog10 implements Function<Double, Double>
+public class NegativeLog10 implements Function<Double, Double>, DoubleUnaryFunction
 {
     /**
      * {@inheritDoc}
      */
     public Double evaluate(Double input)
     {
-        return Double.valueOf(-Math.log10(input.doubleValue()));
+        return Double.valueOf(this.evaluate(input.doubleValue()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double evaluate(double input)
+    {
+        return -Math.log10(input);
     }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.math;
+
+/**
+ * A sample of test statistics from a null hypothesis which can be used to
+ * calculate p-values. The p-value for a data point is the fraction of the
+ * sample that is greater than or equal to it (as in
+ * {@link StatisticUtilities#calculatePValueForDataPoint(double, double[])}).
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public interface NullDistribution
+{
+    /**
+     * Getter for the number of statistics in the sample
+     * @return
+     *          the sample count
+     */
+    public long getSampleCount();
+
+    /**
+     * Calculate the p-value for the given data point
+     * @param dataPoint
+     *          the data point
+     * @return
+     *          the p-value
+     * @throws IllegalStateException
+     *          if the sample is empty
+     */
+    public double calculatePValue(double dataPoint) throws IllegalStateException;
+
+    /**
+     * Calculate the p-values for all of the given data points. This is
+     * more efficient than calling {@link #calculatePValue(double)} for
+     * each point.
+     * @param dataPoints
+     *          the data points (in any order)
+     * @return
+     *          the p-values in the same order as the data points
+     * @throws IllegalStateException
+     *          if the sample is empty
+     */
+    public double[] calculatePValues(double[] dataPoints)
+    throws IllegalStateException;
+
+    /**
+     * Determine which data point corresponds to the given p-value
+     * @param pValue
+     *          the p-value
+     * @return
+     *          the data point
+     * @throws IllegalArgumentException
+     *          if the p-value is outside of [0, 1]
+     * @throws IllegalStateException
+     *          if the sample is empty
+     */
+    public double calculateDataPoint(double pValue)
+    throws IllegalArgumentException, IllegalStateException;
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.math;
+
+/**
+ * A {@link NullDistribution} which is built up incrementally. Accumulators
+ * can be filled independently (eg: one per thread) and then merged.
+ * Accumulators are not thread safe.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ * @param <A>
+ *          the accumulator type (so that we can only merge like with like)
+ */
+public interface NullDistributionAccumulator<A extends NullDistributionAccumulator<A>>
+extends NullDistribution
+{
+    /**
+     * Add a statistic to the sample
+     * @param statistic
+     *          the statistic
+     */
+    public void add(double statistic);
+
+    /**
+     * Add everything in the given accumulator to this one
+     * @param other
+     *          the accumulator to merge in (it is not modified)
+     */
+    public void merge(A other);
+
+    /**
+     * Create a new empty accumulator which is configured like this one
+     * @return
+     *          the new accumulator
+     */
+    public A createEmpty();
+}
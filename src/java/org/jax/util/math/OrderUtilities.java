@@ -0,0 +1,879 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.math;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import org.jax.util.concurrent.ExecutorUtilities;
+
+/**
+ * Functions for calculating the sort order of an array (argsort), meaning
+ * the indices of the array's values in sorted order. Every order is stable
+ * so equal values keep their index order in both ascending and descending
+ * orders. Doubles are ordered like {@link Double#compare(double, double)}
+ * except that NaN values always come last, whichever the direction.
+ * <p>
+ * The values are converted to unsigned 64 bit keys which preserve the
+ * order and the keys are sorted with a least significant digit radix sort
+ * which is linear in the array length. Digits which are the same for
+ * every key (for example the high bytes of small ints) are skipped.
+ * </p>
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public final class OrderUtilities
+{
+    /**
+     * below this size an insertion sort is faster than the radix sort
+     */
+    private static final int INSERTION_SORT_THRESHOLD = 64;
+
+    /**
+     * arrays smaller than this are ordered in the calling thread by the
+     * parallel functions
+     */
+    private static final int MIN_PARALLEL_CHUNK_SIZE = 1 << 16;
+
+    private static final int RADIX_BITS = 8;
+
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    private static final int RADIX_MASK = RADIX - 1;
+
+    private static final int DIGIT_COUNT = 64 / RADIX_BITS;
+
+    /**
+     * the key used for NaN values. No other value can map to this key
+     */
+    private static final long NAN_KEY = 0xFFFFFFFFFFFFFFFFL;
+
+    /**
+     * Private constructor to avoid an instance being created
+     */
+    private OrderUtilities()
+    {
+    }
+
+    /**
+     * Calculate the order of the given values
+     * @param values
+     *          the values
+     * @param descending
+     *          true for descending order, false for ascending
+     * @return
+     *          the indices of the values in sorted order
+     */
+    public static int[] order(int[] values, boolean descending)
+    {
+        return orderKeys(toKeys(values, descending));
+    }
+
+    /**
+     * Calculate the order of the given values
+     * @param values
+     *          the values
+     * @param descending
+     *          true for descending order, false for ascending
+     * @return
+     *          the indices of the values in sorted order
+     */
+    public static int[] order(long[] values, boolean descending)
+    {
+        return orderKeys(toKeys(values, descending));
+    }
+
+    /**
+     * Calculate the order of the given values. NaN values come last.
+     * @param values
+     *          the values
+     * @param descending
+     *          true for descending order, false for ascending
+     * @return
+     *          the indices of the values in sorted order
+     */
+    public static int[] order(double[] values, boolean descending)
+    {
+        return orderKeys(toKeys(values, descending));
+    }
+
+    /**
+     * Calculate the order of the given values using several threads
+     * @param values
+     *          the values
+     * @param descending
+     *          true for descending order, false for ascending
+     * @param executor
+     *          the executor to run the work on
+     * @param parallelism
+     *          the number of pieces to divide the work into (typically
+     *          the executor's thread count)
+     * @return
+     *          the indices of the values in sorted order. This is the
+     *          same as {@link #order(int[], boolean)}
+     * @throws InterruptedException
+     *          if we're interrupted while waiting for the executor
+     */
+    public static int[] parallelOrder(
+            int[] values,
+            boolean descending,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException
+    {
+        return parallelOrderKeys(
+                toKeys(values, descending),
+                executor,
+                parallelism);
+    }
+
+    /**
+     * Calculate the order of the given values using several threads
+     * @param values
+     *          the values
+     * @param descending
+     *          true for descending order, false for ascending
+     * @param executor
+     *          the executor to run the work on
+     * @param parallelism
+     *          the number of pieces to divide the work into (typically
+     *          the executor's thread count)
+     * @return
+     *          the indices of the values in sorted order. This is the
+     *          same as {@link #order(long[], boolean)}
+     * @throws InterruptedException
+     *          if we're interrupted while waiting for the executor
+     */
+    public static int[] parallelOrder(
+            long[] values,
+            boolean descending,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException
+    {
+        return parallelOrderKeys(
+                toKeys(values, descending),
+                executor,
+                parallelism);
+    }
+
+    /**
+     * Calculate the order of the given values using several threads. NaN
+     * values come last.
+     * @param values
+     *          the values
+     * @param descending
+     *          true for descending order, false for ascending
+     * @param executor
+     *          the executor to run the work on
+     * @param parallelism
+     *          the number of pieces to divide the work into (typically
+     *          the executor's thread count)
+     * @return
+     *          the indices of the values in sorted order. This is the
+     *          same as {@link #order(double[], boolean)}
+     * @throws InterruptedException
+     *          if we're interrupted while waiting for the executor
+     */
+    public static int[] parallelOrder(
+            double[] values,
+            boolean descending,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException
+    {
+        return parallelOrderKeys(
+                toKeys(values, descending),
+                executor,
+                parallelism);
+    }
+
+    /**
+     * Calculate the first k indices of the order of the given values
+     * without ordering the whole array. For example with descending order
+     * this gives the indices of the k largest values.
+     * @param values
+     *          the values
+     * @param k
+     *          the number of indices wanted. If this is larger than the
+     *          array length then every index is returned
+     * @param descending
+     *          true for descending order, false for ascending
+     * @return
+     *          the 1st k indices of {@link #order(int[], boolean)}
+     */
+    public static int[] partialOrder(int[] values, int k, boolean descending)
+    {
+        return partialOrderKeys(toKeys(values, descending), k);
+    }
+
+    /**
+     * Calculate the first k indices of the order of the given values
+     * without ordering the whole array. For example with descending order
+     * this gives the indices of the k largest values.
+     * @param values
+     *          the values
+     * @param k
+     *          the number of indices wanted. If this is larger than the
+     *          array length then every index is returned
+     * @param descending
+     *          true for descending order, false for ascending
+     * @return
+     *          the 1st k indices of {@link #order(long[], boolean)}
+     */
+    public static int[] partialOrder(long[] values, int k, boolean descending)
+    {
+        return partialOrderKeys(toKeys(values, descending), k);
+    }
+
+    /**
+     * Calculate the first k indices of the order of the given values
+     * without ordering the whole array. For example with descending order
+     * this gives the indices of the k largest values. NaN values come last.
+     * @param values
+     *          the values
+     * @param k
+     *          the number of indices wanted. If this is larger than the
+     *          array length then every index is returned
+     * @param descending
+     *          true for descending order, false for ascending
+     * @return
+     *          the 1st k indices of {@link #order(double[], boolean)}
+     */
+    public static int[] partialOrder(double[] values, int k, boolean descending)
+    {
+        return partialOrderKeys(toKeys(values, descending), k);
+    }
+
+    /**
+     * Convert ints to unsigned keys with the same order
+     * @param values
+     *          the values
+     * @param descending
+     *          if true the key order is reversed
+     * @return
+     *          the keys
+     */
+    private static long[] toKeys(int[] values, boolean descending)
+    {
+        long[] keys = new long[values.length];
+        for(int i = 0; i < values.length; i++)
+        {
+            // flipping the sign bit makes the unsigned order match the
+            // signed order
+            long key = (values[i] ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+            keys[i] = descending ? 0xFFFFFFFFL - key : key;
+        }
+        return keys;
+    }
+
+    /**
+     * Convert longs to unsigned keys with the same order
+     * @param values
+     *          the values
+     * @param descending
+     *          if true the key order is reversed
+     * @return
+     *          the keys
+     */
+    private static long[] toKeys(long[] values, boolean descending)
+    {
+        long[] keys = new long[values.length];
+        for(int i = 0; i < values.length; i++)
+        {
+            long key = values[i] ^ Long.MIN_VALUE;
+            keys[i] = descending ? ~key : key;
+        }
+        return keys;
+    }
+
+    /**
+     * Convert doubles to unsigned keys with the same order. NaN always
+     * maps to the largest key
+     * @param values
+     *          the values
+     * @param descending
+     *          if true the key order is reversed (except for NaN)
+     * @return
+     *          the keys
+     */
+    private static long[] toKeys(double[] values, boolean descending)
+    {
+        long[] keys = new long[values.length];
+        for(int i = 0; i < values.length; i++)
+        {
+            double value = values[i];
+            if(value != value)
+            {
+                keys[i] = NAN_KEY;
+            }
+            else
+            {
+                // negative doubles get all of their bits flipped and
+                // positive doubles get their sign bit flipped. The largest
+                // key that this can give is for +infinity which is below
+                // the NaN key and the smallest is for -infinity whose
+                // complement is also below the NaN key
+                long bits = Double.doubleToLongBits(value);
+                long key = bits ^ ((bits >> 63) | Long.MIN_VALUE);
+                keys[i] = descending ? ~key : key;
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Order the keys
+     * @param keys
+     *          the keys (these get sorted)
+     * @return
+     *          the order
+     */
+    private static int[] orderKeys(long[] keys)
+    {
+        int[] indices = identityIndices(keys.length);
+        sort(keys, indices, new long[keys.length], new int[keys.length], 0, keys.length);
+        return indices;
+    }
+
+    /**
+     * Order the keys in parallel by sorting chunks and then merging them
+     * @param keys
+     *          the keys (these get sorted)
+     * @param executor
+     *          the executor
+     * @param parallelism
+     *          the parallelism
+     * @return
+     *          the order
+     * @throws InterruptedException
+     *          if we're interrupted
+     */
+    private static int[] parallelOrderKeys(
+            final long[] keys,
+            ExecutorService executor,
+            int parallelism)
+    throws InterruptedException
+    {
+        if(parallelism <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "the parallelism must be greater than 0");
+        }
+
+        final int n = keys.length;
+        int chunkCount = Math.min(parallelism, n / MIN_PARALLEL_CHUNK_SIZE);
+        if(chunkCount <= 1)
+        {
+            return orderKeys(keys);
+        }
+
+        final int[] indices = identityIndices(n);
+        final long[] keyBuffer = new long[n];
+        final int[] indexBuffer = new int[n];
+        int[] runStarts = new int[chunkCount + 1];
+        for(int i = 0; i <= chunkCount; i++)
+        {
+            runStarts[i] = (int)((long)n * i / chunkCount);
+        }
+
+        // sort the chunks independently. each uses its own part of the
+        // buffers so they don't interfere
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for(int i = 0; i < chunkCount; i++)
+        {
+            final int fromIndex = runStarts[i];
+            final int toIndex = runStarts[i + 1];
+            tasks.add(new Callable<Object>()
+            {
+                public Object call()
+                {
+                    sort(keys, indices, keyBuffer, indexBuffer, fromIndex, toIndex);
+                    return null;
+                }
+            });
+        }
+        ExecutorUtilities.invokeAll(executor, tasks);
+
+        // merge pairs of adjacent runs until there is one run left,
+        // swapping between the arrays and the buffers each round
+        long[] sourceKeys = keys;
+        int[] sourceIndices = indices;
+        long[] targetKeys = keyBuffer;
+        int[] targetIndices = indexBuffer;
+        while(runStarts.length > 2)
+        {
+            int runCount = runStarts.length - 1;
+            int[] newRunStarts = new int[(runCount + 1) / 2 + 1];
+            tasks.clear();
+            for(int i = 0; i < runCount; i += 2)
+            {
+                final int fromIndex = runStarts[i];
+                final int middleIndex = runStarts[Math.min(i + 1, runCount)];
+                final int toIndex = runStarts[Math.min(i + 2, runCount)];
+                final long[] finalSourceKeys = sourceKeys;
+                final int[] finalSourceIndices = sourceIndices;
+                final long[] finalTargetKeys = targetKeys;
+                final int[] finalTargetIndices = targetIndices;
+                tasks.add(new Callable<Object>()
+                {
+                    public Object call()
+                    {
+                        merge(
+                                finalSourceKeys,
+                                finalSourceIndices,
+                                fromIndex,
+                                middleIndex,
+                                toIndex,
+                                finalTargetKeys,
+                                finalTargetIndices);
+                        return null;
+                    }
+                });
+                newRunStarts[i / 2] = fromIndex;
+            }
+            newRunStarts[newRunStarts.length - 1] = n;
+            ExecutorUtilities.invokeAll(executor, tasks);
+
+            long[] tempKeys = sourceKeys;
+            sourceKeys = targetKeys;
+            targetKeys = tempKeys;
+            int[] tempIndices = sourceIndices;
+            sourceIndices = targetIndices;
+            targetIndices = tempIndices;
+            runStarts = newRunStarts;
+        }
+
+        return sourceIndices;
+    }
+
+    /**
+     * Stable merge of two adjacent sorted runs
+     * @param keys
+     *          the source keys
+     * @param indices
+     *          the source indices
+     * @param fromIndex
+     *          the start of the 1st run
+     * @param middleIndex
+     *          the end of the 1st run and start of the 2nd
+     * @param toIndex
+     *          the end of the 2nd run
+     * @param targetKeys
+     *          where the merged keys are written (to the same positions)
+     * @param targetIndices
+     *          where the merged indices are written (to the same positions)
+     */
+    private static void merge(
+            long[] keys,
+            int[] indices,
+            int fromIndex,
+            int middleIndex,
+            int toIndex,
+            long[] targetKeys,
+            int[] targetIndices)
+    {
+        int left = fromIndex;
+        int right = middleIndex;
+        int target = fromIndex;
+        while(left < middleIndex && right < toIndex)
+        {
+            // taking from the left on ties keeps the merge stable
+            if(keyLess(keys[right], keys[left]))
+            {
+                targetKeys[target] = keys[right];
+                targetIndices[target] = indices[right];
+                right++;
+            }
+            else
+            {
+                targetKeys[target] = keys[left];
+                targetIndices[target] = indices[left];
+                left++;
+            }
+            target++;
+        }
+
+        System.arraycopy(keys, left, targetKeys, target, middleIndex - left);
+        System.arraycopy(indices, left, targetIndices, target, middleIndex - left);
+        target += middleIndex - left;
+        System.arraycopy(keys, right, targetKeys, target, toIndex - right);
+        System.arraycopy(indices, right, targetIndices, target, toIndex - right);
+    }
+
+    /**
+     * Stable sort of a range of keys along with their indices. The result
+     * ends up in the keys and indices arrays
+     * @param keys
+     *          the keys
+     * @param indices
+     *          the indices
+     * @param keyBuffer
+     *          a scratch buffer the same length as the keys
+     * @param indexBuffer
+     *          a scratch buffer the same length as the indices
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     */
+    private static void sort(
+            long[] keys,
+            int[] indices,
+            long[] keyBuffer,
+            int[] indexBuffer,
+            int fromIndex,
+            int toIndex)
+    {
+        if(toIndex - fromIndex < INSERTION_SORT_THRESHOLD)
+        {
+            insertionSort(keys, indices, fromIndex, toIndex);
+            return;
+        }
+
+        // count every digit in a single pass
+        int[][] digitCounts = new int[DIGIT_COUNT][RADIX];
+        for(int i = fromIndex; i < toIndex; i++)
+        {
+            long key = keys[i];
+            for(int digit = 0; digit < DIGIT_COUNT; digit++)
+            {
+                digitCounts[digit][(int)(key >>> (digit * RADIX_BITS)) & RADIX_MASK]++;
+            }
+        }
+
+        long[] sourceKeys = keys;
+        int[] sourceIndices = indices;
+        long[] targetKeys = keyBuffer;
+        int[] targetIndices = indexBuffer;
+        int length = toIndex - fromIndex;
+        for(int digit = 0; digit < DIGIT_COUNT; digit++)
+        {
+            int[] counts = digitCounts[digit];
+            int shift = digit * RADIX_BITS;
+
+            // a pass is pointless if every key has the same digit
+            if(counts[(int)(sourceKeys[fromIndex] >>> shift) & RADIX_MASK] == length)
+            {
+                continue;
+            }
+
+            // turn the counts into starting offsets
+            int offset = fromIndex;
+            for(int bucket = 0; bucket < RADIX; bucket++)
+            {
+                int count = counts[bucket];
+                counts[bucket] = offset;
+                offset += count;
+            }
+
+            for(int i = fromIndex; i < toIndex; i++)
+            {
+                long key = sourceKeys[i];
+                int target = counts[(int)(key >>> shift) & RADIX_MASK]++;
+                targetKeys[target] = key;
+                targetIndices[target] = sourceIndices[i];
+            }
+
+            long[] tempKeys = sourceKeys;
+            sourceKeys = targetKeys;
+            targetKeys = tempKeys;
+            int[] tempIndices = sourceIndices;
+            sourceIndices = targetIndices;
+            targetIndices = tempIndices;
+        }
+
+        if(sourceKeys != keys)
+        {
+            System.arraycopy(sourceKeys, fromIndex, keys, fromIndex, length);
+            System.arraycopy(sourceIndices, fromIndex, indices, fromIndex, length);
+        }
+    }
+
+    /**
+     * Stable insertion sort of a small range of keys and their indices
+     * @param keys
+     *          the keys
+     * @param indices
+     *          the indices
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     */
+    private static void insertionSort(
+            long[] keys,
+            int[] indices,
+            int fromIndex,
+            int toIndex)
+    {
+        for(int i = fromIndex + 1; i < toIndex; i++)
+        {
+            long key = keys[i];
+            int index = indices[i];
+            int j = i - 1;
+            while(j >= fromIndex && keyLess(key, keys[j]))
+            {
+                keys[j + 1] = keys[j];
+                indices[j + 1] = indices[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            indices[j + 1] = index;
+        }
+    }
+
+    /**
+     * Get the 1st k indices of the key order using a bounded heap
+     * @param keys
+     *          the keys
+     * @param k
+     *          the number of indices wanted
+     * @return
+     *          the indices
+     */
+    private static int[] partialOrderKeys(long[] keys, int k)
+    {
+        if(k < 0)
+        {
+            throw new IllegalArgumentException("k can't be negative");
+        }
+
+        int n = keys.length;
+        if(k >= n / 8)
+        {
+            // a full sort is cheaper when we want a big part of the order
+            int[] order = orderKeys(keys);
+            if(k >= n)
+            {
+                return order;
+            }
+            else
+            {
+                int[] partialOrder = new int[k];
+                System.arraycopy(order, 0, partialOrder, 0, k);
+                return partialOrder;
+            }
+        }
+
+        // a max heap of the k smallest (key, index) pairs seen so far. the
+        // index breaks ties, which keeps the result stable
+        long[] heapKeys = new long[k];
+        int[] heapIndices = new int[k];
+        int heapSize = 0;
+        for(int i = 0; i < n; i++)
+        {
+            long key = keys[i];
+            if(heapSize < k)
+            {
+                // sift up
+                int child = heapSize;
+                heapSize++;
+                while(child > 0)
+                {
+                    int parent = (child - 1) >>> 1;
+                    if(pairLess(heapKeys[parent], heapIndices[parent], key, i))
+                    {
+                        heapKeys[child] = heapKeys[parent];
+                        heapIndices[child] = heapIndices[parent];
+                        child = parent;
+                    }
+                    else
+                    {
+                        break;
+                    }
+                }
+                heapKeys[child] = key;
+                heapIndices[child] = i;
+            }
+            else if(k > 0 && keyLess(key, heapKeys[0]))
+            {
+                // a tie with the top doesn't replace it because the top
+                // has the smaller index
+                siftDown(heapKeys, heapIndices, heapSize, key, i);
+            }
+        }
+
+        // pop the heap from the back of the result forward
+        int[] partialOrder = new int[heapSize];
+        for(int i = heapSize - 1; i >= 0; i--)
+        {
+            partialOrder[i] = heapIndices[0];
+            heapSize--;
+            if(heapSize > 0)
+            {
+                siftDown(
+                        heapKeys,
+                        heapIndices,
+                        heapSize,
+                        heapKeys[heapSize],
+                        heapIndices[heapSize]);
+            }
+        }
+
+        return partialOrder;
+    }
+
+    /**
+     * Replace the top of the max heap with the given pair and restore the
+     * heap order
+     * @param heapKeys
+     *          the heap keys
+     * @param heapIndices
+     *          the heap indices
+     * @param heapSize
+     *          the heap size
+     * @param key
+     *          the new key
+     * @param index
+     *          the new index
+     */
+    private static void siftDown(
+            long[] heapKeys,
+            int[] heapIndices,
+            int heapSize,
+            long key,
+            int index)
+    {
+        int parent = 0;
+        while(true)
+        {
+            int child = 2 * parent + 1;
+            if(child >= heapSize)
+            {
+                break;
+            }
+            if(child + 1 < heapSize && pairLess(
+                    heapKeys[child],
+                    heapIndices[child],
+                    heapKeys[child + 1],
+                    heapIndices[child + 1]))
+            {
+                child++;
+            }
+            if(pairLess(key, index, heapKeys[child], heapIndices[child]))
+            {
+                heapKeys[parent] = heapKeys[child];
+                heapIndices[parent] = heapIndices[child];
+                parent = child;
+            }
+            else
+            {
+                break;
+            }
+        }
+        heapKeys[parent] = key;
+        heapIndices[parent] = index;
+    }
+
+    /**
+     * Compare keys as unsigned values
+     * @param key1
+     *          the 1st key
+     * @param key2
+     *          the 2nd key
+     * @return
+     *          true if key1 is less than key2
+     */
+    private static boolean keyLess(long key1, long key2)
+    {
+        return (key1 ^ Long.MIN_VALUE) < (key2 ^ Long.MIN_VALUE);
+    }
+
+    /**
+     * Compare (key, index) pairs
+     * @param key1
+     *          the 1st key
+     * @param index1
+     *          the 1st index
+     * @param key2
+     *          the 2nd key
+     * @param index2
+     *          the 2nd index
+     * @return
+     *          true if the 1st pair is less than the 2nd
+     */
+    private static boolean pairLess(long key1, int index1, long key2, int index2)
+    {
+        return key1 == key2 ? index1 < index2 : keyLess(key1, key2);
+    }
+
+    /**
+     * Create the identity order {0, 1, 2, ...}
+     * @param length
+     *          the length
+     * @return
+     *          the indices
+     */
+    private static int[] identityIndices(int length)
+    {
+        int[] indices = new int[length];
+        for(int i = 0; i < length; i++)
+        {
+            indices[i] = i;
+        }
+        return indices;
+    }
+
+    /**
+     * Main for timing the order functions against {@link java.util.Arrays}
+     * sorting
+     * @param args
+     *          optionally the array length
+     */
+    public static void main(String[] args)
+    {
+        int length = args.length >= 1 ? Integer.parseInt(args[0]) : 1000000;
+        Random random = new Random(1);
+        double[] values = new double[length];
+        for(int i = 0; i < length; i++)
+        {
+            values[i] = random.nextGaussian();
+        }
+
+        for(int iteration = 0; iteration < 3; iteration++)
+        {
+            long startNanos = System.nanoTime();
+            int[] order = OrderUtilities.order(values, false);
+            long orderNanos = System.nanoTime() - startNanos;
+
+            startNanos = System.nanoTime();
+            int[] topOrder = OrderUtilities.partialOrder(values, 100, true);
+            long partialOrderNanos = System.nanoTime() - startNanos;
+
+            startNanos = System.nanoTime();
+            double[] sortedValues = values.clone();
+            java.util.Arrays.sort(sortedValues);
+            long sortNanos = System.nanoTime() - startNanos;
+
+            boolean consistent = topOrder[0] == order[length - 1];
+            for(int i = 0; i < length && consistent; i++)
+            {
+                consistent = values[order[i]] == sortedValues[i];
+            }
+
+            System.out.println("iteration " + iteration + ":");
+            System.out.println("    order:               " + orderNanos / 1000000 + " ms");
+            System.out.println("    top 100:             " + partialOrderNanos / 1000000 + " ms");
+            System.out.println("    Arrays.sort:         " + sortNanos / 1000000 + " ms");
+            System.out.println("    results consistent:  " + consistent);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.math;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * An index over a sorted null hypothesis sample for answering many p-value
+ * queries against the same sample. Tied sample values are collapsed into a
+ * single entry which holds the number of sample values greater than or
+ * equal to it, so a query is a single binary search over the distinct
+ * values with no walking back over ties (unlike
+ * {@link StatisticUtilities#calculatePValueForDataPoint(double, double[])}
+ * which is linear in the number of ties). Ordering is the same as
+ * {@link Arrays#sort(double[])}. Instances are immutable and thread safe.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class PValueIndex
+{
+    private final int sampleCount;
+
+    private final double[] distinctValues;
+
+    /**
+     * greaterThanOrEqualCounts[i] is the number of sample values that are
+     * greater than or equal to distinctValues[i]
+     */
+    private final int[] greaterThanOrEqualCounts;
+
+    /**
+     * Constructor
+     * @param sortedNullHypothesisSample
+     *          a sample from the null hypothesis sorted in ascending order
+     * @throws IllegalArgumentException
+     *          if the sample is empty or isn't sorted
+     */
+    public PValueIndex(double[] sortedNullHypothesisSample)
+    throws IllegalArgumentException
+    {
+        this.sampleCount = sortedNullHypothesisSample.length;
+        if(this.sampleCount == 0)
+        {
+            throw new IllegalArgumentException(
+                    "can't calculate a p-value with zero permutations");
+        }
+
+        int distinctCount = 1;
+        for(int i = 1; i < this.sampleCount; i++)
+        {
+            int comparison = Double.compare(
+                    sortedNullHypothesisSample[i - 1],
+                    sortedNullHypothesisSample[i]);
+            if(comparison > 0)
+            {
+                throw new IllegalArgumentException(
+                        "the null hypothesis sample must be sorted");
+            }
+            else if(comparison < 0)
+            {
+                distinctCount++;
+            }
+        }
+
+        this.distinctValues = new double[distinctCount];
+        this.greaterThanOrEqualCounts = new int[distinctCount];
+        int distinctIndex = -1;
+        for(int i = 0; i < this.sampleCount; i++)
+        {
+            if(i == 0 || Double.compare(
+                    sortedNullHypothesisSample[i - 1],
+                    sortedNullHypothesisSample[i]) != 0)
+            {
+                distinctIndex++;
+                this.distinctValues[distinctIndex] = sortedNullHypothesisSample[i];
+                this.greaterThanOrEqualCounts[distinctIndex] = this.sampleCount - i;
+            }
+        }
+    }
+
+    /**
+     * Getter for the number of values in the sample
+     * @return
+     *          the sample count
+     */
+    public int getSampleCount()
+    {
+        return this.sampleCount;
+    }
+
+    /**
+     * Getter for the number of distinct values in the sample
+     * @return
+     *          the distinct value count
+     */
+    public int getDistinctValueCount()
+    {
+        return this.distinctValues.length;
+    }
+
+    /**
+     * Calculate the p-value for the given data point
+     * @param dataPoint
+     *          the data point
+     * @return
+     *          the p-value
+     */
+    public double calculatePValue(double dataPoint)
+    {
+        int searchResult = Arrays.binarySearch(this.distinctValues, dataPoint);
+        int distinctIndex = searchResult >= 0 ? searchResult : -searchResult - 1;
+        return this.getPValueAt(distinctIndex);
+    }
+
+    /**
+     * Calculate p-values for the given data points with a single merge
+     * pass over the distinct sample values
+     * @param sortedDataPoints
+     *          the data points sorted in ascending order
+     * @return
+     *          the p-values in the same order as the data points
+     * @throws IllegalArgumentException
+     *          if the data points aren't sorted
+     */
+    public double[] calculatePValuesForSortedDataPoints(double[] sortedDataPoints)
+    throws IllegalArgumentException
+    {
+        double[] pValues = new double[sortedDataPoints.length];
+        int distinctIndex = 0;
+        for(int i = 0; i < sortedDataPoints.length; i++)
+        {
+            double dataPoint = sortedDataPoints[i];
+            if(i > 0 && Double.compare(sortedDataPoints[i - 1], dataPoint) > 0)
+            {
+                throw new IllegalArgumentException(
+                        "the data points must be sorted but data point " +
+                        i + " is less than the one before it");
+            }
+
+            while(distinctIndex < this.distinctValues.length &&
+                  Double.compare(this.distinctValues[distinctIndex], dataPoint) < 0)
+            {
+                distinctIndex++;
+            }
+            pValues[i] = this.getPValueAt(distinctIndex);
+        }
+
+        return pValues;
+    }
+
+    /**
+     * Get the p-value for data points that fall just at or below the given
+     * distinct value
+     * @param distinctIndex
+     *          the index of the 1st distinct value >= the data point
+     * @return
+     *          the p-value
+     */
+    private double getPValueAt(int distinctIndex)
+    {
+        if(distinctIndex == this.distinctValues.length)
+        {
+            return 0.0;
+        }
+        else
+        {
+            return this.greaterThanOrEqualCounts[distinctIndex] /
+                   (double)this.sampleCount;
+        }
+    }
+
+    /**
+     * Main for timing the batched p-value calculations against calling
+     * {@link StatisticUtilities#calculatePValueForDataPoint(double, double[])}
+     * for each data point
+     * @param args
+     *          optionally the sample count, data point count and the number
+     *          of distinct sample values (smaller means more ties)
+     */
+    public static void main(String[] args)
+    {
+        int sampleCount = args.length >= 1 ? Integer.parseInt(args[0]) : 1000000;
+        int dataPointCount = args.length >= 2 ? Integer.parseInt(args[1]) : 1000000;
+        int distinctCount = args.length >= 3 ? Integer.parseInt(args[2]) : 1000;
+
+        Random random = new Random(1);
+        double[] sample = new double[sampleCount];
+        for(int i = 0; i < sampleCount; i++)
+        {
+            sample[i] = random.nextInt(distinctCount);
+        }
+        Arrays.sort(sample);
+
+        double[] dataPoints = new double[dataPointCount];
+        for(int i = 0; i < dataPointCount; i++)
+        {
+            dataPoints[i] = random.nextInt(distinctCount + 1) - 0.5 * random.nextInt(2);
+        }
+        double[] sortedDataPoints = dataPoints.clone();
+        Arrays.sort(sortedDataPoints);
+
+        for(int iteration = 0; iteration < 3; iteration++)
+        {
+            long startNanos = System.nanoTime();
+            double[] perPointPValues = new double[dataPointCount];
+            for(int i = 0; i < dataPointCount; i++)
+            {
+                perPointPValues[i] = StatisticUtilities.calculatePValueForDataPoint(
+                        sortedDataPoints[i],
+                        sample);
+            }
+            long perPointNanos = System.nanoTime() - startNanos;
+
+            startNanos = System.nanoTime();
+            double[] batchPValues = StatisticUtilities.calculatePValuesForSortedDataPoints(
+                    sortedDataPoints,
+                    sample);
+            long batchNanos = System.nanoTime() - startNanos;
+
+            startNanos = System.nanoTime();
+            PValueIndex index = new PValueIndex(sample);
+            long indexBuildNanos = System.nanoTime() - startNanos;
+
+            startNanos = System.nanoTime();
+            double[] indexPValues = new double[dataPointCount];
+            for(int i = 0; i < dataPointCount; i++)
+            {
+                indexPValues[i] = index.calculatePValue(dataPoints[i]);
+            }
+            long indexNanos = System.nanoTime() - startNanos;
+
+            boolean consistent = Arrays.equals(perPointPValues, batchPValues);
+            for(int i = 0; i < dataPointCount && consistent; i++)
+            {
+                consistent = indexPValues[i] == StatisticUtilities.calculatePValueForDataPoint(
+                        dataPoints[i],
+                        sample);
+            }
+
+            System.out.println("iteration " + iteration + ":");
+            System.out.println("    per point:           " + perPointNanos / 1000000 + " ms");
+            System.out.println("    batch merge:         " + batchNanos / 1000000 + " ms");
+            System.out.println("    index build:         " + indexBuildNanos / 1000000 + " ms");
+            System.out.println("    index (unsorted):    " + indexNanos / 1000000 + " ms");
+            System.out.println("    results consistent:  " + consistent);
+        }
+    }
+}
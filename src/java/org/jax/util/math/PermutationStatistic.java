@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.math;
+
+/**
+ * A test statistic which is calculated on permuted data. This is what
+ * {@link PermutationTest} evaluates to build up a null distribution.
+ * Implementations are called concurrently from several threads, so they
+ * must be thread safe (which usually just means not modifying any shared
+ * state).
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public interface PermutationStatistic
+{
+    /**
+     * Calculate the test statistic with the samples permuted as given
+     * @param permutation
+     *          the permutation: sample <code>i</code> should be treated as
+     *          if it were sample <code>permutation[i]</code>. This array
+     *          must not be modified or held onto
+     * @return
+     *          the test statistic
+     */
+    public double evaluate(int[] permutation);
+}
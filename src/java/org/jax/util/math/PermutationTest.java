@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.math;
+
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.jax.util.concurrent.ExecutorUtilities;
+
+/**
+ * Generates the null distribution of a {@link PermutationStatistic} by
+ * evaluating it on random permutations of the samples. Permutations are
+ * divided into fixed size chunks and every chunk gets its own
+ * {@link Random} which is seeded from the test seed and the chunk index.
+ * This means that a given seed produces exactly the same statistics no
+ * matter how many threads are used or how the chunks get scheduled.
+ * Statistics are streamed straight into a
+ * {@link NullDistributionAccumulator} per chunk and the chunk accumulators
+ * are merged in chunk order, so the statistics never need to be
+ * held in one big array unless the accumulator does that itself.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class PermutationTest
+{
+    /**
+     * The default number of permutations evaluated by a single task
+     */
+    public static final int DEFAULT_PERMUTATIONS_PER_CHUNK = 256;
+
+    private final int sampleCount;
+
+    private final PermutationStatistic statistic;
+
+    private final int permutationsPerChunk;
+
+    /**
+     * Constructor which uses {@link #DEFAULT_PERMUTATIONS_PER_CHUNK}
+     * @param sampleCount
+     *          the number of samples that get permuted
+     * @param statistic
+     *          the statistic to evaluate for each permutation
+     */
+    public PermutationTest(int sampleCount, PermutationStatistic statistic)
+    {
+        this(sampleCount, statistic, DEFAULT_PERMUTATIONS_PER_CHUNK);
+    }
+
+    /**
+     * Constructor
+     * @param sampleCount
+     *          the number of samples that get permuted
+     * @param statistic
+     *          the statistic to evaluate for each permutation
+     * @param permutationsPerChunk
+     *          the number of permutations in each chunk of work. Note that
+     *          changing this changes the random streams so the statistics
+     *          will differ for a given seed
+     */
+    public PermutationTest(
+            int sampleCount,
+            PermutationStatistic statistic,
+            int permutationsPerChunk)
+    {
+        if(sampleCount < 0)
+        {
+            throw new IllegalArgumentException(
+                    "the sample count can't be negative");
+        }
+        else if(permutationsPerChunk <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "the permutations per chunk must be greater than 0");
+        }
+
+        this.sampleCount = sampleCount;
+        this.statistic = statistic;
+        this.permutationsPerChunk = permutationsPerChunk;
+    }
+
+    /**
+     * Getter for the number of samples that get permuted
+     * @return
+     *          the sample count
+     */
+    public int getSampleCount()
+    {
+        return this.sampleCount;
+    }
+
+    /**
+     * Getter for the statistic
+     * @return
+     *          the statistic
+     */
+    public PermutationStatistic getStatistic()
+    {
+        return this.statistic;
+    }
+
+    /**
+     * Run the permutations in the calling thread
+     * @param <A>
+     *          the accumulator type
+     * @param permutationCount
+     *          the number of permutations
+     * @param seed
+     *          the random seed
+     * @param accumulator
+     *          the accumulator that the statistics are added to
+     * @return
+     *          the accumulator
+     */
+    public <A extends NullDistributionAccumulator<A>> A run(
+            long permutationCount,
+            long seed,
+            A accumulator)
+    {
+        long chunkCount = this.getChunkCount(permutationCount);
+        A prototype = accumulator.createEmpty();
+        for(long chunkIndex = 0; chunkIndex < chunkCount; chunkIndex++)
+        {
+            // merge chunk by chunk like the parallel version does so that
+            // the accumulator ends up in exactly the same state
+            A chunkAccumulator = prototype.createEmpty();
+            this.runChunk(permutationCount, seed, chunkIndex, chunkAccumulator);
+            accumulator.merge(chunkAccumulator);
+        }
+
+        return accumulator;
+    }
+
+    /**
+     * Run the permutations in parallel. This gives the same result as
+     * {@link #run(long, long, NullDistributionAccumulator)} for a given seed.
+     * @param <A>
+     *          the accumulator type
+     * @param permutationCount
+     *          the number of permutations
+     * @param seed
+     *          the random seed
+     * @param accumulator
+     *          the accumulator that the statistics are added to
+     * @param executor
+     *          the executor to run the chunks on
+     * @param maxPendingChunks
+     *          the maximum number of chunks that are submitted but not
+     *          yet merged. This bounds memory use and should be at least
+     *          the number of threads in the executor
+     * @return
+     *          the accumulator
+     * @throws InterruptedException
+     *          if we're interrupted while waiting for a chunk
+     */
+    public <A extends NullDistributionAccumulator<A>> A run(
+            long permutationCount,
+            final long seed,
+            A accumulator,
+            ExecutorService executor,
+            int maxPendingChunks)
+    throws InterruptedException
+    {
+        if(maxPendingChunks <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "the pending chunk count must be greater than 0");
+        }
+
+        final long finalPermutationCount = permutationCount;
+        long chunkCount = this.getChunkCount(permutationCount);
+
+        // chunk accumulators all come from a prototype so that creating
+        // them doesn't interleave with merging (which matters for
+        // randomized accumulators)
+        A prototype = accumulator.createEmpty();
+        Queue<Future<A>> pendingChunks = new LinkedList<Future<A>>();
+        try
+        {
+            long nextChunkIndex = 0L;
+            while(nextChunkIndex < chunkCount || !pendingChunks.isEmpty())
+            {
+                // fill the pipeline up with work
+                while(nextChunkIndex < chunkCount &&
+                      pendingChunks.size() < maxPendingChunks)
+                {
+                    final long chunkIndex = nextChunkIndex;
+                    final A chunkAccumulator = prototype.createEmpty();
+                    pendingChunks.add(executor.submit(new Callable<A>()
+                    {
+                        public A call()
+                        {
+                            PermutationTest.this.runChunk(
+                                    finalPermutationCount,
+                                    seed,
+                                    chunkIndex,
+                                    chunkAccumulator);
+                            return chunkAccumulator;
+                        }
+                    }));
+                    nextChunkIndex++;
+                }
+
+                // merge the oldest chunk so that the merge order is fixed
+                accumulator.merge(pendingChunks.remove().get());
+            }
+        }
+        catch(ExecutionException ex)
+        {
+            throw ExecutorUtilities.rethrowCause(ex);
+        }
+        finally
+        {
+            for(Future<A> pendingChunk: pendingChunks)
+            {
+                pendingChunk.cancel(true);
+            }
+        }
+
+        return accumulator;
+    }
+
+    /**
+     * Get the number of chunks needed for the given permutation count
+     * @param permutationCount
+     *          the permutation count
+     * @return
+     *          the chunk count
+     */
+    private long getChunkCount(long permutationCount)
+    {
+        if(permutationCount < 0L)
+        {
+            throw new IllegalArgumentException(
+                    "the permutation count can't be negative");
+        }
+
+        return (permutationCount + this.permutationsPerChunk - 1) /
+               this.permutationsPerChunk;
+    }
+
+    /**
+     * Evaluate the permutations of a single chunk
+     * @param permutationCount
+     *          the total permutation count
+     * @param seed
+     *          the test seed
+     * @param chunkIndex
+     *          the chunk index
+     * @param accumulator
+     *          the accumulator to add the statistics to
+     */
+    private void runChunk(
+            long permutationCount,
+            long seed,
+            long chunkIndex,
+            NullDistributionAccumulator<?> accumulator)
+    {
+        long chunkStart = chunkIndex * this.permutationsPerChunk;
+        long chunkEnd = Math.min(
+                permutationCount,
+                chunkStart + this.permutationsPerChunk);
+
+        Random random = new Random(chunkSeed(seed, chunkIndex));
+        int[] permutation = new int[this.sampleCount];
+        for(int i = 0; i < permutation.length; i++)
+        {
+            permutation[i] = i;
+        }
+
+        for(long i = chunkStart; i < chunkEnd; i++)
+        {
+            // shuffling an already shuffled array still gives a uniformly
+            // random permutation
+            StatisticUtilities.shuffle(permutation, random);
+            accumulator.add(this.statistic.evaluate(permutation));
+        }
+    }
+
+    /**
+     * Derive a well mixed seed for the given chunk (this is the SplitMix64
+     * finalizer applied to a Weyl sequence)
+     * @param seed
+     *          the test seed
+     * @param chunkIndex
+     *          the chunk index
+     * @return
+     *          the chunk's seed
+     */
+    private static long chunkSeed(long seed, long chunkIndex)
+    {
+        long z = seed + (chunkIndex + 1L) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,768 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.math;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A mergeable quantile sketch for estimating p-values from very large null
+ * hypothesis samples in bounded memory. The bulk of the distribution is
+ * summarized by a KLL sketch (Karnin, Lang and Liberty, "Optimal Quantile
+ * Approximation in Streams") which gives rank estimates with an error of
+ * roughly {@link #getNormalizedRankError()} times the sample count. On top
+ * of that the largest and smallest {@link #getTailCount()} statistics are
+ * kept exactly, so p-values in the tails (which are usually the ones that
+ * matter) are exact (see {@link #isPValueExact(double)}).
+ * <br><br>
+ * Memory use depends on the parameters but not on the sample count. The
+ * sketch is randomized but a seeded {@link Random} is used, so the same
+ * sequence of adds and merges always gives the same result. Ordering
+ * follows {@link Double#compare(double, double)} so NaN statistics are
+ * treated as larger than everything else.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class QuantileSketch implements NullDistributionAccumulator<QuantileSketch>
+{
+    /**
+     * The default accuracy parameter
+     */
+    public static final int DEFAULT_K = 200;
+
+    /**
+     * The default number of statistics kept exactly in each tail
+     */
+    public static final int DEFAULT_TAIL_COUNT = 1000;
+
+    /**
+     * the smallest a compactor is allowed to get
+     */
+    private static final int MIN_LEVEL_CAPACITY = 8;
+
+    /**
+     * capacities shrink by this factor for every level below the top
+     */
+    private static final double LEVEL_CAPACITY_DECAY = 2.0 / 3.0;
+
+    private final int k;
+
+    private final int tailCount;
+
+    private final Random random;
+
+    private long sampleCount = 0L;
+
+    /**
+     * the compactor items. items at level h have a weight of 2^h
+     */
+    private double[][] levels = new double[][] {new double[MIN_LEVEL_CAPACITY]};
+
+    private int[] levelSizes = new int[1];
+
+    private int retainedItemCount = 0;
+
+    private int maxRetainedItemCount;
+
+    /**
+     * a min heap holding the largest statistics
+     */
+    private final DoubleHeap upperTail;
+
+    /**
+     * a max heap holding the smallest statistics
+     */
+    private final DoubleHeap lowerTail;
+
+    /**
+     * the sketch items sorted with their cumulative weights. null if it
+     * needs to be rebuilt
+     */
+    private double[] sortedItems = null;
+
+    private long[] cumulativeWeights = null;
+
+    /**
+     * Constructor which uses {@link #DEFAULT_K} and
+     * {@link #DEFAULT_TAIL_COUNT}
+     */
+    public QuantileSketch()
+    {
+        this(DEFAULT_K, DEFAULT_TAIL_COUNT, 0L);
+    }
+
+    /**
+     * Constructor
+     * @param k
+     *          the accuracy parameter. The rank error is roughly
+     *          inversely proportional to k and memory use is roughly 3k
+     *          doubles
+     * @param tailCount
+     *          the number of statistics kept exactly in each tail. Memory
+     *          use is 2 doubles per tail statistic
+     * @param seed
+     *          the random seed
+     */
+    public QuantileSketch(int k, int tailCount, long seed)
+    {
+        if(k < MIN_LEVEL_CAPACITY)
+        {
+            throw new IllegalArgumentException(
+                    "k must be at least " + MIN_LEVEL_CAPACITY);
+        }
+        else if(tailCount < 0)
+        {
+            throw new IllegalArgumentException(
+                    "the tail count can't be negative");
+        }
+
+        this.k = k;
+        this.tailCount = tailCount;
+        this.random = new Random(seed);
+        this.upperTail = new DoubleHeap(tailCount, false);
+        this.lowerTail = new DoubleHeap(tailCount, true);
+        this.maxRetainedItemCount = this.calculateMaxRetainedItemCount();
+    }
+
+    /**
+     * Getter for the accuracy parameter
+     * @return
+     *          k
+     */
+    public int getK()
+    {
+        return this.k;
+    }
+
+    /**
+     * Getter for the number of statistics kept exactly in each tail
+     * @return
+     *          the tail count
+     */
+    public int getTailCount()
+    {
+        return this.tailCount;
+    }
+
+    /**
+     * Get the approximate rank error of p-value estimates from the body of
+     * the distribution (as a fraction of the sample count). This is the
+     * empirical bound from the KLL paper which holds with high probability.
+     * @return
+     *          the normalized rank error
+     */
+    public double getNormalizedRankError()
+    {
+        return 1.7 / this.k;
+    }
+
+    /**
+     * Get the number of statistics that the KLL part of the sketch is
+     * currently holding
+     * @return
+     *          the item count
+     */
+    public int getRetainedItemCount()
+    {
+        return this.retainedItemCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public QuantileSketch createEmpty()
+    {
+        return new QuantileSketch(this.k, this.tailCount, this.random.nextLong());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void add(double statistic)
+    {
+        this.sampleCount++;
+        this.upperTail.offer(statistic);
+        this.lowerTail.offer(statistic);
+        this.addItem(0, statistic);
+        this.compressWhileOverCapacity();
+        this.sortedItems = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void merge(QuantileSketch other)
+    {
+        if(other.k != this.k || other.tailCount != this.tailCount)
+        {
+            throw new IllegalArgumentException(
+                    "can only merge sketches that have the same parameters");
+        }
+
+        this.sampleCount += other.sampleCount;
+        for(int i = 0; i < other.upperTail.size; i++)
+        {
+            this.upperTail.offer(other.upperTail.values[i]);
+        }
+        for(int i = 0; i < other.lowerTail.size; i++)
+        {
+            this.lowerTail.offer(other.lowerTail.values[i]);
+        }
+
+        for(int level = 0; level < other.levelSizes.length; level++)
+        {
+            for(int i = 0; i < other.levelSizes[level]; i++)
+            {
+                this.addItem(level, other.levels[level][i]);
+            }
+        }
+        this.compressWhileOverCapacity();
+        this.sortedItems = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getSampleCount()
+    {
+        return this.sampleCount;
+    }
+
+    /**
+     * Determine if the p-value for the given data point is exact
+     * @param dataPoint
+     *          the data point
+     * @return
+     *          true if {@link #calculatePValue(double)} is exact for the
+     *          data point
+     */
+    public boolean isPValueExact(double dataPoint)
+    {
+        return this.upperTail.size == this.sampleCount ||
+               (this.upperTail.size > 0 &&
+                Double.compare(dataPoint, this.upperTail.peek()) > 0) ||
+               (this.lowerTail.size > 0 &&
+                Double.compare(dataPoint, this.lowerTail.peek()) <= 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double calculatePValue(double dataPoint) throws IllegalStateException
+    {
+        this.checkNotEmpty();
+        this.sortTails();
+        return this.countGreaterThanOrEqual(dataPoint) / (double)this.sampleCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double[] calculatePValues(double[] dataPoints)
+    throws IllegalStateException
+    {
+        this.checkNotEmpty();
+        this.sortTails();
+
+        // the sorted view makes every query a binary search
+        double[] pValues = new double[dataPoints.length];
+        for(int i = 0; i < dataPoints.length; i++)
+        {
+            pValues[i] =
+                this.countGreaterThanOrEqual(dataPoints[i]) / (double)this.sampleCount;
+        }
+
+        return pValues;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double calculateDataPoint(double pValue)
+    throws IllegalArgumentException, IllegalStateException
+    {
+        this.checkNotEmpty();
+        if(pValue < 0.0 || pValue > 1.0)
+        {
+            throw new IllegalArgumentException(
+                    "p-value should be between 0 and 1, not: " + pValue);
+        }
+        this.sortTails();
+
+        // this is the same index that
+        // StatisticUtilities.calculateDataPointForPValue uses
+        long index = (long)Math.ceil((this.sampleCount - 1) * (1.0 - pValue));
+        index = Math.max(0L, Math.min(this.sampleCount - 1, index));
+
+        long upperTailStart = this.sampleCount - this.upperTail.size;
+        if(index >= upperTailStart)
+        {
+            return this.upperTail.values[(int)(index - upperTailStart)];
+        }
+        else if(index < this.lowerTail.size)
+        {
+            return this.lowerTail.values[(int)index];
+        }
+        else
+        {
+            // find the first item whose cumulative weight passes the index
+            this.buildSortedView();
+            int low = 0;
+            int high = this.sortedItems.length - 1;
+            while(low < high)
+            {
+                int mid = (low + high) >>> 1;
+                if(this.cumulativeWeights[mid] > index)
+                {
+                    high = mid;
+                }
+                else
+                {
+                    low = mid + 1;
+                }
+            }
+
+            return this.sortedItems[low];
+        }
+    }
+
+    /**
+     * Count (or estimate) the number of statistics >= the data point.
+     * The tails must be sorted.
+     * @param dataPoint
+     *          the data point
+     * @return
+     *          the count
+     */
+    private long countGreaterThanOrEqual(double dataPoint)
+    {
+        if(this.upperTail.size == this.sampleCount ||
+           (this.upperTail.size > 0 &&
+            Double.compare(dataPoint, this.upperTail.peek()) > 0))
+        {
+            // every statistic >= the data point is in the upper tail
+            return this.upperTail.size - this.upperTail.lowerBound(dataPoint);
+        }
+        else if(this.lowerTail.size > 0 &&
+                Double.compare(dataPoint, this.lowerTail.peek()) <= 0)
+        {
+            // every statistic < the data point is in the lower tail
+            return this.sampleCount - this.lowerTail.lowerBound(dataPoint);
+        }
+        else
+        {
+            this.buildSortedView();
+            int low = 0;
+            int high = this.sortedItems.length;
+            while(low < high)
+            {
+                int mid = (low + high) >>> 1;
+                if(Double.compare(this.sortedItems[mid], dataPoint) < 0)
+                {
+                    low = mid + 1;
+                }
+                else
+                {
+                    high = mid;
+                }
+            }
+
+            long weightBelow = low == 0 ? 0L : this.cumulativeWeights[low - 1];
+            return this.sampleCount - weightBelow;
+        }
+    }
+
+    /**
+     * sort the tails into ascending order so that they can be binary
+     * searched
+     */
+    private void sortTails()
+    {
+        this.upperTail.sortAscending();
+        this.lowerTail.sortAscending();
+    }
+
+    /**
+     * Build the sorted view of the compactor items if needed
+     */
+    private void buildSortedView()
+    {
+        if(this.sortedItems == null)
+        {
+            // sort by value carrying the weights along by sorting the
+            // levels separately and then merging
+            double[] items = new double[this.retainedItemCount];
+            long[] weights = new long[this.retainedItemCount];
+            int itemCount = 0;
+            for(int level = 0; level < this.levelSizes.length; level++)
+            {
+                int levelSize = this.levelSizes[level];
+                double[] levelItems = this.levels[level];
+                Arrays.sort(levelItems, 0, levelSize);
+
+                // merge this level into what we have so far (from the back)
+                int i = itemCount - 1;
+                int j = levelSize - 1;
+                int dest = itemCount + levelSize - 1;
+                long levelWeight = 1L << level;
+                while(j >= 0)
+                {
+                    if(i >= 0 && Double.compare(items[i], levelItems[j]) > 0)
+                    {
+                        items[dest] = items[i];
+                        weights[dest] = weights[i];
+                        i--;
+                    }
+                    else
+                    {
+                        items[dest] = levelItems[j];
+                        weights[dest] = levelWeight;
+                        j--;
+                    }
+                    dest--;
+                }
+                itemCount += levelSize;
+            }
+
+            long cumulativeWeight = 0L;
+            for(int i = 0; i < itemCount; i++)
+            {
+                cumulativeWeight += weights[i];
+                weights[i] = cumulativeWeight;
+            }
+
+            this.sortedItems = items;
+            this.cumulativeWeights = weights;
+        }
+    }
+
+    /**
+     * Add an item to the given compactor level
+     * @param level
+     *          the level
+     * @param item
+     *          the item
+     */
+    private void addItem(int level, double item)
+    {
+        while(level >= this.levelSizes.length)
+        {
+            this.addLevel();
+        }
+
+        double[] levelItems = this.levels[level];
+        int levelSize = this.levelSizes[level];
+        if(levelSize == levelItems.length)
+        {
+            double[] newLevelItems = new double[levelSize * 2];
+            System.arraycopy(levelItems, 0, newLevelItems, 0, levelSize);
+            levelItems = newLevelItems;
+            this.levels[level] = levelItems;
+        }
+        levelItems[levelSize] = item;
+        this.levelSizes[level] = levelSize + 1;
+        this.retainedItemCount++;
+    }
+
+    /**
+     * Add a new (empty) top level
+     */
+    private void addLevel()
+    {
+        int levelCount = this.levelSizes.length;
+        double[][] newLevels = new double[levelCount + 1][];
+        System.arraycopy(this.levels, 0, newLevels, 0, levelCount);
+        newLevels[levelCount] = new double[MIN_LEVEL_CAPACITY];
+        this.levels = newLevels;
+
+        int[] newLevelSizes = new int[levelCount + 1];
+        System.arraycopy(this.levelSizes, 0, newLevelSizes, 0, levelCount);
+        this.levelSizes = newLevelSizes;
+        this.maxRetainedItemCount = this.calculateMaxRetainedItemCount();
+    }
+
+    /**
+     * Compact levels until we're within our capacity
+     */
+    private void compressWhileOverCapacity()
+    {
+        while(this.retainedItemCount >= this.maxRetainedItemCount)
+        {
+            this.compressOneLevel();
+        }
+    }
+
+    /**
+     * Compact the lowest level that is over its capacity by sorting it and
+     * promoting every other item to the next level (with twice the weight)
+     */
+    private void compressOneLevel()
+    {
+        int levelCount = this.levelSizes.length;
+        for(int level = 0; level < levelCount; level++)
+        {
+            int levelSize = this.levelSizes[level];
+            if(levelSize >= this.getLevelCapacity(level))
+            {
+                if(level + 1 == this.levelSizes.length)
+                {
+                    this.addLevel();
+                }
+
+                double[] levelItems = this.levels[level];
+                Arrays.sort(levelItems, 0, levelSize);
+
+                // if the count is odd the smallest item stays behind
+                int start = levelSize & 1;
+                int offset = this.random.nextBoolean() ? 1 : 0;
+                for(int i = start + offset; i < levelSize; i += 2)
+                {
+                    this.addItem(level + 1, levelItems[i]);
+                }
+                this.levelSizes[level] = start;
+                this.retainedItemCount -= levelSize - start;
+                return;
+            }
+        }
+
+        // no level is over capacity on its own so grow upward
+        this.addLevel();
+    }
+
+    /**
+     * Get the capacity of the given level. The top level has capacity k
+     * and the capacities decay geometrically toward level 0
+     * @param level
+     *          the level
+     * @return
+     *          the capacity
+     */
+    private int getLevelCapacity(int level)
+    {
+        int depth = this.levelSizes.length - 1 - level;
+        return Math.max(
+                MIN_LEVEL_CAPACITY,
+                (int)Math.ceil(this.k * Math.pow(LEVEL_CAPACITY_DECAY, depth)));
+    }
+
+    /**
+     * Calculate the total capacity of all levels
+     * @return
+     *          the total capacity
+     */
+    private int calculateMaxRetainedItemCount()
+    {
+        int total = 0;
+        for(int level = 0; level < this.levelSizes.length; level++)
+        {
+            total += this.getLevelCapacity(level);
+        }
+
+        return total;
+    }
+
+    /**
+     * Make sure that there's something in the sample
+     * @throws IllegalStateException
+     *          if the sample is empty
+     */
+    private void checkNotEmpty() throws IllegalStateException
+    {
+        if(this.sampleCount == 0L)
+        {
+            throw new IllegalStateException(
+                    "can't use an empty null distribution");
+        }
+    }
+
+    /**
+     * A bounded binary heap of doubles which keeps the largest (for a min
+     * heap) or smallest (for a max heap) values offered to it
+     */
+    private static final class DoubleHeap
+    {
+        private final double[] values;
+
+        private int size = 0;
+
+        private final boolean maxHeap;
+
+        /**
+         * true if the values are in ascending order (which for a max heap
+         * means that the heap needs to be rebuilt before offering)
+         */
+        private boolean sortedAscending = true;
+
+        /**
+         * Constructor
+         * @param capacity
+         *          the number of values to keep
+         * @param maxHeap
+         *          true for a max heap (keeps the smallest values)
+         */
+        public DoubleHeap(int capacity, boolean maxHeap)
+        {
+            this.values = new double[capacity];
+            this.maxHeap = maxHeap;
+        }
+
+        /**
+         * Compare in heap order
+         * @param value1
+         *          the 1st value
+         * @param value2
+         *          the 2nd value
+         * @return
+         *          negative if value1 belongs closer to the root
+         */
+        private int compare(double value1, double value2)
+        {
+            int comparison = Double.compare(value1, value2);
+            return this.maxHeap ? -comparison : comparison;
+        }
+
+        /**
+         * Get the root of the heap (the least extreme kept value)
+         * @return
+         *          the root
+         */
+        public double peek()
+        {
+            return this.sortedAscending && this.maxHeap ?
+                    this.values[this.size - 1] : this.values[0];
+        }
+
+        /**
+         * Offer the value to the heap
+         * @param value
+         *          the value
+         */
+        public void offer(double value)
+        {
+            if(this.values.length == 0)
+            {
+                return;
+            }
+
+            if(this.sortedAscending && this.maxHeap)
+            {
+                // a descending array is a valid max heap
+                this.reverse();
+            }
+            this.sortedAscending = false;
+
+            if(this.size < this.values.length)
+            {
+                // sift up
+                int index = this.size;
+                this.size++;
+                while(index > 0)
+                {
+                    int parent = (index - 1) >>> 1;
+                    if(this.compare(value, this.values[parent]) >= 0)
+                    {
+                        break;
+                    }
+                    this.values[index] = this.values[parent];
+                    index = parent;
+                }
+                this.values[index] = value;
+            }
+            else if(this.compare(value, this.values[0]) > 0)
+            {
+                // replace the root and sift down
+                int index = 0;
+                while(true)
+                {
+                    int child = 2 * index + 1;
+                    if(child >= this.size)
+                    {
+                        break;
+                    }
+                    if(child + 1 < this.size &&
+                       this.compare(this.values[child + 1], this.values[child]) < 0)
+                    {
+                        child++;
+                    }
+                    if(this.compare(value, this.values[child]) <= 0)
+                    {
+                        break;
+                    }
+                    this.values[index] = this.values[child];
+                    index = child;
+                }
+                this.values[index] = value;
+            }
+
+            this.sortedAscending = this.size <= 1;
+        }
+
+        /**
+         * Sort the values into ascending order. An ascending array is still
+         * a valid min heap
+         */
+        public void sortAscending()
+        {
+            if(!this.sortedAscending)
+            {
+                Arrays.sort(this.values, 0, this.size);
+                this.sortedAscending = true;
+            }
+        }
+
+        /**
+         * Find the index of the first value >= the given value. Only valid
+         * after {@link #sortAscending()}
+         * @param value
+         *          the value to search for
+         * @return
+         *          the index
+         */
+        public int lowerBound(double value)
+        {
+            int low = 0;
+            int high = this.size;
+            while(low < high)
+            {
+                int mid = (low + high) >>> 1;
+                if(Double.compare(this.values[mid], value) < 0)
+                {
+                    low = mid + 1;
+                }
+                else
+                {
+                    high = mid;
+                }
+            }
+
+            return low;
+        }
+
+        /**
+         * reverse the values
+         */
+        private void reverse()
+        {
+            for(int i = 0, j = this.size - 1; i < j; i++, j--)
+            {
+                double temp = this.values[i];
+                this.values[i] = this.values[j];
+                this.values[j] = temp;
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.math;
+
+/**
+ * Single pass statistics for values that are seen one at a time. The mean
+ * and variance are updated using Welford's algorithm which is stable
+ * without needing a second pass and two instances can be merged (for
+ * example after accumulating in parallel) using the pairwise update of Chan
+ * et al. Use {@link DescriptiveStatistics} instead when all of the values
+ * are in an array. This class is not thread safe.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class RunningStatistics
+{
+    private final NaNPolicy nanPolicy;
+
+    private long count;
+
+    private boolean sawNaN;
+
+    private double mean;
+
+    /**
+     * the sum of squared deviations from the current mean
+     */
+    private double squaredDeviationSum;
+
+    private double min;
+
+    private double max;
+
+    /**
+     * Constructor
+     * @param nanPolicy
+     *          how NaN values are treated
+     */
+    public RunningStatistics(NaNPolicy nanPolicy)
+    {
+        this.nanPolicy = nanPolicy;
+        this.clear();
+    }
+
+    /**
+     * Getter for the NaN policy
+     * @return
+     *          the NaN policy
+     */
+    public NaNPolicy getNaNPolicy()
+    {
+        return this.nanPolicy;
+    }
+
+    /**
+     * Reset to the empty state
+     */
+    public void clear()
+    {
+        this.count = 0L;
+        this.sawNaN = false;
+        this.mean = 0.0;
+        this.squaredDeviationSum = 0.0;
+        this.min = Double.POSITIVE_INFINITY;
+        this.max = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Add a value
+     * @param value
+     *          the value
+     * @throws IllegalArgumentException
+     *          if the value is NaN and the policy is {@link NaNPolicy#ERROR}
+     */
+    public void add(double value) throws IllegalArgumentException
+    {
+        if(value != value)
+        {
+            switch(this.nanPolicy)
+            {
+                case ERROR:
+                    throw new IllegalArgumentException(
+                            "can't add a NaN value");
+
+                case PROPAGATE:
+                    this.sawNaN = true;
+                    break;
+            }
+        }
+        else
+        {
+            this.count++;
+            double deviation = value - this.mean;
+            this.mean += deviation / this.count;
+            this.squaredDeviationSum += deviation * (value - this.mean);
+            if(value < this.min)
+            {
+                this.min = value;
+            }
+            if(value > this.max)
+            {
+                this.max = value;
+            }
+        }
+    }
+
+    /**
+     * Add all of the values in the given slice
+     * @param values
+     *          the values
+     * @param fromIndex
+     *          the start index (inclusive)
+     * @param toIndex
+     *          the end index (exclusive)
+     */
+    public void addAll(double[] values, int fromIndex, int toIndex)
+    {
+        for(int i = fromIndex; i < toIndex; i++)
+        {
+            this.add(values[i]);
+        }
+    }
+
+    /**
+     * Merge the given statistics into these statistics
+     * @param other
+     *          the statistics to merge in (they aren't modified)
+     */
+    public void merge(RunningStatistics other)
+    {
+        this.sawNaN |= other.sawNaN;
+        if(other.count == 0L)
+        {
+            return;
+        }
+        else if(this.count == 0L)
+        {
+            this.count = other.count;
+            this.mean = other.mean;
+            this.squaredDeviationSum = other.squaredDeviationSum;
+            this.min = other.min;
+            this.max = other.max;
+        }
+        else
+        {
+            long newCount = this.count + other.count;
+            double deviation = other.mean - this.mean;
+            this.mean += deviation * other.count / newCount;
+            this.squaredDeviationSum +=
+                other.squaredDeviationSum +
+                deviation * deviation * ((double)this.count * other.count / newCount);
+            this.count = newCount;
+            this.min = Math.min(this.min, other.min);
+            this.max = Math.max(this.max, other.max);
+        }
+    }
+
+    /**
+     * Get the number of values that have been added (not counting skipped
+     * NaN values)
+     * @return
+     *          the count
+     */
+    public long getCount()
+    {
+        return this.count;
+    }
+
+    /**
+     * Get the mean
+     * @return
+     *          the mean or NaN if there are no values
+     */
+    public double getMean()
+    {
+        return this.sawNaN || this.count == 0L ? Double.NaN : this.mean;
+    }
+
+    /**
+     * Get the sum
+     * @return
+     *          the sum
+     */
+    public double getSum()
+    {
+        return this.sawNaN ? Double.NaN : this.mean * this.count;
+    }
+
+    /**
+     * Get the sum of squared deviations from the mean
+     * @return
+     *          the sum of squared deviations
+     */
+    public double getSumOfSquaredDeviations()
+    {
+        return this.sawNaN ? Double.NaN : this.squaredDeviationSum;
+    }
+
+    /**
+     * Get the sample variance (using n - 1 as the denominator)
+     * @return
+     *          the variance or NaN if there are fewer than two values
+     */
+    public double getVariance()
+    {
+        return this.sawNaN || this.count < 2L ?
+               Double.NaN :
+               this.squaredDeviationSum / (this.count - 1L);
+    }
+
+    /**
+     * Get the sample standard deviation
+     * @return
+     *          the standard deviation or NaN if there are fewer than two
+     *          values
+     */
+    public double getStandardDeviation()
+    {
+        return Math.sqrt(this.getVariance());
+    }
+
+    /**
+     * Get the minimum
+     * @return
+     *          the minimum or NaN if there are no values
+     */
+    public double getMin()
+    {
+        return this.sawNaN || this.count == 0L ? Double.NaN : this.min;
+    }
+
+    /**
+     * Get the maximum
+     * @return
+     *          the maximum or NaN if there are no values
+     */
+    public double getMax()
+    {
+        return this.sawNaN || this.count == 0L ? Double.NaN : this.max;
+    }
+}
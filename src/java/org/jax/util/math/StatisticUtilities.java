@@ -57,7 +57,7 @@ public class StatisticUtilities
             int searchResult = Arrays.binarySearch(sortedNullHypothesisSample, dataPoint);
             
             int permutationIndexMarker;
-            if(searchResult < 1)
+            if(searchResult < 0)
             {
                 // the index wasn't found, but we got an insertion point... we just
                 // need to massage it a little to turn it into a permutation
@@ -85,6 +85,62 @@ public class StatisticUtilities
         }
     }
     
+    /**
+     * Calculate p-values for many data points in a single merge pass over
+     * the null distribution sample. This is much faster than calling
+     * {@link #calculatePValueForDataPoint(double, double[])} for every data
+     * point when there are a lot of them. Ordering is the same as
+     * {@link Arrays#sort(double[])}.
+     * @see PValueIndex
+     * @param sortedDataPoints
+     *          the data points that we're calculating p-values for, sorted
+     *          in ascending order
+     * @param sortedNullHypothesisSample
+     *          a sample from the null hypothesis
+     * @return
+     *          the p-values in the same order as the data points
+     * @throws IllegalArgumentException
+     *          if the given sample is empty or the data points aren't
+     *          sorted
+     */
+    public static double[] calculatePValuesForSortedDataPoints(
+            double[] sortedDataPoints,
+            double[] sortedNullHypothesisSample)
+    throws
+            IllegalArgumentException
+    {
+        if(sortedNullHypothesisSample.length == 0)
+        {
+            throw new IllegalArgumentException(
+                    "can't calculate a p-value with zero permutations");
+        }
+
+        final int sampleCount = sortedNullHypothesisSample.length;
+        double[] pValues = new double[sortedDataPoints.length];
+        int sampleIndex = 0;
+        for(int i = 0; i < sortedDataPoints.length; i++)
+        {
+            double dataPoint = sortedDataPoints[i];
+            if(i > 0 && Double.compare(sortedDataPoints[i - 1], dataPoint) > 0)
+            {
+                throw new IllegalArgumentException(
+                        "the data points must be sorted but data point " +
+                        i + " is less than the one before it");
+            }
+
+            // the sample index only ever moves forward which makes this
+            // a linear merge
+            while(sampleIndex < sampleCount &&
+                  Double.compare(sortedNullHypothesisSample[sampleIndex], dataPoint) < 0)
+            {
+                sampleIndex++;
+            }
+            pValues[i] = (sampleCount - sampleIndex) / (double)sampleCount;
+        }
+
+        return pValues;
+    }
+
     /**
      * Determine which data point corresponds to the given p-value 
      * @param pValue
@@ -181,12 +237,11 @@ public class StatisticUtilities
         }
         else
         {
-            double sum = 0.0;
-            for(Number currValue: values)
-            {
-                sum += currValue.doubleValue();
-            }
-            return sum / values.length;
+            return DescriptiveStatistics.mean(
+                    values,
+                    0,
+                    values.length,
+                    NaNPolicy.PROPAGATE);
         }
     }
     
@@ -228,4 +283,25 @@ public class StatisticUtilities
             }
         }
     }
+
+    /**
+     * Shuffle the given array in place using a Fisher-Yates shuffle so that
+     * every permutation is equally likely. This is typically used to
+     * permute the indices of the samples in a permutation test.
+     * @param arrayToShuffle
+     *          the array we're shuffling
+     * @param random
+     *          the random variable to use
+     */
+    public static void shuffle(int[] arrayToShuffle, Random random)
+    {
+        for(int i = arrayToShuffle.length - 1; i > 0; i--)
+        {
+            int randomIndex = random.nextInt(i + 1);
+
+            int temp = arrayToShuffle[i];
+            arrayToShuffle[i] = arrayToShuffle[randomIndex];
+            arrayToShuffle[randomIndex] = temp;
+        }
+    }
 }
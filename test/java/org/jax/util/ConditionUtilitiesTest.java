@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jax.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jax.util.math.ComparisonOperator;
+import org.jax.util.math.FiniteCondition;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link ConditionUtilities}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class ConditionUtilitiesTest
+{
+    private static final double[] VALUES = {
+        Double.NEGATIVE_INFINITY, -3.0, -0.0, 0.0, 1.0, 2.5, 3.0, 7.0,
+        Double.POSITIVE_INFINITY, Double.NaN};
+
+    /**
+     * Test the combinators against the boolean operators for every
+     * combination of a few conditions, including nested combinations that
+     * get flattened
+     */
+    @Test
+    public void combinatorTest()
+    {
+        DoubleCondition positive = ConditionUtilities.compare(
+                ComparisonOperator.GREATER_THAN, 0.0);
+        DoubleCondition small = ConditionUtilities.compare(
+                ComparisonOperator.LESS_THAN_OR_EQUAL, 3.0);
+        DoubleCondition finite = new FiniteCondition();
+
+        DoubleCondition and = ConditionUtilities.andDouble(
+                ConditionUtilities.andDouble(positive, small),
+                finite);
+        DoubleCondition or = ConditionUtilities.orDouble(
+                positive,
+                ConditionUtilities.orDouble(small, ConditionUtilities.notDouble(finite)));
+        DoubleCondition notAnd = ConditionUtilities.notDouble(and);
+        for(double value: VALUES)
+        {
+            boolean isPositive = value > 0.0;
+            boolean isSmall = value <= 3.0;
+            boolean isFinite = !Double.isNaN(value) && !Double.isInfinite(value);
+            Assert.assertEquals(isPositive && isSmall && isFinite, and.test(value));
+            Assert.assertEquals(isPositive || isSmall || !isFinite, or.test(value));
+            Assert.assertEquals(!(isPositive && isSmall && isFinite), notAnd.test(value));
+        }
+        Assert.assertSame(and, ConditionUtilities.notDouble(notAnd));
+
+        IntCondition even = new IntCondition()
+        {
+            public boolean test(int input)
+            {
+                return input % 2 == 0;
+            }
+        };
+        IntCondition big = new IntCondition()
+        {
+            public boolean test(int input)
+            {
+                return input > 10;
+            }
+        };
+        IntCondition intAnd = ConditionUtilities.andInt(even, ConditionUtilities.notInt(big));
+        IntCondition intOr = ConditionUtilities.orInt(even, big);
+        for(int i = -20; i < 20; i++)
+        {
+            Assert.assertEquals(i % 2 == 0 && i <= 10, intAnd.test(i));
+            Assert.assertEquals(i % 2 == 0 || i > 10, intOr.test(i));
+        }
+        Assert.assertSame(even, ConditionUtilities.notInt(ConditionUtilities.notInt(even)));
+
+        Condition<Number> objectAnd = ConditionUtilities.and(
+                ConditionUtilities.toCondition(positive),
+                ConditionUtilities.not(ConditionUtilities.toCondition(small)));
+        for(double value: VALUES)
+        {
+            Assert.assertEquals(value > 0.0 && !(value <= 3.0), objectAnd.test(value));
+        }
+    }
+
+    /**
+     * Test that the combinations stop testing as soon as the result is
+     * known and test their parts in order
+     */
+    @Test
+    public void shortCircuitTest()
+    {
+        List<String> calls = new ArrayList<String>();
+        Condition<Object> yes = new RecordingCondition("yes", true, calls);
+        Condition<Object> no = new RecordingCondition("no", false, calls);
+        Condition<Object> maybe = new RecordingCondition("maybe", true, calls);
+
+        Condition<Object> and = ConditionUtilities.and(
+                ConditionUtilities.and(yes, no),
+                maybe);
+        Assert.assertFalse(and.test(null));
+        Assert.assertEquals("[yes, no]", calls.toString());
+
+        calls.clear();
+        Condition<Object> or = ConditionUtilities.or(
+                no,
+                ConditionUtilities.or(yes, maybe));
+        Assert.assertTrue(or.test(null));
+        Assert.assertEquals("[no, yes]", calls.toString());
+    }
+
+    /**
+     * Test that compare matches the java operators for every operator,
+     * including the NaN cases
+     */
+    @Test
+    public void compareTest()
+    {
+        for(ComparisonOperator operator: ComparisonOperator.values())
+        {
+            DoubleCondition condition = ConditionUtilities.compare(operator, 3.0);
+            for(double value: VALUES)
+            {
+                boolean expected;
+                switch(operator)
+                {
+                    case GREATER_THAN: expected = value > 3.0; break;
+                    case GREATER_THAN_OR_EQUAL: expected = value >= 3.0; break;
+                    case EQUAL: expected = value == 3.0; break;
+                    case NOT_EQUAL: expected = value != 3.0; break;
+                    case LESS_THAN: expected = value < 3.0; break;
+                    default: expected = value <= 3.0; break;
+                }
+                Assert.assertEquals(expected, condition.test(value));
+            }
+        }
+    }
+
+    /**
+     * A condition that records its name every time it's tested
+     */
+    private static class RecordingCondition implements Condition<Object>
+    {
+        private final String name;
+
+        private final boolean result;
+
+        private final List<String> calls;
+
+        public RecordingCondition(String name, boolean result, List<String> calls)
+        {
+            this.name = name;
+            this.result = result;
+            this.calls = calls;
+        }
+
+        public boolean test(Object input)
+        {
+            this.calls.add(this.name);
+            return this.result;
+        }
+    }
+}
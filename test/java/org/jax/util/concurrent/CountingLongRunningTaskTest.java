@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jax.util.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link CountingLongRunningTask}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class CountingLongRunningTaskTest
+{
+    /**
+     * Test that work units counted from several threads add up and that
+     * the many updates are coalesced into a few events, the last of which
+     * sees the task complete
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void concurrentCountingTest() throws Exception
+    {
+        final int threadCount = 8;
+        final int unitsPerThread = 50000;
+        final CountingLongRunningTask task = new CountingLongRunningTask(
+                "counting", threadCount * unitsPerThread);
+        task.setMinimumEventInterval(20L, TimeUnit.MILLISECONDS);
+        EventRecorder recorder = new EventRecorder(task);
+        task.addChangeListener(recorder);
+
+        Thread[] threads = new Thread[threadCount];
+        for(int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for(int j = 0; j < unitsPerThread; j++)
+                    {
+                        task.workUnitCompleted();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for(Thread thread: threads)
+        {
+            thread.join();
+        }
+
+        Assert.assertEquals(threadCount * unitsPerThread, task.getWorkUnitsCompleted());
+        Assert.assertTrue(task.isComplete());
+
+        // the last coalesced event has to report the full count
+        long deadline = System.currentTimeMillis() + 5000L;
+        while(recorder.lastWorkUnitsCompleted.get() != task.getTotalWorkUnits() &&
+              System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10L);
+        }
+        Assert.assertEquals(task.getTotalWorkUnits(), recorder.lastWorkUnitsCompleted.get());
+        Assert.assertTrue(recorder.eventCount.get() >= 1);
+        Assert.assertTrue(recorder.eventCount.get() < 1000);
+    }
+
+    /**
+     * Test that {@link CountingLongRunningTask#allWorkUnitsCompleted()}
+     * completes the task right away, only fires once and isn't undone by
+     * work units counted afterwards
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void allWorkUnitsCompletedTest() throws Exception
+    {
+        CountingLongRunningTask task = new CountingLongRunningTask("all", 100);
+        EventRecorder recorder = new EventRecorder(task);
+        task.addChangeListener(recorder);
+        Assert.assertFalse(task.isComplete());
+
+        task.allWorkUnitsCompleted();
+        Assert.assertEquals(1, recorder.eventCount.get());
+        Assert.assertEquals(100, recorder.lastWorkUnitsCompleted.get());
+        Assert.assertTrue(task.isComplete());
+
+        task.allWorkUnitsCompleted();
+        Assert.assertEquals(1, recorder.eventCount.get());
+
+        task.workUnitsCompleted(30);
+        Assert.assertEquals(100, task.getWorkUnitsCompleted());
+        Assert.assertTrue(task.isComplete());
+    }
+
+    /**
+     * Records the events that a task fires
+     */
+    private static class EventRecorder implements ChangeListener
+    {
+        private final LongRunningTask task;
+
+        private final AtomicInteger eventCount = new AtomicInteger(0);
+
+        private final AtomicInteger lastWorkUnitsCompleted = new AtomicInteger(-1);
+
+        public EventRecorder(LongRunningTask task)
+        {
+            this.task = task;
+        }
+
+        public void stateChanged(ChangeEvent e)
+        {
+            this.eventCount.incrementAndGet();
+            this.lastWorkUnitsCompleted.set(this.task.getWorkUnitsCompleted());
+        }
+    }
+}
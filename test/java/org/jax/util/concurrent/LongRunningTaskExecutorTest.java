@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jax.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link LongRunningTaskExecutor}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class LongRunningTaskExecutorTest
+{
+    /**
+     * Test that queued work units run highest priority first
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void priorityOrderTest() throws Exception
+    {
+        LongRunningTaskExecutor executor = new LongRunningTaskExecutor(1);
+        try
+        {
+            CountDownLatch releaseLatch = new CountDownLatch(1);
+            List<String> runOrder = Collections.synchronizedList(new ArrayList<String>());
+            SettableFuture<Void> blockerFuture = executor.submit(
+                    new BlockingTask(releaseLatch), 100, 1);
+            SettableFuture<Void> lowFuture = executor.submit(
+                    new RecordingTask("low", 3, runOrder), -1, 1);
+            SettableFuture<Void> normalFuture = executor.submit(
+                    new RecordingTask("normal", 3, runOrder));
+            SettableFuture<Void> highFuture = executor.submit(
+                    new RecordingTask("high", 3, runOrder), 5, 1);
+            releaseLatch.countDown();
+
+            blockerFuture.get(10L, TimeUnit.SECONDS);
+            lowFuture.get(10L, TimeUnit.SECONDS);
+            normalFuture.get(10L, TimeUnit.SECONDS);
+            highFuture.get(10L, TimeUnit.SECONDS);
+
+            List<String> expectedOrder = new ArrayList<String>();
+            for(String name: new String[] {"high", "normal", "low"})
+            {
+                for(int i = 0; i < 3; i++)
+                {
+                    expectedOrder.add(name + i);
+                }
+            }
+            Assert.assertEquals(expectedOrder, runOrder);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test that tasks with the same priority take turns
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void samePriorityTurnsTest() throws Exception
+    {
+        LongRunningTaskExecutor executor = new LongRunningTaskExecutor(1);
+        try
+        {
+            CountDownLatch releaseLatch = new CountDownLatch(1);
+            List<String> runOrder = Collections.synchronizedList(new ArrayList<String>());
+            executor.submit(new BlockingTask(releaseLatch), 100, 1);
+            SettableFuture<Void> futureA = executor.submit(new RecordingTask("a", 3, runOrder));
+            SettableFuture<Void> futureB = executor.submit(new RecordingTask("b", 3, runOrder));
+            releaseLatch.countDown();
+
+            futureA.get(10L, TimeUnit.SECONDS);
+            futureB.get(10L, TimeUnit.SECONDS);
+            Assert.assertEquals(6, runOrder.size());
+            for(int i = 0; i < 3; i++)
+            {
+                Assert.assertEquals("a" + i, runOrder.get(2 * i));
+                Assert.assertEquals("b" + i, runOrder.get(2 * i + 1));
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test that a task spread over several threads runs every work unit
+     * once and that a failing work unit fails the task
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void completionAndFailureTest() throws Exception
+    {
+        LongRunningTaskExecutor executor = new LongRunningTaskExecutor(4);
+        try
+        {
+            List<String> runOrder = Collections.synchronizedList(new ArrayList<String>());
+            RecordingTask task = new RecordingTask("unit", 1000, runOrder);
+            executor.submit(task).get(10L, TimeUnit.SECONDS);
+            Assert.assertTrue(task.isComplete());
+            Assert.assertEquals(1000, task.getWorkUnitsCompleted());
+            Assert.assertEquals(1000, runOrder.size());
+            Assert.assertEquals(1000, new HashSet<String>(runOrder).size());
+
+            final IllegalStateException failure = new IllegalStateException("failed");
+            ParallelLongRunningTask failingTask = new ParallelLongRunningTask("failing", 100)
+            {
+                @Override
+                protected void runWorkUnit(int workUnitIndex)
+                {
+                    if(workUnitIndex == 10)
+                    {
+                        throw failure;
+                    }
+                }
+            };
+            try
+            {
+                executor.submit(failingTask).get(10L, TimeUnit.SECONDS);
+                Assert.fail("the work unit's exception should fail the task");
+            }
+            catch(ExecutionException ex)
+            {
+                Assert.assertSame(failure, ex.getCause());
+            }
+            Assert.assertTrue(failingTask.isComplete());
+        }
+        finally
+        {
+            executor.shutdown();
+            Assert.assertTrue(executor.awaitTermination(10L, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * A task with one work unit that waits for a latch
+     */
+    private static class BlockingTask extends ParallelLongRunningTask
+    {
+        private final CountDownLatch releaseLatch;
+
+        public BlockingTask(CountDownLatch releaseLatch)
+        {
+            super("blocking", 1);
+            this.releaseLatch = releaseLatch;
+        }
+
+        @Override
+        protected void runWorkUnit(int workUnitIndex) throws Exception
+        {
+            this.releaseLatch.await();
+        }
+    }
+
+    /**
+     * A task that records the work units it runs
+     */
+    private static class RecordingTask extends ParallelLongRunningTask
+    {
+        private final List<String> runOrder;
+
+        public RecordingTask(String taskName, int totalWorkUnits, List<String> runOrder)
+        {
+            super(taskName, totalWorkUnits);
+            this.runOrder = runOrder;
+        }
+
+        @Override
+        protected void runWorkUnit(int workUnitIndex)
+        {
+            this.runOrder.add(this.getTaskName() + workUnitIndex);
+        }
+    }
+}
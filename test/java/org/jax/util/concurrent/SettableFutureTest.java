@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.jax.util.math.Function;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link SettableFuture}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class SettableFutureTest
+{
+    /**
+     * Test that a value set in one thread is seen by a thread blocked in
+     * {@link SettableFuture#get()}
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void setAndGetTest() throws Exception
+    {
+        final SettableFuture<String> future = new SettableFuture<String>();
+        Assert.assertFalse(future.isDone());
+
+        Thread setter = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep(50L);
+                    future.set("done");
+                }
+                catch(InterruptedException ex)
+                {
+                    throw new RuntimeException(ex);
+                }
+            }
+        };
+        setter.start();
+
+        Assert.assertEquals("done", future.get());
+        Assert.assertEquals("done", future.get(1L, TimeUnit.SECONDS));
+        Assert.assertTrue(future.isDone());
+        Assert.assertFalse(future.isCancelled());
+        Assert.assertFalse(future.trySet("again"));
+        setter.join();
+
+        try
+        {
+            future.set("again");
+            Assert.fail("setting twice should fail");
+        }
+        catch(IllegalStateException ex)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Test that a timed get gives up, and that lots of timed out waiters
+     * don't stop the future from completing normally
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void timeoutTest() throws Exception
+    {
+        SettableFuture<Integer> future = new SettableFuture<Integer>();
+        for(int i = 0; i < 100; i++)
+        {
+            try
+            {
+                future.get(1L, TimeUnit.MILLISECONDS);
+                Assert.fail("the get should have timed out");
+            }
+            catch(TimeoutException ex)
+            {
+                // expected
+            }
+        }
+
+        Assert.assertFalse(future.isDone());
+        future.set(7);
+        Assert.assertEquals(Integer.valueOf(7), future.get(1L, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Test that cancelling wins over a later set and that waiting threads
+     * see the cancellation
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void cancelTest() throws Exception
+    {
+        SettableFuture<String> future = new SettableFuture<String>();
+        Assert.assertTrue(future.cancel(false));
+        Assert.assertFalse(future.cancel(true));
+        Assert.assertTrue(future.isCancelled());
+        Assert.assertTrue(future.isDone());
+
+        // setting a cancelled future is silently ignored
+        future.set("too late");
+        Assert.assertFalse(future.trySet("too late"));
+
+        try
+        {
+            future.get();
+            Assert.fail("get should throw for a cancelled future");
+        }
+        catch(CancellationException ex)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Test that an exception reaches {@link SettableFuture#get()} as the
+     * cause of an {@link ExecutionException}
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void setExceptionTest() throws Exception
+    {
+        SettableFuture<String> future = new SettableFuture<String>();
+        IllegalArgumentException failure = new IllegalArgumentException("bad");
+        Assert.assertTrue(future.setException(failure));
+        Assert.assertFalse(future.setException(new RuntimeException()));
+        Assert.assertFalse(future.trySet("value"));
+        Assert.assertTrue(future.isDone());
+        Assert.assertFalse(future.isCancelled());
+
+        try
+        {
+            future.get(1L, TimeUnit.SECONDS);
+            Assert.fail("get should throw for a failed future");
+        }
+        catch(ExecutionException ex)
+        {
+            Assert.assertSame(failure, ex.getCause());
+        }
+    }
+
+    /**
+     * Test that listeners run in the order they're added and that
+     * listeners added after completion run right away
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void listenerOrderTest() throws Exception
+    {
+        SettableFuture<String> future = new SettableFuture<String>();
+        final List<Integer> order = new ArrayList<Integer>();
+        for(int i = 0; i < 5; i++)
+        {
+            final int listenerIndex = i;
+            future.addListener(new Runnable()
+            {
+                public void run()
+                {
+                    order.add(listenerIndex);
+                }
+            }, null);
+        }
+        Assert.assertTrue(order.isEmpty());
+
+        future.set("done");
+        Assert.assertEquals(5, order.size());
+        for(int i = 0; i < 5; i++)
+        {
+            Assert.assertEquals(Integer.valueOf(i), order.get(i));
+        }
+
+        future.addListener(new Runnable()
+        {
+            public void run()
+            {
+                order.add(5);
+            }
+        }, null);
+        Assert.assertEquals(6, order.size());
+        Assert.assertEquals(Integer.valueOf(5), order.get(5));
+    }
+
+    /**
+     * Test that values, exceptions and cancellation all propagate through
+     * {@link SettableFuture#transform(Function, java.util.concurrent.Executor)}
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void transformTest() throws Exception
+    {
+        Function<String, Integer> length = new Function<String, Integer>()
+        {
+            public Integer evaluate(String input)
+            {
+                if(input == null)
+                {
+                    throw new NullPointerException("no input");
+                }
+                return input.length();
+            }
+        };
+
+        // values
+        SettableFuture<String> future = new SettableFuture<String>();
+        SettableFuture<Integer> transformed = future.transform(length, null);
+        Assert.assertFalse(transformed.isDone());
+        future.set("four");
+        Assert.assertEquals(Integer.valueOf(4), transformed.get(1L, TimeUnit.SECONDS));
+
+        // the function throwing
+        future = new SettableFuture<String>();
+        transformed = future.transform(length, null);
+        future.set(null);
+        try
+        {
+            transformed.get(1L, TimeUnit.SECONDS);
+            Assert.fail("the function's exception should propagate");
+        }
+        catch(ExecutionException ex)
+        {
+            Assert.assertTrue(ex.getCause() instanceof NullPointerException);
+        }
+
+        // the source failing
+        future = new SettableFuture<String>();
+        transformed = future.transform(length, null);
+        IllegalStateException failure = new IllegalStateException("failed");
+        future.setException(failure);
+        try
+        {
+            transformed.get(1L, TimeUnit.SECONDS);
+            Assert.fail("the source's exception should propagate");
+        }
+        catch(ExecutionException ex)
+        {
+            Assert.assertSame(failure, ex.getCause());
+        }
+
+        // the source being cancelled
+        future = new SettableFuture<String>();
+        transformed = future.transform(length, null);
+        future.cancel(false);
+        Assert.assertTrue(transformed.isCancelled());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jax.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link StripedCounter}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class StripedCounterTest
+{
+    /**
+     * Test that adds from many threads give the same total as an
+     * {@link AtomicLong}
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void concurrentAddTest() throws Exception
+    {
+        final StripedCounter counter = new StripedCounter(4);
+        final AtomicLong expected = new AtomicLong(0L);
+        Thread[] threads = new Thread[8];
+        for(int i = 0; i < threads.length; i++)
+        {
+            final long delta = i + 1;
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for(int j = 0; j < 100000; j++)
+                    {
+                        counter.add(delta);
+                        expected.addAndGet(delta);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for(Thread thread: threads)
+        {
+            thread.join();
+        }
+
+        Assert.assertEquals(expected.get(), counter.sum());
+    }
+
+    /**
+     * Test single threaded adds, negative adds and resetting
+     */
+    @Test
+    public void addAndResetTest()
+    {
+        StripedCounter counter = new StripedCounter();
+        Assert.assertEquals(0L, counter.sum());
+        counter.increment();
+        counter.add(10L);
+        counter.add(-3L);
+        Assert.assertEquals(8L, counter.sum());
+        Assert.assertEquals("8", counter.toString());
+
+        counter.reset();
+        Assert.assertEquals(0L, counter.sum());
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jax.util.datastructure;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link CompressedBitSet}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class CompressedBitSetTest
+{
+    /**
+     * the container keys that the random sets use. They're kept small so
+     * that the matching {@link BitSet}s don't get huge
+     */
+    private static final int[] KEYS = {0, 1, 2, 7, 40};
+
+    /**
+     * Test the queries and set operations against {@link BitSet}
+     */
+    @Test
+    public void matchesBitSetTest()
+    {
+        Random random = new Random(1);
+        for(int trial = 0; trial < 40; trial++)
+        {
+            BitSet bits1 = createRandomBits(random);
+            BitSet bits2 = trial % 4 == 0 ? mutate(bits1, random) : createRandomBits(random);
+            CompressedBitSet set1 = CompressedBitSet.fromBitSet(bits1);
+            CompressedBitSet set2 = CompressedBitSet.fromBitSet(bits2);
+
+            Assert.assertEquals(bits1, set1.toBitSet());
+            Assert.assertEquals(bits1.cardinality(), set1.cardinality());
+            Assert.assertEquals(bits1.length(), set1.length());
+            Assert.assertEquals(bits1.isEmpty(), set1.isEmpty());
+            Assert.assertArrayEquals(SetUtilities.getSetBitIndices(bits1), set1.toArray());
+            for(int i = 0; i < 50; i++)
+            {
+                int index = randomIndex(random);
+                Assert.assertEquals(bits1.get(index), set1.get(index));
+                Assert.assertEquals(bits1.nextSetBit(index), set1.nextSetBit(index));
+            }
+
+            BitSet expected = (BitSet)bits1.clone();
+            expected.and(bits2);
+            CompressedBitSet actual = new CompressedBitSet(set1);
+            actual.and(set2);
+            Assert.assertEquals(expected, actual.toBitSet());
+            Assert.assertEquals(expected.cardinality(), set1.andCardinality(set2));
+            Assert.assertEquals(bits1.intersects(bits2), set1.intersects(set2));
+
+            expected = (BitSet)bits1.clone();
+            expected.or(bits2);
+            actual = new CompressedBitSet(set1);
+            actual.or(set2);
+            Assert.assertEquals(expected, actual.toBitSet());
+            Assert.assertTrue(set1.isSubsetOf(actual));
+            Assert.assertTrue(set2.isSubsetOf(actual));
+
+            expected = (BitSet)bits1.clone();
+            expected.andNot(bits2);
+            actual = new CompressedBitSet(set1);
+            actual.andNot(set2);
+            Assert.assertEquals(expected, actual.toBitSet());
+            Assert.assertEquals(expected.isEmpty(), set1.isSubsetOf(set2));
+
+            Assert.assertEquals(
+                    Integer.signum(SetUtilities.BIT_SET_COMPARATOR.compare(bits1, bits2)),
+                    Integer.signum(set1.compareBinaryValue(set2)));
+            Assert.assertEquals(
+                    Integer.signum(SetUtilities.BIT_SET_COMPARATOR.compare(bits2, bits1)),
+                    Integer.signum(set2.compareBinaryValue(set1)));
+            Assert.assertEquals(0, set1.compareBinaryValue(new CompressedBitSet(set1)));
+            Assert.assertEquals(bits1.equals(bits2), set1.equals(set2));
+        }
+
+        // compare a bitmap container with array containers that share its
+        // highest bits
+        BitSet denseBits = new BitSet();
+        denseBits.set(0, 5000);
+        BitSet[] sparseBits = new BitSet[3];
+        for(int i = 0; i < sparseBits.length; i++)
+        {
+            sparseBits[i] = new BitSet();
+            sparseBits[i].set(4998, 5000);
+        }
+        sparseBits[0].set(10);
+        sparseBits[1].set(5000 - 4096, 5000);
+        sparseBits[2].set(6000);
+        CompressedBitSet denseSet = CompressedBitSet.fromBitSet(denseBits);
+        for(BitSet bits: sparseBits)
+        {
+            CompressedBitSet sparseSet = CompressedBitSet.fromBitSet(bits);
+            Assert.assertEquals(
+                    Integer.signum(SetUtilities.BIT_SET_COMPARATOR.compare(denseBits, bits)),
+                    Integer.signum(denseSet.compareBinaryValue(sparseSet)));
+            Assert.assertEquals(
+                    Integer.signum(SetUtilities.BIT_SET_COMPARATOR.compare(bits, denseBits)),
+                    Integer.signum(sparseSet.compareBinaryValue(denseSet)));
+        }
+    }
+
+    /**
+     * Test setting and clearing single bits, including moving containers
+     * back and forth between the array and bitmap forms
+     */
+    @Test
+    public void setAndClearTest()
+    {
+        Random random = new Random(2);
+        BitSet expected = new BitSet();
+        CompressedBitSet set = new CompressedBitSet();
+        for(int i = 0; i < 30000; i++)
+        {
+            // mostly in one container so that it grows past the array limit
+            int index = i % 3 == 0 ? randomIndex(random) : 65536 + random.nextInt(12000);
+            boolean wasSet = expected.get(index);
+            if(random.nextInt(4) == 0)
+            {
+                expected.clear(index);
+                Assert.assertEquals(wasSet, set.clear(index));
+            }
+            else
+            {
+                expected.set(index);
+                Assert.assertEquals(!wasSet, set.set(index));
+            }
+        }
+        Assert.assertEquals(expected, set.toBitSet());
+        Assert.assertEquals(set, CompressedBitSet.fromIndices(set.toArray()));
+        Assert.assertEquals(
+                CompressedBitSet.fromIndices(set.toArray()).hashCode(),
+                set.hashCode());
+
+        set.clear();
+        Assert.assertTrue(set.isEmpty());
+        Assert.assertEquals(-1, set.nextSetBit(0));
+
+        try
+        {
+            set.set(-1);
+            Assert.fail("negative indices should be rejected");
+        }
+        catch(IndexOutOfBoundsException ex)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Test that writing and reading gives back an equal set
+     * @throws IOException
+     *          if we get an exception
+     */
+    @Test
+    public void serializationTest() throws IOException
+    {
+        Random random = new Random(3);
+        for(int trial = 0; trial < 10; trial++)
+        {
+            CompressedBitSet set = CompressedBitSet.fromBitSet(createRandomBits(random));
+            CompressedBitSet readSet = CompressedBitSet.readFrom(
+                    new DataInputStream(new ByteArrayInputStream(toBytes(set))));
+            Assert.assertEquals(set, readSet);
+            Assert.assertEquals(set.toBitSet(), readSet.toBitSet());
+        }
+    }
+
+    /**
+     * Test that malformed input is rejected with an {@link IOException}
+     * @throws IOException
+     *          if we get an exception
+     */
+    @Test
+    public void corruptInputTest() throws IOException
+    {
+        // a key past 0x7FFF
+        assertCorrupt(arrayContainers(new int[] {0x8000}, new int[][] {{1}}));
+
+        // repeated and out of order keys
+        assertCorrupt(arrayContainers(new int[] {3, 3}, new int[][] {{1}, {2}}));
+        assertCorrupt(arrayContainers(new int[] {4, 3}, new int[][] {{1}, {2}}));
+
+        // repeated and out of order values
+        assertCorrupt(arrayContainers(new int[] {3}, new int[][] {{1, 1}}));
+        assertCorrupt(arrayContainers(new int[] {3}, new int[][] {{2, 1}}));
+
+        // a bitmap whose bit count doesn't match its cardinality
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(1);
+        out.writeChar(0);
+        out.writeInt(5000);
+        for(int i = 0; i < 1024; i++)
+        {
+            out.writeLong(i < 64 ? -1L : 0L);
+        }
+        out.flush();
+        assertCorrupt(bytes.toByteArray());
+
+        // a bad container count and a zero cardinality
+        bytes = new ByteArrayOutputStream();
+        out = new DataOutputStream(bytes);
+        out.writeInt(-1);
+        out.flush();
+        assertCorrupt(bytes.toByteArray());
+        assertCorrupt(arrayContainers(new int[] {3}, new int[][] {{}}));
+
+        // the well formed version reads fine
+        CompressedBitSet set = CompressedBitSet.readFrom(new DataInputStream(
+                new ByteArrayInputStream(arrayContainers(
+                        new int[] {3, 0x7FFF},
+                        new int[][] {{1, 2}, {0xFFFF}}))));
+        Assert.assertArrayEquals(
+                new int[] {(3 << 16) | 1, (3 << 16) | 2, Integer.MAX_VALUE},
+                set.toArray());
+    }
+
+    private static void assertCorrupt(byte[] bytes)
+    {
+        try
+        {
+            CompressedBitSet.readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+            Assert.fail("the corrupt input should be rejected");
+        }
+        catch(IOException ex)
+        {
+            // expected
+        }
+    }
+
+    private static byte[] arrayContainers(int[] keys, int[][] values) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(keys.length);
+        for(int i = 0; i < keys.length; i++)
+        {
+            out.writeChar(keys[i]);
+            out.writeInt(values[i].length);
+            for(int value: values[i])
+            {
+                out.writeChar(value);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] toBytes(CompressedBitSet set) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        set.writeTo(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static int randomIndex(Random random)
+    {
+        return (KEYS[random.nextInt(KEYS.length)] << 16) | random.nextInt(1 << 16);
+    }
+
+    /**
+     * Create bits where each container is randomly empty, sparse, dense or
+     * right at the array limit
+     */
+    private static BitSet createRandomBits(Random random)
+    {
+        BitSet bits = new BitSet();
+        for(int key: KEYS)
+        {
+            int bitCount;
+            switch(random.nextInt(5))
+            {
+                case 0: bitCount = 0; break;
+                case 1: bitCount = 1 + random.nextInt(200); break;
+                case 2: bitCount = 4096 + random.nextInt(2); break;
+                default: bitCount = 6000 + random.nextInt(30000); break;
+            }
+            for(int i = 0; i < bitCount; i++)
+            {
+                bits.set((key << 16) | random.nextInt(1 << 16));
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Flip a few bits so that the sets share most of their containers
+     */
+    private static BitSet mutate(BitSet bits, Random random)
+    {
+        BitSet mutated = (BitSet)bits.clone();
+        for(int i = random.nextInt(3); i >= 0; i--)
+        {
+            mutated.flip(randomIndex(random));
+        }
+        return mutated;
+    }
+}
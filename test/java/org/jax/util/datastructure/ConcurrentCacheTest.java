@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jax.util.datastructure;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jax.util.math.Function;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link ConcurrentCache}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class ConcurrentCacheTest
+{
+    private static final Function<Integer, String> TO_STRING_FUNCTION =
+        new Function<Integer, String>()
+        {
+            public String evaluate(Integer input)
+            {
+                if(input < 0)
+                {
+                    throw new IllegalArgumentException("negative key: " + input);
+                }
+                return String.valueOf(input);
+            }
+        };
+
+    private static final ConcurrentCache.Weigher<Integer, String> LENGTH_WEIGHER =
+        new ConcurrentCache.Weigher<Integer, String>()
+        {
+            public int weigh(Integer key, String value)
+            {
+                return value.length();
+            }
+        };
+
+    /**
+     * Test that the maximum weight holds for the cache as a whole rather
+     * than per segment and that one entry can use all of it
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void weightLimitTest() throws Exception
+    {
+        ConcurrentCache<Integer, String> cache = new ConcurrentCache<Integer, String>(
+                null, 100L, LENGTH_WEIGHER, 0L, null, 16, null);
+        for(int i = 0; i < 1000; i++)
+        {
+            cache.put(i, createString(1 + i % 7));
+            Assert.assertTrue(cache.getWeightedSize() <= 100L);
+        }
+        Assert.assertTrue(cache.getStatistics().getEvictionCount() > 0L);
+
+        cache.put(-1, createString(100));
+        Assert.assertEquals(100L, cache.getWeightedSize());
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(100, cache.getIfPresent(-1).length());
+
+        cache.invalidate(-1);
+        Assert.assertEquals(0L, cache.getWeightedSize());
+        Assert.assertNull(cache.getIfPresent(-1));
+    }
+
+    /**
+     * Test that entries that are read again survive a scan over keys that
+     * are only read once
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void scanResistanceTest() throws Exception
+    {
+        ConcurrentCache<Integer, String> cache = new ConcurrentCache<Integer, String>(
+                TO_STRING_FUNCTION, 10L, null, 0L, null, 1, null);
+        Assert.assertEquals("0", cache.get(0));
+        Assert.assertEquals("0", cache.get(0));
+        for(int i = 1; i <= 100; i++)
+        {
+            Assert.assertEquals(String.valueOf(i), cache.get(i));
+        }
+
+        Assert.assertEquals(10, cache.size());
+        Assert.assertEquals("0", cache.getIfPresent(0));
+        Assert.assertNull(cache.getIfPresent(1));
+        Assert.assertEquals("100", cache.getIfPresent(100));
+    }
+
+    /**
+     * Test that threads asking for the same key share a single load
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void singleLoadTest() throws Exception
+    {
+        final AtomicInteger loadCount = new AtomicInteger(0);
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final ConcurrentCache<Integer, String> cache = new ConcurrentCache<Integer, String>(
+                new Function<Integer, String>()
+                {
+                    public String evaluate(Integer input)
+                    {
+                        loadCount.incrementAndGet();
+                        try
+                        {
+                            Thread.sleep(50L);
+                        }
+                        catch(InterruptedException ex)
+                        {
+                            throw new RuntimeException(ex);
+                        }
+                        return String.valueOf(input);
+                    }
+                },
+                100L);
+
+        final String[] results = new String[8];
+        Thread[] threads = new Thread[results.length];
+        for(int i = 0; i < threads.length; i++)
+        {
+            final int threadIndex = i;
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        startLatch.await();
+                        results[threadIndex] = cache.get(7);
+                    }
+                    catch(InterruptedException ex)
+                    {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        startLatch.countDown();
+        for(Thread thread: threads)
+        {
+            thread.join();
+        }
+
+        Assert.assertEquals(1, loadCount.get());
+        for(String result: results)
+        {
+            Assert.assertEquals("7", result);
+        }
+        Assert.assertEquals(1L, cache.getStatistics().getLoadSuccessCount());
+    }
+
+    /**
+     * Test that a load the executor rejects isn't left behind for later
+     * callers to wait on
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void rejectedLoadTest() throws Exception
+    {
+        Executor rejectingExecutor = new Executor()
+        {
+            public void execute(Runnable command)
+            {
+                throw new RejectedExecutionException("no room");
+            }
+        };
+        ConcurrentCache<Integer, String> cache = new ConcurrentCache<Integer, String>(
+                TO_STRING_FUNCTION, 10L, null, 0L, null, 4, rejectingExecutor);
+        try
+        {
+            cache.getAsync(3);
+            Assert.fail("the rejection should reach the caller");
+        }
+        catch(RejectedExecutionException ex)
+        {
+            // expected
+        }
+
+        // a synchronous get has to start a fresh load rather than wait on
+        // the cancelled one
+        Assert.assertEquals("3", cache.get(3));
+        Future<String> cached = cache.getAsync(3);
+        Assert.assertTrue(cached.isDone());
+        Assert.assertEquals("3", cached.get());
+    }
+
+    /**
+     * Test that entries expire after they're written
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void expiryTest() throws Exception
+    {
+        ConcurrentCache<Integer, String> cache = new ConcurrentCache<Integer, String>(
+                TO_STRING_FUNCTION, 10L, null, 50L, TimeUnit.MILLISECONDS, 4, null);
+        cache.put(1, "one");
+        cache.put(2, "two");
+        Assert.assertEquals("one", cache.getIfPresent(1));
+
+        Thread.sleep(100L);
+        Assert.assertNull(cache.getIfPresent(1));
+        cache.cleanUp();
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0L, cache.getWeightedSize());
+
+        // the loader fills the expired key back in
+        Assert.assertEquals("1", cache.get(1));
+    }
+
+    /**
+     * Test the hit, miss and load counts
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void statisticsTest() throws Exception
+    {
+        ConcurrentCache<Integer, String> cache = new ConcurrentCache<Integer, String>(
+                TO_STRING_FUNCTION, 10L);
+        Function<Integer, String> cacheFunction = cache.asFunction();
+        Assert.assertEquals("1", cacheFunction.evaluate(1));
+        Assert.assertEquals("1", cacheFunction.evaluate(1));
+        Assert.assertNull(cache.getIfPresent(2));
+        try
+        {
+            cache.get(-1);
+            Assert.fail("the loader's exception should reach the caller");
+        }
+        catch(IllegalArgumentException ex)
+        {
+            // expected
+        }
+
+        CacheStatistics statistics = cache.getStatistics();
+        Assert.assertEquals(1L, statistics.getHitCount());
+        Assert.assertEquals(3L, statistics.getMissCount());
+        Assert.assertEquals(0.25, statistics.getHitRate(), 0.0);
+        Assert.assertEquals(1L, statistics.getLoadSuccessCount());
+        Assert.assertEquals(1L, statistics.getLoadFailureCount());
+        Assert.assertEquals(0L, statistics.getEvictionCount());
+        Assert.assertNull(cache.getIfPresent(-1));
+    }
+
+    private static String createString(int length)
+    {
+        StringBuilder sb = new StringBuilder(length);
+        for(int i = 0; i < length; i++)
+        {
+            sb.append('x');
+        }
+        return sb.toString();
+    }
+}
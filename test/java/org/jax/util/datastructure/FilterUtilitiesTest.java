@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jax.util.datastructure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.jax.util.Condition;
+import org.jax.util.DoubleCondition;
+import org.jax.util.IntCondition;
+import org.jax.util.math.FiniteCondition;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link FilterUtilities}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class FilterUtilitiesTest
+{
+    /**
+     * Test the sequential and parallel filters for doubles, ints and lists
+     * against a loop that tests every element. The input is big enough to
+     * be split into several chunks that don't line up with the bit set
+     * containers
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void matchesLoopTest() throws Exception
+    {
+        Random random = new Random(1);
+        int size = 300001;
+        double[] doubles = new double[size];
+        int[] ints = new int[size];
+        List<Integer> list = new ArrayList<Integer>(size);
+        for(int i = 0; i < size; i++)
+        {
+            doubles[i] = random.nextInt(50) == 0 ? Double.NaN : random.nextDouble();
+            ints[i] = random.nextInt(1000);
+            list.add(ints[i]);
+        }
+
+        DoubleCondition finite = new FiniteCondition();
+        IntCondition multipleOfSeven = new IntCondition()
+        {
+            public boolean test(int input)
+            {
+                return input % 7 == 0;
+            }
+        };
+        Condition<Integer> boxedMultipleOfSeven = new Condition<Integer>()
+        {
+            public boolean test(Integer input)
+            {
+                return input.intValue() % 7 == 0;
+            }
+        };
+
+        int[] expectedDoubleMatches = new int[size];
+        int[] expectedIntMatches = new int[size];
+        int doubleCount = 0;
+        int intCount = 0;
+        for(int i = 0; i < size; i++)
+        {
+            if(finite.test(doubles[i]))
+            {
+                expectedDoubleMatches[doubleCount++] = i;
+            }
+            if(multipleOfSeven.test(ints[i]))
+            {
+                expectedIntMatches[intCount++] = i;
+            }
+        }
+        expectedDoubleMatches = Arrays.copyOf(expectedDoubleMatches, doubleCount);
+        expectedIntMatches = Arrays.copyOf(expectedIntMatches, intCount);
+
+        Assert.assertArrayEquals(
+                expectedDoubleMatches,
+                FilterUtilities.findMatches(finite, doubles));
+        Assert.assertArrayEquals(
+                expectedIntMatches,
+                FilterUtilities.findMatches(multipleOfSeven, ints));
+        Assert.assertArrayEquals(
+                expectedIntMatches,
+                FilterUtilities.findMatches(boxedMultipleOfSeven, list));
+        Assert.assertArrayEquals(
+                expectedDoubleMatches,
+                FilterUtilities.findMatchSet(finite, doubles).toArray());
+        Assert.assertArrayEquals(
+                expectedIntMatches,
+                FilterUtilities.findMatchSet(multipleOfSeven, ints).toArray());
+        Assert.assertArrayEquals(
+                expectedIntMatches,
+                FilterUtilities.findMatchSet(boxedMultipleOfSeven, list).toArray());
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try
+        {
+            Assert.assertArrayEquals(
+                    expectedDoubleMatches,
+                    FilterUtilities.parallelFindMatches(finite, doubles, executor, 3));
+            Assert.assertArrayEquals(
+                    expectedIntMatches,
+                    FilterUtilities.parallelFindMatches(multipleOfSeven, ints, executor, 4));
+            Assert.assertArrayEquals(
+                    expectedIntMatches,
+                    FilterUtilities.parallelFindMatches(boxedMultipleOfSeven, list, executor, 2));
+            Assert.assertArrayEquals(
+                    expectedDoubleMatches,
+                    FilterUtilities.parallelFindMatchSet(finite, doubles, executor, 3).toArray());
+            Assert.assertArrayEquals(
+                    expectedIntMatches,
+                    FilterUtilities.parallelFindMatchSet(multipleOfSeven, ints, executor, 4).toArray());
+            Assert.assertArrayEquals(
+                    expectedIntMatches,
+                    FilterUtilities.parallelFindMatchSet(
+                            boxedMultipleOfSeven, list, executor, 2).toArray());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(0, FilterUtilities.findMatches(finite, new double[0]).length);
+        Assert.assertTrue(FilterUtilities.findMatchSet(finite, new double[0]).isEmpty());
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jax.util.datastructure;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.jax.util.Condition;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link ImmutableReorderedList}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class ImmutableReorderedListTest
+{
+    /**
+     * Test filtered lists against the index maps that {@link SetUtilities}
+     * builds (which is what the list used to store). The filters are
+     * chosen so that both the run and the array forms get used
+     */
+    @Test
+    public void filterTest()
+    {
+        List<Integer> original = createOriginal(5000);
+        Random random = new Random(1);
+
+        // long runs, scattered elements, everything and nothing
+        boolean[][] filters = new boolean[4][original.size()];
+        for(int i = 0; i < original.size(); i++)
+        {
+            filters[0][i] = (i / 100) % 3 == 1;
+            filters[1][i] = random.nextBoolean();
+            filters[3][i] = true;
+        }
+
+        for(boolean[] filter: filters)
+        {
+            ImmutableReorderedList<Integer> list =
+                new ImmutableReorderedList<Integer>(original, filter);
+            assertMatchesMapping(
+                    original,
+                    SetUtilities.createFromSubsetToSupersetIndexMap(filter),
+                    list);
+        }
+
+        Condition<Integer> oddCondition = new Condition<Integer>()
+        {
+            public boolean test(Integer value)
+            {
+                return value.intValue() % 2 == 1;
+            }
+        };
+        ImmutableReorderedList<Integer> evens =
+            new ImmutableReorderedList<Integer>(original, oddCondition);
+        Assert.assertEquals(original.size() / 2, evens.size());
+        for(int i = 0; i < evens.size(); i++)
+        {
+            Assert.assertEquals(Integer.valueOf(2 * i), evens.get(i));
+        }
+    }
+
+    /**
+     * Test reorderings that are ascending, shuffled with repeats and
+     * sparse against the index maps that {@link SetUtilities} builds
+     */
+    @Test
+    public void reorderTest()
+    {
+        List<Integer> original = createOriginal(10000);
+        Random random = new Random(2);
+
+        int[] ascending = new int[3000];
+        for(int i = 0, index = 0; i < ascending.length; i++)
+        {
+            index += 1 + random.nextInt(3);
+            ascending[i] = index;
+        }
+
+        int[] shuffledWithRepeats = new int[8000];
+        for(int i = 0; i < shuffledWithRepeats.length; i++)
+        {
+            shuffledWithRepeats[i] = random.nextInt(original.size());
+        }
+
+        // few enough elements that the inverse should be a hash map
+        int[] sparse = new int[50];
+        for(int i = 0; i < sparse.length; i++)
+        {
+            sparse[i] = random.nextInt(original.size());
+        }
+
+        for(int[] mapping: new int[][] {ascending, shuffledWithRepeats, sparse, new int[0]})
+        {
+            assertMatchesMapping(
+                    original,
+                    mapping,
+                    new ImmutableReorderedList<Integer>(original, mapping));
+        }
+    }
+
+    /**
+     * Test that flattening a stack of reorderings and filters gives the
+     * same elements as nesting the views, with mappings onto the innermost
+     * list
+     */
+    @Test
+    public void flattenTest()
+    {
+        List<Integer> original = createOriginal(4000);
+        Random random = new Random(3);
+
+        boolean[] runFilter = new boolean[original.size()];
+        for(int i = 0; i < runFilter.length; i++)
+        {
+            runFilter[i] = (i / 50) % 2 == 0;
+        }
+        ImmutableReorderedList<Integer> subset =
+            ImmutableReorderedList.createFlattened(original, runFilter);
+
+        int[] shuffle = new int[subset.size()];
+        for(int i = 0; i < shuffle.length; i++)
+        {
+            shuffle[i] = shuffle.length - 1 - i;
+        }
+
+        boolean[] randomFilter = new boolean[subset.size()];
+        for(int i = 0; i < randomFilter.length; i++)
+        {
+            randomFilter[i] = random.nextInt(4) == 0;
+        }
+
+        List<Integer> nestedSubset = new ImmutableReorderedList<Integer>(subset, randomFilter);
+        ImmutableReorderedList<Integer> flatSubset =
+            ImmutableReorderedList.createFlattened(subset, randomFilter);
+        assertSameElements(nestedSubset, flatSubset);
+        Assert.assertSame(original, flatSubset.getOriginalList());
+
+        List<Integer> nestedShuffle = new ImmutableReorderedList<Integer>(subset, shuffle);
+        ImmutableReorderedList<Integer> flatShuffle =
+            ImmutableReorderedList.createFlattened(subset, shuffle);
+        assertSameElements(nestedShuffle, flatShuffle);
+        Assert.assertSame(original, flatShuffle.getOriginalList());
+
+        // a filter on top of the non ascending shuffle
+        boolean[] shuffleFilter = new boolean[flatShuffle.size()];
+        for(int i = 0; i < shuffleFilter.length; i++)
+        {
+            shuffleFilter[i] = i % 3 == 0;
+        }
+        assertSameElements(
+                new ImmutableReorderedList<Integer>(nestedShuffle, shuffleFilter),
+                ImmutableReorderedList.createFlattened(flatShuffle, shuffleFilter));
+    }
+
+    private static List<Integer> createOriginal(int size)
+    {
+        List<Integer> original = new ArrayList<Integer>(size);
+        for(int i = 0; i < size; i++)
+        {
+            original.add(i);
+        }
+        return original;
+    }
+
+    private static void assertSameElements(List<Integer> expected, List<Integer> actual)
+    {
+        Assert.assertEquals(expected.size(), actual.size());
+        Assert.assertEquals(expected, actual);
+    }
+
+    private static void assertMatchesMapping(
+            List<Integer> original,
+            int[] toOriginalMapping,
+            ImmutableReorderedList<Integer> list)
+    {
+        Assert.assertEquals(toOriginalMapping.length, list.size());
+        for(int i = 0; i < toOriginalMapping.length; i++)
+        {
+            Assert.assertEquals(toOriginalMapping[i], list.toOriginalIndex(i));
+            Assert.assertEquals(original.get(toOriginalMapping[i]), list.get(i));
+        }
+
+        int[] toReorderedMapping = SetUtilities.createFromOriginalToReorderedIndexMap(
+                original.size(),
+                toOriginalMapping);
+        for(int i = 0; i < original.size(); i++)
+        {
+            Assert.assertEquals(toReorderedMapping[i], list.toReorderedIndex(i));
+        }
+
+        try
+        {
+            list.get(list.size());
+            Assert.fail("reading past the end should fail");
+        }
+        catch(IndexOutOfBoundsException ex)
+        {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jax.util.datastructure;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for the transposes in {@link SequenceUtilities}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class SequenceUtilitiesTest
+{
+    /**
+     * the dimensions tested, including ones which aren't block multiples
+     * and one big enough to be split up by the parallel transposes
+     */
+    private static final int[][] DIMENSIONS = {
+        {1, 1}, {1, 70}, {33, 1}, {31, 33}, {65, 129}, {300, 700}};
+
+    /**
+     * Test the 2D array transposes against a naive transpose
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void transposeMatrixTest() throws Exception
+    {
+        Random random = new Random(1);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try
+        {
+            for(int[] dimension: DIMENSIONS)
+            {
+                int rowCount = dimension[0];
+                int columnCount = dimension[1];
+                double[][] doubles = new double[rowCount][columnCount];
+                int[][] ints = new int[rowCount][columnCount];
+                Integer[][] integers = new Integer[rowCount][columnCount];
+                for(int row = 0; row < rowCount; row++)
+                {
+                    for(int column = 0; column < columnCount; column++)
+                    {
+                        ints[row][column] = random.nextInt();
+                        doubles[row][column] = ints[row][column] / 7.0;
+                        integers[row][column] = ints[row][column];
+                    }
+                }
+
+                double[][] expectedDoubles = new double[columnCount][rowCount];
+                int[][] expectedInts = new int[columnCount][rowCount];
+                for(int row = 0; row < rowCount; row++)
+                {
+                    for(int column = 0; column < columnCount; column++)
+                    {
+                        expectedDoubles[column][row] = doubles[row][column];
+                        expectedInts[column][row] = ints[row][column];
+                    }
+                }
+
+                assertMatrixEquals(expectedDoubles, SequenceUtilities.transposeMatrix(doubles));
+                assertMatrixEquals(
+                        expectedDoubles,
+                        SequenceUtilities.parallelTransposeMatrix(doubles, executor, 3));
+                assertMatrixEquals(expectedInts, SequenceUtilities.transposeMatrix(ints));
+                assertMatrixEquals(
+                        expectedInts,
+                        SequenceUtilities.parallelTransposeMatrix(ints, executor, 3));
+
+                Integer[][] transposedIntegers = SequenceUtilities.transposeMatrix(integers);
+                Assert.assertEquals(columnCount, transposedIntegers.length);
+                for(int column = 0; column < columnCount; column++)
+                {
+                    for(int row = 0; row < rowCount; row++)
+                    {
+                        Assert.assertEquals(
+                                expectedInts[column][row],
+                                transposedIntegers[column][row].intValue());
+                    }
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        Assert.assertNull(SequenceUtilities.transposeMatrix((double[][])null));
+        Assert.assertEquals(0, SequenceUtilities.transposeMatrix(new int[0][]).length);
+    }
+
+    /**
+     * Test the flat row major transposes against a naive transpose
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void transposeFlatMatrixTest() throws Exception
+    {
+        Random random = new Random(2);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try
+        {
+            for(int[] dimension: DIMENSIONS)
+            {
+                int rowCount = dimension[0];
+                int columnCount = dimension[1];
+                double[] doubles = new double[rowCount * columnCount];
+                int[] ints = new int[doubles.length];
+                for(int i = 0; i < doubles.length; i++)
+                {
+                    ints[i] = random.nextInt();
+                    doubles[i] = random.nextDouble();
+                }
+
+                double[] expectedDoubles = new double[doubles.length];
+                int[] expectedInts = new int[ints.length];
+                for(int row = 0; row < rowCount; row++)
+                {
+                    for(int column = 0; column < columnCount; column++)
+                    {
+                        expectedDoubles[column * rowCount + row] = doubles[row * columnCount + column];
+                        expectedInts[column * rowCount + row] = ints[row * columnCount + column];
+                    }
+                }
+
+                Assert.assertArrayEquals(
+                        expectedDoubles,
+                        SequenceUtilities.transposeMatrix(doubles, rowCount, columnCount),
+                        0.0);
+                Assert.assertArrayEquals(
+                        expectedDoubles,
+                        SequenceUtilities.parallelTransposeMatrix(
+                                doubles, rowCount, columnCount, executor, 3),
+                        0.0);
+                Assert.assertArrayEquals(
+                        expectedInts,
+                        SequenceUtilities.transposeMatrix(ints, rowCount, columnCount));
+                Assert.assertArrayEquals(
+                        expectedInts,
+                        SequenceUtilities.parallelTransposeMatrix(
+                                ints, rowCount, columnCount, executor, 3));
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        try
+        {
+            SequenceUtilities.transposeMatrix(new int[6], 4, 2);
+            Assert.fail("the dimensions don't match the array length");
+        }
+        catch(IllegalArgumentException ex)
+        {
+            // expected
+        }
+    }
+
+    private static void assertMatrixEquals(double[][] expected, double[][] actual)
+    {
+        Assert.assertEquals(expected.length, actual.length);
+        for(int i = 0; i < expected.length; i++)
+        {
+            Assert.assertArrayEquals(expected[i], actual[i], 0.0);
+        }
+    }
+
+    private static void assertMatrixEquals(int[][] expected, int[][] actual)
+    {
+        Assert.assertEquals(expected.length, actual.length);
+        for(int i = 0; i < expected.length; i++)
+        {
+            Assert.assertArrayEquals(expected[i], actual[i]);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jax.util.datastructure;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link SetUtilities}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class SetUtilitiesTest
+{
+    private static final Comparator<String> STRING_COMPARATOR =
+        new Comparator<String>()
+        {
+            public int compare(String s1, String s2)
+            {
+                return s1.compareTo(s2);
+            }
+        };
+
+    /**
+     * the size pairs used for the tests. The even sizes take the merge
+     * path and the skewed sizes take the galloping path
+     */
+    private static final int[][] SIZES = new int[][] {
+        {0, 0},
+        {0, 50},
+        {1, 1000},
+        {10, 2000},
+        {100, 120},
+        {500, 500},
+        {2000, 10}};
+
+    /**
+     * Test the ordered int set operations against {@link TreeSet}
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void orderedIntOperationsTest() throws Exception
+    {
+        Random random = new Random(5);
+        for(int[] sizes: SIZES)
+        {
+            for(int trial = 0; trial < 5; trial++)
+            {
+                TreeSet<Integer> set1 = randomIntSet(random, sizes[0], sizes[0] + sizes[1]);
+                TreeSet<Integer> set2 = randomIntSet(random, sizes[1], sizes[0] + sizes[1]);
+                int[] array1 = toIntArray(set1);
+                int[] array2 = toIntArray(set2);
+
+                TreeSet<Integer> expected = new TreeSet<Integer>(set1);
+                expected.retainAll(set2);
+                Assert.assertArrayEquals(
+                        toIntArray(expected),
+                        SetUtilities.intersectOrdered(array1, array2));
+                Assert.assertArrayEquals(
+                        toIntArray(expected),
+                        SetUtilities.intersectOrdered(array2, array1));
+
+                expected = new TreeSet<Integer>(set1);
+                expected.addAll(set2);
+                Assert.assertArrayEquals(
+                        toIntArray(expected),
+                        SetUtilities.unionOrdered(array1, array2));
+
+                expected = new TreeSet<Integer>(set1);
+                expected.removeAll(set2);
+                Assert.assertArrayEquals(
+                        toIntArray(expected),
+                        SetUtilities.differenceOrdered(array1, array2));
+
+                Assert.assertEquals(
+                        set2.containsAll(set1),
+                        SetUtilities.isOrderedSubset(array1, array2));
+                int[] intersection = SetUtilities.intersectOrdered(array1, array2);
+                Assert.assertTrue(SetUtilities.isOrderedSubset(intersection, array1));
+                Assert.assertTrue(SetUtilities.isOrderedSubset(intersection, array2));
+            }
+        }
+    }
+
+    /**
+     * Test intersecting many int arrays and intersecting unordered arrays
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void intersectAllAndUnorderedTest() throws Exception
+    {
+        Random random = new Random(9);
+        TreeSet<Integer> set1 = randomIntSet(random, 3000, 5000);
+        TreeSet<Integer> set2 = randomIntSet(random, 20, 5000);
+        TreeSet<Integer> set3 = randomIntSet(random, 2500, 5000);
+        TreeSet<Integer> expected = new TreeSet<Integer>(set1);
+        expected.retainAll(set2);
+        expected.retainAll(set3);
+        Assert.assertArrayEquals(
+                toIntArray(expected),
+                SetUtilities.intersectAllOrdered(
+                        toIntArray(set1),
+                        toIntArray(set2),
+                        toIntArray(set3)));
+
+        // the unordered intersection keeps the order of the 1st array
+        int[] unordered1 = new int[] {9, 3, 7, 3, 1, 12};
+        int[] unordered2 = new int[] {12, 1, 8, 3, 3};
+        Assert.assertArrayEquals(
+                new int[] {3, 1, 12},
+                SetUtilities.intersectUnordered(unordered1, unordered2));
+        Assert.assertArrayEquals(
+                new int[] {12, 1, 3},
+                SetUtilities.intersectUnordered(unordered2, unordered1));
+    }
+
+    /**
+     * Test that intersecting no arrays is an error
+     */
+    @Test(expected=IllegalArgumentException.class)
+    public void intersectAllEmptyTest()
+    {
+        SetUtilities.intersectAllOrdered();
+    }
+
+    /**
+     * Test the ordered object set operations against {@link TreeSet} and
+     * the comparable versions
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void orderedObjectOperationsTest() throws Exception
+    {
+        Random random = new Random(11);
+        for(int[] sizes: SIZES)
+        {
+            for(int trial = 0; trial < 5; trial++)
+            {
+                TreeSet<String> set1 = toStringSet(randomIntSet(
+                        random, sizes[0], sizes[0] + sizes[1]));
+                TreeSet<String> set2 = toStringSet(randomIntSet(
+                        random, sizes[1], sizes[0] + sizes[1]));
+                String[] array1 = set1.toArray(new String[set1.size()]);
+                String[] array2 = set2.toArray(new String[set2.size()]);
+
+                TreeSet<String> expected = new TreeSet<String>(set1);
+                expected.retainAll(set2);
+                String[] expectedArray = expected.toArray(new String[expected.size()]);
+                Assert.assertArrayEquals(
+                        expectedArray,
+                        SetUtilities.intersectOrdered(array1, array2, STRING_COMPARATOR));
+                Assert.assertArrayEquals(
+                        expectedArray,
+                        SetUtilities.intersectOrdered(array2, array1, STRING_COMPARATOR));
+                Assert.assertArrayEquals(
+                        expectedArray,
+                        SetUtilities.createOrderedIntersection(array1, array2));
+
+                List<String[]> allSets = new ArrayList<String[]>();
+                allSets.add(array1);
+                allSets.add(array2);
+                Assert.assertArrayEquals(
+                        expectedArray,
+                        SetUtilities.intersectAllOrdered(allSets, STRING_COMPARATOR));
+
+                expected = new TreeSet<String>(set1);
+                expected.addAll(set2);
+                Assert.assertArrayEquals(
+                        expected.toArray(new String[expected.size()]),
+                        SetUtilities.unionOrdered(array1, array2, STRING_COMPARATOR));
+
+                expected = new TreeSet<String>(set1);
+                expected.removeAll(set2);
+                Assert.assertArrayEquals(
+                        expected.toArray(new String[expected.size()]),
+                        SetUtilities.differenceOrdered(array1, array2, STRING_COMPARATOR));
+
+                boolean subset = set2.containsAll(set1);
+                Assert.assertEquals(
+                        subset,
+                        SetUtilities.isOrderedSubset(array1, array2, STRING_COMPARATOR));
+                Assert.assertEquals(
+                        subset,
+                        SetUtilities.isOrderedSubset(array1, array2));
+                Assert.assertTrue(SetUtilities.isOrderedSubset(
+                        expectedArray, array1, STRING_COMPARATOR));
+            }
+        }
+
+        String[] unordered1 = new String[] {"c", "a", "d", "a"};
+        String[] unordered2 = new String[] {"a", "b", "c"};
+        Assert.assertArrayEquals(
+                new String[] {"c", "a"},
+                SetUtilities.intersectUnordered(unordered1, unordered2));
+    }
+
+    private static TreeSet<Integer> randomIntSet(Random random, int size, int range)
+    {
+        TreeSet<Integer> set = new TreeSet<Integer>();
+        while(set.size() < size)
+        {
+            set.add(random.nextInt(Math.max(range, 1)) - range / 2);
+        }
+        return set;
+    }
+
+    private static TreeSet<String> toStringSet(TreeSet<Integer> set)
+    {
+        TreeSet<String> stringSet = new TreeSet<String>();
+        for(Integer value: set)
+        {
+            stringSet.add(String.valueOf(value));
+        }
+        return stringSet;
+    }
+
+    private static int[] toIntArray(TreeSet<Integer> set)
+    {
+        int[] array = new int[set.size()];
+        int i = 0;
+        for(Integer value: set)
+        {
+            array[i] = value;
+            i++;
+        }
+        return array;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.datastructure;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link StringDictionary}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class StringDictionaryTest
+{
+    /**
+     * Test that codes are dense, in insertion order and the same whether
+     * we look up strings or character ranges
+     */
+    @Test
+    public void codeTest()
+    {
+        StringDictionary dictionary = new StringDictionary();
+        for(int i = 0; i < 1000; i++)
+        {
+            Assert.assertEquals(i, dictionary.add("value" + i));
+        }
+        Assert.assertEquals(1000, dictionary.size());
+
+        char[] buffer = "xxvalue42yy".toCharArray();
+        Assert.assertEquals(42, dictionary.getCode(buffer, 2, 7));
+        Assert.assertEquals(42, dictionary.add(buffer, 2, 7));
+        Assert.assertEquals(42, dictionary.getCode("value42"));
+        Assert.assertEquals(-1, dictionary.getCode("value1000"));
+        Assert.assertEquals(-1, dictionary.getCode(buffer, 0, 7));
+        Assert.assertEquals("value999", dictionary.getString(999));
+        Assert.assertEquals(1000, dictionary.toArray().length);
+        Assert.assertEquals("value0", dictionary.toArray()[0]);
+
+        // the empty string is a value like any other
+        Assert.assertEquals(1000, dictionary.add(buffer, 3, 0));
+        Assert.assertEquals(1000, dictionary.getCode(""));
+
+        try
+        {
+            dictionary.getString(1001);
+            Assert.fail("there's no string for that code");
+        }
+        catch(IndexOutOfBoundsException ex)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Test that a full dictionary stops adding but still interns what it
+     * already holds
+     */
+    @Test
+    public void boundedInternTest()
+    {
+        StringDictionary dictionary = new StringDictionary(2);
+        String a = dictionary.intern(new String("a"));
+        String b = dictionary.intern("xbx".toCharArray(), 1, 1);
+        Assert.assertTrue(dictionary.isFull());
+
+        Assert.assertSame(a, dictionary.intern(new String("a")));
+        Assert.assertSame(b, dictionary.intern("b".toCharArray(), 0, 1));
+        Assert.assertEquals("c", dictionary.intern("c"));
+        Assert.assertEquals(-1, dictionary.add("c"));
+        Assert.assertEquals(-1, dictionary.getCode("c"));
+        Assert.assertEquals(2, dictionary.size());
+
+        Assert.assertEquals(2L, dictionary.getHitCount());
+        Assert.assertEquals(3L, dictionary.getMissCount());
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jax.util.datastructure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link TableSorter}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class TableSorterTest
+{
+    /**
+     * Test that the sequential and parallel sorts give the same order as a
+     * stable sort with a straightforward row comparator
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void matchesStableSortTest() throws Exception
+    {
+        List<String[]> rows = createRows(60000, new Random(1));
+        List<TableSortColumn<String>> sortColumns = new ArrayList<TableSortColumn<String>>();
+        sortColumns.add(TableSortColumn.numeric(0, true, false));
+        sortColumns.add(new TableSortColumn<String>(1));
+        sortColumns.add(new TableSortColumn<String>(
+                2,
+                String.CASE_INSENSITIVE_ORDER,
+                true,
+                false));
+        TableSorter<String> sorter = new TableSorter<String>(sortColumns);
+
+        List<String[]> expected = new ArrayList<String[]>(rows);
+        Collections.sort(expected, new ReferenceComparator());
+
+        assertRowsEqual(expected, sorter.sort(rows));
+
+        List<String[]> comparatorSorted = new ArrayList<String[]>(rows);
+        Collections.sort(comparatorSorted, sorter.getRowComparator());
+        assertRowsEqual(expected, comparatorSorted);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            assertRowsEqual(expected, sorter.parallelSort(rows, executor, 4));
+            Assert.assertArrayEquals(
+                    sorter.sortIndices(rows),
+                    sorter.parallelSortIndices(rows, executor, 3));
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Test sorting tables that are empty or tiny and sorting with no sort
+     * columns (which should keep the original order)
+     */
+    @Test
+    public void smallTableTest()
+    {
+        TableSorter<String> sorter = new TableSorter<String>(
+                Collections.singletonList(new TableSortColumn<String>(0)));
+        Assert.assertEquals(0, sorter.sortIndices(new ArrayList<String[]>()).length);
+
+        List<String[]> rows = new ArrayList<String[]>();
+        rows.add(new String[] {"b"});
+        rows.add(new String[] {null});
+        rows.add(new String[] {"a"});
+        Assert.assertArrayEquals(new int[] {1, 2, 0}, sorter.sortIndices(rows));
+
+        TableSorter<String> unsorted = new TableSorter<String>(
+                new ArrayList<TableSortColumn<String>>());
+        Assert.assertArrayEquals(new int[] {0, 1, 2}, unsorted.sortIndices(rows));
+    }
+
+    private static List<String[]> createRows(int rowCount, Random random)
+    {
+        String[] numbers = {"", "-1", "0", "2.5", "10", "1e3", "NaN", "Infinity"};
+        String[] words = {"apple", "Apple", "banana", "BANANA", "cherry"};
+        List<String[]> rows = new ArrayList<String[]>(rowCount);
+        for(int i = 0; i < rowCount; i++)
+        {
+            rows.add(new String[] {
+                    random.nextInt(20) == 0 ? null : numbers[random.nextInt(numbers.length)],
+                    random.nextInt(20) == 0 ? null : String.valueOf(random.nextInt(30)),
+                    words[random.nextInt(words.length)],
+                    String.valueOf(i)});
+        }
+        return rows;
+    }
+
+    private static void assertRowsEqual(List<String[]> expected, List<String[]> actual)
+    {
+        Assert.assertEquals(expected.size(), actual.size());
+        for(int i = 0; i < expected.size(); i++)
+        {
+            Assert.assertTrue(Arrays.equals(expected.get(i), actual.get(i)));
+        }
+    }
+
+    /**
+     * The order that the test's sort columns describe, written out by hand:
+     * column 0 numeric descending with nulls and empty strings last,
+     * column 1 natural order with nulls first and column 2 case
+     * insensitive descending
+     */
+    private static class ReferenceComparator implements Comparator<String[]>
+    {
+        public int compare(String[] row1, String[] row2)
+        {
+            Double number1 = toNumber(row1[0]);
+            Double number2 = toNumber(row2[0]);
+            if(number1 == null || number2 == null)
+            {
+                if(number1 != number2)
+                {
+                    return number1 == null ? 1 : -1;
+                }
+            }
+            else
+            {
+                int comparison = Double.compare(number2, number1);
+                if(comparison != 0)
+                {
+                    return comparison;
+                }
+            }
+
+            if(row1[1] == null || row2[1] == null)
+            {
+                if(row1[1] != row2[1])
+                {
+                    return row1[1] == null ? -1 : 1;
+                }
+            }
+            else
+            {
+                int comparison = row1[1].compareTo(row2[1]);
+                if(comparison != 0)
+                {
+                    return comparison;
+                }
+            }
+
+            return String.CASE_INSENSITIVE_ORDER.compare(row2[2], row1[2]);
+        }
+
+        private static Double toNumber(String value)
+        {
+            return value == null || value.length() == 0 ? null : Double.valueOf(value);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.datastructure.primitive;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link IntArrayList}, {@link LongArrayList} and
+ * {@link DoubleArrayList}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class IntArrayListTest
+{
+    /**
+     * Test a random sequence of operations against an {@link ArrayList}
+     */
+    @Test
+    public void matchesArrayListTest()
+    {
+        Random random = new Random(1);
+        IntArrayList list = new IntArrayList(2);
+        LongArrayList longList = new LongArrayList();
+        DoubleArrayList doubleList = new DoubleArrayList();
+        List<Integer> expected = new ArrayList<Integer>();
+
+        for(int i = 0; i < 5000; i++)
+        {
+            int value = random.nextInt(100);
+            switch(random.nextInt(6))
+            {
+                case 0:
+                case 1:
+                    list.add(value);
+                    longList.add(value);
+                    doubleList.add(value);
+                    expected.add(value);
+                    break;
+
+                case 2:
+                {
+                    int index = random.nextInt(expected.size() + 1);
+                    list.add(index, value);
+                    longList.add(index, value);
+                    doubleList.add(index, value);
+                    expected.add(index, value);
+                    break;
+                }
+
+                case 3:
+                    if(!expected.isEmpty())
+                    {
+                        int index = random.nextInt(expected.size());
+                        int removed = expected.remove(index);
+                        Assert.assertEquals(removed, list.removeAt(index));
+                        Assert.assertEquals(removed, longList.removeAt(index));
+                        Assert.assertEquals(removed, doubleList.removeAt(index), 0.0);
+                    }
+                    break;
+
+                case 4:
+                    if(!expected.isEmpty())
+                    {
+                        int index = random.nextInt(expected.size());
+                        int old = expected.set(index, value);
+                        Assert.assertEquals(old, list.set(index, value));
+                        Assert.assertEquals(old, longList.set(index, value));
+                        Assert.assertEquals(old, doubleList.set(index, value), 0.0);
+                    }
+                    break;
+
+                case 5:
+                    Assert.assertEquals(expected.indexOf(value), list.indexOf(value));
+                    Assert.assertEquals(expected.indexOf(value), longList.indexOf(value));
+                    Assert.assertEquals(expected.indexOf(value), doubleList.indexOf(value));
+                    Assert.assertEquals(expected.contains(value), list.contains(value));
+                    break;
+            }
+            Assert.assertEquals(expected.size(), list.size());
+        }
+
+        Assert.assertEquals(expected, list.asList());
+        Assert.assertEquals(expected.hashCode(), list.hashCode());
+        Assert.assertEquals(expected.toString(), list.toString());
+        Assert.assertEquals(new IntArrayList(list.toArray()), list);
+        for(int i = 0; i < expected.size(); i++)
+        {
+            Assert.assertEquals(expected.get(i).longValue(), longList.get(i));
+            Assert.assertEquals(expected.get(i).doubleValue(), doubleList.get(i), 0.0);
+        }
+
+        expected.subList(10, 40).clear();
+        list.removeRange(10, 40);
+        Assert.assertEquals(expected, list.asList());
+
+        Collections.sort(expected);
+        list.sort();
+        Assert.assertEquals(expected, list.asList());
+
+        list.trimToSize();
+        Assert.assertEquals(expected.size(), list.getBackingArray().length);
+        list.clear();
+        Assert.assertTrue(list.isEmpty());
+    }
+
+    /**
+     * Test that the boxed view reads and writes through to the list
+     */
+    @Test
+    public void asListTest()
+    {
+        IntArrayList list = new IntArrayList(new int[] {5, 6, 7});
+        List<Integer> view = list.asList();
+        view.add(8);
+        view.remove(0);
+        view.set(0, 60);
+        Assert.assertArrayEquals(new int[] {60, 7, 8}, list.toArray());
+
+        list.add(9);
+        Assert.assertEquals(Integer.valueOf(9), view.get(3));
+        Assert.assertEquals(4, view.size());
+
+        try
+        {
+            list.get(4);
+            Assert.fail("reading past the end should fail");
+        }
+        catch(IndexOutOfBoundsException ex)
+        {
+            // expected
+        }
+
+        // NaN values are equal to themselves like they are for Double
+        DoubleArrayList doubleList = new DoubleArrayList(new double[] {1.0, Double.NaN});
+        Assert.assertEquals(1, doubleList.indexOf(Double.NaN));
+        Assert.assertEquals(
+                new ArrayList<Double>(doubleList.asList()),
+                doubleList.asList());
+    }
+}
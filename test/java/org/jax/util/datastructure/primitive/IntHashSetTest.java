@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.datastructure.primitive;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link IntHashSet}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class IntHashSetTest
+{
+    /**
+     * Test a random sequence of operations against a {@link HashSet}
+     */
+    @Test
+    public void matchesHashSetTest()
+    {
+        Random random = new Random(3);
+        IntHashSet set = new IntHashSet();
+        Set<Integer> expected = new HashSet<Integer>();
+
+        for(int i = 0; i < 20000; i++)
+        {
+            int value = (random.nextInt(500) - 250) << 12;
+            switch(random.nextInt(3))
+            {
+                case 0:
+                    Assert.assertEquals(expected.add(value), set.add(value));
+                    break;
+
+                case 1:
+                    Assert.assertEquals(expected.remove(value), set.remove(value));
+                    break;
+
+                case 2:
+                    Assert.assertEquals(expected.contains(value), set.contains(value));
+                    break;
+            }
+            Assert.assertEquals(expected.size(), set.size());
+        }
+
+        int[] values = set.toArray();
+        Assert.assertEquals(expected.size(), values.length);
+        for(int value: values)
+        {
+            Assert.assertTrue(expected.contains(value));
+        }
+
+        IntHashSet copy = new IntHashSet(values);
+        Assert.assertEquals(set, copy);
+        Assert.assertEquals(set.hashCode(), copy.hashCode());
+        Assert.assertEquals(expected.hashCode(), set.hashCode());
+
+        Assert.assertFalse(copy.addAll(values));
+        Assert.assertTrue(copy.addAll(new int[] {1, 2}));
+        Assert.assertFalse(set.equals(copy));
+
+        set.clear();
+        Assert.assertTrue(set.isEmpty());
+        Assert.assertFalse(set.contains(0));
+    }
+}
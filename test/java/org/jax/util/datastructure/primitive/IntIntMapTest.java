@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.datastructure.primitive;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link IntIntMap} and {@link LongIntMap}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class IntIntMapTest
+{
+    /**
+     * Test a random sequence of operations against a {@link HashMap}. The
+     * keys come from a small range so that there are lots of collisions
+     * and removals in the middle of probe sequences
+     */
+    @Test
+    public void matchesHashMapTest()
+    {
+        Random random = new Random(2);
+        IntIntMap map = new IntIntMap(4, -1);
+        LongIntMap longMap = new LongIntMap(4, -1);
+        Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+
+        for(int i = 0; i < 20000; i++)
+        {
+            // multiples of 1024 all collide in a weak hash
+            int key = (random.nextInt(300) - 150) * 1024;
+            long longKey = key * 0x100000000L;
+            int value = random.nextInt(1000);
+            Integer expectedValue = expected.get(key);
+            int expectedOld = expectedValue == null ? -1 : expectedValue.intValue();
+            switch(random.nextInt(4))
+            {
+                case 0:
+                    expected.put(key, value);
+                    Assert.assertEquals(expectedOld, map.put(key, value));
+                    Assert.assertEquals(expectedOld, longMap.put(longKey, value));
+                    break;
+
+                case 1:
+                    expected.remove(key);
+                    Assert.assertEquals(expectedOld, map.remove(key));
+                    Assert.assertEquals(expectedOld, longMap.remove(longKey));
+                    break;
+
+                case 2:
+                    expected.put(key, expectedOld + value);
+                    Assert.assertEquals(expectedOld + value, map.increment(key, value));
+                    Assert.assertEquals(expectedOld + value, longMap.increment(longKey, value));
+                    break;
+
+                case 3:
+                    Assert.assertEquals(expectedOld, map.get(key));
+                    Assert.assertEquals(expectedOld, longMap.get(longKey));
+                    Assert.assertEquals(expected.containsKey(key), map.containsKey(key));
+                    Assert.assertEquals(expected.containsKey(key), longMap.containsKey(longKey));
+                    break;
+            }
+            Assert.assertEquals(expected.size(), map.size());
+            Assert.assertEquals(expected.size(), longMap.size());
+        }
+
+        int[] keys = map.keys();
+        int[] values = map.values();
+        Assert.assertEquals(expected.size(), keys.length);
+        for(int i = 0; i < keys.length; i++)
+        {
+            Assert.assertEquals(expected.get(keys[i]).intValue(), values[i]);
+        }
+
+        long[] longKeys = longMap.keys();
+        Arrays.sort(longKeys);
+        Arrays.sort(keys);
+        for(int i = 0; i < keys.length; i++)
+        {
+            Assert.assertEquals(keys[i] * 0x100000000L, longKeys[i]);
+        }
+
+        map.clear();
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertFalse(map.containsKey(0));
+        Assert.assertEquals(-1, map.get(0));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.datastructure.primitive;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link IntSortedSet} and {@link LongSortedSet}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class IntSortedSetTest
+{
+    /**
+     * Test a random sequence of operations (including bulk adds) against
+     * a {@link TreeSet}
+     */
+    @Test
+    public void matchesTreeSetTest()
+    {
+        Random random = new Random(4);
+        IntSortedSet set = new IntSortedSet();
+        LongSortedSet longSet = new LongSortedSet();
+        TreeSet<Integer> expected = new TreeSet<Integer>();
+
+        for(int i = 0; i < 5000; i++)
+        {
+            int value = random.nextInt(2000) - 1000;
+            switch(random.nextInt(5))
+            {
+                case 0:
+                    Assert.assertEquals(expected.contains(value), !set.add(value));
+                    Assert.assertEquals(expected.contains(value), !longSet.add(value));
+                    expected.add(value);
+                    break;
+
+                case 1:
+                {
+                    boolean removed = expected.remove(value);
+                    Assert.assertEquals(removed, set.remove(value));
+                    Assert.assertEquals(removed, longSet.remove(value));
+                    break;
+                }
+
+                case 2:
+                {
+                    int[] values = new int[random.nextInt(20)];
+                    long[] longValues = new long[values.length];
+                    boolean changed = false;
+                    for(int j = 0; j < values.length; j++)
+                    {
+                        values[j] = random.nextInt(2000) - 1000;
+                        longValues[j] = values[j];
+                        changed |= expected.add(values[j]);
+                    }
+                    Assert.assertEquals(changed, set.addAll(values));
+                    Assert.assertEquals(changed, longSet.addAll(longValues));
+                    break;
+                }
+
+                case 3:
+                {
+                    Integer ceiling = expected.ceiling(value);
+                    int ceilingIndex = set.ceilingIndex(value);
+                    if(ceiling == null)
+                    {
+                        Assert.assertEquals(set.size(), ceilingIndex);
+                    }
+                    else
+                    {
+                        Assert.assertEquals(ceiling.intValue(), set.get(ceilingIndex));
+                    }
+                    Assert.assertEquals(ceilingIndex, longSet.ceilingIndex(value));
+                    break;
+                }
+
+                case 4:
+                {
+                    Integer floor = expected.floor(value);
+                    int floorIndex = set.floorIndex(value);
+                    if(floor == null)
+                    {
+                        Assert.assertEquals(-1, floorIndex);
+                    }
+                    else
+                    {
+                        Assert.assertEquals(floor.intValue(), set.get(floorIndex));
+                    }
+                    Assert.assertEquals(floorIndex, longSet.floorIndex(value));
+                    break;
+                }
+            }
+            Assert.assertEquals(expected.size(), set.size());
+            Assert.assertEquals(expected.size(), longSet.size());
+        }
+
+        int[] values = set.toArray();
+        long[] longValues = longSet.toArray();
+        int i = 0;
+        for(int value: expected)
+        {
+            Assert.assertEquals(value, values[i]);
+            Assert.assertEquals(value, longValues[i]);
+            i++;
+        }
+        Assert.assertEquals(expected.first().intValue(), set.first());
+        Assert.assertEquals(expected.last().intValue(), set.last());
+        Assert.assertEquals(set, new IntSortedSet(values));
+        Assert.assertEquals(expected.toString(), set.toString());
+    }
+}
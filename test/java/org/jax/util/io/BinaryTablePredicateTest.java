@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link BinaryTablePredicate} and block skipping
+ * in {@link BinaryTableReader}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class BinaryTablePredicateTest
+{
+    /**
+     * Test that filtered reads return exactly the rows that the predicate
+     * accepts and that zone maps skip blocks that can't match
+     * @throws IOException
+     *          if we get an exception
+     * @throws IllegalFormatException
+     *          if the formatting is bad
+     */
+    @Test
+    public void zoneMapTest() throws IOException, IllegalFormatException
+    {
+        List<String[]> rows = BinaryTableTest.createRows(10000);
+        File file = BinaryTableTest.writeTable(rows, 1000, true);
+
+        // ids are sorted so a narrow id range only touches one block
+        BinaryTablePredicate predicate = BinaryTablePredicate.between(0, 100.0, 200.0);
+        Assert.assertEquals(9, this.checkFilteredRead(file, rows, predicate));
+
+        predicate = BinaryTablePredicate.and(
+                BinaryTablePredicate.between(0, -5000.0, -3001.0),
+                BinaryTablePredicate.equalTo(2, "group3"));
+        Assert.assertEquals(8, this.checkFilteredRead(file, rows, predicate));
+
+        predicate = BinaryTablePredicate.or(
+                BinaryTablePredicate.between(0, -5000.0, -4001.0),
+                BinaryTablePredicate.between(2, "group1", "group2"));
+        Assert.assertEquals(0, this.checkFilteredRead(file, rows, predicate));
+
+        // nothing is bigger than this
+        predicate = BinaryTablePredicate.between(2, "zzz", "zzzz");
+        Assert.assertEquals(10, this.checkFilteredRead(file, rows, predicate));
+    }
+
+    /**
+     * Test that Bloom filters skip blocks where an equality lookup is
+     * inside the block's range but not in the block
+     * @throws IOException
+     *          if we get an exception
+     * @throws IllegalFormatException
+     *          if the formatting is bad
+     */
+    @Test
+    public void bloomFilterTest() throws IOException, IllegalFormatException
+    {
+        // every block has the same range of keys but each block only holds
+        // every tenth key from its own offset
+        List<String[]> rows = new ArrayList<String[]>();
+        for(int block = 0; block < 10; block++)
+        {
+            rows.add(new String[] {"key000", Integer.toString(block)});
+            for(int i = block; i < 1000; i += 10)
+            {
+                rows.add(new String[] {String.format("key%03d", i), Integer.toString(block)});
+            }
+            rows.add(new String[] {"key999", Integer.toString(block)});
+        }
+
+        BinaryTablePredicate predicate = BinaryTablePredicate.equalTo(0, "key123");
+        File plainFile = BinaryTableTest.writeTable(rows, 102, true);
+        Assert.assertEquals(0, this.checkFilteredRead(plainFile, rows, predicate));
+
+        File bloomFile = BinaryTableTest.writeTable(rows, 102, true, new int[] {0});
+        int skippedBlockCount = this.checkFilteredRead(bloomFile, rows, predicate);
+        Assert.assertTrue(
+                "only " + skippedBlockCount + " blocks were skipped",
+                skippedBlockCount >= 8);
+    }
+
+    /**
+     * Test that a predicate can use columns outside of the projection
+     * @throws IOException
+     *          if we get an exception
+     * @throws IllegalFormatException
+     *          if the formatting is bad
+     */
+    @Test
+    public void projectedPredicateTest() throws IOException, IllegalFormatException
+    {
+        List<String[]> rows = BinaryTableTest.createRows(3000);
+        File file = BinaryTableTest.writeTable(rows, 500, false);
+        BinaryTablePredicate predicate = BinaryTablePredicate.equalTo(2, "group4");
+
+        BinaryTableReader reader = new BinaryTableReader(file);
+        try
+        {
+            reader.setColumnProjection(new int[] {0});
+            reader.setRowPredicate(predicate);
+            for(String[] row: rows)
+            {
+                if(predicate.test(row))
+                {
+                    Assert.assertArrayEquals(new String[] {row[0]}, reader.readRow());
+                }
+            }
+            Assert.assertNull(reader.readRow());
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * Read the file with the given predicate and check that we get the
+     * same rows as testing every row
+     * @param file
+     *          the file
+     * @param rows
+     *          the rows that were written to the file
+     * @param predicate
+     *          the predicate
+     * @return
+     *          the number of blocks that the reader skipped
+     * @throws IOException
+     *          if the read fails
+     * @throws IllegalFormatException
+     *          if the file is bad
+     */
+    private int checkFilteredRead(
+            File file,
+            List<String[]> rows,
+            BinaryTablePredicate predicate)
+    throws IOException, IllegalFormatException
+    {
+        BinaryTableReader reader = new BinaryTableReader(file);
+        try
+        {
+            reader.setRowPredicate(predicate);
+            for(String[] row: rows)
+            {
+                if(predicate.test(row))
+                {
+                    Assert.assertArrayEquals(row, reader.readRow());
+                }
+            }
+            Assert.assertNull(reader.readRow());
+            return reader.getSkippedBlockCount();
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+}
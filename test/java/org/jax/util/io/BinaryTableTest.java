@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link BinaryTableWriter} and
+ * {@link BinaryTableReader}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class BinaryTableTest
+{
+    /**
+     * Test that every kind of column comes back exactly as it was written,
+     * with and without compression
+     * @throws IOException
+     *          if we get an exception
+     * @throws IllegalFormatException
+     *          if the formatting is bad
+     */
+    @Test
+    public void roundTripTest() throws IOException, IllegalFormatException
+    {
+        List<String[]> rows = createRows(2500);
+        for(boolean compress: new boolean[] {true, false})
+        {
+            File file = writeTable(rows, 1000, compress);
+            BinaryTableReader reader = new BinaryTableReader(file);
+            try
+            {
+                Assert.assertEquals(rows.size(), reader.getRowCount());
+                Assert.assertEquals(3, reader.getBlockCount());
+                Assert.assertEquals(5, reader.getColumnCount());
+                Assert.assertEquals(BinaryTableColumnType.LONG, reader.getColumnType(0));
+                Assert.assertEquals(BinaryTableColumnType.DOUBLE, reader.getColumnType(1));
+                Assert.assertEquals(BinaryTableColumnType.STRING, reader.getColumnType(2));
+                Assert.assertEquals(BinaryTableColumnType.STRING, reader.getColumnType(3));
+
+                for(String[] row: rows)
+                {
+                    Assert.assertArrayEquals(row, reader.readRow());
+                }
+                Assert.assertNull(reader.readRow());
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Test reading a projection of the columns and the column statistics
+     * @throws IOException
+     *          if we get an exception
+     * @throws IllegalFormatException
+     *          if the formatting is bad
+     */
+    @Test
+    public void projectionAndStatisticsTest() throws IOException, IllegalFormatException
+    {
+        List<String[]> rows = createRows(2500);
+        File file = writeTable(rows, 1000, true);
+        BinaryTableReader reader = new BinaryTableReader(file);
+        try
+        {
+            BinaryTableStatistics idStatistics = reader.getColumnStatistics(0);
+            Assert.assertEquals(-1250L, idStatistics.getLongMin());
+            Assert.assertEquals(1249L, idStatistics.getLongMax());
+            Assert.assertEquals(1000L, reader.getBlockStatistics(1, 0).getLongMax() -
+                                       reader.getBlockStatistics(0, 0).getLongMax());
+
+            reader.setColumnProjection(new int[] {4, 0});
+            for(String[] row: rows)
+            {
+                String[] projectedRow = reader.readRow();
+                Assert.assertEquals(2, projectedRow.length);
+                Assert.assertEquals(row.length > 4 ? row[4] : null, projectedRow[0]);
+                Assert.assertEquals(row[0], projectedRow[1]);
+            }
+            Assert.assertNull(reader.readRow());
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * Create rows with a long column, a double column, a low cardinality
+     * string column, a high cardinality string column and a column that's
+     * missing from some rows
+     * @param rowCount
+     *          the row count
+     * @return
+     *          the rows
+     */
+    static List<String[]> createRows(int rowCount)
+    {
+        Random random = new Random(rowCount);
+        List<String[]> rows = new ArrayList<String[]>(rowCount);
+        for(int i = 0; i < rowCount; i++)
+        {
+            String id = Long.toString(i - rowCount / 2);
+            String score = i % 7 == 0 ?
+                    Double.toString(i) :
+                    Double.toString(random.nextGaussian());
+            String group = "group" + (i % 5);
+            String name = i % 11 == 0 ? "" : "name\u00e9 " + random.nextInt();
+            if(i % 3 == 0)
+            {
+                rows.add(new String[] {id, score, group, name});
+            }
+            else
+            {
+                rows.add(new String[] {id, score, group, name, "007"});
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Write the rows to a temporary binary table file
+     * @param rows
+     *          the rows
+     * @param blockRowCount
+     *          the rows per block
+     * @param compress
+     *          true to compress chunks
+     * @return
+     *          the file
+     * @throws IOException
+     *          if the write fails
+     */
+    static File writeTable(List<String[]> rows, int blockRowCount, boolean compress)
+    throws IOException
+    {
+        return writeTable(rows, blockRowCount, compress, new int[0]);
+    }
+
+    /**
+     * Write the rows to a temporary binary table file
+     * @param rows
+     *          the rows
+     * @param blockRowCount
+     *          the rows per block
+     * @param compress
+     *          true to compress chunks
+     * @param bloomFilterColumns
+     *          the columns that get Bloom filters
+     * @return
+     *          the file
+     * @throws IOException
+     *          if the write fails
+     */
+    static File writeTable(
+            List<String[]> rows,
+            int blockRowCount,
+            boolean compress,
+            int[] bloomFilterColumns)
+    throws IOException
+    {
+        File file = File.createTempFile("binary-table-test", ".bin");
+        file.deleteOnExit();
+        BinaryTableWriter writer = new BinaryTableWriter(
+                new BufferedOutputStream(new FileOutputStream(file)),
+                blockRowCount,
+                compress);
+        writer.setBloomFilterColumns(bloomFilterColumns);
+        for(String[] row: rows)
+        {
+            writer.writeRow(row);
+        }
+        writer.close();
+        return file;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.io;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link ColumnarTable} and
+ * {@link DictionaryEncodedColumn}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class ColumnarTableTest
+{
+    /**
+     * Test that loading a flat file into a columnar table (which interns
+     * the fields as they're parsed) gives back the same rows as a plain
+     * {@link FlatFileReader}, with low cardinality columns encoded and
+     * high cardinality columns falling back on strings
+     * @throws IOException
+     *          if we get an exception
+     * @throws IllegalFormatException
+     *          if the formatting is bad
+     */
+    @Test
+    public void roundTripTest() throws IOException, IllegalFormatException
+    {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < 5000; i++)
+        {
+            text.append("chr").append(i % 20).append(',')
+                .append(i).append(",\"quoted ").append(i % 3).append("\"\n");
+        }
+
+        List<String[]> expectedRows = new ArrayList<String[]>();
+        FlatFileReader plainReader = new FlatFileReader(
+                new StringReader(text.toString()),
+                CommonFlatFileFormat.CSV_UNIX);
+        String[] row;
+        while((row = plainReader.readRow()) != null)
+        {
+            expectedRows.add(row);
+        }
+
+        ColumnarTable table = ColumnarTable.load(
+                new FlatFileReader(
+                        new StringReader(text.toString()),
+                        CommonFlatFileFormat.CSV_UNIX),
+                100);
+        Assert.assertEquals(expectedRows.size(), table.getRowCount());
+        Assert.assertEquals(3, table.getColumnCount());
+        for(int i = 0; i < expectedRows.size(); i++)
+        {
+            Assert.assertArrayEquals(expectedRows.get(i), table.getRow(i));
+        }
+
+        DictionaryEncodedColumn chromosomes = table.getColumn(0);
+        Assert.assertTrue(chromosomes.isEncoded());
+        Assert.assertEquals(20, chromosomes.getDictionary().size());
+        Assert.assertEquals(
+                "chr7",
+                chromosomes.getDictionary().getString(chromosomes.getCode(7)));
+        Assert.assertFalse(table.getColumn(1).isEncoded());
+        Assert.assertTrue(table.getColumn(2).isEncoded());
+
+        TableReader tableReader = table.toReader();
+        for(String[] expectedRow: expectedRows)
+        {
+            Assert.assertArrayEquals(expectedRow, tableReader.readRow());
+        }
+        Assert.assertNull(tableReader.readRow());
+    }
+
+    /**
+     * Test that null values survive encoding
+     */
+    @Test
+    public void nullValueTest()
+    {
+        DictionaryEncodedColumn column = new DictionaryEncodedColumn(10);
+        column.add("a");
+        column.add(null);
+        column.add("a");
+        Assert.assertEquals(3, column.size());
+        Assert.assertNull(column.get(1));
+        Assert.assertEquals(DictionaryEncodedColumn.NULL_CODE, column.getCode(1));
+        Assert.assertEquals(column.getCode(0), column.getCode(2));
+    }
+
+    /**
+     * Test that rows of differing lengths are rejected
+     * @throws IOException
+     *          if we get an exception
+     * @throws IllegalFormatException
+     *          if the formatting is bad
+     */
+    @Test(expected=IllegalFormatException.class)
+    public void raggedRowsTest() throws IOException, IllegalFormatException
+    {
+        ColumnarTable.load(new FlatFileReader(
+                new StringReader("a,b\nc\n"),
+                CommonFlatFileFormat.CSV_UNIX));
+    }
+}
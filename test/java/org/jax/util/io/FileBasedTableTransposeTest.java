@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jax.util.io;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link FileBasedTableTranspose}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class FileBasedTableTransposeTest
+{
+    /**
+     * Test that the transpose is right whether the table fits in memory,
+     * is split into a few bands or is split into so many bands that they
+     * have to be merged in more than one pass
+     * @throws IOException
+     *          if we get an exception
+     * @throws IllegalFormatException
+     *          if the formatting is bad
+     */
+    @Test
+    public void transposeTest() throws IOException, IllegalFormatException
+    {
+        int rowCount = 5000;
+        int columnCount = 3;
+        StringBuilder table = new StringBuilder();
+        for(int row = 0; row < rowCount; row++)
+        {
+            for(int column = 0; column < columnCount; column++)
+            {
+                if(column > 0)
+                {
+                    table.append(',');
+                }
+                table.append("r").append(row).append("c").append(column);
+            }
+            table.append('\n');
+        }
+
+        // the last limit gives 5000 bands which is more than
+        // MAX_OPEN_BAND_FILES squared
+        int[] cellLimits = {
+                FileBasedTableTranspose.DEFAULT_IN_MEMORY_CELL_LIMIT,
+                1000,
+                1};
+        for(int cellLimit: cellLimits)
+        {
+            StringWriter transposed = new StringWriter();
+            new FileBasedTableTranspose().transpose(
+                    new FlatFileReader(
+                            new StringReader(table.toString()),
+                            CommonFlatFileFormat.CSV_UNIX),
+                    new FlatFileWriter(transposed, CommonFlatFileFormat.CSV_UNIX),
+                    cellLimit);
+
+            List<String[]> rows = readAll(new FlatFileReader(
+                    new StringReader(transposed.toString()),
+                    CommonFlatFileFormat.CSV_UNIX));
+            Assert.assertEquals(columnCount, rows.size());
+            for(int column = 0; column < columnCount; column++)
+            {
+                String[] row = rows.get(column);
+                Assert.assertEquals(rowCount, row.length);
+                for(int i = 0; i < rowCount; i++)
+                {
+                    Assert.assertEquals("r" + i + "c" + column, row[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that ragged tables are rejected
+     * @throws IOException
+     *          if we get an exception
+     * @throws IllegalFormatException
+     *          if the formatting is bad
+     */
+    @Test(expected=IllegalFormatException.class)
+    public void raggedRowsTest() throws IOException, IllegalFormatException
+    {
+        new FileBasedTableTranspose().transpose(
+                new FlatFileReader(
+                        new StringReader("a,b\nc,d\ne\n"),
+                        CommonFlatFileFormat.CSV_UNIX),
+                new FlatFileWriter(new StringWriter(), CommonFlatFileFormat.CSV_UNIX),
+                2);
+    }
+
+    /**
+     * Test that a cell limit of less than 1 is rejected
+     * @throws IOException
+     *          if we get an exception
+     * @throws IllegalFormatException
+     *          if the formatting is bad
+     */
+    @Test(expected=IllegalArgumentException.class)
+    public void badCellLimitTest() throws IOException, IllegalFormatException
+    {
+        new FileBasedTableTranspose().transpose(
+                new FlatFileReader(
+                        new StringReader("a,b\n"),
+                        CommonFlatFileFormat.CSV_UNIX),
+                new FlatFileWriter(new StringWriter(), CommonFlatFileFormat.CSV_UNIX),
+                0);
+    }
+
+    private static List<String[]> readAll(TableReader reader)
+    throws IOException, IllegalFormatException
+    {
+        List<String[]> rows = new ArrayList<String[]>();
+        String[] row;
+        while((row = reader.readRow()) != null)
+        {
+            rows.add(row);
+        }
+        return rows;
+    }
+}
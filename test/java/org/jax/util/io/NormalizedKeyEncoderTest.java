@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jax.util.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link NormalizedKeyEncoder}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class NormalizedKeyEncoderTest
+{
+    /**
+     * chars that are awkward for the string encoding: the zero char that
+     * the terminator is built from, its neighbour, chars whose low byte is
+     * zero and the largest char
+     */
+    private static final char[] ALPHABET = {
+        '\u0000', '\u0001', 'a', 'b', '\u0100', '\u0200', '\uffff'};
+
+    /**
+     * Test that the key order of string columns is the same as
+     * {@link TableColumnComparator}'s order for every pair of rows
+     */
+    @Test
+    public void stringOrderTest()
+    {
+        Random random = new Random(1);
+        List<String[]> rows = new ArrayList<String[]>();
+        for(int i = 0; i < 200; i++)
+        {
+            rows.add(new String[] {randomString(random), "x", randomString(random)});
+        }
+
+        // explicit prefix cases: a string and that string plus a zero char
+        rows.add(new String[] {"a", "x", "z"});
+        rows.add(new String[] {"a\u0000", "x", ""});
+        rows.add(new String[] {"", "x", "\u0000"});
+        rows.add(new String[] {"\u0000", "x", ""});
+
+        int[] keyColumns = {0, 2};
+        NormalizedKeyEncoder encoder = new NormalizedKeyEncoder(keyColumns);
+        TableColumnComparator comparator = new TableColumnComparator(keyColumns);
+        assertSameOrder(rows, encoder, comparator);
+    }
+
+    /**
+     * Test that LONG and DOUBLE columns are ordered numerically and that
+     * they mix with string columns
+     */
+    @Test
+    public void numericOrderTest()
+    {
+        String[] longs = {
+                String.valueOf(Long.MIN_VALUE), "-10", "-9", "-1", "0", " 7 ",
+                "9", "10", "100", String.valueOf(Long.MAX_VALUE)};
+        String[] doubles = {
+                "-Infinity", "-1e300", "-2.5", "-0.0", "0.0", "1e-300", "2",
+                "10", "Infinity", "NaN"};
+        String[] strings = {"", "a", "ab", "b"};
+
+        Random random = new Random(2);
+        List<String[]> rows = new ArrayList<String[]>();
+        for(int i = 0; i < 300; i++)
+        {
+            rows.add(new String[] {
+                    longs[random.nextInt(longs.length)],
+                    doubles[random.nextInt(doubles.length)],
+                    strings[random.nextInt(strings.length)]});
+        }
+
+        NormalizedKeyEncoder encoder = new NormalizedKeyEncoder(
+                new int[] {0, 2, 1},
+                new SortKeyType[] {SortKeyType.LONG, SortKeyType.STRING, SortKeyType.DOUBLE});
+        Comparator<String[]> comparator = new Comparator<String[]>()
+        {
+            public int compare(String[] row1, String[] row2)
+            {
+                long long1 = Long.parseLong(row1[0].trim());
+                long long2 = Long.parseLong(row2[0].trim());
+                if(long1 != long2)
+                {
+                    return long1 < long2 ? -1 : 1;
+                }
+                int comparison = row1[2].compareTo(row2[2]);
+                if(comparison != 0)
+                {
+                    return comparison;
+                }
+                return Double.compare(
+                        Double.parseDouble(row1[1]),
+                        Double.parseDouble(row2[1]));
+            }
+        };
+        assertSameOrder(rows, encoder, comparator);
+
+        try
+        {
+            encoder.encode(new String[] {"1.5", "0", ""});
+            Assert.fail("a double in a LONG column should be an error");
+        }
+        catch(NumberFormatException ex)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Test that sorting rows gives the same result as a stable sort with
+     * {@link TableColumnComparator}
+     * @throws IOException
+     *          if we get an exception
+     */
+    @Test
+    public void sortRowsTest() throws IOException
+    {
+        Random random = new Random(3);
+        List<String[]> rows = new ArrayList<String[]>();
+        for(int i = 0; i < 5000; i++)
+        {
+            rows.add(new String[] {
+                    String.valueOf(random.nextInt(20)),
+                    String.valueOf(i)});
+        }
+
+        List<String[]> expected = new ArrayList<String[]>(rows);
+        Collections.sort(expected, new TableColumnComparator(new int[] {0}));
+
+        Iterator<String[]> sorted = new NormalizedKeyEncoder(new int[] {0}).sortRows(
+                rows.iterator());
+        for(String[] expectedRow: expected)
+        {
+            Assert.assertTrue(sorted.hasNext());
+            Assert.assertArrayEquals(expectedRow, sorted.next());
+        }
+        Assert.assertFalse(sorted.hasNext());
+    }
+
+    private static void assertSameOrder(
+            List<String[]> rows,
+            NormalizedKeyEncoder encoder,
+            Comparator<String[]> comparator)
+    {
+        List<long[]> keys = new ArrayList<long[]>(rows.size());
+        for(String[] row: rows)
+        {
+            keys.add(encoder.encode(row));
+        }
+
+        for(int i = 0; i < rows.size(); i++)
+        {
+            for(int j = 0; j < rows.size(); j++)
+            {
+                Assert.assertEquals(
+                        Integer.signum(comparator.compare(rows.get(i), rows.get(j))),
+                        Integer.signum(NormalizedKeyEncoder.compareKeys(
+                                keys.get(i),
+                                keys.get(j))));
+            }
+        }
+    }
+
+    private static String randomString(Random random)
+    {
+        int length = random.nextInt(6);
+        StringBuilder sb = new StringBuilder(length);
+        for(int i = 0; i < length; i++)
+        {
+            sb.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.jax.util.Condition;
+import org.jax.util.math.Function;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link TablePipeline}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class TablePipelineTest
+{
+    private static final Condition<String[]> EVEN_ID_CONDITION =
+        new Condition<String[]>()
+        {
+            public boolean test(String[] row)
+            {
+                return Integer.parseInt(row[0]) % 2 == 0;
+            }
+        };
+
+    private static final Function<String[], String[]> UPPER_CASE_FUNCTION =
+        new Function<String[], String[]>()
+        {
+            public String[] evaluate(String[] row)
+            {
+                String[] upperRow = new String[row.length];
+                for(int i = 0; i < row.length; i++)
+                {
+                    upperRow[i] = row[i].toUpperCase();
+                }
+                return upperRow;
+            }
+        };
+
+    /**
+     * Test that fused filters, projections and maps give the same rows as
+     * applying each operation one at a time
+     * @throws IOException
+     *          if we get an exception
+     * @throws IllegalFormatException
+     *          if the formatting is bad
+     */
+    @Test
+    public void rowOperationsTest() throws IOException, IllegalFormatException
+    {
+        List<String[]> input = createRows(1000);
+
+        List<String[]> expected = new ArrayList<String[]>();
+        for(String[] row: input)
+        {
+            if(EVEN_ID_CONDITION.test(row))
+            {
+                // project [2, 0, 1] followed by [1, 0] is [0, 2]
+                expected.add(UPPER_CASE_FUNCTION.evaluate(
+                        new String[] {row[0], row[2]}));
+            }
+        }
+
+        TablePipeline pipeline = TablePipeline.from(new ListTableReader(input))
+            .filter(EVEN_ID_CONDITION)
+            .project(new int[] {2, 0, 1})
+            .project(new int[] {1, 0})
+            .map(UPPER_CASE_FUNCTION);
+        assertRowsEqual(expected, readAll(pipeline.toReader()));
+    }
+
+    /**
+     * Test that a parallel write gives the same rows in the same order as
+     * a sequential one
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void parallelWriteTest() throws Exception
+    {
+        List<String[]> input = createRows(5000);
+        ListTableWriter sequentialWriter = new ListTableWriter();
+        long sequentialCount = TablePipeline.from(new ListTableReader(input))
+            .filter(EVEN_ID_CONDITION)
+            .map(UPPER_CASE_FUNCTION)
+            .writeTo(sequentialWriter);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            ListTableWriter parallelWriter = new ListTableWriter();
+            long parallelCount = TablePipeline.from(new ListTableReader(input))
+                .filter(EVEN_ID_CONDITION)
+                .map(UPPER_CASE_FUNCTION)
+                .writeTo(parallelWriter, executor, 37, 3);
+
+            Assert.assertEquals(2500L, sequentialCount);
+            Assert.assertEquals(sequentialCount, parallelCount);
+            assertRowsEqual(sequentialWriter.rows, parallelWriter.rows);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Test that sorting gives the same order as a
+     * {@link TableColumnComparator} for strings and numeric order for
+     * numbers
+     * @throws IOException
+     *          if we get an exception
+     * @throws IllegalFormatException
+     *          if the formatting is bad
+     */
+    @Test
+    public void sortTest() throws IOException, IllegalFormatException
+    {
+        List<String[]> input = createRows(2000);
+        Collections.shuffle(input, new Random(7));
+
+        List<String[]> expected = new ArrayList<String[]>(input);
+        Collections.sort(expected, new TableColumnComparator(new int[] {1, 0}));
+        List<String[]> sorted = readAll(TablePipeline.from(new ListTableReader(input))
+            .sort(new int[] {1, 0})
+            .toReader());
+        assertRowsEqual(expected, sorted);
+
+        sorted = readAll(TablePipeline.from(new ListTableReader(input))
+            .sort(new int[] {0}, new SortKeyType[] {SortKeyType.LONG})
+            .toReader());
+        Assert.assertEquals(input.size(), sorted.size());
+        for(int i = 0; i < sorted.size(); i++)
+        {
+            Assert.assertEquals(String.valueOf(i), sorted.get(i)[0]);
+        }
+    }
+
+    /**
+     * Test joining and subtracting pipelines
+     * @throws IOException
+     *          if we get an exception
+     * @throws IllegalFormatException
+     *          if the formatting is bad
+     */
+    @Test
+    public void joinAndSubtractTest() throws IOException, IllegalFormatException
+    {
+        List<String[]> left = createRows(100);
+        List<String[]> right = new ArrayList<String[]>();
+        for(int i = 0; i < 100; i += 3)
+        {
+            right.add(new String[] {String.valueOf(i), "right" + i});
+        }
+
+        List<String[]> joined = readAll(TablePipeline.from(new ListTableReader(left))
+            .join(TablePipeline.from(new ListTableReader(right)),
+                  new int[] {0},
+                  new int[] {0})
+            .sort(new int[] {0}, new SortKeyType[] {SortKeyType.LONG})
+            .toReader());
+        Assert.assertEquals(right.size(), joined.size());
+        for(String[] row: joined)
+        {
+            int id = Integer.parseInt(row[0]);
+            Assert.assertEquals(0, id % 3);
+            Assert.assertEquals("right" + id, row[row.length - 1]);
+        }
+
+        List<String[]> remaining = readAll(TablePipeline.from(new ListTableReader(left))
+            .subtract(TablePipeline.from(new ListTableReader(right)),
+                      new int[] {0},
+                      new int[] {0})
+            .toReader());
+        Assert.assertEquals(left.size() - right.size(), remaining.size());
+        for(String[] row: remaining)
+        {
+            Assert.assertTrue(Integer.parseInt(row[0]) % 3 != 0);
+        }
+    }
+
+    private static List<String[]> createRows(int rowCount)
+    {
+        List<String[]> rows = new ArrayList<String[]>(rowCount);
+        for(int i = 0; i < rowCount; i++)
+        {
+            rows.add(new String[] {
+                    String.valueOf(i),
+                    "group" + (i % 10),
+                    "name" + i});
+        }
+        return rows;
+    }
+
+    private static List<String[]> readAll(TableReader reader)
+    throws IOException, IllegalFormatException
+    {
+        List<String[]> rows = new ArrayList<String[]>();
+        String[] row;
+        while((row = reader.readRow()) != null)
+        {
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static void assertRowsEqual(List<String[]> expected, List<String[]> actual)
+    {
+        Assert.assertEquals(expected.size(), actual.size());
+        for(int i = 0; i < expected.size(); i++)
+        {
+            Assert.assertArrayEquals(expected.get(i), actual.get(i));
+        }
+    }
+
+    /**
+     * A reader over rows in memory
+     */
+    private static class ListTableReader extends AbstractTableReader
+    {
+        private final Iterator<String[]> rowIterator;
+
+        public ListTableReader(List<String[]> rows)
+        {
+            this.rowIterator = rows.iterator();
+        }
+
+        public String[] readRow()
+        {
+            return this.rowIterator.hasNext() ? this.rowIterator.next() : null;
+        }
+    }
+
+    /**
+     * A writer that keeps the rows in memory
+     */
+    private static class ListTableWriter implements TableWriter
+    {
+        private final List<String[]> rows = new ArrayList<String[]>();
+
+        public void writeRow(String[] row)
+        {
+            this.rows.add(row);
+        }
+
+        public void flush()
+        {
+        }
+
+        public void close()
+        {
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link TailingFlatFileReader}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class TailingFlatFileReaderTest
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Test that the tailer gives the same rows as {@link FlatFileReader}
+     * for a file that's a lot bigger than one read chunk, with quoted row
+     * delimiters and comments thrown in
+     * @throws IOException
+     *          if we get an exception
+     * @throws IllegalFormatException
+     *          if the formatting is bad
+     */
+    @Test
+    public void matchesFlatFileReaderTest() throws IOException, IllegalFormatException
+    {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < 20000; i++)
+        {
+            if(i % 1000 == 0)
+            {
+                text.append("#a comment with a \" quote\n");
+            }
+            text.append("row").append(i).append(",\"quoted\n")
+                .append(i).append(" \"\"x\"\"\",").append(i * 7).append('\n');
+        }
+
+        File file = createTempFile();
+        append(file, text.toString());
+
+        List<String[]> expectedRows = readAll(new FlatFileReader(
+                new StringReader(text.toString()),
+                CommonFlatFileFormat.CSV_UNIX));
+        TailingFlatFileReader tailer = new TailingFlatFileReader(
+                file,
+                CommonFlatFileFormat.CSV_UNIX,
+                UTF8,
+                0L);
+        try
+        {
+            for(String[] expectedRow: expectedRows)
+            {
+                Assert.assertArrayEquals(expectedRow, tailer.pollRow());
+            }
+            Assert.assertNull(tailer.pollRow());
+            Assert.assertEquals(file.length(), tailer.getCheckpoint());
+        }
+        finally
+        {
+            tailer.close();
+        }
+    }
+
+    /**
+     * Test that a partly written row is held back until its row delimiter
+     * shows up and that a checkpoint resumes at the next row
+     * @throws IOException
+     *          if we get an exception
+     * @throws IllegalFormatException
+     *          if the formatting is bad
+     */
+    @Test
+    public void partialRowAndCheckpointTest() throws IOException, IllegalFormatException
+    {
+        File file = createTempFile();
+        append(file, "a,b\nc,\"d\n");
+
+        TailingFlatFileReader tailer = new TailingFlatFileReader(
+                file,
+                CommonFlatFileFormat.CSV_UNIX,
+                UTF8,
+                0L);
+        long checkpoint;
+        try
+        {
+            Assert.assertArrayEquals(new String[] {"a", "b"}, tailer.pollRow());
+            Assert.assertNull(tailer.pollRow());
+
+            append(file, "e\"\nf,g\n");
+            Assert.assertArrayEquals(new String[] {"c", "d\ne"}, tailer.pollRow());
+            checkpoint = tailer.getCheckpoint();
+        }
+        finally
+        {
+            tailer.close();
+        }
+
+        TailingFlatFileReader resumedTailer = new TailingFlatFileReader(
+                file,
+                CommonFlatFileFormat.CSV_UNIX,
+                UTF8,
+                checkpoint);
+        try
+        {
+            Assert.assertArrayEquals(new String[] {"f", "g"}, resumedTailer.pollRow());
+            Assert.assertNull(resumedTailer.pollRow());
+        }
+        finally
+        {
+            resumedTailer.close();
+        }
+    }
+
+    /**
+     * Test that a quote in the middle of an unquoted field is an error
+     * (like it is for {@link FlatFileReader}) once the rows in front of it
+     * have been read
+     * @throws IOException
+     *          if we get an exception
+     * @throws IllegalFormatException
+     *          if the formatting is bad
+     */
+    @Test
+    public void illegalQuoteTest() throws IOException, IllegalFormatException
+    {
+        File file = createTempFile();
+        append(file, "a,b\nc,5'6\",x\nd,e\n");
+
+        TailingFlatFileReader tailer = new TailingFlatFileReader(
+                file,
+                CommonFlatFileFormat.CSV_UNIX,
+                UTF8,
+                0L);
+        try
+        {
+            Assert.assertArrayEquals(new String[] {"a", "b"}, tailer.pollRow());
+            try
+            {
+                tailer.pollRow();
+                Assert.fail("the quote in an unquoted field should be an error");
+            }
+            catch(IllegalFormatException ex)
+            {
+                // expected
+            }
+        }
+        finally
+        {
+            tailer.close();
+        }
+    }
+
+    private static File createTempFile() throws IOException
+    {
+        File file = File.createTempFile("tailing-test", ".csv");
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static void append(File file, String text) throws IOException
+    {
+        OutputStream out = new FileOutputStream(file, true);
+        try
+        {
+            out.write(text.getBytes(UTF8.name()));
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private static List<String[]> readAll(TableReader reader)
+    throws IOException, IllegalFormatException
+    {
+        List<String[]> rows = new ArrayList<String[]>();
+        String[] row;
+        while((row = reader.readRow()) != null)
+        {
+            rows.add(row);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.math;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link ArrayUtilities} and the {@link Matlab}
+ * functions that delegate to it
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class ArrayUtilitiesTest
+{
+    /**
+     * Test argmax and argmin against a simple scan, including the NaN
+     * policies and the parallel versions
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void argExtremeTest() throws Exception
+    {
+        Random random = new Random(8);
+        int[] intValues = new int[1000];
+        double[] doubleValues = new double[200000];
+        for(int i = 0; i < intValues.length; i++)
+        {
+            intValues[i] = random.nextInt(50);
+        }
+        for(int i = 0; i < doubleValues.length; i++)
+        {
+            doubleValues[i] = i % 5000 == 17 ? Double.NaN : random.nextInt(1000);
+        }
+
+        Assert.assertEquals(-1, ArrayUtilities.argmax(intValues, 3, 3));
+        Assert.assertEquals(firstIndexOf(intValues, 10, 900, true),
+                ArrayUtilities.argmax(intValues, 10, 900));
+        Assert.assertEquals(firstIndexOf(intValues, 10, 900, false),
+                ArrayUtilities.argmin(intValues, 10, 900));
+
+        int skipMax = ArrayUtilities.argmax(
+                doubleValues, 0, doubleValues.length, NaNPolicy.SKIP);
+        int skipMin = ArrayUtilities.argmin(
+                doubleValues, 0, doubleValues.length, NaNPolicy.SKIP);
+        Assert.assertEquals(firstIndexOf(doubleValues, true), skipMax);
+        Assert.assertEquals(firstIndexOf(doubleValues, false), skipMin);
+        Assert.assertEquals(17, ArrayUtilities.argmax(
+                doubleValues, 0, doubleValues.length, NaNPolicy.PROPAGATE));
+        Assert.assertEquals(17, ArrayUtilities.argmin(
+                doubleValues, 0, doubleValues.length, NaNPolicy.PROPAGATE));
+        Assert.assertEquals(-1, ArrayUtilities.argmax(
+                new double[] {Double.NaN, Double.NaN}, 0, 2, NaNPolicy.SKIP));
+        try
+        {
+            ArrayUtilities.argmin(doubleValues, 0, doubleValues.length, NaNPolicy.ERROR);
+            Assert.fail("a NaN should be an error");
+        }
+        catch(IllegalArgumentException ex)
+        {
+            // expected
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            for(NaNPolicy nanPolicy: new NaNPolicy[] {NaNPolicy.SKIP, NaNPolicy.PROPAGATE})
+            {
+                Assert.assertEquals(
+                        ArrayUtilities.argmax(doubleValues, 0, doubleValues.length, nanPolicy),
+                        ArrayUtilities.parallelArgmax(doubleValues, nanPolicy, executor, 4));
+                Assert.assertEquals(
+                        ArrayUtilities.argmin(doubleValues, 0, doubleValues.length, nanPolicy),
+                        ArrayUtilities.parallelArgmin(doubleValues, nanPolicy, executor, 4));
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Test the masks and finds for every operator against a scan that
+     * compares each value
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void maskAndFindTest() throws Exception
+    {
+        Random random = new Random(9);
+        int[] intValues = new int[3000];
+        double[] doubleValues = new double[150000];
+        for(int i = 0; i < intValues.length; i++)
+        {
+            intValues[i] = random.nextInt(20) - 10;
+        }
+        for(int i = 0; i < doubleValues.length; i++)
+        {
+            doubleValues[i] = i % 101 == 0 ? Double.NaN : random.nextInt(20) - 10;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try
+        {
+            for(ComparisonOperator operator: ComparisonOperator.values())
+            {
+                boolean[] expectedIntMask = new boolean[intValues.length];
+                for(int i = 0; i < intValues.length; i++)
+                {
+                    expectedIntMask[i] = compare(intValues[i], operator, 3);
+                }
+                boolean[] expectedDoubleMask = new boolean[doubleValues.length];
+                for(int i = 0; i < doubleValues.length; i++)
+                {
+                    expectedDoubleMask[i] = compare(doubleValues[i], operator, 3.0);
+                }
+
+                boolean[] intMask = new boolean[intValues.length];
+                int intCount = ArrayUtilities.mask(
+                        intValues, 0, intValues.length, operator, 3, intMask);
+                Assert.assertTrue(Arrays.equals(expectedIntMask, intMask));
+
+                boolean[] doubleMask = new boolean[doubleValues.length];
+                int doubleCount = ArrayUtilities.mask(
+                        doubleValues, 0, doubleValues.length, operator, 3.0, doubleMask);
+                Assert.assertTrue(Arrays.equals(expectedDoubleMask, doubleMask));
+
+                int[] expectedIntIndices = indicesOf(expectedIntMask);
+                int[] expectedDoubleIndices = indicesOf(expectedDoubleMask);
+                Assert.assertEquals(expectedIntIndices.length, intCount);
+                Assert.assertEquals(expectedDoubleIndices.length, doubleCount);
+
+                int[] buffer = new int[doubleValues.length];
+                int count = ArrayUtilities.find(
+                        intValues, 0, intValues.length, operator, 3, buffer);
+                Assert.assertArrayEquals(expectedIntIndices, Arrays.copyOf(buffer, count));
+                count = ArrayUtilities.find(
+                        doubleValues, 0, doubleValues.length, operator, 3.0, buffer);
+                Assert.assertArrayEquals(expectedDoubleIndices, Arrays.copyOf(buffer, count));
+                count = ArrayUtilities.find(expectedIntMask, 0, intValues.length, buffer);
+                Assert.assertArrayEquals(expectedIntIndices, Arrays.copyOf(buffer, count));
+
+                Assert.assertArrayEquals(
+                        expectedDoubleIndices,
+                        ArrayUtilities.parallelFind(doubleValues, operator, 3.0, executor, 3));
+
+                // the Matlab facade doesn't know about != so nothing matches
+                int[] matlabIndices = Matlab.find(intValues, 3, operator.getSymbol());
+                Assert.assertArrayEquals(
+                        operator == ComparisonOperator.NOT_EQUAL ?
+                                new int[0] : expectedIntIndices,
+                        matlabIndices);
+                matlabIndices = Matlab.find(doubleValues, 3.0, operator.getSymbol());
+                Assert.assertArrayEquals(
+                        operator == ComparisonOperator.NOT_EQUAL ?
+                                new int[0] : expectedDoubleIndices,
+                        matlabIndices);
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(0, Matlab.find(intValues, 3, "~=").length);
+        int[] nonZero = Matlab.find(intValues);
+        for(int i = 0, j = 0; i < intValues.length; i++)
+        {
+            if(intValues[i] != 0)
+            {
+                Assert.assertEquals(i, nonZero[j++]);
+            }
+        }
+    }
+
+    /**
+     * Test that the {@link Matlab} max, min, intersect and unique functions
+     * give the same results as their old sort based versions
+     */
+    @Test
+    public void matlabEquivalenceTest()
+    {
+        Random random = new Random(10);
+        for(int trial = 0; trial < 20; trial++)
+        {
+            int[] intValues = new int[1 + random.nextInt(500)];
+            int[] otherValues = new int[random.nextInt(300)];
+            double[] doubleValues = new double[intValues.length];
+            for(int i = 0; i < intValues.length; i++)
+            {
+                intValues[i] = random.nextInt(200) - 100;
+                doubleValues[i] = random.nextInt(10) == 0 ?
+                        Double.NaN : random.nextGaussian();
+            }
+            for(int i = 0; i < otherValues.length; i++)
+            {
+                otherValues[i] = random.nextInt(200) - 100;
+            }
+
+            int[] sortedInts = intValues.clone();
+            Arrays.sort(sortedInts);
+            double[] sortedDoubles = doubleValues.clone();
+            Arrays.sort(sortedDoubles);
+
+            Assert.assertEquals(sortedInts[sortedInts.length - 1], Matlab.Max(intValues));
+            Assert.assertEquals(sortedInts[0], Matlab.Min(intValues));
+            Assert.assertEquals(
+                    Double.valueOf(oldMax(sortedDoubles)),
+                    Double.valueOf(Matlab.Max(doubleValues)));
+            Assert.assertEquals(
+                    Double.valueOf(sortedDoubles[0]),
+                    Double.valueOf(Matlab.Min(doubleValues)));
+
+            Assert.assertArrayEquals(
+                    oldIntersect(intValues, otherValues),
+                    Matlab.intersect(intValues, otherValues));
+            Assert.assertArrayEquals(
+                    oldIntersect(otherValues, intValues),
+                    Matlab.intersect(otherValues, intValues));
+            Assert.assertArrayEquals(oldUnique(sortedInts), Matlab.unique(intValues));
+
+            int[] sortedOthers = otherValues.clone();
+            Arrays.sort(sortedOthers);
+            Assert.assertArrayEquals(
+                    oldMultisetIntersect(sortedInts, sortedOthers),
+                    ArrayUtilities.intersectSorted(sortedInts, sortedOthers));
+        }
+
+        double[] allNaN = {Double.NaN, Double.NaN};
+        Assert.assertTrue(Double.isNaN(Matlab.Max(allNaN)));
+        Assert.assertTrue(Double.isNaN(Matlab.Min(allNaN)));
+    }
+
+    private static int firstIndexOf(int[] values, int fromIndex, int toIndex, boolean max)
+    {
+        int index = fromIndex;
+        for(int i = fromIndex; i < toIndex; i++)
+        {
+            if(max ? values[i] > values[index] : values[i] < values[index])
+            {
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    private static int firstIndexOf(double[] values, boolean max)
+    {
+        int index = -1;
+        for(int i = 0; i < values.length; i++)
+        {
+            if(!Double.isNaN(values[i]) && (index == -1 ||
+               (max ? values[i] > values[index] : values[i] < values[index])))
+            {
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    private static boolean compare(double value, ComparisonOperator operator, double threshold)
+    {
+        switch(operator)
+        {
+            case GREATER_THAN: return value > threshold;
+            case GREATER_THAN_OR_EQUAL: return value >= threshold;
+            case EQUAL: return value == threshold;
+            case NOT_EQUAL: return value != threshold;
+            case LESS_THAN: return value < threshold;
+            case LESS_THAN_OR_EQUAL: return value <= threshold;
+            default: throw new IllegalArgumentException(operator.toString());
+        }
+    }
+
+    private static int[] indicesOf(boolean[] mask)
+    {
+        int count = 0;
+        int[] indices = new int[mask.length];
+        for(int i = 0; i < mask.length; i++)
+        {
+            if(mask[i])
+            {
+                indices[count++] = i;
+            }
+        }
+        return Arrays.copyOf(indices, count);
+    }
+
+    /**
+     * the old Matlab.Max: the largest value ignoring NaN
+     */
+    private static double oldMax(double[] sortedValues)
+    {
+        double m = 0.0;
+        for(int i = sortedValues.length - 1; i >= 0; i--)
+        {
+            m = sortedValues[i];
+            if(!Double.isNaN(m))
+            {
+                break;
+            }
+        }
+        return m;
+    }
+
+    /**
+     * the old Matlab.intersect: the values of the shorter set (in order)
+     * which are found in the longer set
+     */
+    private static int[] oldIntersect(int[] set1, int[] set2)
+    {
+        int[] longSet = set1.length > set2.length ? set1.clone() : set2.clone();
+        int[] shortSet = set1.length > set2.length ? set2 : set1;
+        Arrays.sort(longSet);
+        int[] result = new int[shortSet.length];
+        int count = 0;
+        for(int value: shortSet)
+        {
+            if(Arrays.binarySearch(longSet, value) >= 0)
+            {
+                result[count++] = value;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static int[] oldUnique(int[] sortedValues)
+    {
+        int[] result = new int[sortedValues.length];
+        int count = 0;
+        for(int i = 0; i < sortedValues.length; i++)
+        {
+            if(i == 0 || sortedValues[i] != sortedValues[i - 1])
+            {
+                result[count++] = sortedValues[i];
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static int[] oldMultisetIntersect(int[] sortedValues1, int[] sortedValues2)
+    {
+        int[] result = new int[sortedValues1.length];
+        int count = 0;
+        boolean[] used = new boolean[sortedValues2.length];
+        for(int value: sortedValues1)
+        {
+            for(int j = 0; j < sortedValues2.length; j++)
+            {
+                if(!used[j] && sortedValues2[j] == value)
+                {
+                    used[j] = true;
+                    result[count++] = value;
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
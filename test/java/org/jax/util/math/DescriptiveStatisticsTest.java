@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.math;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link DescriptiveStatistics} and
+ * {@link RunningStatistics}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class DescriptiveStatisticsTest
+{
+    private static final double TOLERANCE = 1e-9;
+
+    /**
+     * Test that the kernels agree with the textbook two loop calculations
+     * (what the {@link Matlab} functions used to do) on slices of random
+     * data
+     */
+    @Test
+    public void matchesNaiveTest()
+    {
+        Random random = new Random(11);
+        double[] x = new double[1500];
+        double[] y = new double[x.length];
+        double[] w = new double[x.length];
+        for(int i = 0; i < x.length; i++)
+        {
+            x[i] = random.nextGaussian() * 10.0 + 3.0;
+            y[i] = x[i] * 0.5 + random.nextGaussian();
+            w[i] = random.nextDouble();
+        }
+
+        int[][] slices = {{0, x.length}, {7, 700}, {300, 301}, {5, 5}};
+        for(int[] slice: slices)
+        {
+            int from = slice[0];
+            int to = slice[1];
+            int n = to - from;
+
+            double sum = 0.0;
+            double weightSum = 0.0;
+            double weightedSum = 0.0;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for(int i = from; i < to; i++)
+            {
+                sum += x[i];
+                weightSum += w[i];
+                weightedSum += w[i] * x[i];
+                min = Math.min(min, x[i]);
+                max = Math.max(max, x[i]);
+            }
+            double mean = sum / n;
+            double yMean = 0.0;
+            for(int i = from; i < to; i++)
+            {
+                yMean += y[i];
+            }
+            yMean /= n;
+
+            double ss = 0.0;
+            double yss = 0.0;
+            double cross = 0.0;
+            for(int i = from; i < to; i++)
+            {
+                ss += (x[i] - mean) * (x[i] - mean);
+                yss += (y[i] - yMean) * (y[i] - yMean);
+                cross += (x[i] - mean) * (y[i] - yMean);
+            }
+
+            Assert.assertEquals(n, DescriptiveStatistics.count(x, from, to));
+            Assert.assertEquals(
+                    sum,
+                    DescriptiveStatistics.sum(x, from, to, NaNPolicy.PROPAGATE),
+                    TOLERANCE);
+            if(n == 0)
+            {
+                Assert.assertTrue(Double.isNaN(
+                        DescriptiveStatistics.mean(x, from, to, NaNPolicy.PROPAGATE)));
+                continue;
+            }
+
+            Assert.assertEquals(
+                    mean,
+                    DescriptiveStatistics.mean(x, from, to, NaNPolicy.PROPAGATE),
+                    TOLERANCE);
+            Assert.assertEquals(
+                    ss,
+                    DescriptiveStatistics.sumOfSquaredDeviations(
+                            x, from, to, NaNPolicy.PROPAGATE),
+                    TOLERANCE * Math.max(1.0, ss));
+            Assert.assertEquals(
+                    min,
+                    DescriptiveStatistics.min(x, from, to, NaNPolicy.PROPAGATE),
+                    0.0);
+            Assert.assertEquals(
+                    max,
+                    DescriptiveStatistics.max(x, from, to, NaNPolicy.PROPAGATE),
+                    0.0);
+            Assert.assertEquals(
+                    weightedSum / weightSum,
+                    DescriptiveStatistics.weightedMean(
+                            x, w, from, to, NaNPolicy.PROPAGATE),
+                    TOLERANCE);
+
+            if(n == 1)
+            {
+                Assert.assertTrue(Double.isNaN(
+                        DescriptiveStatistics.variance(x, from, to, NaNPolicy.PROPAGATE)));
+            }
+            else
+            {
+                Assert.assertEquals(
+                        ss / (n - 1),
+                        DescriptiveStatistics.variance(x, from, to, NaNPolicy.PROPAGATE),
+                        TOLERANCE * Math.max(1.0, ss));
+                Assert.assertEquals(
+                        Math.sqrt(ss / (n - 1)),
+                        DescriptiveStatistics.standardDeviation(
+                                x, from, to, NaNPolicy.PROPAGATE),
+                        TOLERANCE);
+                Assert.assertEquals(
+                        cross / (n - 1),
+                        DescriptiveStatistics.covariance(
+                                x, y, from, to, NaNPolicy.PROPAGATE),
+                        TOLERANCE * Math.max(1.0, Math.abs(cross)));
+                Assert.assertEquals(
+                        cross / Math.sqrt(ss * yss),
+                        DescriptiveStatistics.correlation(
+                                x, y, from, to, NaNPolicy.PROPAGATE),
+                        TOLERANCE);
+            }
+        }
+    }
+
+    /**
+     * Test that the compensated sum stays close to the exact sum where a
+     * naive running sum drifts away from it
+     */
+    @Test
+    public void sumAccuracyTest()
+    {
+        double[] values = new double[1000000];
+        Arrays.fill(values, 0.1);
+        double exactSum = new BigDecimal(0.1).multiply(
+                new BigDecimal(values.length)).doubleValue();
+
+        double naiveSum = 0.0;
+        for(double value: values)
+        {
+            naiveSum += value;
+        }
+        double sum = DescriptiveStatistics.sum(
+                values, 0, values.length, NaNPolicy.PROPAGATE);
+        Assert.assertTrue(Math.abs(naiveSum - exactSum) > 1e-7);
+        Assert.assertEquals(exactSum, sum, 1e-9);
+
+        // a constant with a big offset should have a variance of exactly 0
+        double[] constant = new double[1000];
+        Arrays.fill(constant, 1e9 + 0.1);
+        Assert.assertEquals(
+                0.0,
+                DescriptiveStatistics.variance(
+                        constant, 0, constant.length, NaNPolicy.PROPAGATE),
+                0.0);
+    }
+
+    /**
+     * Test each of the NaN policies
+     */
+    @Test
+    public void nanPolicyTest()
+    {
+        double[] values = {1.0, Double.NaN, 3.0, 5.0};
+        double[] weights = {1.0, 1.0, Double.NaN, 1.0};
+
+        Assert.assertEquals(3, DescriptiveStatistics.count(values, 0, values.length));
+        Assert.assertTrue(Double.isNaN(DescriptiveStatistics.sum(
+                values, 0, values.length, NaNPolicy.PROPAGATE)));
+        Assert.assertTrue(Double.isNaN(DescriptiveStatistics.min(
+                values, 0, values.length, NaNPolicy.PROPAGATE)));
+        Assert.assertEquals(
+                9.0,
+                DescriptiveStatistics.sum(values, 0, values.length, NaNPolicy.SKIP),
+                0.0);
+        Assert.assertEquals(
+                3.0,
+                DescriptiveStatistics.mean(values, 0, values.length, NaNPolicy.SKIP),
+                0.0);
+        Assert.assertEquals(
+                4.0,
+                DescriptiveStatistics.variance(values, 0, values.length, NaNPolicy.SKIP),
+                TOLERANCE);
+        Assert.assertEquals(
+                1.0,
+                DescriptiveStatistics.min(values, 0, values.length, NaNPolicy.SKIP),
+                0.0);
+        Assert.assertEquals(
+                5.0,
+                DescriptiveStatistics.max(values, 0, values.length, NaNPolicy.SKIP),
+                0.0);
+
+        // only the 1st and last pairs are complete
+        Assert.assertEquals(
+                3.0,
+                DescriptiveStatistics.weightedMean(
+                        values, weights, 0, values.length, NaNPolicy.SKIP),
+                TOLERANCE);
+
+        // the slice doesn't include the NaN so ERROR shouldn't complain
+        Assert.assertEquals(
+                3.0,
+                DescriptiveStatistics.sum(values, 2, 3, NaNPolicy.ERROR),
+                0.0);
+        try
+        {
+            DescriptiveStatistics.mean(values, 0, values.length, NaNPolicy.ERROR);
+            Assert.fail("a NaN should be an error");
+        }
+        catch(IllegalArgumentException ex)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Test that {@link RunningStatistics} agrees with the batch kernels
+     * whether the values are added one at a time or merged from pieces
+     */
+    @Test
+    public void runningStatisticsTest()
+    {
+        Random random = new Random(5);
+        double[] values = new double[3000];
+        for(int i = 0; i < values.length; i++)
+        {
+            values[i] = i % 100 == 0 ? Double.NaN : random.nextDouble() * 1000.0 - 10.0;
+        }
+
+        RunningStatistics all = new RunningStatistics(NaNPolicy.SKIP);
+        for(double value: values)
+        {
+            all.add(value);
+        }
+
+        RunningStatistics merged = new RunningStatistics(NaNPolicy.SKIP);
+        for(int from = 0; from < values.length; from += 777)
+        {
+            RunningStatistics piece = new RunningStatistics(NaNPolicy.SKIP);
+            piece.addAll(values, from, Math.min(values.length, from + 777));
+            merged.merge(piece);
+        }
+        merged.merge(new RunningStatistics(NaNPolicy.SKIP));
+
+        int n = values.length;
+        for(RunningStatistics stats: new RunningStatistics[] {all, merged})
+        {
+            Assert.assertEquals(
+                    DescriptiveStatistics.count(values, 0, n),
+                    stats.getCount());
+            Assert.assertEquals(
+                    DescriptiveStatistics.mean(values, 0, n, NaNPolicy.SKIP),
+                    stats.getMean(),
+                    TOLERANCE);
+            Assert.assertEquals(
+                    DescriptiveStatistics.sum(values, 0, n, NaNPolicy.SKIP),
+                    stats.getSum(),
+                    1e-6);
+            Assert.assertEquals(
+                    DescriptiveStatistics.variance(values, 0, n, NaNPolicy.SKIP),
+                    stats.getVariance(),
+                    1e-6);
+            Assert.assertEquals(
+                    DescriptiveStatistics.min(values, 0, n, NaNPolicy.SKIP),
+                    stats.getMin(),
+                    0.0);
+            Assert.assertEquals(
+                    DescriptiveStatistics.max(values, 0, n, NaNPolicy.SKIP),
+                    stats.getMax(),
+                    0.0);
+        }
+
+        RunningStatistics propagating = new RunningStatistics(NaNPolicy.PROPAGATE);
+        propagating.add(1.0);
+        propagating.add(Double.NaN);
+        propagating.add(2.0);
+        Assert.assertTrue(Double.isNaN(propagating.getMean()));
+    }
+}
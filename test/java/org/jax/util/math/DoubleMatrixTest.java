@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.math;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link DoubleMatrix}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class DoubleMatrixTest
+{
+    /**
+     * Test that values, rows, columns and views agree with the array the
+     * matrix was made from
+     */
+    @Test
+    public void accessTest()
+    {
+        double[][] values = createValues(37, 11, new Random(1));
+        DoubleMatrix matrix = DoubleMatrix.allocateDirect(values);
+        Assert.assertEquals(37, matrix.getRowCount());
+        Assert.assertEquals(11, matrix.getColumnCount());
+        Assert.assertFalse(matrix.isMapped());
+        assertMatrixEquals(values, matrix);
+
+        double[] column = matrix.getColumn(4, null);
+        for(int row = 0; row < values.length; row++)
+        {
+            Assert.assertEquals(values[row][4], column[row], 0.0);
+        }
+        Assert.assertArrayEquals(values[5], matrix.getRow(5, new double[11]), 0.0);
+        Assert.assertArrayEquals(values[6], matrix.getRowView(6).toArray(), 0.0);
+        Assert.assertArrayEquals(column, matrix.getColumnView(4).toArray(), 0.0);
+
+        matrix.set(2, 3, -1.0);
+        Assert.assertEquals(-1.0, matrix.getRowView(2).get(3), 0.0);
+        matrix.getColumnView(3).set(2, -2.0);
+        Assert.assertEquals(-2.0, matrix.get(2, 3), 0.0);
+
+        double[] newRow = new double[11];
+        matrix.setRow(0, newRow);
+        Assert.assertArrayEquals(newRow, matrix.toArray()[0], 0.0);
+        double[] newColumn = new double[37];
+        newColumn[36] = 9.0;
+        matrix.setColumn(10, newColumn);
+        Assert.assertEquals(9.0, matrix.get(36, 10), 0.0);
+
+        try
+        {
+            matrix.get(37, 0);
+            Assert.fail("reading past the last row should fail");
+        }
+        catch(IndexOutOfBoundsException ex)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Test that the blocked transpose matches a naive transpose for
+     * dimensions which aren't multiples of the block size
+     */
+    @Test
+    public void transposeTest()
+    {
+        Random random = new Random(2);
+        int[][] dimensions = {{1, 1}, {1, 200}, {130, 3}, {129, 257}};
+        for(int[] dimension: dimensions)
+        {
+            double[][] values = createValues(dimension[0], dimension[1], random);
+            double[][] transposed = new double[dimension[1]][dimension[0]];
+            for(int row = 0; row < dimension[0]; row++)
+            {
+                for(int column = 0; column < dimension[1]; column++)
+                {
+                    transposed[column][row] = values[row][column];
+                }
+            }
+
+            DoubleMatrix target = DoubleMatrix.allocateDirect(dimension[1], dimension[0]);
+            DoubleMatrix.allocateDirect(values).transposeInto(target);
+            assertMatrixEquals(transposed, target);
+        }
+
+        try
+        {
+            DoubleMatrix.allocateDirect(3, 4).transposeInto(
+                    DoubleMatrix.allocateDirect(3, 4));
+            Assert.fail("the target dimensions should be checked");
+        }
+        catch(IllegalArgumentException ex)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Test the row and column statistics against the
+     * {@link DescriptiveStatistics} kernels
+     */
+    @Test
+    public void statisticsTest()
+    {
+        double[][] values = createValues(20, 30, new Random(3));
+        values[4][7] = Double.NaN;
+        DoubleMatrix matrix = DoubleMatrix.allocateDirect(values);
+
+        double[] means = matrix.getRowMeans(NaNPolicy.SKIP);
+        double[] variances = matrix.getRowVariances(NaNPolicy.SKIP);
+        for(int row = 0; row < values.length; row++)
+        {
+            Assert.assertEquals(
+                    DescriptiveStatistics.mean(values[row], 0, 30, NaNPolicy.SKIP),
+                    means[row],
+                    1e-12);
+            Assert.assertEquals(
+                    DescriptiveStatistics.variance(values[row], 0, 30, NaNPolicy.SKIP),
+                    variances[row],
+                    1e-12);
+        }
+        Assert.assertTrue(Double.isNaN(matrix.getRowMeans(NaNPolicy.PROPAGATE)[4]));
+
+        RunningStatistics[] columnStatistics = matrix.getColumnStatistics(NaNPolicy.SKIP);
+        for(int column = 0; column < values[0].length; column++)
+        {
+            double[] columnValues = matrix.getColumn(column, null);
+            Assert.assertEquals(
+                    DescriptiveStatistics.mean(columnValues, 0, 20, NaNPolicy.SKIP),
+                    columnStatistics[column].getMean(),
+                    1e-12);
+            Assert.assertEquals(
+                    DescriptiveStatistics.count(columnValues, 0, 20),
+                    columnStatistics[column].getCount());
+        }
+    }
+
+    /**
+     * Test that a mapped matrix's values are in the file when it's
+     * reopened and that the file length is checked
+     * @throws IOException
+     *          if we get an exception
+     */
+    @Test
+    public void mappedTest() throws IOException
+    {
+        File file = File.createTempFile("matrix-test", ".bin");
+        file.deleteOnExit();
+
+        double[][] values = createValues(50, 9, new Random(4));
+        DoubleMatrix matrix = DoubleMatrix.createMapped(file, 50, 9);
+        Assert.assertTrue(matrix.isMapped());
+        for(int row = 0; row < values.length; row++)
+        {
+            matrix.setRow(row, values[row]);
+        }
+        matrix.force();
+        Assert.assertEquals(8L * 50 * 9, file.length());
+
+        DoubleMatrix reopened = DoubleMatrix.openMapped(file, 50, 9, true);
+        assertMatrixEquals(values, reopened);
+
+        try
+        {
+            DoubleMatrix.openMapped(file, 50, 10, true);
+            Assert.fail("the wrong dimensions should be an error");
+        }
+        catch(IOException ex)
+        {
+            // expected
+        }
+    }
+
+    private static double[][] createValues(int rowCount, int columnCount, Random random)
+    {
+        double[][] values = new double[rowCount][columnCount];
+        for(int row = 0; row < rowCount; row++)
+        {
+            for(int column = 0; column < columnCount; column++)
+            {
+                values[row][column] = random.nextGaussian();
+            }
+        }
+        return values;
+    }
+
+    private static void assertMatrixEquals(double[][] expected, DoubleMatrix matrix)
+    {
+        Assert.assertEquals(expected.length, matrix.getRowCount());
+        double[][] actual = matrix.toArray();
+        for(int row = 0; row < expected.length; row++)
+        {
+            Assert.assertArrayEquals(expected[row], actual[row], 0.0);
+            for(int column = 0; column < expected[row].length; column++)
+            {
+                Assert.assertEquals(expected[row][column], matrix.get(row, column), 0.0);
+            }
+        }
+    }
+}
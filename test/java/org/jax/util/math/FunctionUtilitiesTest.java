@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.jax.util.math;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link FunctionUtilities}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class FunctionUtilitiesTest
+{
+    /**
+     * Test that bulk evaluation gives exactly what the boxed
+     * {@link NegativeLog10} gives one value at a time, including in place
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void evaluateTest() throws Exception
+    {
+        NegativeLog10 negLog10 = new NegativeLog10();
+        double[] inputs = createInputs(1000, 3);
+        inputs[0] = 0.0;
+        inputs[1] = -1.0;
+        inputs[2] = Double.NaN;
+
+        double[] outputs = FunctionUtilities.evaluate(negLog10, inputs);
+        Assert.assertEquals(inputs.length, outputs.length);
+        for(int i = 0; i < inputs.length; i++)
+        {
+            Double boxedOutput = negLog10.evaluate(Double.valueOf(inputs[i]));
+            Assert.assertEquals(boxedOutput.doubleValue(), outputs[i], 0.0);
+            Assert.assertEquals(
+                    boxedOutput,
+                    FunctionUtilities.toFunction(negLog10).evaluate(inputs[i]));
+        }
+
+        FunctionUtilities.evaluate(negLog10, inputs, inputs);
+        Assert.assertArrayEquals(outputs, inputs, 0.0);
+    }
+
+    /**
+     * Test that arrays with different lengths are rejected
+     */
+    @Test(expected=IllegalArgumentException.class)
+    public void lengthMismatchTest()
+    {
+        FunctionUtilities.evaluate(new NegativeLog10(), new double[3], new double[2]);
+    }
+
+    /**
+     * Test that parallel evaluation matches sequential evaluation for
+     * arrays that are and aren't big enough to split up
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void parallelEvaluateTest() throws Exception
+    {
+        NegativeLog10 negLog10 = new NegativeLog10();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            for(int size: new int[] {0, 17, 300001})
+            {
+                double[] inputs = createInputs(size, size);
+                double[] expected = FunctionUtilities.evaluate(negLog10, inputs);
+                Assert.assertArrayEquals(
+                        expected,
+                        FunctionUtilities.parallelEvaluate(negLog10, inputs, executor, 4),
+                        0.0);
+
+                FunctionUtilities.parallelEvaluate(negLog10, inputs, inputs, executor, 3);
+                Assert.assertArrayEquals(expected, inputs, 0.0);
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Test that memoized functions give the same outputs and only evaluate
+     * the wrapped function once per remembered input
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void memoizeTest() throws Exception
+    {
+        final AtomicInteger evaluationCount = new AtomicInteger(0);
+        DoubleUnaryFunction countingFunction = new DoubleUnaryFunction()
+        {
+            public double evaluate(double input)
+            {
+                evaluationCount.incrementAndGet();
+                return input * input;
+            }
+        };
+
+        DoubleUnaryFunction memoizedFunction =
+            FunctionUtilities.memoizeDouble(countingFunction, 100L);
+        for(int repeat = 0; repeat < 3; repeat++)
+        {
+            for(int i = 0; i < 50; i++)
+            {
+                Assert.assertEquals(i * i, memoizedFunction.evaluate(i), 0.0);
+            }
+        }
+        Assert.assertEquals(50, evaluationCount.get());
+
+        Function<Double, Double> memoizedNegLog10 =
+            FunctionUtilities.memoize(new NegativeLog10(), 10L);
+        Assert.assertEquals(-2.0, memoizedNegLog10.evaluate(100.0).doubleValue(), 0.0);
+        Assert.assertEquals(-2.0, memoizedNegLog10.evaluate(100.0).doubleValue(), 0.0);
+    }
+
+    private static double[] createInputs(int size, long seed)
+    {
+        Random random = new Random(seed);
+        double[] inputs = new double[size];
+        for(int i = 0; i < size; i++)
+        {
+            inputs[i] = random.nextDouble() * 1000.0;
+        }
+        return inputs;
+    }
+}
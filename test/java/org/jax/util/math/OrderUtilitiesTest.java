@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.math;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link OrderUtilities}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class OrderUtilitiesTest
+{
+    /**
+     * Test that int orders match a stable comparator sort of the indices
+     * for small (insertion sorted) and large (radix sorted) arrays
+     */
+    @Test
+    public void intOrderTest()
+    {
+        Random random = new Random(3);
+        for(int length: new int[] {0, 1, 50, 5000})
+        {
+            final int[] values = new int[length];
+            for(int i = 0; i < length; i++)
+            {
+                // lots of ties and both signs plus the extremes
+                values[i] = i % 97 == 0 ?
+                        (i % 2 == 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE) :
+                        random.nextInt(200) - 100;
+            }
+
+            for(final boolean descending: new boolean[] {false, true})
+            {
+                int[] expected = comparatorOrder(length, new Comparator<Integer>()
+                {
+                    public int compare(Integer i1, Integer i2)
+                    {
+                        int a = values[i1];
+                        int b = values[i2];
+                        int comparison = a < b ? -1 : (a == b ? 0 : 1);
+                        return descending ? -comparison : comparison;
+                    }
+                });
+                Assert.assertArrayEquals(expected, OrderUtilities.order(values, descending));
+
+                long[] longValues = new long[length];
+                for(int i = 0; i < length; i++)
+                {
+                    longValues[i] = values[i] * (long)Integer.MAX_VALUE;
+                }
+                Assert.assertArrayEquals(
+                        expected,
+                        OrderUtilities.order(longValues, descending));
+            }
+        }
+    }
+
+    /**
+     * Test that double orders match {@link Double#compare(double, double)}
+     * with NaN values moved to the end in both directions
+     */
+    @Test
+    public void doubleOrderTest()
+    {
+        Random random = new Random(4);
+        final double[] values = new double[3000];
+        for(int i = 0; i < values.length; i++)
+        {
+            switch(i % 50)
+            {
+                case 0: values[i] = Double.NaN; break;
+                case 1: values[i] = Double.NEGATIVE_INFINITY; break;
+                case 2: values[i] = Double.POSITIVE_INFINITY; break;
+                case 3: values[i] = -0.0; break;
+                case 4: values[i] = 0.0; break;
+                default: values[i] = Math.rint(random.nextGaussian() * 20.0) / 4.0;
+            }
+        }
+
+        for(final boolean descending: new boolean[] {false, true})
+        {
+            int[] expected = comparatorOrder(values.length, new Comparator<Integer>()
+            {
+                public int compare(Integer i1, Integer i2)
+                {
+                    double a = values[i1];
+                    double b = values[i2];
+                    if(Double.isNaN(a) || Double.isNaN(b))
+                    {
+                        return Double.isNaN(a) ? (Double.isNaN(b) ? 0 : 1) : -1;
+                    }
+                    int comparison = Double.compare(a, b);
+                    return descending ? -comparison : comparison;
+                }
+            });
+            Assert.assertArrayEquals(expected, OrderUtilities.order(values, descending));
+        }
+
+        // Matlab.order is the ascending order
+        Assert.assertArrayEquals(
+                OrderUtilities.order(values, false),
+                Matlab.order(values));
+    }
+
+    /**
+     * Test that the partial and parallel orders agree with the sequential
+     * order
+     * @throws Exception
+     *          if we get an exception
+     */
+    @Test
+    public void partialAndParallelOrderTest() throws Exception
+    {
+        Random random = new Random(5);
+        int[] intValues = new int[200000];
+        double[] doubleValues = new double[intValues.length];
+        for(int i = 0; i < intValues.length; i++)
+        {
+            intValues[i] = random.nextInt(1000);
+            doubleValues[i] = i % 1000 == 0 ? Double.NaN : random.nextDouble();
+        }
+
+        for(boolean descending: new boolean[] {false, true})
+        {
+            int[] intOrder = OrderUtilities.order(intValues, descending);
+            int[] doubleOrder = OrderUtilities.order(doubleValues, descending);
+            for(int k: new int[] {0, 1, 10, 1000})
+            {
+                Assert.assertArrayEquals(
+                        Arrays.copyOf(intOrder, k),
+                        OrderUtilities.partialOrder(intValues, k, descending));
+                Assert.assertArrayEquals(
+                        Arrays.copyOf(doubleOrder, k),
+                        OrderUtilities.partialOrder(doubleValues, k, descending));
+            }
+            Assert.assertArrayEquals(
+                    OrderUtilities.order(new int[] {3, 1, 2}, descending),
+                    OrderUtilities.partialOrder(new int[] {3, 1, 2}, 10, descending));
+
+            ExecutorService executor = Executors.newFixedThreadPool(3);
+            try
+            {
+                Assert.assertArrayEquals(
+                        intOrder,
+                        OrderUtilities.parallelOrder(intValues, descending, executor, 3));
+                Assert.assertArrayEquals(
+                        doubleOrder,
+                        OrderUtilities.parallelOrder(doubleValues, descending, executor, 4));
+            }
+            finally
+            {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private static int[] comparatorOrder(int length, Comparator<Integer> comparator)
+    {
+        Integer[] indices = new Integer[length];
+        for(int i = 0; i < length; i++)
+        {
+            indices[i] = i;
+        }
+
+        // the object sort is a stable merge sort
+        Arrays.sort(indices, comparator);
+        int[] order = new int[length];
+        for(int i = 0; i < length; i++)
+        {
+            order[i] = indices[i];
+        }
+        return order;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.math;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link PValueIndex} and the batched p-value
+ * lookup in {@link StatisticUtilities}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class PValueIndexTest
+{
+    /**
+     * Test that the index and the batched lookup agree with
+     * {@link StatisticUtilities#calculatePValueForDataPoint(double, double[])}
+     * on a sample with lots of ties, infinities and NaNs (1% of the sample)
+     */
+    @Test
+    public void equivalenceTest()
+    {
+        Random random = new Random(17);
+        double[] sample = new double[5000];
+        for(int i = 0; i < sample.length; i++)
+        {
+            switch(i % 100)
+            {
+                case 0: sample[i] = Double.NaN; break;
+                case 1: sample[i] = Double.POSITIVE_INFINITY; break;
+                case 2: sample[i] = Double.NEGATIVE_INFINITY; break;
+                default: sample[i] = random.nextInt(50) / 4.0;
+            }
+        }
+        Arrays.sort(sample);
+
+        double[] dataPoints = new double[2000];
+        for(int i = 0; i < dataPoints.length; i++)
+        {
+            dataPoints[i] = i % 50 == 0 ? Double.NaN : random.nextInt(60) / 4.0 - 1.0;
+        }
+        Arrays.sort(dataPoints);
+
+        PValueIndex index = new PValueIndex(sample);
+        Assert.assertEquals(sample.length, index.getSampleCount());
+        Assert.assertEquals(53, index.getDistinctValueCount());
+
+        double[] batchPValues = StatisticUtilities.calculatePValuesForSortedDataPoints(
+                dataPoints,
+                sample);
+        double[] indexPValues = index.calculatePValuesForSortedDataPoints(dataPoints);
+        for(int i = 0; i < dataPoints.length; i++)
+        {
+            // the single lookup walks back over ties with == which NaN
+            // never matches, but NaN sorts after everything so only the
+            // NaNs are greater than or equal to it
+            double expected = Double.isNaN(dataPoints[i]) ?
+                    0.01 :
+                    StatisticUtilities.calculatePValueForDataPoint(
+                            dataPoints[i],
+                            sample);
+            Assert.assertEquals(expected, index.calculatePValue(dataPoints[i]), 0.0);
+            Assert.assertEquals(expected, batchPValues[i], 0.0);
+            Assert.assertEquals(expected, indexPValues[i], 0.0);
+        }
+    }
+
+    /**
+     * Test that unsorted samples are rejected
+     */
+    @Test(expected=IllegalArgumentException.class)
+    public void unsortedSampleTest()
+    {
+        new PValueIndex(new double[] {1.0, 3.0, 2.0});
+    }
+
+    /**
+     * Test that unsorted data points are rejected
+     */
+    @Test(expected=IllegalArgumentException.class)
+    public void unsortedDataPointsTest()
+    {
+        StatisticUtilities.calculatePValuesForSortedDataPoints(
+                new double[] {2.0, 1.0},
+                new double[] {1.0, 2.0, 3.0});
+    }
+}
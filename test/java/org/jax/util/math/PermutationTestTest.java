@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.math;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link PermutationTest} and
+ * {@link ExactNullDistribution}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class PermutationTestTest
+{
+    /**
+     * the mean difference between the first half and the second half of
+     * the samples. This also checks that every permutation is valid
+     */
+    private static final class MeanDifference implements PermutationStatistic
+    {
+        private final double[] values;
+
+        public MeanDifference(double[] values)
+        {
+            this.values = values;
+        }
+
+        public double evaluate(int[] permutation)
+        {
+            boolean[] seen = new boolean[permutation.length];
+            double difference = 0.0;
+            int half = permutation.length / 2;
+            for(int i = 0; i < permutation.length; i++)
+            {
+                Assert.assertFalse(seen[permutation[i]]);
+                seen[permutation[i]] = true;
+
+                double value = this.values[permutation[i]];
+                difference += i < half ? value : -value;
+            }
+            return difference / half;
+        }
+    }
+
+    /**
+     * Test that a seed gives the same null distribution sequentially and
+     * in parallel
+     * @throws InterruptedException
+     *          if we're interrupted
+     */
+    @Test
+    public void reproducibilityTest() throws InterruptedException
+    {
+        double[] values = createValues(40);
+        PermutationTest test = new PermutationTest(
+                values.length,
+                new MeanDifference(values),
+                100);
+
+        ExactNullDistribution sequential = test.run(
+                10007L, 42L, new ExactNullDistribution());
+        Assert.assertEquals(10007L, sequential.getSampleCount());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            ExactNullDistribution parallel = test.run(
+                    10007L, 42L, new ExactNullDistribution(), executor, 8);
+            Assert.assertArrayEquals(
+                    sequential.getSortedSample(),
+                    parallel.getSortedSample(),
+                    0.0);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        ExactNullDistribution otherSeed = test.run(
+                10007L, 43L, new ExactNullDistribution());
+        Assert.assertFalse(Arrays.equals(
+                sequential.getSortedSample(),
+                otherSeed.getSortedSample()));
+    }
+
+    /**
+     * Test that the exact null distribution's p-values match
+     * {@link StatisticUtilities} and that batched and merged queries
+     * match single queries
+     */
+    @Test
+    public void exactPValueTest()
+    {
+        Random random = new Random(3);
+        double[] sample = new double[1000];
+        for(int i = 0; i < sample.length; i++)
+        {
+            // lots of ties
+            sample[i] = random.nextInt(100) / 10.0;
+        }
+
+        ExactNullDistribution distribution = new ExactNullDistribution(sample);
+        ExactNullDistribution merged = new ExactNullDistribution();
+        ExactNullDistribution otherHalf = merged.createEmpty();
+        for(int i = 0; i < sample.length; i++)
+        {
+            if(i % 2 == 0)
+            {
+                merged.add(sample[i]);
+            }
+            else
+            {
+                otherHalf.add(sample[i]);
+            }
+        }
+        merged.merge(otherHalf);
+
+        double[] sortedSample = sample.clone();
+        Arrays.sort(sortedSample);
+        double[] dataPoints = new double[500];
+        for(int i = 0; i < dataPoints.length; i++)
+        {
+            dataPoints[i] = random.nextInt(120) / 10.0 - 1.0;
+        }
+
+        double[] batchPValues = distribution.calculatePValues(dataPoints);
+        for(int i = 0; i < dataPoints.length; i++)
+        {
+            double expected = StatisticUtilities.calculatePValueForDataPoint(
+                    dataPoints[i],
+                    sortedSample);
+            Assert.assertEquals(expected, distribution.calculatePValue(dataPoints[i]), 0.0);
+            Assert.assertEquals(expected, merged.calculatePValue(dataPoints[i]), 0.0);
+            Assert.assertEquals(expected, batchPValues[i], 0.0);
+        }
+    }
+
+    private static double[] createValues(int count)
+    {
+        Random random = new Random(count);
+        double[] values = new double[count];
+        for(int i = 0; i < count; i++)
+        {
+            values[i] = random.nextGaussian();
+        }
+        return values;
+    }
+}
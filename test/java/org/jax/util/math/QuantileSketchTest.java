@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ *
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.util.math;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit tester class for {@link QuantileSketch}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class QuantileSketchTest
+{
+    private static final int SAMPLE_COUNT = 200000;
+
+    /**
+     * Test the sketch against an exact distribution: tail p-values must be
+     * exact and the rest must be within the rank error
+     */
+    @Test
+    public void accuracyTest()
+    {
+        QuantileSketch sketch = new QuantileSketch(200, 500, 1L);
+        ExactNullDistribution exact = new ExactNullDistribution();
+        Random random = new Random(11);
+        for(int i = 0; i < SAMPLE_COUNT; i++)
+        {
+            double statistic = random.nextGaussian();
+            sketch.add(statistic);
+            exact.add(statistic);
+        }
+        this.checkAgainstExact(sketch, exact);
+
+        // the memory use doesn't depend on the sample count
+        Assert.assertTrue(sketch.getRetainedItemCount() < 5000);
+    }
+
+    /**
+     * Test that merged sketches are as accurate as a single sketch and
+     * that the same adds and merges give the same answers
+     */
+    @Test
+    public void mergeTest()
+    {
+        ExactNullDistribution exact = new ExactNullDistribution();
+        QuantileSketch[] mergedSketches = new QuantileSketch[2];
+        for(int copy = 0; copy < mergedSketches.length; copy++)
+        {
+            QuantileSketch merged = new QuantileSketch(200, 500, 5L);
+            Random random = new Random(13);
+            for(int part = 0; part < 20; part++)
+            {
+                QuantileSketch partSketch = merged.createEmpty();
+                for(int i = 0; i < SAMPLE_COUNT / 20; i++)
+                {
+                    double statistic = random.nextDouble() * 10.0;
+                    partSketch.add(statistic);
+                    if(copy == 0)
+                    {
+                        exact.add(statistic);
+                    }
+                }
+                merged.merge(partSketch);
+            }
+            mergedSketches[copy] = merged;
+        }
+
+        Assert.assertEquals(SAMPLE_COUNT, mergedSketches[0].getSampleCount());
+        this.checkAgainstExact(mergedSketches[0], exact);
+        for(double dataPoint = -1.0; dataPoint <= 11.0; dataPoint += 0.01)
+        {
+            Assert.assertEquals(
+                    mergedSketches[0].calculatePValue(dataPoint),
+                    mergedSketches[1].calculatePValue(dataPoint),
+                    0.0);
+        }
+    }
+
+    /**
+     * Test that a sketch that holds less than its tails is exact
+     */
+    @Test
+    public void smallSampleTest()
+    {
+        QuantileSketch sketch = new QuantileSketch();
+        ExactNullDistribution exact = new ExactNullDistribution();
+        for(int i = 0; i < 100; i++)
+        {
+            sketch.add(i % 17);
+            exact.add(i % 17);
+        }
+
+        for(double dataPoint = -1.0; dataPoint < 18.0; dataPoint += 0.5)
+        {
+            Assert.assertTrue(sketch.isPValueExact(dataPoint));
+            Assert.assertEquals(
+                    exact.calculatePValue(dataPoint),
+                    sketch.calculatePValue(dataPoint),
+                    0.0);
+        }
+        for(double pValue = 0.0; pValue <= 1.0; pValue += 0.05)
+        {
+            Assert.assertEquals(
+                    exact.calculateDataPoint(pValue),
+                    sketch.calculateDataPoint(pValue),
+                    0.0);
+        }
+    }
+
+    private void checkAgainstExact(QuantileSketch sketch, ExactNullDistribution exact)
+    {
+        double[] sortedSample = exact.getSortedSample();
+        double maxError = 3.0 * sketch.getNormalizedRankError();
+        double[] dataPoints = new double[1001];
+        for(int i = 0; i < dataPoints.length; i++)
+        {
+            dataPoints[i] = sortedSample[(int)((sortedSample.length - 1L) * i / 1000)];
+        }
+
+        double[] batchPValues = sketch.calculatePValues(dataPoints);
+        for(int i = 0; i < dataPoints.length; i++)
+        {
+            double exactPValue = exact.calculatePValue(dataPoints[i]);
+            double sketchPValue = sketch.calculatePValue(dataPoints[i]);
+            Assert.assertEquals(sketchPValue, batchPValues[i], 0.0);
+            if(sketch.isPValueExact(dataPoints[i]))
+            {
+                Assert.assertEquals(exactPValue, sketchPValue, 0.0);
+            }
+            else
+            {
+                Assert.assertEquals(exactPValue, sketchPValue, maxError);
+            }
+        }
+
+        // the extreme tails are always exact
+        Assert.assertTrue(sketch.isPValueExact(sortedSample[sortedSample.length - 1]));
+        Assert.assertTrue(sketch.isPValueExact(sortedSample[0]));
+        Assert.assertEquals(
+                exact.calculateDataPoint(0.001),
+                sketch.calculateDataPoint(0.001),
+                0.0);
+    }
+}